@@ -5,10 +5,16 @@ package pc001;
  */
 public final class Config {
     private static volatile boolean VERBOSE = false;
+    private static volatile boolean JMX = false;
 
     private Config() {}
 
     public static boolean isVerbose() { return VERBOSE; }
 
     public static void setVerbose(boolean v) { VERBOSE = v; }
+
+    /** Whether the harness registers its buffers, pipeline and Manager as MXBeans. */
+    public static boolean isJmx() { return JMX; }
+
+    public static void setJmx(boolean j) { JMX = j; }
 }
@@ -0,0 +1,54 @@
+package pc001.buffer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for a put or take that had to wait. It is disabled
+ * by default and only committed for waits longer than the threshold, so with
+ * no recording running the blocking paths pay a dead allocation at most; the
+ * fast paths never create one. Turn it on in a .jfc settings file or with
+ * {@code Recording.enable(BufferBlockedEvent.class)}.
+ */
+@Name("pc001.BufferBlocked")
+@Label("Buffer Blocked")
+@Category({"PC001", "Buffer"})
+@Description("A producer or consumer waited on a full or empty buffer")
+@Enabled(false)
+@Threshold("10 ms")
+@StackTrace(false)
+public final class BufferBlockedEvent extends Event {
+    @Label("Buffer Type")
+    String bufferType;
+
+    @Label("Operation")
+    @Description("put or take")
+    String operation;
+
+    @Label("Capacity")
+    int capacity;
+
+    /** Begin timing a wait; pair with {@link #finish}. */
+    static BufferBlockedEvent start() {
+        BufferBlockedEvent event = new BufferBlockedEvent();
+        event.begin();
+        return event;
+    }
+
+    // only reads the capacity: size() may take locks the caller must not nest
+    void finish(SharedBufferInterface<?> buffer, String operation) {
+        end();
+        if (shouldCommit()) {
+            this.bufferType = buffer.getClass().getSimpleName();
+            this.operation = operation;
+            this.capacity = buffer.capacity();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package pc001.buffer;
+
+/**
+ * Thrown by {@link SharedBufferInterface#put}/{@code offer} once the buffer is
+ * closed, and by {@link SharedBufferInterface#take} once it is closed and
+ * every remaining item has been taken.
+ */
+public class BufferClosedException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public BufferClosedException() {
+        super("buffer is closed");
+    }
+}
@@ -0,0 +1,54 @@
+package pc001.buffer;
+
+import java.io.Serializable;
+
+/**
+ * Where a buffer stands at one instant, read in O(1) by
+ * {@link SharedBufferInterface#position()}: the lifetime produced/consumed
+ * counters, the number of queued items and, for ring buffers, the head and
+ * tail indices. Two positions of the same buffer tell how many items moved
+ * in between without copying any of them.
+ */
+public final class BufferPosition implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Head/tail value of buffers that are not a single ring. */
+    public static final int NO_INDEX = -1;
+
+    private final long produced;
+    private final long consumed;
+    private final int size;
+    private final int head;
+    private final int tail;
+
+    BufferPosition(long produced, long consumed, int size, int head, int tail) {
+        this.produced = produced;
+        this.consumed = consumed;
+        this.size = size;
+        this.head = head;
+        this.tail = tail;
+    }
+
+    /** Position of a buffer known only by a copy of its contents: counters read 0. */
+    public static BufferPosition ofSize(int size) {
+        return new BufferPosition(0, 0, size, NO_INDEX, NO_INDEX);
+    }
+
+    public long getProduced() { return produced; }
+
+    public long getConsumed() { return consumed; }
+
+    public int getSize() { return size; }
+
+    /** Ring index of the next item to take, or {@link #NO_INDEX}. */
+    public int getHead() { return head; }
+
+    /** Ring index the next item is put at, or {@link #NO_INDEX}. */
+    public int getTail() { return tail; }
+
+    @Override
+    public String toString() {
+        return "BufferPosition{produced=" + produced + ", consumed=" + consumed + ", size=" + size
+                + (head == NO_INDEX ? "" : ", head=" + head + ", tail=" + tail) + '}';
+    }
+}
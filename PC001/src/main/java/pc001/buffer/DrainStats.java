@@ -0,0 +1,38 @@
+package pc001.buffer;
+
+import java.util.List;
+
+/**
+ * Outcome of {@link SharedBufferInterface#closeAndDrain}: how many items the
+ * consumers took after the close, and the items they did not get to in time.
+ */
+public final class DrainStats<T> {
+    private final long drained;
+    private final List<T> leftover;
+    private final long elapsedNanos;
+
+    DrainStats(long drained, List<T> leftover, long elapsedNanos) {
+        this.drained = drained;
+        this.leftover = List.copyOf(leftover);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Items consumed between the close and the end of the drain. */
+    public long getDrained() { return drained; }
+
+    /** Items still in the buffer at the deadline; they were removed and are only available here. */
+    public List<T> getLeftover() { return leftover; }
+
+    public int getLeftoverCount() { return leftover.size(); }
+
+    /** Whether consumers emptied the buffer before the deadline. */
+    public boolean isComplete() { return leftover.isEmpty(); }
+
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    @Override
+    public String toString() {
+        return "DrainStats{drained=" + drained + ", leftover=" + leftover.size()
+                + ", elapsedMs=" + elapsedNanos / 1_000_000 + '}';
+    }
+}
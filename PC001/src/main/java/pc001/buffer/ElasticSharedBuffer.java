@@ -0,0 +1,329 @@
+package pc001.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import pc001.observer.Manager;
+
+/**
+ * ReentrantLock/Condition ring buffer whose capacity adapts to the workload
+ * within {@code [minCapacity, maxCapacity]}.
+ *
+ * Every {@code window} operations the buffer looks at its own counters for
+ * that window. If more than {@code GROW_BLOCKED_RATIO} of the puts had to wait
+ * for room, the capacity doubles. If no put waited, consumers found the buffer
+ * empty, and occupancy never went above a quarter of the capacity, it halves
+ * (but stays at least twice the observed peak).
+ *
+ * The capacity is a logical limit over the ring. Shrinking only lowers the
+ * limit. Growing past the ring's length reallocates it, which happens at most
+ * log2(max/min) times, so the ring stays at its high-water size. Either way
+ * the adjustment is made inside the operation that closes the window, under
+ * the lock that operation already holds: no items are moved out of order or
+ * dropped, and no separate thread or extra lock is involved.
+ */
+public class ElasticSharedBuffer<T> implements SharedBufferInterface<T> {
+    static final double GROW_BLOCKED_RATIO = 0.05;
+    static final int DEFAULT_WINDOW = 256;
+
+    private final int minCapacity;
+    private final int maxCapacity;
+    private final int window;
+
+    private Object[] items;
+    private int head;
+    private int count;
+    private volatile int limit; // written under lock
+    private volatile boolean closed; // written under lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private final AtomicLong produced = new AtomicLong(0);
+    private final AtomicLong consumed = new AtomicLong(0);
+    // only touched when a thread actually has to wait
+    private final LongAdder putBlockedNanos = new LongAdder();
+    private final LongAdder takeBlockedNanos = new LongAdder();
+
+    // current window, guarded by lock
+    private int windowOps;
+    private int windowPuts;
+    private int windowBlockedPuts;
+    private int windowEmptyTakes;
+    private int windowPeak;
+
+    // lifetime counters, guarded by lock
+    private long blockedPuts;
+    private long emptyTakes;
+    private long grows;
+    private long shrinks;
+
+    public ElasticSharedBuffer(int minCapacity, int maxCapacity, int window) {
+        if (minCapacity <= 0 || maxCapacity < minCapacity || window <= 0)
+            throw new IllegalArgumentException("need 0 < minCapacity <= maxCapacity and window > 0");
+        this.minCapacity = minCapacity;
+        this.maxCapacity = maxCapacity;
+        this.window = window;
+        this.items = new Object[minCapacity];
+        this.limit = minCapacity;
+    }
+
+    public ElasticSharedBuffer(int minCapacity, int maxCapacity) {
+        this(minCapacity, maxCapacity, DEFAULT_WINDOW);
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (count >= limit && !closed) {
+                blockedPuts++;
+                windowBlockedPuts++;
+                do {
+                    BufferBlockedEvent stall = BufferBlockedEvent.start();
+                    long waitStart = System.nanoTime();
+                    notFull.await();
+                    putBlockedNanos.add(System.nanoTime() - waitStart);
+                    stall.finish(this, "put");
+                } while (count >= limit && !closed);
+            }
+            if (closed) throw new BufferClosedException();
+            enqueue(item);
+        } finally {
+            lock.unlock();
+        }
+        Manager.getInstance().notifyChange("Q", this);
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        T item;
+        lock.lockInterruptibly();
+        try {
+            if (count == 0) {
+                emptyTakes++;
+                windowEmptyTakes++;
+                while (count == 0) {
+                    if (closed) throw new BufferClosedException();
+                    BufferBlockedEvent stall = BufferBlockedEvent.start();
+                    long waitStart = System.nanoTime();
+                    notEmpty.await();
+                    takeBlockedNanos.add(System.nanoTime() - waitStart);
+                    stall.finish(this, "take");
+                }
+            }
+            item = dequeue();
+        } finally {
+            lock.unlock();
+        }
+        Manager.getInstance().notifyChange("Q", this);
+        return item;
+    }
+
+    @Override
+    public boolean offer(T item) {
+        lock.lock();
+        try {
+            if (closed) throw new BufferClosedException();
+            if (count >= limit) {
+                // a rejected offer is the non-blocking form of a blocked put
+                windowPuts++;
+                windowBlockedPuts++;
+                blockedPuts++;
+                endOfOp();
+                return false;
+            }
+            enqueue(item);
+        } finally {
+            lock.unlock();
+        }
+        Manager.getInstance().notifyChange("Q", this);
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        T item;
+        lock.lock();
+        try {
+            if (count == 0) return null;
+            item = dequeue();
+        } finally {
+            lock.unlock();
+        }
+        Manager.getInstance().notifyChange("Q", this);
+        return item;
+    }
+
+    /** Current logical capacity. */
+    @Override
+    public int capacity() {
+        return limit;
+    }
+
+    public int getMinCapacity() { return minCapacity; }
+
+    public int getMaxCapacity() { return maxCapacity; }
+
+    /** Puts (and failed offers) that found the buffer full. */
+    public long getBlockedPutCount() {
+        lock.lock();
+        try {
+            return blockedPuts;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Takes that found the buffer empty and had to wait. */
+    public long getEmptyTakeCount() {
+        lock.lock();
+        try {
+            return emptyTakes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getGrowCount() {
+        lock.lock();
+        try {
+            return grows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getShrinkCount() {
+        lock.lock();
+        try {
+            return shrinks;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public List<T> snapshotContents() {
+        lock.lock();
+        try {
+            List<T> out = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) out.add(itemAt(head + i));
+            return out;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public BufferPosition position() {
+        lock.lock();
+        try {
+            return new BufferPosition(produced.get(), consumed.get(), count, head, (head + count) % items.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getProducedCount() { return produced.get(); }
+
+    @Override
+    public long getConsumedCount() { return consumed.get(); }
+
+    @Override
+    public long getPutBlockedNanos() { return putBlockedNanos.sum(); }
+
+    @Override
+    public long getTakeBlockedNanos() { return takeBlockedNanos.sum(); }
+
+    // Both called with the lock held and room/an item available
+    private void enqueue(T item) {
+        items[(head + count) % items.length] = item;
+        count++;
+        produced.incrementAndGet();
+        windowPuts++;
+        if (count > windowPeak) windowPeak = count;
+        notEmpty.signal();
+        endOfOp();
+    }
+
+    private T dequeue() {
+        T item = itemAt(head);
+        items[head] = null;
+        if (++head == items.length) head = 0;
+        count--;
+        consumed.incrementAndGet();
+        notFull.signal();
+        endOfOp();
+        return item;
+    }
+
+    private void endOfOp() {
+        if (++windowOps < window) return;
+        adapt();
+        windowOps = 0;
+        windowPuts = 0;
+        windowBlockedPuts = 0;
+        windowEmptyTakes = 0;
+        windowPeak = count;
+    }
+
+    private void adapt() {
+        int current = limit;
+        if (windowPuts > 0 && windowBlockedPuts > GROW_BLOCKED_RATIO * windowPuts && current < maxCapacity) {
+            int next = (int) Math.min(maxCapacity, 2L * current);
+            if (next > items.length) reallocate(next);
+            limit = next;
+            grows++;
+            // the extra room can take more than one waiting producer
+            notFull.signalAll();
+        } else if (windowBlockedPuts == 0 && windowEmptyTakes > 0 && windowPeak <= current / 4
+                && current > minCapacity) {
+            limit = Math.max(minCapacity, Math.max(current / 2, 2 * windowPeak));
+            if (limit < current) shrinks++;
+        }
+    }
+
+    // copies the items to the front of a larger ring, keeping their order
+    private void reallocate(int length) {
+        Object[] next = new Object[length];
+        for (int i = 0; i < count; i++) next[i] = items[(head + i) % items.length];
+        items = next;
+        head = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int i) {
+        return (T) items[i % items.length];
+    }
+}
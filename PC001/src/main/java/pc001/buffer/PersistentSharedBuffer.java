@@ -0,0 +1,600 @@
+package pc001.buffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import pc001.observer.Manager;
+
+/**
+ * Buffer whose items live in memory-mapped segment files, so they survive a
+ * crash or restart of the process.
+ *
+ * Items are serialized and appended to fixed-size segment files
+ * ({@code segment-<n>.dat}). Each record is a 4-byte header holding the
+ * payload length plus one, followed by the payload, padded to 4 bytes; a
+ * header of 0 marks the end of the data, so empty payloads stay
+ * distinguishable from it. The payload and a zero header after it are
+ * written first and the length last, with release semantics, so a record
+ * is either fully visible or not at all. A header of -1 means "continued in
+ * the next segment". The consumer's position is a single long in the
+ * mapped file {@code consumer.offset}, updated after every take.
+ *
+ * Once the consumer leaves a segment, the file is renamed into a small pool
+ * of spares and reused for the next segment instead of allocating a new file.
+ *
+ * Writes reach the OS page cache immediately, which is enough to survive a
+ * process crash. To survive an OS crash or power loss, the mapped pages are
+ * forced to disk every {@code syncEveryItems} operations and/or every
+ * {@code syncIntervalMillis} (by a daemon thread), and on {@link #close()}.
+ * The force itself runs outside the buffer's lock, so puts and takes do not
+ * wait for the disk.
+ *
+ * On open, the buffer resumes from the stored consumer offset and counts the
+ * records after it, so unconsumed items are taken again after a restart.
+ * Delivery is at-least-once: an item taken just before a crash may be
+ * delivered again if its offset update had not been synced.
+ *
+ * {@link #close()} stops producers and syncs; items still queued stay on disk
+ * for the next open. Counters (produced/consumed) start at zero on every open;
+ * {@link #getRecoveredCount()} tells how many items were found on disk.
+ */
+public class PersistentSharedBuffer<T> implements SharedBufferInterface<T>, AutoCloseable {
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SPARE_PREFIX = "spare-";
+    static final String SUFFIX = ".dat";
+    static final String OFFSET_FILE = "consumer.offset";
+
+    private static final int HEADER = 4;
+    private static final int ROLL = -1;
+    private static final int MAX_SPARES = 2;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path dir;
+    private final Serializer<T> serializer;
+    private final int segmentSize;
+    private final int capacity;
+    private final int syncEveryItems;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    // all guarded by lock
+    private long writeSegment;
+    private MappedByteBuffer writeMap;
+    private int writePos;
+    private long readSegment;
+    private MappedByteBuffer readMap;
+    private int readPos;
+    private final MappedByteBuffer offsetMap;
+    private final Deque<Path> spares = new ArrayDeque<>();
+    private int count;
+    private int unsynced;
+    private int spareSeq;
+
+    private final int recovered;
+    private final AtomicLong produced = new AtomicLong(0);
+    private final AtomicLong consumed = new AtomicLong(0);
+    // only touched when a thread actually has to wait
+    private final LongAdder putBlockedNanos = new LongAdder();
+    private final LongAdder takeBlockedNanos = new LongAdder();
+    private final AtomicLong syncs = new AtomicLong(0);
+    private volatile boolean closed;
+    private final Thread syncer;
+
+    private PersistentSharedBuffer(Builder<T> b) throws IOException {
+        this.dir = b.dir;
+        this.serializer = b.serializer;
+        this.segmentSize = b.segmentSize;
+        this.capacity = b.capacity;
+        this.syncEveryItems = b.syncEveryItems;
+
+        Files.createDirectories(dir);
+        this.offsetMap = map(dir.resolve(OFFSET_FILE), 8);
+        long offset = (long) LONG.getVolatile(offsetMap, 0);
+        this.recovered = recover(offset);
+
+        if (b.syncIntervalMillis > 0) {
+            long interval = b.syncIntervalMillis;
+            syncer = new Thread(() -> syncLoop(interval), "persistent-buffer-sync");
+            syncer.setDaemon(true);
+            syncer.start();
+        } else {
+            syncer = null;
+        }
+    }
+
+    /** Configure a buffer stored in {@code dir}; existing contents are recovered on {@link Builder#open()}. */
+    public static <T> Builder<T> builder(Path dir, Serializer<T> serializer) {
+        return new Builder<>(dir, serializer);
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        byte[] data = serializer.serialize(item);
+        checkRecordSize(data);
+        MappedByteBuffer[] toSync;
+        lock.lockInterruptibly();
+        try {
+            while (count >= capacity && !closed) {
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                notFull.await();
+                putBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "put");
+            }
+            if (closed) throw new BufferClosedException();
+            append(data);
+            toSync = afterOperation();
+        } finally {
+            lock.unlock();
+        }
+        force(toSync);
+        Manager.getInstance().notifyChange("Q", this);
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        byte[] data;
+        MappedByteBuffer[] toSync;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (closed) throw new BufferClosedException();
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                notEmpty.await();
+                takeBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "take");
+            }
+            data = read();
+            toSync = afterOperation();
+        } finally {
+            lock.unlock();
+        }
+        force(toSync);
+        Manager.getInstance().notifyChange("Q", this);
+        return serializer.deserialize(data);
+    }
+
+    @Override
+    public boolean offer(T item) {
+        byte[] data = serializer.serialize(item);
+        checkRecordSize(data);
+        MappedByteBuffer[] toSync;
+        lock.lock();
+        try {
+            if (closed) throw new BufferClosedException();
+            if (count >= capacity) return false;
+            append(data);
+            toSync = afterOperation();
+        } finally {
+            lock.unlock();
+        }
+        force(toSync);
+        Manager.getInstance().notifyChange("Q", this);
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        byte[] data;
+        MappedByteBuffer[] toSync;
+        lock.lock();
+        try {
+            if (count == 0) return null;
+            data = read();
+            toSync = afterOperation();
+        } finally {
+            lock.unlock();
+        }
+        force(toSync);
+        Manager.getInstance().notifyChange("Q", this);
+        return serializer.deserialize(data);
+    }
+
+    /** Force every written record and the consumer offset to disk now. */
+    public void sync() {
+        MappedByteBuffer[] toSync;
+        lock.lock();
+        try {
+            toSync = syncTargets();
+        } finally {
+            lock.unlock();
+        }
+        force(toSync);
+    }
+
+    /** Stop accepting items, wake waiters, sync, and stop the sync thread. Queued items stay on disk. */
+    @Override
+    public void close() {
+        MappedByteBuffer[] toSync;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            toSync = syncTargets();
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (syncer != null) syncer.interrupt();
+        force(toSync);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Reads every queued record from disk; meant for diagnostics, not the hot path. */
+    @Override
+    public List<T> snapshotContents() {
+        List<byte[]> records = new ArrayList<>();
+        lock.lock();
+        try {
+            long seg = readSegment;
+            ByteBuffer map = readMap;
+            int pos = readPos;
+            for (int i = 0; i < count; i++) {
+                int header = headerAt(map, pos);
+                while (header == ROLL) {
+                    seg++;
+                    map = seg == writeSegment ? writeMap : map(segmentPath(seg), segmentSize);
+                    pos = 0;
+                    header = headerAt(map, pos);
+                }
+                int len = header - 1;
+                records.add(payload(map, pos, len));
+                pos += recordSize(len);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+        List<T> out = new ArrayList<>(records.size());
+        for (byte[] r : records) out.add(serializer.deserialize(r));
+        return out;
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    // includes recovered items in the size, which the counters do not cover
+    @Override
+    public BufferPosition position() {
+        lock.lock();
+        try {
+            return new BufferPosition(produced.get(), consumed.get(), count,
+                    BufferPosition.NO_INDEX, BufferPosition.NO_INDEX);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getProducedCount() { return produced.get(); }
+
+    @Override
+    public long getConsumedCount() { return consumed.get(); }
+
+    @Override
+    public long getPutBlockedNanos() { return putBlockedNanos.sum(); }
+
+    @Override
+    public long getTakeBlockedNanos() { return takeBlockedNanos.sum(); }
+
+    /** Unconsumed items found on disk when this buffer was opened. */
+    public int getRecoveredCount() {
+        return recovered;
+    }
+
+    /** Number of times the mapped files were forced to disk. */
+    public long getSyncCount() {
+        return syncs.get();
+    }
+
+    // ---- writing and reading, all with the lock held ----
+
+    private void append(byte[] data) {
+        int size = recordSize(data.length);
+        // keep room for the zero header that terminates the segment's data
+        if (writePos + size + HEADER > segmentSize) roll();
+        ByteBuffer dst = writeMap.duplicate();
+        dst.position(writePos + HEADER);
+        dst.put(data);
+        INT.set(writeMap, writePos + size, 0);
+        // publish last: a reader or a recovery never sees a half-written record
+        INT.setRelease(writeMap, writePos, data.length + 1);
+        writePos += size;
+        count++;
+        produced.incrementAndGet();
+        notEmpty.signal();
+    }
+
+    private byte[] read() {
+        int header = headerAt(readMap, readPos);
+        while (header == ROLL) {
+            long finished = readSegment;
+            readSegment++;
+            readPos = 0;
+            try {
+                readMap = readSegment == writeSegment ? writeMap : map(segmentPath(readSegment), segmentSize);
+                retire(finished);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            header = headerAt(readMap, readPos);
+        }
+        int len = header - 1;
+        byte[] data = payload(readMap, readPos, len);
+        readPos += recordSize(len);
+        LONG.setRelease(offsetMap, 0, readSegment * segmentSize + readPos);
+        count--;
+        consumed.incrementAndGet();
+        notFull.signal();
+        return data;
+    }
+
+    private void roll() {
+        try {
+            long next = writeSegment + 1;
+            MappedByteBuffer map = newSegment(next);
+            // the old segment is complete: persist it before pointing readers onwards
+            writeMap.force();
+            INT.setRelease(writeMap, writePos, ROLL);
+            writeSegment = next;
+            writeMap = map;
+            writePos = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private MappedByteBuffer newSegment(long segment) throws IOException {
+        Path path = segmentPath(segment);
+        Path spare = spares.poll();
+        if (spare != null) Files.move(spare, path);
+        MappedByteBuffer map = map(path, segmentSize);
+        // a recycled file still holds old records: cut them off
+        INT.setRelease(map, 0, 0);
+        return map;
+    }
+
+    private void retire(long segment) throws IOException {
+        Path path = segmentPath(segment);
+        if (spares.size() < MAX_SPARES) {
+            Path spare = dir.resolve(SPARE_PREFIX + (spareSeq++) + SUFFIX);
+            Files.move(path, spare);
+            spares.add(spare);
+        } else {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /** Count one put or take; returns the mappings to force once a count-triggered sync is due, else null. */
+    private MappedByteBuffer[] afterOperation() {
+        return syncEveryItems > 0 && ++unsynced >= syncEveryItems ? syncTargets() : null;
+    }
+
+    // with the lock held: everything written so far lives in these mappings,
+    // which stay valid (and forceable) after the segments are retired
+    private MappedByteBuffer[] syncTargets() {
+        unsynced = 0;
+        return readMap != writeMap ? new MappedByteBuffer[] {writeMap, readMap} : new MappedByteBuffer[] {writeMap};
+    }
+
+    // without the lock: msync can take milliseconds, and writes that land meanwhile are just synced early
+    private void force(MappedByteBuffer[] maps) {
+        if (maps == null) return;
+        for (MappedByteBuffer map : maps) map.force();
+        offsetMap.force();
+        syncs.incrementAndGet();
+    }
+
+    private void syncLoop(long intervalMillis) {
+        try {
+            while (!closed) {
+                Thread.sleep(intervalMillis);
+                MappedByteBuffer[] toSync = null;
+                lock.lock();
+                try {
+                    if (!closed) toSync = syncTargets();
+                } finally {
+                    lock.unlock();
+                }
+                force(toSync);
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    // ---- recovery ----
+
+    /** Position the reader at {@code offset}, find the end of the data and count what is in between. */
+    private int recover(long offset) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX)) {
+                    segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SUFFIX.length())), p);
+                } else if (name.startsWith(SPARE_PREFIX)) {
+                    // spare names only need to be unique; start after the existing ones
+                    spareSeq = Math.max(spareSeq, Integer.parseInt(
+                            name.substring(SPARE_PREFIX.length(), name.length() - SUFFIX.length())) + 1);
+                    if (spares.size() < MAX_SPARES) spares.add(p); else Files.delete(p);
+                }
+            }
+        }
+
+        readSegment = offset / segmentSize;
+        readPos = (int) (offset % segmentSize);
+        // segments before the reader were consumed but not yet retired when the process stopped
+        while (!segments.isEmpty() && segments.firstKey() < readSegment) {
+            retire(segments.pollFirstEntry().getKey());
+        }
+        if (segments.isEmpty()) {
+            writeSegment = readSegment;
+            writeMap = newSegment(readSegment);
+            writePos = readPos;
+            INT.setRelease(writeMap, writePos, 0);
+            readMap = writeMap;
+            return 0;
+        }
+        if (segments.firstKey() > readSegment) {
+            readSegment = segments.firstKey();
+            readPos = 0;
+        }
+
+        int n = 0;
+        long seg = readSegment;
+        int pos = readPos;
+        MappedByteBuffer map = map(segments.get(seg), segmentSize);
+        readMap = map;
+        while (true) {
+            int header = headerAt(map, pos);
+            if (header == ROLL && segments.containsKey(seg + 1)) {
+                seg++;
+                map = map(segments.get(seg), segmentSize);
+                pos = 0;
+                continue;
+            }
+            // 0 is the end of the data; an empty payload has a header of 1
+            if (header <= 0 || pos + recordSize(header - 1) + HEADER > segmentSize) break;
+            n++;
+            pos += recordSize(header - 1);
+        }
+        // anything after the end of the data was never published
+        for (Long later : new ArrayList<>(segments.tailMap(seg, false).keySet())) {
+            Files.delete(segments.get(later));
+        }
+        writeSegment = seg;
+        writeMap = map;
+        writePos = pos;
+        // a roll marker without a following segment: overwrite it and keep writing here
+        INT.setRelease(writeMap, writePos, 0);
+        count = n;
+        return n;
+    }
+
+    // ---- helpers ----
+
+    private int headerAt(ByteBuffer map, int pos) {
+        return pos + HEADER > segmentSize ? ROLL : (int) INT.getAcquire(map, pos);
+    }
+
+    private static byte[] payload(ByteBuffer map, int pos, int len) {
+        byte[] data = new byte[len];
+        ByteBuffer src = map.duplicate();
+        src.position(pos + HEADER);
+        src.get(data);
+        return data;
+    }
+
+    // header plus payload, padded so every header is 4-byte aligned
+    private static int recordSize(int payloadLength) {
+        return HEADER + ((payloadLength + 3) & ~3);
+    }
+
+    private void checkRecordSize(byte[] data) {
+        if (recordSize(data.length) + HEADER > segmentSize) {
+            throw new IllegalArgumentException("item of " + data.length + " bytes does not fit a "
+                    + segmentSize + "-byte segment");
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SUFFIX));
+    }
+
+    // the mapping stays valid after the channel is closed
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /** Settings for {@link PersistentSharedBuffer}. */
+    public static final class Builder<T> {
+        private final Path dir;
+        private final Serializer<T> serializer;
+        private int segmentSize = 16 * 1024 * 1024;
+        private int capacity = 1_000_000;
+        private int syncEveryItems;
+        private long syncIntervalMillis = 1000;
+
+        private Builder(Path dir, Serializer<T> serializer) {
+            this.dir = dir;
+            this.serializer = serializer;
+        }
+
+        /** Bytes per segment file, a multiple of 4 (default 16 MiB). Must not change between opens. */
+        public Builder<T> segmentSize(int bytes) {
+            if (bytes < 64 || bytes % 4 != 0) throw new IllegalArgumentException("segment size must be a multiple of 4, at least 64");
+            this.segmentSize = bytes;
+            return this;
+        }
+
+        /** Maximum number of queued items before put blocks (default 1,000,000). */
+        public Builder<T> capacity(int items) {
+            if (items <= 0) throw new IllegalArgumentException("capacity must be positive");
+            this.capacity = items;
+            return this;
+        }
+
+        /** Force to disk after this many puts/takes; 0 (default) disables the count trigger. */
+        public Builder<T> syncEveryItems(int items) {
+            if (items < 0) throw new IllegalArgumentException("syncEveryItems must not be negative");
+            this.syncEveryItems = items;
+            return this;
+        }
+
+        /** Force to disk this often from a daemon thread (default 1000 ms); 0 disables the timer. */
+        public Builder<T> syncIntervalMillis(long millis) {
+            if (millis < 0) throw new IllegalArgumentException("syncIntervalMillis must not be negative");
+            this.syncIntervalMillis = millis;
+            return this;
+        }
+
+        /** Open the buffer, recovering unconsumed items left in the directory. */
+        public PersistentSharedBuffer<T> open() throws IOException {
+            return new PersistentSharedBuffer<>(this);
+        }
+    }
+}
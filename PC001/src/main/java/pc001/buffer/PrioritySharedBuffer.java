@@ -0,0 +1,516 @@
+package pc001.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import pc001.observer.Manager;
+
+/**
+ * Buffer with a small fixed number of priority levels, level 0 being the most
+ * urgent. Each level has its own ring, so a burst of bulk items can only fill
+ * its own level and never delays a put at another level.
+ *
+ * Consumers pick the next level by smooth weighted round robin over the
+ * non-empty levels: with weights 4:2:1 and every level busy, seven takes yield
+ * four level-0, two level-1 and one level-2 items, interleaved. Low priority
+ * therefore slows down under load but never starves.
+ *
+ * An item may carry a maximum age. When it reaches the head of its ring after
+ * that, it is dropped instead of returned and handed to the expiry handler, if
+ * one is set. {@link #expireStale()} purges expired items from anywhere in the
+ * rings. Per-level counters and queueing latency are available from
+ * {@link #getLevelStats(int)}.
+ *
+ * The plain {@link #put}/{@link #offer} use the default level given to the
+ * constructor.
+ */
+public class PrioritySharedBuffer<T> implements SharedBufferInterface<T> {
+    // a sentinel, never compared arithmetically: deadlines are nanoTime values,
+    // which may be negative and may wrap
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final Level[] levels;
+    private final int defaultLevel;
+    private int size; // guarded by lock
+    private volatile boolean closed; // written under lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final AtomicLong produced = new AtomicLong(0);
+    private final AtomicLong consumed = new AtomicLong(0);
+    // only touched when a thread actually has to wait
+    private final LongAdder putBlockedNanos = new LongAdder();
+    private final LongAdder takeBlockedNanos = new LongAdder();
+    private volatile Consumer<? super T> expiryHandler;
+
+    /**
+     * @param capacityPerLevel ring size of each level
+     * @param weights dequeue weight of each level, most urgent first; its length is the number of levels
+     * @param defaultLevel level used by put(T) and offer(T)
+     */
+    @SuppressWarnings("unchecked")
+    public PrioritySharedBuffer(int capacityPerLevel, int[] weights, int defaultLevel) {
+        if (capacityPerLevel <= 0) throw new IllegalArgumentException("capacityPerLevel must be positive");
+        if (weights.length == 0 || weights.length > 16) throw new IllegalArgumentException("need 1 to 16 levels");
+        if (defaultLevel < 0 || defaultLevel >= weights.length) throw new IllegalArgumentException("bad default level");
+        this.levels = new PrioritySharedBuffer.Level[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] <= 0) throw new IllegalArgumentException("weights must be positive");
+            levels[i] = new Level(capacityPerLevel, weights[i]);
+        }
+        this.defaultLevel = defaultLevel;
+    }
+
+    /** {@code levelCount} levels weighted 2^(n-1) down to 1; put(T) uses the least urgent level. */
+    public PrioritySharedBuffer(int capacityPerLevel, int levelCount) {
+        this(capacityPerLevel, halvingWeights(levelCount), levelCount - 1);
+    }
+
+    private static int[] halvingWeights(int levelCount) {
+        if (levelCount <= 0 || levelCount > 16) throw new IllegalArgumentException("need 1 to 16 levels");
+        int[] w = new int[levelCount];
+        for (int i = 0; i < levelCount; i++) w[i] = 1 << (levelCount - 1 - i);
+        return w;
+    }
+
+    /**
+     * Called with each item dropped because it expired; runs on the thread that
+     * found it. An exception from the handler goes to that thread's uncaught
+     * exception handler and does not affect the take.
+     */
+    public void setExpiryHandler(Consumer<? super T> handler) {
+        this.expiryHandler = handler;
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        put(item, defaultLevel);
+    }
+
+    public void put(T item, int level) throws InterruptedException {
+        enqueueWaiting(item, level, NO_DEADLINE);
+    }
+
+    /** Put at {@code level}; if no consumer takes the item within {@code maxAge} it expires. */
+    public void put(T item, int level, long maxAge, TimeUnit unit) throws InterruptedException {
+        enqueueWaiting(item, level, deadline(maxAge, unit));
+    }
+
+    @Override
+    public boolean offer(T item) {
+        return offer(item, defaultLevel);
+    }
+
+    public boolean offer(T item, int level) {
+        return enqueueIfRoom(item, level, NO_DEADLINE);
+    }
+
+    public boolean offer(T item, int level, long maxAge, TimeUnit unit) {
+        return enqueueIfRoom(item, level, deadline(maxAge, unit));
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        List<T> expired = null;
+        T item;
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (size > 0) {
+                    Object o = dequeue();
+                    if (o instanceof Expired) {
+                        expired = addExpired(expired, ((Expired) o).item);
+                        continue;
+                    }
+                    item = cast(o);
+                    break;
+                }
+                if (closed) {
+                    // still report what was dropped on the way
+                    handleExpired(expired);
+                    throw new BufferClosedException();
+                }
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                notEmpty.await();
+                takeBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "take");
+            }
+        } finally {
+            lock.unlock();
+        }
+        handleExpired(expired);
+        Manager.getInstance().notifyChange("Q", this);
+        return item;
+    }
+
+    @Override
+    public T poll() {
+        List<T> expired = null;
+        T item = null;
+        lock.lock();
+        try {
+            while (size > 0) {
+                Object o = dequeue();
+                if (o instanceof Expired) {
+                    expired = addExpired(expired, ((Expired) o).item);
+                    continue;
+                }
+                item = cast(o);
+                break;
+            }
+        } finally {
+            lock.unlock();
+        }
+        handleExpired(expired);
+        if (item != null) Manager.getInstance().notifyChange("Q", this);
+        return item;
+    }
+
+    /**
+     * Remove every expired item, wherever it is in its ring, and return how
+     * many were removed. Consumers only check the head of each ring, so this
+     * is for callers that want stale work gone (and its space back) sooner.
+     */
+    public int expireStale() {
+        List<T> expired = null;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            for (Level level : levels) {
+                int before = level.count;
+                expired = level.removeExpired(now, expired);
+                size -= before - level.count;
+            }
+        } finally {
+            lock.unlock();
+        }
+        handleExpired(expired);
+        return expired == null ? 0 : expired.size();
+    }
+
+    /** Counters and queueing latency of one level. */
+    public LevelStats getLevelStats(int level) {
+        lock.lock();
+        try {
+            Level l = levels[level];
+            return new LevelStats(level, l.count, l.enqueued, l.dequeued, l.expired, l.waitNanos, l.maxWaitNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            for (Level l : levels) l.notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Contents by level, most urgent first; FIFO within a level. */
+    @Override
+    public List<T> snapshotContents() {
+        lock.lock();
+        try {
+            List<T> out = new ArrayList<>(size);
+            for (Level l : levels) {
+                for (int i = 0, idx = l.head; i < l.count; i++) {
+                    out.add(cast(l.items[idx]));
+                    if (++idx == l.items.length) idx = 0;
+                }
+            }
+            return out;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Read under the lock; expired items leave the size without being consumed. */
+    @Override
+    public BufferPosition position() {
+        lock.lock();
+        try {
+            return new BufferPosition(produced.get(), consumed.get(), size,
+                    BufferPosition.NO_INDEX, BufferPosition.NO_INDEX);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Total over all levels. */
+    @Override
+    public int capacity() {
+        return levels.length * levels[0].items.length;
+    }
+
+    @Override
+    public long getProducedCount() { return produced.get(); }
+
+    /** Items handed to consumers; expired items are not included. */
+    @Override
+    public long getConsumedCount() { return consumed.get(); }
+
+    @Override
+    public long getPutBlockedNanos() { return putBlockedNanos.sum(); }
+
+    @Override
+    public long getTakeBlockedNanos() { return takeBlockedNanos.sum(); }
+
+    private void enqueueWaiting(T item, int level, long deadline) throws InterruptedException {
+        Level l = level(level);
+        lock.lockInterruptibly();
+        try {
+            while (l.count == l.items.length && !closed) {
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                l.notFull.await();
+                putBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "put");
+            }
+            if (closed) throw new BufferClosedException();
+            enqueue(l, item, deadline);
+        } finally {
+            lock.unlock();
+        }
+        Manager.getInstance().notifyChange("Q", this);
+    }
+
+    private boolean enqueueIfRoom(T item, int level, long deadline) {
+        Level l = level(level);
+        lock.lock();
+        try {
+            if (closed) throw new BufferClosedException();
+            if (l.count == l.items.length) return false;
+            enqueue(l, item, deadline);
+        } finally {
+            lock.unlock();
+        }
+        Manager.getInstance().notifyChange("Q", this);
+        return true;
+    }
+
+    private Level level(int level) {
+        if (level < 0 || level >= levels.length) throw new IllegalArgumentException("no level " + level);
+        return levels[level];
+    }
+
+    /**
+     * nanoTime() plus the age, wrapping like nanoTime itself; {@link #isExpired}
+     * compares by difference, so any age up to Long.MAX_VALUE nanoseconds (what
+     * toNanos saturates at) works whatever the origin of nanoTime.
+     */
+    private static long deadline(long maxAge, TimeUnit unit) {
+        long d = System.nanoTime() + unit.toNanos(maxAge);
+        return d == NO_DEADLINE ? d - 1 : d;
+    }
+
+    private static boolean isExpired(long deadline, long now) {
+        return deadline != NO_DEADLINE && deadline - now < 0;
+    }
+
+    // Called with the lock held and room available
+    private void enqueue(Level l, T item, long deadline) {
+        l.push(item, System.nanoTime(), deadline);
+        size++;
+        produced.incrementAndGet();
+        notEmpty.signal();
+    }
+
+    /**
+     * Called with the lock held and size > 0. Smooth weighted round robin:
+     * every non-empty level gains its weight, the largest total wins and pays
+     * back the sum of the weights that took part.
+     */
+    private Object dequeue() {
+        Level best = null;
+        int total = 0;
+        for (Level l : levels) {
+            if (l.count == 0) continue;
+            l.current += l.weight;
+            total += l.weight;
+            if (best == null || l.current > best.current) best = l;
+        }
+        best.current -= total;
+
+        long now = System.nanoTime();
+        boolean expired = isExpired(best.deadlines[best.head], now);
+        T item = best.pop(now, expired);
+        size--;
+        best.notFull.signal();
+        if (expired) return new Expired(item);
+        consumed.incrementAndGet();
+        return item;
+    }
+
+    private List<T> addExpired(List<T> expired, Object item) {
+        if (expired == null) expired = new ArrayList<>();
+        expired.add(cast(item));
+        return expired;
+    }
+
+    // outside the lock, so a slow handler does not hold up other threads
+    private void handleExpired(List<T> expired) {
+        Consumer<? super T> handler = expiryHandler;
+        if (expired == null || handler == null) return;
+        for (T item : expired) {
+            try {
+                handler.accept(item);
+            } catch (RuntimeException e) {
+                // the consumer's item is not affected; report it like any uncaught failure on this thread
+                Thread t = Thread.currentThread();
+                t.getUncaughtExceptionHandler().uncaughtException(t, e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object o) {
+        return (T) o;
+    }
+
+    /** Wraps an item that expired before it could be returned. */
+    private static final class Expired {
+        final Object item;
+
+        Expired(Object item) {
+            this.item = item;
+        }
+    }
+
+    /** One priority level: a ring with per-slot timestamps and its counters. All guarded by lock. */
+    private final class Level {
+        final Object[] items;
+        final long[] enqueuedAt;
+        final long[] deadlines;
+        final int weight;
+        final Condition notFull = lock.newCondition();
+        int head;
+        int count;
+        int current; // smooth weighted round robin state
+        long enqueued;
+        long dequeued;
+        long expired;
+        long waitNanos;
+        long maxWaitNanos;
+
+        Level(int capacity, int weight) {
+            this.items = new Object[capacity];
+            this.enqueuedAt = new long[capacity];
+            this.deadlines = new long[capacity];
+            this.weight = weight;
+        }
+
+        void push(Object item, long now, long deadline) {
+            int tail = (head + count) % items.length;
+            items[tail] = item;
+            enqueuedAt[tail] = now;
+            deadlines[tail] = deadline;
+            count++;
+            enqueued++;
+        }
+
+        T pop(long now, boolean isExpired) {
+            T item = cast(items[head]);
+            if (isExpired) {
+                expired++;
+            } else {
+                long wait = now - enqueuedAt[head];
+                dequeued++;
+                waitNanos += wait;
+                if (wait > maxWaitNanos) maxWaitNanos = wait;
+            }
+            items[head] = null;
+            if (++head == items.length) head = 0;
+            count--;
+            return item;
+        }
+
+        /** Compact the ring, dropping expired slots and keeping order. */
+        List<T> removeExpired(long now, List<T> out) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int src = (head + i) % items.length;
+                if (isExpired(deadlines[src], now)) {
+                    out = addExpired(out, items[src]);
+                    expired++;
+                    continue;
+                }
+                int dst = (head + kept) % items.length;
+                items[dst] = items[src];
+                enqueuedAt[dst] = enqueuedAt[src];
+                deadlines[dst] = deadlines[src];
+                kept++;
+            }
+            for (int i = kept; i < count; i++) items[(head + i) % items.length] = null;
+            if (kept < count) notFull.signalAll();
+            count = kept;
+            return out;
+        }
+    }
+
+    /** Point-in-time counters of one priority level. */
+    public static final class LevelStats {
+        private final int level;
+        private final int size;
+        private final long enqueued;
+        private final long dequeued;
+        private final long expired;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        LevelStats(int level, int size, long enqueued, long dequeued, long expired, long totalWaitNanos,
+                   long maxWaitNanos) {
+            this.level = level;
+            this.size = size;
+            this.enqueued = enqueued;
+            this.dequeued = dequeued;
+            this.expired = expired;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        public int getLevel() { return level; }
+        public int getSize() { return size; }
+        public long getEnqueued() { return enqueued; }
+        /** Items handed to consumers. */
+        public long getDequeued() { return dequeued; }
+        public long getExpired() { return expired; }
+        /** Mean time from put to take, over dequeued items. */
+        public long getMeanWaitNanos() { return dequeued == 0 ? 0 : totalWaitNanos / dequeued; }
+        public long getMaxWaitNanos() { return maxWaitNanos; }
+
+        @Override
+        public String toString() {
+            return String.format("level %d{size=%d, enqueued=%d, dequeued=%d, expired=%d, meanWait=%dus, maxWait=%dus}",
+                    level, size, enqueued, dequeued, expired, getMeanWaitNanos() / 1000, maxWaitNanos / 1000);
+        }
+    }
+}
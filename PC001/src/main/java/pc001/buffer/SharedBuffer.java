@@ -2,46 +2,180 @@ package pc001.buffer;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import pc001.observer.Manager;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.List;
 
 /**
  * ArrayBlockingQueue-backed buffer implementation. This class demonstrates use of
  * java.util.concurrent.BlockingQueue (put/take) which provide built-in blocking
  * semantics for producer/consumer scenarios.
+ *
+ * A BlockingQueue cannot wake its waiters on demand, so {@link #close()} posts
+ * an internal marker that a blocked take() receives; whoever leaves the queue
+ * empty after the close posts it again for the next taker. The marker takes a
+ * slot, so a put waits for room in slices of {@link #CLOSE_CHECK_NANOS} and
+ * checks the flag between them: a put blocked when the buffer closes fails
+ * within one slice instead of waiting behind a marker that nobody takes.
+ *
+ * An item is counted as produced before it enters the queue, so a consumer
+ * can never count it as consumed first; a put waiting for room is therefore
+ * already included in the produced count.
  */
 public class SharedBuffer<T> implements SharedBufferInterface<T> {
-    private final BlockingQueue<T> queue;
+    private static final Object CLOSED = new Object();
+    /** How long a blocked put waits before checking for close(). */
+    static final long CLOSE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final BlockingQueue<Object> queue;
+    private final int capacity;
     private final AtomicLong produced = new AtomicLong(0);
     private final AtomicLong consumed = new AtomicLong(0);
+    // only touched when a thread actually has to wait
+    private final LongAdder putBlockedNanos = new LongAdder();
+    private final LongAdder takeBlockedNanos = new LongAdder();
+    private volatile boolean closed;
+    private final WaitStrategy waitStrategy;
 
     public SharedBuffer(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    /**
+     * @param waitStrategy how put/take wait; anything but {@link WaitStrategy#blocking()}
+     *        retries offer/poll instead of blocking on the queue
+     */
+    public SharedBuffer(int capacity, WaitStrategy waitStrategy) {
         this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.waitStrategy = waitStrategy;
     }
 
     public void put(T item) throws InterruptedException {
-        queue.put(item);
+        if (!waitStrategy.blocks()) {
+            waitStrategy.put(this, item, putBlockedNanos);
+            return;
+        }
+        if (closed) throw new BufferClosedException();
         produced.incrementAndGet();
+        if (!queue.offer(item)) {
+            BufferBlockedEvent stall = BufferBlockedEvent.start();
+            long waitStart = System.nanoTime();
+            try {
+                while (!queue.offer(item, CLOSE_CHECK_NANOS, TimeUnit.NANOSECONDS)) {
+                    if (closed) {
+                        produced.decrementAndGet();
+                        throw new BufferClosedException();
+                    }
+                }
+            } catch (InterruptedException e) {
+                produced.decrementAndGet();
+                throw e;
+            }
+            putBlockedNanos.add(System.nanoTime() - waitStart);
+            stall.finish(this, "put");
+        }
         Manager.getInstance().notifyChange("Q", this);
     }
 
     public T take() throws InterruptedException {
-        T item = queue.take();
-        consumed.incrementAndGet();
-        Manager.getInstance().notifyChange("Q", this);
+        if (!waitStrategy.blocks()) return waitStrategy.take(this, takeBlockedNanos);
+        T item = next(true);
+        if (item == null) throw new BufferClosedException();
         return item;
     }
 
     @Override
+    public boolean offer(T item) {
+        if (closed) throw new BufferClosedException();
+        produced.incrementAndGet();
+        if (!queue.offer(item)) {
+            produced.decrementAndGet();
+            return false;
+        }
+        Manager.getInstance().notifyChange("Q", this);
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        try {
+            return next(false);
+        } catch (InterruptedException e) {
+            throw new AssertionError("poll does not wait", e);
+        }
+    }
+
+    /** Next item; null only if there is none right now (poll) or the buffer is closed and empty. */
+    @SuppressWarnings("unchecked")
+    private T next(boolean block) throws InterruptedException {
+        while (true) {
+            Object o = queue.poll();
+            if (o == null && block && !closed) {
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                o = queue.take();
+                takeBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "take");
+            }
+            if (o == CLOSED) continue; // closed: pick up what is left without blocking
+            if (closed && queue.isEmpty()) queue.offer(CLOSED);
+            if (o == null) return null;
+            consumed.incrementAndGet();
+            Manager.getInstance().notifyChange("Q", this);
+            return (T) o;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // fails only if the queue is full, and then no taker is waiting
+        queue.offer(CLOSED);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
     public List<T> snapshotContents() {
         // Return a typed snapshot safely by copying the queue contents
-        return new java.util.ArrayList<>(queue);
+        List<T> out = new java.util.ArrayList<>(queue.size());
+        for (Object o : queue) {
+            if (o != CLOSED) out.add((T) o);
+        }
+        return out;
     }
 
     @Override
     public int size() {
-        return queue.size();
+        if (!closed) return queue.size();
+        int n = 0;
+        for (Object o : queue) {
+            if (o != CLOSED) n++;
+        }
+        return n;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Counters and the queued item count; ArrayBlockingQueue keeps its ring
+     * indices private, so head and tail are {@link BufferPosition#NO_INDEX}.
+     */
+    @Override
+    public BufferPosition position() {
+        long c = consumed.get();
+        long p = produced.get();
+        return new BufferPosition(p, c, size(), BufferPosition.NO_INDEX, BufferPosition.NO_INDEX);
     }
 
     @Override
@@ -49,4 +183,10 @@ public class SharedBuffer<T> implements SharedBufferInterface<T> {
 
     @Override
     public long getConsumedCount() { return consumed.get(); }
+
+    @Override
+    public long getPutBlockedNanos() { return putBlockedNanos.sum(); }
+
+    @Override
+    public long getTakeBlockedNanos() { return takeBlockedNanos.sum(); }
 }
@@ -1,22 +1,42 @@
 package pc001.buffer;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 public interface SharedBufferInterface<T> {
     /**
      * Put an item into the buffer, blocking if necessary.
      * @param item item to add
      * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws BufferClosedException if the buffer is closed
      */
     void put(T item) throws InterruptedException;
 
     /**
-     * Take an item from the buffer, blocking if necessary.
+     * Take an item from the buffer, blocking if necessary. Items put before
+     * {@link #close()} are still handed out after it.
      * @return the taken item
      * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws BufferClosedException if the buffer is closed and empty
      */
     T take() throws InterruptedException;
 
+    /**
+     * Insert an item only if there is room right now, without blocking.
+     * @param item item to add
+     * @return true if the item was added, false if the buffer was full
+     * @throws BufferClosedException if the buffer is closed
+     */
+    boolean offer(T item);
+
+    /**
+     * Remove the next item if one is available right now, without blocking.
+     * @return the removed item, or null if the buffer was empty
+     */
+    T poll();
+
     /**
      * Return a non-destructive snapshot of the buffer contents.
      * The ordering of elements reflects the internal ordering of the buffer
@@ -29,9 +49,77 @@ public interface SharedBufferInterface<T> {
     /** Current buffer size. */
     int size();
 
+    /** Maximum number of items the buffer holds right now. */
+    int capacity();
+
     /** Total number of items that have been produced (since buffer creation). */
     long getProducedCount();
 
     /** Total number of items that have been consumed (since buffer creation). */
     long getConsumedCount();
+
+    /**
+     * Total time producers spent waiting for room in put(), in nanoseconds,
+     * or -1 if this buffer does not track it. Only waits that actually
+     * blocked are timed, so the fast path pays nothing for it.
+     */
+    default long getPutBlockedNanos() {
+        return -1;
+    }
+
+    /** Total time consumers spent waiting for an item in take(), in nanoseconds, or -1 if not tracked. */
+    default long getTakeBlockedNanos() {
+        return -1;
+    }
+
+    /**
+     * Counters (and ring indices, where the buffer has them) at one instant,
+     * without copying the contents. The default reads the consumed counter
+     * before the produced one and reports their difference as the size, which
+     * is only sound if the buffer counts an item as produced before a consumer
+     * can take it; buffers with locks override it to read under them.
+     */
+    default BufferPosition position() {
+        long consumed = getConsumedCount();
+        long produced = getProducedCount();
+        return new BufferPosition(produced, consumed, (int) (produced - consumed),
+                BufferPosition.NO_INDEX, BufferPosition.NO_INDEX);
+    }
+
+    /**
+     * Stop accepting items. Blocked producers fail with
+     * {@link BufferClosedException}; consumers keep taking what is left and
+     * then fail the same way, which replaces the one-sentinel-per-consumer
+     * shutdown. Closing twice has no further effect.
+     */
+    void close();
+
+    boolean isClosed();
+
+    /**
+     * Close the buffer, give consumers up to {@code timeout} to empty it, and
+     * remove whatever is still left at the deadline.
+     * @return how many items were drained and which were left over
+     * @throws InterruptedException if interrupted while waiting; the buffer stays closed
+     */
+    default DrainStats<T> closeAndDrain(long timeout, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(timeout);
+        long consumedBefore = getConsumedCount();
+        close();
+        // back off from 10us to 1ms between checks, so short drains return promptly
+        long pause = 10_000;
+        while (size() > 0) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) break;
+            LockSupport.parkNanos(Math.min(left, pause));
+            if (Thread.interrupted()) throw new InterruptedException();
+            pause = Math.min(pause * 2, 1_000_000);
+        }
+        List<T> leftover = new ArrayList<>();
+        T item;
+        while ((item = poll()) != null) leftover.add(item);
+        long drained = getConsumedCount() - consumedBefore - leftover.size();
+        return new DrainStats<>(drained, leftover, System.nanoTime() - start);
+    }
 }
@@ -0,0 +1,216 @@
+package pc001.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import pc001.observer.Manager;
+
+/**
+ * ReentrantLock/Condition based buffer over a preallocated circular array.
+ *
+ * Producers wait on {@code notFull} and consumers on {@code notEmpty}, and each
+ * operation wakes a single waiter of the other side with {@code signal()}
+ * instead of waking every thread. Unlike {@link SharedBufferWaitNotify} it
+ * never blocks inside a {@code synchronized} block, so virtual threads waiting
+ * in put()/take() unmount instead of pinning their carrier thread.
+ */
+public class SharedBufferLockCondition<T> implements SharedBufferInterface<T> {
+    private final Object[] items;
+    private int head;
+    private int tail;
+    private int count;
+    private volatile boolean closed; // written under lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private final AtomicLong produced = new AtomicLong(0);
+    private final AtomicLong consumed = new AtomicLong(0);
+    // only touched when a thread actually has to wait
+    private final LongAdder putBlockedNanos = new LongAdder();
+    private final LongAdder takeBlockedNanos = new LongAdder();
+    private final WaitStrategy waitStrategy;
+
+    public SharedBufferLockCondition(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    /**
+     * @param waitStrategy how put/take wait; anything but {@link WaitStrategy#blocking()}
+     *        retries offer/poll instead of blocking on the conditions
+     */
+    public SharedBufferLockCondition(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.items = new Object[capacity];
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        if (!waitStrategy.blocks()) {
+            waitStrategy.put(this, item, putBlockedNanos);
+            return;
+        }
+        lock.lockInterruptibly();
+        try {
+            while (count == items.length && !closed) {
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                notFull.await();
+                putBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "put");
+            }
+            if (closed) throw new BufferClosedException();
+            enqueue(item);
+        } finally {
+            lock.unlock();
+        }
+        // notify outside the lock so observers never extend the critical section
+        Manager.getInstance().notifyChange("Q", this);
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        if (!waitStrategy.blocks()) return waitStrategy.take(this, takeBlockedNanos);
+        T item;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (closed) throw new BufferClosedException();
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                notEmpty.await();
+                takeBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "take");
+            }
+            item = dequeue();
+        } finally {
+            lock.unlock();
+        }
+        Manager.getInstance().notifyChange("Q", this);
+        return item;
+    }
+
+    @Override
+    public boolean offer(T item) {
+        lock.lock();
+        try {
+            if (closed) throw new BufferClosedException();
+            if (count == items.length) return false;
+            enqueue(item);
+        } finally {
+            lock.unlock();
+        }
+        Manager.getInstance().notifyChange("Q", this);
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        T item;
+        lock.lock();
+        try {
+            if (count == 0) return null;
+            item = dequeue();
+        } finally {
+            lock.unlock();
+        }
+        Manager.getInstance().notifyChange("Q", this);
+        return item;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public List<T> snapshotContents() {
+        lock.lock();
+        try {
+            List<T> out = new ArrayList<>(count);
+            for (int i = 0, idx = head; i < count; i++) {
+                out.add(itemAt(idx));
+                if (++idx == items.length) idx = 0;
+            }
+            return out;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return items.length;
+    }
+
+    @Override
+    public BufferPosition position() {
+        lock.lock();
+        try {
+            return new BufferPosition(produced.get(), consumed.get(), count, head, tail);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getProducedCount() { return produced.get(); }
+
+    @Override
+    public long getConsumedCount() { return consumed.get(); }
+
+    @Override
+    public long getPutBlockedNanos() { return putBlockedNanos.sum(); }
+
+    @Override
+    public long getTakeBlockedNanos() { return takeBlockedNanos.sum(); }
+
+    // Both called with the lock held and room/an item available
+    private void enqueue(T item) {
+        items[tail] = item;
+        if (++tail == items.length) tail = 0;
+        count++;
+        produced.incrementAndGet();
+        notEmpty.signal();
+    }
+
+    private T dequeue() {
+        T item = itemAt(head);
+        items[head] = null;
+        if (++head == items.length) head = 0;
+        count--;
+        consumed.incrementAndGet();
+        notFull.signal();
+        return item;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int i) {
+        return (T) items[i];
+    }
+}
@@ -0,0 +1,262 @@
+package pc001.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import pc001.observer.Manager;
+
+/**
+ * Two-lock buffer over a preallocated circular array.
+ *
+ * Producers only take {@code putLock} (guarding the tail) and consumers only
+ * take {@code takeLock} (guarding the head), so a put and a take never contend
+ * with each other. The element count is an atomic shared by both sides. A
+ * producer wakes one waiting consumer only when the buffer goes from empty to
+ * non-empty (and vice versa), and otherwise cascades the signal to the next
+ * waiter of its own side, the same scheme as LinkedBlockingQueue.
+ */
+public class SharedBufferTwoLock<T> implements SharedBufferInterface<T> {
+    private final Object[] items;
+    private int head; // guarded by takeLock
+    private int tail; // guarded by putLock
+    private final AtomicInteger count = new AtomicInteger();
+    private volatile boolean closed; // read under either lock, so waiters cannot miss close()
+    private final ReentrantLock putLock = new ReentrantLock();
+    private final Condition notFull = putLock.newCondition();
+    private final ReentrantLock takeLock = new ReentrantLock();
+    private final Condition notEmpty = takeLock.newCondition();
+    private final AtomicLong produced = new AtomicLong(0);
+    private final AtomicLong consumed = new AtomicLong(0);
+    // only touched when a thread actually has to wait
+    private final LongAdder putBlockedNanos = new LongAdder();
+    private final LongAdder takeBlockedNanos = new LongAdder();
+    private final WaitStrategy waitStrategy;
+
+    public SharedBufferTwoLock(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    /**
+     * @param waitStrategy how put/take wait; anything but {@link WaitStrategy#blocking()}
+     *        retries offer/poll instead of blocking on the conditions
+     */
+    public SharedBufferTwoLock(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.items = new Object[capacity];
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        if (!waitStrategy.blocks()) {
+            waitStrategy.put(this, item, putBlockedNanos);
+            return;
+        }
+        int before;
+        putLock.lockInterruptibly();
+        try {
+            while (count.get() == items.length && !closed) {
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                notFull.await();
+                putBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "put");
+            }
+            if (closed) throw new BufferClosedException();
+            before = enqueue(item);
+        } finally {
+            putLock.unlock();
+        }
+        if (before == 0) signalNotEmpty();
+        Manager.getInstance().notifyChange("Q", this);
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        if (!waitStrategy.blocks()) return waitStrategy.take(this, takeBlockedNanos);
+        T item;
+        int before;
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                if (closed) throw new BufferClosedException();
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                notEmpty.await();
+                takeBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "take");
+            }
+            item = dequeue();
+            before = count.getAndDecrement();
+            if (before > 1) notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+        if (before == items.length) signalNotFull();
+        Manager.getInstance().notifyChange("Q", this);
+        return item;
+    }
+
+    @Override
+    public boolean offer(T item) {
+        if (closed) throw new BufferClosedException();
+        if (count.get() == items.length) return false;
+        int before;
+        putLock.lock();
+        try {
+            if (closed) throw new BufferClosedException();
+            if (count.get() == items.length) return false;
+            before = enqueue(item);
+        } finally {
+            putLock.unlock();
+        }
+        if (before == 0) signalNotEmpty();
+        Manager.getInstance().notifyChange("Q", this);
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        if (count.get() == 0) return null;
+        T item;
+        int before;
+        takeLock.lock();
+        try {
+            if (count.get() == 0) return null;
+            item = dequeue();
+            before = count.getAndDecrement();
+            if (before > 1) notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+        if (before == items.length) signalNotFull();
+        Manager.getInstance().notifyChange("Q", this);
+        return item;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // taking each lock after setting the flag means a waiter either saw the
+        // flag before awaiting or is already waiting and gets this signal
+        putLock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            putLock.unlock();
+        }
+        takeLock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public List<T> snapshotContents() {
+        // lock both ends (always put then take) to get a consistent view
+        putLock.lock();
+        takeLock.lock();
+        try {
+            int n = count.get();
+            List<T> out = new ArrayList<>(n);
+            for (int i = 0, idx = head; i < n; i++) {
+                out.add(itemAt(idx));
+                if (++idx == items.length) idx = 0;
+            }
+            return out;
+        } finally {
+            takeLock.unlock();
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public int capacity() {
+        return items.length;
+    }
+
+    /** Read with both locks held (put then take, as in snapshotContents), so head, tail and count agree. */
+    @Override
+    public BufferPosition position() {
+        putLock.lock();
+        takeLock.lock();
+        try {
+            return new BufferPosition(produced.get(), consumed.get(), count.get(), head, tail);
+        } finally {
+            takeLock.unlock();
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public long getProducedCount() { return produced.get(); }
+
+    @Override
+    public long getConsumedCount() { return consumed.get(); }
+
+    @Override
+    public long getPutBlockedNanos() { return putBlockedNanos.sum(); }
+
+    @Override
+    public long getTakeBlockedNanos() { return takeBlockedNanos.sum(); }
+
+    // Called with putLock held and room available; returns the count before the insert
+    private int enqueue(T item) {
+        items[tail] = item;
+        if (++tail == items.length) tail = 0;
+        // counted before the count update makes the item visible to consumers
+        produced.incrementAndGet();
+        // the atomic update publishes the slot write to the consumer side
+        int before = count.getAndIncrement();
+        if (before + 1 < items.length) notFull.signal();
+        return before;
+    }
+
+    // Called with takeLock held and an item available; the caller updates count
+    private T dequeue() {
+        T item = itemAt(head);
+        items[head] = null;
+        if (++head == items.length) head = 0;
+        consumed.incrementAndGet();
+        return item;
+    }
+
+    private void signalNotEmpty() {
+        takeLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    private void signalNotFull() {
+        putLock.lock();
+        try {
+            notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int i) {
+        return (T) items[i];
+    }
+}
@@ -6,6 +6,7 @@ import pc001.observer.Manager;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Wait/notify based buffer implementation.
@@ -18,25 +19,77 @@ public class SharedBufferWaitNotify<T> implements SharedBufferInterface<T> {
     private final int capacity;
     private final AtomicLong produced = new AtomicLong(0);
     private final AtomicLong consumed = new AtomicLong(0);
+    // only touched when a thread actually has to wait
+    private final LongAdder putBlockedNanos = new LongAdder();
+    private final LongAdder takeBlockedNanos = new LongAdder();
+    private volatile boolean closed; // written while holding the monitor
+    private final WaitStrategy waitStrategy;
 
     public SharedBufferWaitNotify(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    /**
+     * @param waitStrategy how put/take wait; anything but {@link WaitStrategy#blocking()}
+     *        retries offer/poll instead of blocking on the monitor
+     */
+    public SharedBufferWaitNotify(int capacity, WaitStrategy waitStrategy) {
         this.capacity = capacity;
+        this.waitStrategy = waitStrategy;
     }
 
-    public synchronized void put(T item) throws InterruptedException {
-        while (queue.size() == capacity) {
-            wait();
+    public void put(T item) throws InterruptedException {
+        if (!waitStrategy.blocks()) {
+            waitStrategy.put(this, item, putBlockedNanos);
+            return;
+        }
+        synchronized (this) {
+            while (queue.size() == capacity && !closed) {
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                wait();
+                putBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "put");
+            }
+            if (closed) throw new BufferClosedException();
+            queue.add(item);
+            produced.incrementAndGet();
+            notifyAll();
+            Manager.getInstance().notifyChange("Q", this);
         }
+    }
+
+    public T take() throws InterruptedException {
+        if (!waitStrategy.blocks()) return waitStrategy.take(this, takeBlockedNanos);
+        synchronized (this) {
+            while (queue.isEmpty()) {
+                if (closed) throw new BufferClosedException();
+                BufferBlockedEvent stall = BufferBlockedEvent.start();
+                long waitStart = System.nanoTime();
+                wait();
+                takeBlockedNanos.add(System.nanoTime() - waitStart);
+                stall.finish(this, "take");
+            }
+            T item = queue.remove();
+            consumed.incrementAndGet();
+            notifyAll();
+            Manager.getInstance().notifyChange("Q", this);
+            return item;
+        }
+    }
+
+    public synchronized boolean offer(T item) {
+        if (closed) throw new BufferClosedException();
+        if (queue.size() == capacity) return false;
         queue.add(item);
         produced.incrementAndGet();
         notifyAll();
         Manager.getInstance().notifyChange("Q", this);
+        return true;
     }
 
-    public synchronized T take() throws InterruptedException {
-        while (queue.isEmpty()) {
-            wait();
-        }
+    public synchronized T poll() {
+        if (queue.isEmpty()) return null;
         T item = queue.remove();
         consumed.incrementAndGet();
         notifyAll();
@@ -44,6 +97,15 @@ public class SharedBufferWaitNotify<T> implements SharedBufferInterface<T> {
         return item;
     }
 
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
     @Override
     public List<T> snapshotContents() {
         synchronized (this) {
@@ -58,9 +120,26 @@ public class SharedBufferWaitNotify<T> implements SharedBufferInterface<T> {
         }
     }
 
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public synchronized BufferPosition position() {
+        return new BufferPosition(produced.get(), consumed.get(), queue.size(),
+                BufferPosition.NO_INDEX, BufferPosition.NO_INDEX);
+    }
+
     @Override
     public long getProducedCount() { return produced.get(); }
 
     @Override
     public long getConsumedCount() { return consumed.get(); }
+
+    @Override
+    public long getPutBlockedNanos() { return putBlockedNanos.sum(); }
+
+    @Override
+    public long getTakeBlockedNanos() { return takeBlockedNanos.sum(); }
 }
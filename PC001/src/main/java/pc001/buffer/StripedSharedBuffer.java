@@ -0,0 +1,212 @@
+package pc001.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * Sharded buffer made of N independent sub-buffers (lanes).
+ *
+ * Each thread has a home lane chosen from its identity, so producers and
+ * consumers on different threads mostly touch different locks. A producer
+ * puts into its home lane, spills over to any other lane with room, and only
+ * blocks (on its home lane) when every lane is full. A consumer polls its home
+ * lane first and then steals from the other lanes; it only blocks when all
+ * lanes are empty.
+ *
+ * Ordering is FIFO per lane only: items from one producer thread arrive in
+ * order as long as they stayed in one lane, but there is no order across lanes.
+ * {@link #size()}, the produced/consumed counters and
+ * {@link #snapshotContents()} aggregate over all lanes (lane 0 first).
+ */
+public class StripedSharedBuffer<T> implements SharedBufferInterface<T> {
+    private final SharedBufferInterface<T>[] lanes;
+
+    // Consumers that found every lane empty park here; producers only take the
+    // lock to signal when someone is actually waiting.
+    private final ReentrantLock idleLock = new ReentrantLock();
+    private final Condition itemsAvailable = idleLock.newCondition();
+    private volatile int idleConsumers; // written under idleLock
+    private volatile boolean closed;
+    private final LongAdder takeBlockedNanos = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public StripedSharedBuffer(int laneCount, IntFunction<SharedBufferInterface<T>> laneFactory) {
+        if (laneCount <= 0) throw new IllegalArgumentException("laneCount must be positive");
+        this.lanes = new SharedBufferInterface[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = laneFactory.apply(i);
+        }
+    }
+
+    /** {@code laneCount} lanes of {@link SharedBufferLockCondition} with {@code laneCapacity} each. */
+    public StripedSharedBuffer(int laneCount, int laneCapacity) {
+        this(laneCount, i -> new SharedBufferLockCondition<>(laneCapacity));
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        if (closed) throw new BufferClosedException();
+        int home = homeLane();
+        if (!offerFrom(home, item)) {
+            lanes[home].put(item);
+        }
+        signalIdleConsumers();
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        int home = homeLane();
+        T item = pollFrom(home);
+        if (item != null) return item;
+
+        idleLock.lockInterruptibly();
+        try {
+            idleConsumers++;
+            try {
+                // re-check after announcing ourselves, so a put that missed the
+                // announcement is still seen here
+                while ((item = pollFrom(home)) == null) {
+                    if (closed) throw new BufferClosedException();
+                    BufferBlockedEvent stall = BufferBlockedEvent.start();
+                    long waitStart = System.nanoTime();
+                    itemsAvailable.await();
+                    takeBlockedNanos.add(System.nanoTime() - waitStart);
+                    stall.finish(this, "take");
+                }
+            } finally {
+                idleConsumers--;
+            }
+        } finally {
+            idleLock.unlock();
+        }
+        return item;
+    }
+
+    @Override
+    public boolean offer(T item) {
+        if (closed) throw new BufferClosedException();
+        if (!offerFrom(homeLane(), item)) return false;
+        signalIdleConsumers();
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        return pollFrom(homeLane());
+    }
+
+    /** Close every lane and wake idle consumers; they return once all lanes are empty. */
+    @Override
+    public void close() {
+        closed = true;
+        for (SharedBufferInterface<T> lane : lanes) lane.close();
+        idleLock.lock();
+        try {
+            itemsAvailable.signalAll();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public List<T> snapshotContents() {
+        List<T> out = new ArrayList<>();
+        for (SharedBufferInterface<T> lane : lanes) {
+            out.addAll(lane.snapshotContents());
+        }
+        return out;
+    }
+
+    @Override
+    public int size() {
+        int n = 0;
+        for (SharedBufferInterface<T> lane : lanes) n += lane.size();
+        return n;
+    }
+
+    /** Sum of the lane capacities. */
+    @Override
+    public int capacity() {
+        int n = 0;
+        for (SharedBufferInterface<T> lane : lanes) n += lane.capacity();
+        return n;
+    }
+
+    @Override
+    public long getProducedCount() {
+        long n = 0;
+        for (SharedBufferInterface<T> lane : lanes) n += lane.getProducedCount();
+        return n;
+    }
+
+    @Override
+    public long getConsumedCount() {
+        long n = 0;
+        for (SharedBufferInterface<T> lane : lanes) n += lane.getConsumedCount();
+        return n;
+    }
+
+    /** Time producers spent blocked in a full home lane; -1 if a lane does not track it. */
+    @Override
+    public long getPutBlockedNanos() {
+        long n = 0;
+        for (SharedBufferInterface<T> lane : lanes) {
+            long t = lane.getPutBlockedNanos();
+            if (t < 0) return -1;
+            n += t;
+        }
+        return n;
+    }
+
+    /** Time consumers spent idle because every lane was empty. */
+    @Override
+    public long getTakeBlockedNanos() { return takeBlockedNanos.sum(); }
+
+    public int laneCount() { return lanes.length; }
+
+    /** Current size of each lane, e.g. to spot an unbalanced lane. */
+    public int[] laneSizes() {
+        int[] sizes = new int[lanes.length];
+        for (int i = 0; i < lanes.length; i++) sizes[i] = lanes[i].size();
+        return sizes;
+    }
+
+    private boolean offerFrom(int home, T item) {
+        for (int i = 0; i < lanes.length; i++) {
+            if (lanes[(home + i) % lanes.length].offer(item)) return true;
+        }
+        return false;
+    }
+
+    private T pollFrom(int home) {
+        for (int i = 0; i < lanes.length; i++) {
+            T item = lanes[(home + i) % lanes.length].poll();
+            if (item != null) return item;
+        }
+        return null;
+    }
+
+    private void signalIdleConsumers() {
+        if (idleConsumers == 0) return;
+        idleLock.lock();
+        try {
+            itemsAvailable.signal();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    private int homeLane() {
+        int h = System.identityHashCode(Thread.currentThread()) * 0x9E3779B9;
+        return (h >>> 16) % lanes.length;
+    }
+}
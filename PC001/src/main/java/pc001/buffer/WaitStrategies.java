@@ -0,0 +1,91 @@
+package pc001.buffer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/** Implementations behind the {@link WaitStrategy} factories. */
+final class WaitStrategies {
+    static final WaitStrategy BLOCKING = new WaitStrategy() {
+        @Override
+        public void idle(int attempt) throws InterruptedException {
+            // only reached through put()/take() helpers called directly; park briefly
+            LockSupport.parkNanos(1_000_000);
+            checkInterrupt();
+        }
+
+        @Override
+        public boolean blocks() {
+            return true;
+        }
+
+        @Override
+        public String name() {
+            return "block";
+        }
+    };
+
+    static final WaitStrategy BUSY_SPIN = new WaitStrategy() {
+        @Override
+        public void idle(int attempt) throws InterruptedException {
+            Thread.onSpinWait();
+            checkInterrupt();
+        }
+
+        @Override
+        public String name() {
+            return "spin";
+        }
+    };
+
+    static final WaitStrategy YIELDING = new WaitStrategy() {
+        @Override
+        public void idle(int attempt) throws InterruptedException {
+            Thread.yield();
+            checkInterrupt();
+        }
+
+        @Override
+        public String name() {
+            return "yield";
+        }
+    };
+
+    static final WaitStrategy SPIN_THEN_PARK = new SpinThenPark(100, 10, 1_000_000);
+
+    static final class SpinThenPark implements WaitStrategy {
+        private final int spins;
+        private final int yields;
+        private final long maxParkNanos;
+
+        SpinThenPark(int spins, int yields, long maxParkNanos) {
+            if (spins < 0 || yields < 0 || maxParkNanos < 1) throw new IllegalArgumentException("invalid spin/park settings");
+            this.spins = spins;
+            this.yields = yields;
+            this.maxParkNanos = maxParkNanos;
+        }
+
+        @Override
+        public void idle(int attempt) throws InterruptedException {
+            if (attempt < spins) {
+                Thread.onSpinWait();
+            } else if (attempt < spins + yields) {
+                Thread.yield();
+            } else {
+                int doublings = Math.min(attempt - spins - yields, 30);
+                LockSupport.parkNanos(Math.min(1_000L << doublings, maxParkNanos));
+            }
+            checkInterrupt();
+        }
+
+        @Override
+        public String name() {
+            return "park";
+        }
+    }
+
+    private WaitStrategies() {
+    }
+
+    static void checkInterrupt() throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+}
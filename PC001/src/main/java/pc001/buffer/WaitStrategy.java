@@ -0,0 +1,136 @@
+package pc001.buffer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How a producer waits for room and a consumer waits for an item.
+ *
+ * {@link #blocking()} leaves waiting to the buffer's own lock/condition or
+ * monitor: no CPU while idle, but each hand-off pays for a park and an
+ * unpark. The other strategies never sleep inside the buffer. They retry
+ * {@code offer}/{@code poll} and call {@link #idle(int)} between attempts.
+ * {@link #busySpin()} reacts fastest and burns a core per waiting thread.
+ * {@link #yielding()} gives the core to other runnable threads between
+ * attempts. {@link #spinThenPark} spins, then yields, then parks for
+ * exponentially longer periods, so short waits stay fast and long ones
+ * cost little.
+ *
+ * Spinning only pays off with at least as many cores as busy threads;
+ * {@code WaitStrategyBenchmark} measures latency and CPU time per strategy.
+ * Time spent retrying is reported like a blocking wait: in the buffer's
+ * put/take blocked counters and as a {@link BufferBlockedEvent}.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Pause before the next attempt.
+     * @param attempt how many attempts have failed so far in this wait, from 0
+     * @throws InterruptedException if the thread was interrupted
+     */
+    void idle(int attempt) throws InterruptedException;
+
+    /** True if the buffer should block on its own condition instead of retrying. */
+    default boolean blocks() {
+        return false;
+    }
+
+    /** Name accepted by {@link #forName(String)}. */
+    String name();
+
+    /** Put by retrying {@code offer} with {@link #idle(int)} in between. */
+    default <T> void put(SharedBufferInterface<T> buffer, T item) throws InterruptedException {
+        put(buffer, item, null);
+    }
+
+    /**
+     * Put by retrying {@code offer} with {@link #idle(int)} in between.
+     * @param blockedNanos receives the time spent retrying, if not null
+     */
+    default <T> void put(SharedBufferInterface<T> buffer, T item, LongAdder blockedNanos) throws InterruptedException {
+        if (buffer.offer(item)) return;
+        BufferBlockedEvent stall = BufferBlockedEvent.start();
+        long waitStart = System.nanoTime();
+        for (int attempt = 0; ; attempt++) {
+            idle(attempt);
+            if (buffer.offer(item)) break;
+        }
+        if (blockedNanos != null) blockedNanos.add(System.nanoTime() - waitStart);
+        stall.finish(buffer, "put");
+    }
+
+    /**
+     * Take by retrying {@code poll} with {@link #idle(int)} in between.
+     * @throws BufferClosedException once the buffer is closed and empty
+     */
+    default <T> T take(SharedBufferInterface<T> buffer) throws InterruptedException {
+        return take(buffer, null);
+    }
+
+    /**
+     * Take by retrying {@code poll} with {@link #idle(int)} in between.
+     * @param blockedNanos receives the time spent retrying, if not null
+     * @throws BufferClosedException once the buffer is closed and empty
+     */
+    default <T> T take(SharedBufferInterface<T> buffer, LongAdder blockedNanos) throws InterruptedException {
+        T item = buffer.poll();
+        if (item != null) return item;
+        BufferBlockedEvent stall = BufferBlockedEvent.start();
+        long waitStart = System.nanoTime();
+        for (int attempt = 0; ; attempt++) {
+            if (buffer.isClosed()) {
+                // an item put just before the close may have arrived after the poll
+                item = buffer.poll();
+                if (item != null) break;
+                throw new BufferClosedException();
+            }
+            idle(attempt);
+            item = buffer.poll();
+            if (item != null) break;
+        }
+        if (blockedNanos != null) blockedNanos.add(System.nanoTime() - waitStart);
+        stall.finish(buffer, "take");
+        return item;
+    }
+
+    /** Wait on the buffer's lock/condition or monitor (the default). */
+    static WaitStrategy blocking() {
+        return WaitStrategies.BLOCKING;
+    }
+
+    /** Retry immediately, hinting the CPU with {@link Thread#onSpinWait()}. */
+    static WaitStrategy busySpin() {
+        return WaitStrategies.BUSY_SPIN;
+    }
+
+    /** {@link Thread#yield()} between attempts. */
+    static WaitStrategy yielding() {
+        return WaitStrategies.YIELDING;
+    }
+
+    /** 100 spins, 10 yields, then parks from 1µs doubling up to 1ms. */
+    static WaitStrategy spinThenPark() {
+        return WaitStrategies.SPIN_THEN_PARK;
+    }
+
+    /** Spin {@code spins} times, yield {@code yields} times, then park from 1µs doubling up to {@code maxParkNanos}. */
+    static WaitStrategy spinThenPark(int spins, int yields, long maxParkNanos) {
+        return new WaitStrategies.SpinThenPark(spins, yields, maxParkNanos);
+    }
+
+    /** "block", "spin", "yield" or "park". */
+    static WaitStrategy forName(String name) {
+        switch (name.toLowerCase()) {
+            case "block":
+            case "blocking":
+                return blocking();
+            case "spin":
+                return busySpin();
+            case "yield":
+                return yielding();
+            case "park":
+                return spinThenPark();
+            default:
+                throw new IllegalArgumentException("unknown wait strategy: " + name + " (use block, spin, yield or park)");
+        }
+    }
+}
@@ -1,34 +1,52 @@
 package pc001.core;
 
 import java.util.List;
+import pc001.buffer.BufferClosedException;
 import pc001.buffer.SharedBufferInterface;
+import pc001.sink.ListSink;
+import pc001.sink.Sink;
 
 /**
- * Consumer runnable that takes items from the shared buffer and appends them
- * to a destination list. The consumer stops when it encounters the sentinel
- * value provided by the main harness.
+ * Consumer runnable that takes items from the shared buffer and hands them to
+ * a destination sink. The consumer stops once the buffer is closed and empty,
+ * or, with the older constructors, when it encounters the sentinel value
+ * provided by the main harness.
  */
 public class Consumer implements Runnable {
     private final SharedBufferInterface<Integer> buffer;
-    private final List<Integer> destination;
-    private final int sentinel;
+    private final Sink<? super Integer> destination;
+    private final Integer sentinel;
 
-    public Consumer(SharedBufferInterface<Integer> buffer, List<Integer> destination, int sentinel) {
+    /** Consumer that runs until {@code buffer} is closed and drained. */
+    public Consumer(SharedBufferInterface<Integer> buffer, Sink<? super Integer> destination) {
+        this.buffer = buffer;
+        this.destination = destination;
+        this.sentinel = null;
+    }
+
+    public Consumer(SharedBufferInterface<Integer> buffer, Sink<? super Integer> destination, int sentinel) {
         this.buffer = buffer;
         this.destination = destination;
         this.sentinel = sentinel;
     }
 
+    /** Appends to {@code destination}, which must be safe for concurrent add. */
+    public Consumer(SharedBufferInterface<Integer> buffer, List<Integer> destination, int sentinel) {
+        this(buffer, new ListSink<>(destination), sentinel);
+    }
+
     @Override
     public void run() {
         try {
             while (true) {
-                int value = buffer.take();
-                if (value == sentinel) {
+                Integer value = buffer.take();
+                if (value.equals(sentinel)) {
                     break;
                 }
-                destination.add(value);
+                destination.accept(value);
             }
+        } catch (BufferClosedException e) {
+            // closed and drained: normal end of input
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
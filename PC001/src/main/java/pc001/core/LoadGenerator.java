@@ -0,0 +1,413 @@
+package pc001.core;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+import pc001.buffer.BufferClosedException;
+import pc001.buffer.DrainStats;
+import pc001.buffer.SharedBufferInterface;
+import pc001.observer.Manager;
+
+/**
+ * Soak/load harness: producers push payload-carrying items through a buffer
+ * for a number of items or a duration, at a target rate or flat out, while a
+ * reporter prints throughput, latency, occupancy and GC/allocation figures at
+ * a fixed interval. {@link #run()} ends with a {@link Summary}.
+ *
+ * With a rate, each producer follows a schedule of {@code rate / producers}
+ * items per second. Closed loop (the default) sends each item when the
+ * previous put has returned and the schedule allows it, so a slow buffer
+ * lowers the offered load. Open loop keeps the schedule whatever happens, and
+ * latency is measured from the scheduled time, so time spent blocked in put
+ * counts against the buffer instead of being hidden.
+ *
+ * Latency is the time from send (or scheduled send) to take, kept in
+ * power-of-two buckets; percentiles are bucket upper bounds.
+ */
+public class LoadGenerator {
+
+    /** What travels through the buffer. */
+    public static final class Item {
+        final long sentNanos;
+        final byte[] payload;
+
+        Item(long sentNanos, byte[] payload) {
+            this.sentNanos = sentNanos;
+            this.payload = payload;
+        }
+    }
+
+    private final IntFunction<SharedBufferInterface<Item>> buffers;
+    private final int capacity;
+    private final long items;
+    private final long durationNanos;
+    private final double rate;
+    private final boolean openLoop;
+    private final int payloadBytes;
+    private final int producers;
+    private final int consumers;
+    private final long reportNanos;
+    private final WorkerExecutor workers;
+    private final PrintStream out;
+
+    private final LongAdder consumed = new LongAdder();
+    // allocations of workers that have finished, which the live-thread sum no longer sees
+    private final LongAdder retiredAllocation = new LongAdder();
+    private final Histogram total = new Histogram();
+    private volatile Histogram interval = new Histogram();
+
+    private LoadGenerator(Builder b) {
+        this.buffers = b.buffers;
+        this.capacity = b.capacity;
+        this.items = b.items;
+        this.durationNanos = b.durationNanos;
+        this.rate = b.rate;
+        this.openLoop = b.openLoop;
+        this.payloadBytes = b.payloadBytes;
+        this.producers = b.producers;
+        this.consumers = b.consumers;
+        this.reportNanos = b.reportNanos;
+        this.workers = b.workers;
+        this.out = b.out;
+    }
+
+    public static Builder builder(IntFunction<SharedBufferInterface<Item>> buffers, int capacity) {
+        return new Builder(buffers, capacity);
+    }
+
+    /** Run to completion, printing a line per report interval and the summary. */
+    public Summary run() throws InterruptedException {
+        SharedBufferInterface<Item> buffer = buffers.apply(capacity);
+        Stats stats = new Stats(retiredAllocation.sum());
+        out.printf("load: %s capacity=%d producers=%d consumers=%d payload=%dB %s %s%n",
+                buffer.getClass().getSimpleName(), buffer.capacity(), producers, consumers, payloadBytes,
+                items > 0 ? "items=" + items : "duration=" + TimeUnit.NANOSECONDS.toSeconds(durationNanos) + "s",
+                rate > 0 ? String.format("rate=%.0f/s %s", rate, openLoop ? "open-loop" : "closed-loop") : "rate=max");
+
+        List<Thread> cs = new ArrayList<>();
+        for (int i = 0; i < consumers; i++) {
+            cs.add(workers.start("load-consumer-" + i, () -> consume(buffer)));
+        }
+        long start = System.nanoTime();
+        long deadline = durationNanos > 0 ? start + durationNanos : Long.MAX_VALUE;
+        CountDownLatch producersDone = new CountDownLatch(producers);
+        for (int i = 0; i < producers; i++) {
+            long quota = items > 0 ? items / producers + (i < items % producers ? 1 : 0) : Long.MAX_VALUE;
+            workers.start("load-producer-" + i, () -> {
+                try {
+                    produce(buffer, quota, start, deadline);
+                } finally {
+                    producersDone.countDown();
+                }
+            });
+        }
+
+        List<Double> rates = new ArrayList<>();
+        long lastCount = 0;
+        long lastReport = start;
+        Stats last = stats;
+        while (!producersDone.await(Math.max(1, lastReport + reportNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            long now = System.nanoTime();
+            if (now - lastReport < reportNanos) continue;
+            long count = consumed.sum();
+            Histogram h = interval;
+            interval = new Histogram();
+            Stats current = new Stats(retiredAllocation.sum());
+            double itemsPerSec = (count - lastCount) * 1e9 / (now - lastReport);
+            rates.add(itemsPerSec);
+            out.printf("[%6.1fs] %,12.0f items/s total=%,d occupancy=%d/%d p50=%s p99=%s heap=%dMB gc=%d (%dms) alloc=%s/item events=%,d%n",
+                    (now - start) / 1e9, itemsPerSec, count, buffer.size(), buffer.capacity(),
+                    micros(h.percentile(0.5)), micros(h.percentile(0.99)), current.heapUsed >> 20,
+                    current.gcCount - last.gcCount, current.gcMillis - last.gcMillis,
+                    perItem(current.allocated - last.allocated, count - lastCount), current.events);
+            lastCount = count;
+            lastReport = now;
+            last = current;
+        }
+        // while the consumers are still alive, so their allocations are counted
+        Stats after = new Stats(retiredAllocation.sum());
+        DrainStats<Item> drain = buffer.closeAndDrain(10, TimeUnit.SECONDS);
+        for (Thread c : cs) c.join();
+        long end = System.nanoTime();
+
+        Summary summary = new Summary(consumed.sum(), end - start, total, rates, stats, after,
+                drain.getLeftoverCount());
+        out.println(summary);
+        return summary;
+    }
+
+    private void produce(SharedBufferInterface<Item> buffer, long quota, long start, long deadline) {
+        long periodNanos = rate > 0 ? (long) (1e9 * producers / rate) : 0;
+        long next = start;
+        try {
+            for (long n = 0; n < quota; n++) {
+                long now = System.nanoTime();
+                if (now >= deadline) return;
+                long sent = now;
+                if (periodNanos > 0) {
+                    while (now < next) {
+                        LockSupport.parkNanos(next - now);
+                        now = System.nanoTime();
+                    }
+                    // open loop: stick to the schedule and charge any delay to the item
+                    sent = openLoop ? next : now;
+                    next = openLoop ? next + periodNanos : now + periodNanos;
+                }
+                buffer.put(new Item(sent, new byte[payloadBytes]));
+            }
+        } catch (BufferClosedException e) {
+            // stopped from outside
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            retiredAllocation.add(Math.max(0, Stats.currentThreadAllocated()));
+        }
+    }
+
+    private void consume(SharedBufferInterface<Item> buffer) {
+        try {
+            while (true) {
+                Item item = buffer.take();
+                long latency = System.nanoTime() - item.sentNanos;
+                total.record(latency);
+                interval.record(latency);
+                consumed.increment();
+            }
+        } catch (BufferClosedException e) {
+            // drained
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            retiredAllocation.add(Math.max(0, Stats.currentThreadAllocated()));
+        }
+    }
+
+    private static String micros(long nanos) {
+        return nanos < 10_000_000 ? String.format("%.0fus", nanos / 1e3) : String.format("%.0fms", nanos / 1e6);
+    }
+
+    private static String perItem(long bytes, long items) {
+        return bytes < 0 || items == 0 ? "n/a" : (bytes / items) + "B";
+    }
+
+    /** Log2-bucketed latency counts; lock-free so consumers never wait on it. */
+    static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+
+        void record(long nanos) {
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+            count.increment();
+        }
+
+        /** Upper bound of the bucket holding quantile {@code q}, in nanoseconds. */
+        long percentile(double q) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < 64; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /** JVM-wide figures at one instant. */
+    static final class Stats {
+        final long heapUsed;
+        final long gcCount;
+        final long gcMillis;
+        final long allocated;
+        final int events;
+
+        Stats(long retiredAllocation) {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            heapUsed = memory.getHeapMemoryUsage().getUsed();
+            long c = 0, t = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                c += Math.max(0, gc.getCollectionCount());
+                t += Math.max(0, gc.getCollectionTime());
+            }
+            gcCount = c;
+            gcMillis = t;
+            long live = allocatedBytes();
+            allocated = live < 0 ? -1 : live + retiredAllocation;
+            events = Manager.getInstance().getEventLogSize();
+        }
+
+        // HotSpot-specific; -1 if unsupported. Covers live platform threads only.
+        private static long allocatedBytes() {
+            com.sun.management.ThreadMXBean hs = hotspotThreads();
+            if (hs == null) return -1;
+            long sum = 0;
+            for (long bytes : hs.getThreadAllocatedBytes(hs.getAllThreadIds())) {
+                if (bytes > 0) sum += bytes;
+            }
+            return sum;
+        }
+
+        static long currentThreadAllocated() {
+            com.sun.management.ThreadMXBean hs = hotspotThreads();
+            return hs == null ? -1 : hs.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        private static com.sun.management.ThreadMXBean hotspotThreads() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+            com.sun.management.ThreadMXBean hs = (com.sun.management.ThreadMXBean) threads;
+            return hs.isThreadAllocatedMemorySupported() && hs.isThreadAllocatedMemoryEnabled() ? hs : null;
+        }
+    }
+
+    /** Totals for a whole run. */
+    public static final class Summary {
+        private final long items;
+        private final long elapsedNanos;
+        private final Histogram latency;
+        private final List<Double> intervalRates;
+        private final Stats before;
+        private final Stats after;
+        private final int leftover;
+
+        Summary(long items, long elapsedNanos, Histogram latency, List<Double> intervalRates, Stats before,
+                Stats after, int leftover) {
+            this.items = items;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+            this.intervalRates = intervalRates;
+            this.before = before;
+            this.after = after;
+            this.leftover = leftover;
+        }
+
+        public long getItems() { return items; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public double getThroughput() { return items * 1e9 / elapsedNanos; }
+        public long getLatencyPercentileNanos(double q) { return latency.percentile(q); }
+        public long getGcCount() { return after.gcCount - before.gcCount; }
+        public long getGcMillis() { return after.gcMillis - before.gcMillis; }
+        public long getHeapGrowthBytes() { return after.heapUsed - before.heapUsed; }
+        /** Items still queued when the drain timed out; 0 after a clean shutdown. */
+        public int getLeftover() { return leftover; }
+
+        /**
+         * Throughput of the last report interval relative to the first, e.g.
+         * 0.8 for a 20% decay over the run; 1 if there were fewer than two intervals.
+         */
+        public double getThroughputTrend() {
+            if (intervalRates.size() < 2 || intervalRates.get(0) == 0) return 1;
+            return intervalRates.get(intervalRates.size() - 1) / intervalRates.get(0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("summary: items=%,d elapsed=%.1fs throughput=%,.0f items/s p50=%s p99=%s p99.9=%s max=%s%n"
+                            + "         gc=%d (%dms) heap %dMB -> %dMB alloc=%s/item events=%,d trend(last/first)=%.2f leftover=%d",
+                    items, elapsedNanos / 1e9, getThroughput(), micros(latency.percentile(0.5)),
+                    micros(latency.percentile(0.99)), micros(latency.percentile(0.999)), micros(latency.percentile(1)),
+                    getGcCount(), getGcMillis(), before.heapUsed >> 20, after.heapUsed >> 20,
+                    perItem(after.allocated - before.allocated, items), after.events, getThroughputTrend(), leftover);
+        }
+    }
+
+    /** Settings for a {@link LoadGenerator}; either an item count or a duration is required. */
+    public static final class Builder {
+        private final IntFunction<SharedBufferInterface<Item>> buffers;
+        private final int capacity;
+        private long items;
+        private long durationNanos;
+        private double rate;
+        private boolean openLoop;
+        private int payloadBytes = 64;
+        private int producers = 1;
+        private int consumers = 1;
+        private long reportNanos = TimeUnit.SECONDS.toNanos(5);
+        private WorkerExecutor workers = WorkerExecutor.platform();
+        private PrintStream out = System.out;
+
+        private Builder(IntFunction<SharedBufferInterface<Item>> buffers, int capacity) {
+            this.buffers = buffers;
+            this.capacity = capacity;
+        }
+
+        /** Stop after this many items in total. */
+        public Builder items(long items) {
+            if (items <= 0) throw new IllegalArgumentException("items must be positive");
+            this.items = items;
+            return this;
+        }
+
+        /** Stop producing after this long. */
+        public Builder duration(long amount, TimeUnit unit) {
+            if (amount <= 0) throw new IllegalArgumentException("duration must be positive");
+            this.durationNanos = unit.toNanos(amount);
+            return this;
+        }
+
+        /** Target items per second across all producers; 0 (default) means as fast as possible. */
+        public Builder rate(double itemsPerSecond) {
+            if (itemsPerSecond < 0) throw new IllegalArgumentException("rate must not be negative");
+            this.rate = itemsPerSecond;
+            return this;
+        }
+
+        /** Keep to the arrival schedule even when put blocks (see the class comment). */
+        public Builder openLoop(boolean openLoop) {
+            this.openLoop = openLoop;
+            return this;
+        }
+
+        /** Bytes allocated for each item's payload (default 64). */
+        public Builder payloadBytes(int bytes) {
+            if (bytes < 0) throw new IllegalArgumentException("payload must not be negative");
+            this.payloadBytes = bytes;
+            return this;
+        }
+
+        public Builder producers(int n) {
+            if (n <= 0) throw new IllegalArgumentException("need at least one producer");
+            this.producers = n;
+            return this;
+        }
+
+        public Builder consumers(int n) {
+            if (n <= 0) throw new IllegalArgumentException("need at least one consumer");
+            this.consumers = n;
+            return this;
+        }
+
+        /** Time between progress lines (default 5 s). */
+        public Builder reportEvery(long amount, TimeUnit unit) {
+            if (amount <= 0) throw new IllegalArgumentException("report interval must be positive");
+            this.reportNanos = unit.toNanos(amount);
+            return this;
+        }
+
+        public Builder executor(WorkerExecutor workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        public Builder output(PrintStream out) {
+            this.out = out;
+            return this;
+        }
+
+        public LoadGenerator build() {
+            if (items == 0 && durationNanos == 0) throw new IllegalStateException("set items or duration");
+            return new LoadGenerator(this);
+        }
+    }
+}
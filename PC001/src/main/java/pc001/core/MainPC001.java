@@ -1,37 +1,133 @@
 package pc001.core;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import pc001.buffer.DrainStats;
+import pc001.buffer.ElasticSharedBuffer;
+import pc001.buffer.PrioritySharedBuffer;
 import pc001.buffer.SharedBuffer;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.buffer.SharedBufferTwoLock;
 import pc001.buffer.SharedBufferWaitNotify;
+import pc001.buffer.StripedSharedBuffer;
 import pc001.buffer.SharedBufferInterface;
+import pc001.buffer.WaitStrategy;
 import pc001.observer.Manager;
+import pc001.observer.Monitoring;
 import pc001.observer.QueueObserver;
+import pc001.pipeline.Pipeline;
+import pc001.sink.ChunkedArraySink;
+import pc001.sink.FileSink;
+import pc001.sink.ListSink;
+import pc001.sink.Sink;
+import pc001.sink.ThreadLocalChunkSink;
+import pc001.source.FileSource;
+import pc001.source.Source;
 
 /**
- * Main harness for the PC-001 producer/consumer demo. Supports two modes:
- * "blocking" (ArrayBlockingQueue) and "wait" (synchronized wait/notify).
+ * Main harness for the PC-001 producer/consumer demo. Supports seven modes:
+ * "blocking" (ArrayBlockingQueue), "wait" (synchronized wait/notify), "lock"
+ * (ReentrantLock with notFull/notEmpty conditions), "twolock" (separate
+ * producer and consumer locks), "striped" (one lane per worker with work
+ * stealing), "elastic" (capacity adapts between --capacity and 64 times
+ * that) and "priority" (three weighted priority levels; the harness puts
+ * everything at the lowest).
  *
  * Usage: java -cp . pc001.core.MainPC001 [mode] [numProducers] [numConsumers]
- * [-v]
+ * [-v] [--threads=platform|virtual] [--pipeline] [--sink=list|local|chunked|file:PATH]
+ * [--capacity=N] [--wait=block|spin|yield|park]
+ * [--load [--items=N | --duration=SECONDS] [--rate=PER_SECOND] [--open-loop]
+ * [--payload=BYTES] [--report=SECONDS]] [--jmx] [--source=PATH]
+ *
+ * The sink decides where consumers put items: "list" (default) is one shared
+ * synchronized list, "local" a per-consumer list merged at the end, "chunked"
+ * a lock-free append-only array and "file:PATH" one line per item in PATH.
+ *
+ * --wait picks how put/take wait in the blocking, wait, lock and twolock
+ * modes: "block" (default) parks on the buffer's condition or monitor,
+ * "spin" busy-spins, "yield" yields between retries and "park" spins, then
+ * parks with backoff. The other modes always block.
+ *
+ * --load replaces the five demo integers with a {@link LoadGenerator} soak
+ * run through the chosen buffer: a million items by default, or --items /
+ * --duration, optionally paced by --rate (closed loop unless --open-loop),
+ * printing throughput, latency, occupancy and GC/allocation stats every
+ * --report seconds (default 5).
+ *
+ * --source reads the items from PATH, one integer per line (what
+ * --sink=file writes), instead of the five demo integers. The file is split
+ * into one byte range per producer and streamed with read-ahead; see
+ * {@link FileSource}. The demo integers are split into contiguous ranges too.
+ *
+ * --jmx registers every buffer the harness creates, the pipeline and the
+ * Manager as MXBeans (domain "pc001") for JConsole; see {@link Monitoring}.
  */
 public class MainPC001 {
+    private static final AtomicInteger BUFFER_IDS = new AtomicInteger();
+
     public static void main(String[] args) throws InterruptedException {
         // usage: [mode] [numProducers] [numConsumers]
         // parse args but allow -v/--verbose anywhere; remaining positional args are
         // mode, numProducers, numConsumers
         java.util.List<String> positional = new java.util.ArrayList<>();
+        WorkerExecutor workers = WorkerExecutor.platform();
+        boolean usePipeline = false;
+        String sinkSpec = "list";
+        int capacity = 2;
+        WaitStrategy waitStrategy = WaitStrategy.blocking();
+        boolean load = false;
+        long loadItems = 0;
+        long loadSeconds = 0;
+        double loadRate = 0;
+        boolean openLoop = false;
+        int payloadBytes = 64;
+        long reportSeconds = 5;
+        String sourceFile = null;
         for (String a : args) {
             if ("-v".equals(a) || "--verbose".equals(a)) {
                 pc001.Config.setVerbose(true);
+            } else if ("--pipeline".equals(a)) {
+                usePipeline = true;
+            } else if ("--jmx".equals(a)) {
+                pc001.Config.setJmx(true);
+            } else if ("--load".equals(a)) {
+                load = true;
+            } else if (a.startsWith("--items=")) {
+                loadItems = Long.parseLong(a.substring("--items=".length()));
+            } else if (a.startsWith("--duration=")) {
+                loadSeconds = Long.parseLong(a.substring("--duration=".length()));
+            } else if (a.startsWith("--rate=")) {
+                loadRate = Double.parseDouble(a.substring("--rate=".length()));
+            } else if ("--open-loop".equals(a)) {
+                openLoop = true;
+            } else if (a.startsWith("--payload=")) {
+                payloadBytes = Integer.parseInt(a.substring("--payload=".length()));
+            } else if (a.startsWith("--report=")) {
+                reportSeconds = Long.parseLong(a.substring("--report=".length()));
+            } else if (a.startsWith("--capacity=")) {
+                capacity = Integer.parseInt(a.substring("--capacity=".length()));
+            } else if (a.startsWith("--wait=")) {
+                waitStrategy = WaitStrategy.forName(a.substring("--wait=".length()));
+            } else if (a.startsWith("--source=")) {
+                sourceFile = a.substring("--source=".length());
+            } else if (a.startsWith("--sink=")) {
+                sinkSpec = a.substring("--sink=".length());
+            } else if (a.startsWith("--threads=")) {
+                workers = WorkerExecutor.forName(a.substring("--threads=".length()));
             } else {
                 positional.add(a);
             }
         }
 
-        // mode: "blocking" (default) or "wait"
+        // mode: "blocking" (default), "wait", "lock", "twolock", "striped", "elastic" or "priority"
         String mode = (positional.size() > 0) ? positional.get(0) : "blocking";
         int numProducers = (positional.size() > 1) ? Integer.parseInt(positional.get(1)) : 1;
         int numConsumers = (positional.size() > 2) ? Integer.parseInt(positional.get(2)) : 1;
@@ -39,65 +135,186 @@ public class MainPC001 {
         List<Integer> sourceContainer = Arrays.asList(1, 2, 3, 4, 5);
         // make destination thread-safe to be explicit about concurrency
         List<Integer> destinationContainer = Collections.synchronizedList(new ArrayList<>());
+        Sink<Integer> sink = newSink(sinkSpec, destinationContainer);
 
-        int capacity = 2;
-        int sentinel = -1;
-
-        SharedBufferInterface<Integer> buffer;
-        if ("wait".equalsIgnoreCase(mode)) {
-            System.out.println("Using wait/notify implementation");
-            buffer = new SharedBufferWaitNotify<>(capacity);
-        } else {
-            System.out.println("Using BlockingQueue implementation");
-            buffer = new SharedBuffer<>(capacity);
-        }
+        long drainTimeoutMs = 5_000;
 
         // register a simple queue observer (demonstrates Manager/Observer idea)
         if (pc001.Config.isVerbose()) {
             Manager.getInstance().addObserver("Q", new QueueObserver());
         }
+        if (pc001.Config.isJmx()) {
+            Monitoring.registerManager();
+        }
 
-        // Save initial snapshot
-        Manager.getInstance().saveSnapshot("start", buffer.snapshotContents(), destinationContainer);
+        if (load) {
+            String m = mode;
+            WaitStrategy w = waitStrategy;
+            LoadGenerator.Builder b = LoadGenerator.builder(c -> newBuffer(m, c, w, numProducers, numConsumers), capacity)
+                    .producers(numProducers).consumers(numConsumers).executor(workers)
+                    .rate(loadRate).openLoop(openLoop).payloadBytes(payloadBytes)
+                    .reportEvery(reportSeconds, TimeUnit.SECONDS);
+            if (loadSeconds > 0) {
+                b.duration(loadSeconds, TimeUnit.SECONDS);
+            } else {
+                b.items(loadItems > 0 ? loadItems : 1_000_000);
+            }
+            b.build().run();
+            return;
+        }
 
-        // Partition source among producers
-        List<List<Integer>> parts = new ArrayList<>();
-        for (int i = 0; i < numProducers; i++)
-            parts.add(new ArrayList<>());
-        for (int i = 0; i < sourceContainer.size(); i++) {
-            parts.get(i % numProducers).add(sourceContainer.get(i));
+        // one contiguous range per producer
+        List<Source<Integer>> sources;
+        try {
+            sources = sourceFile == null ? Source.split(sourceContainer, numProducers)
+                    : FileSource.builder(Paths.get(sourceFile), FileSource.Decoder.integers()).split(numProducers);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
 
-        List<Thread> producers = new ArrayList<>();
-        for (int i = 0; i < numProducers; i++) {
-            producers.add(new Thread(new Producer(buffer, parts.get(i))));
+        if (usePipeline) {
+            runPipeline(mode, capacity, waitStrategy, numProducers, numConsumers, sources, sink, workers);
+            return;
         }
 
+        SharedBufferInterface<Integer> buffer = newBuffer(mode, capacity, waitStrategy, numProducers, numConsumers);
+
+        // Save initial checkpoint
+        Manager.getInstance().checkpoint("start", buffer, destinationContainer);
+
+        // start consumers then producers
         List<Thread> consumers = new ArrayList<>();
         for (int i = 0; i < numConsumers; i++) {
-            consumers.add(new Thread(new Consumer(buffer, destinationContainer, sentinel)));
+            consumers.add(workers.start("consumer-" + i, new Consumer(buffer, sink)));
         }
 
-        // start consumers then producers
-        consumers.forEach(Thread::start);
-        producers.forEach(Thread::start);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < numProducers; i++) {
+            producers.add(workers.start("producer-" + i, new Producer(buffer, sources.get(i))));
+        }
 
         // wait for producers
         for (Thread p : producers)
             p.join();
 
-        // signal consumers to stop: send one sentinel per consumer
-        for (int i = 0; i < numConsumers; i++) {
-            buffer.put(sentinel);
+        // close the buffer: consumers finish what is queued, then stop
+        DrainStats<Integer> drain = buffer.closeAndDrain(drainTimeoutMs, TimeUnit.MILLISECONDS);
+        if (pc001.Config.isVerbose() || !drain.isComplete()) {
+            System.out.println("Shutdown: " + drain + " capacity=" + buffer.capacity());
         }
 
         // wait for consumers
         for (Thread c : consumers)
             c.join();
 
-        // Save final snapshot
-        Manager.getInstance().saveSnapshot("end", buffer.snapshotContents(), destinationContainer);
+        // Save final checkpoint
+        List<Integer> results = closeSink(sink);
+        Manager.getInstance().checkpoint("end", buffer, results);
 
-        System.out.println("Destination container: " + destinationContainer);
+        printResults(sink, results);
+    }
+
+    /**
+     * Same run as the main harness, but the consumers are the workers of a
+     * single-stage {@link Pipeline}.
+     */
+    private static void runPipeline(String mode, int capacity, WaitStrategy waitStrategy, int numProducers, int numConsumers,
+                                    List<Source<Integer>> sources, Sink<Integer> sink, WorkerExecutor workers)
+            throws InterruptedException {
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .executor(workers)
+                .buffers(c -> newBuffer(mode, c, waitStrategy, numProducers, numConsumers), capacity)
+                .sink("consumer", numConsumers, 1, sink)
+                .start();
+        if (pc001.Config.isJmx()) {
+            Monitoring.registerPipeline("main", pipeline);
+        }
+
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < numProducers; i++) {
+            producers.add(workers.start("producer-" + i, new Producer(pipeline.input(), sources.get(i))));
+        }
+        for (Thread p : producers)
+            p.join();
+
+        pipeline.finish();
+        try {
+            pipeline.await();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        if (pc001.Config.isVerbose()) {
+            pipeline.metrics().forEach(System.out::println);
+        }
+        printResults(sink, closeSink(sink));
+    }
+
+    private static Sink<Integer> newSink(String spec, List<Integer> destination) {
+        try {
+            if ("local".equalsIgnoreCase(spec)) return new ThreadLocalChunkSink<>();
+            if ("chunked".equalsIgnoreCase(spec)) return new ChunkedArraySink<>();
+            if (spec.startsWith("file:")) return new FileSink<>(Paths.get(spec.substring("file:".length())));
+            if ("list".equalsIgnoreCase(spec)) return new ListSink<>(destination);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        throw new IllegalArgumentException("unknown sink: " + spec);
+    }
+
+    /** Close the sink and return what it collected (empty for a file sink). */
+    private static List<Integer> closeSink(Sink<Integer> sink) {
+        try {
+            sink.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (sink instanceof ListSink) return ((ListSink<Integer>) sink).toList();
+        if (sink instanceof ThreadLocalChunkSink) return ((ThreadLocalChunkSink<Integer>) sink).toList();
+        if (sink instanceof ChunkedArraySink) return ((ChunkedArraySink<Integer>) sink).toList();
+        return Collections.emptyList();
+    }
+
+    private static void printResults(Sink<Integer> sink, List<Integer> results) {
+        if (sink instanceof FileSink) {
+            System.out.println("Wrote " + sink.count() + " items (" + ((FileSink<Integer>) sink).bytesWritten() + " bytes)");
+        } else {
+            System.out.println("Destination container: " + results);
+        }
+    }
+
+    private static <T> SharedBufferInterface<T> newBuffer(String mode, int capacity, WaitStrategy waitStrategy,
+                                                          int numProducers, int numConsumers) {
+        SharedBufferInterface<T> buffer = createBuffer(mode, capacity, waitStrategy, numProducers, numConsumers);
+        if (pc001.Config.isJmx()) {
+            Monitoring.registerBuffer("buffer-" + BUFFER_IDS.incrementAndGet(), buffer);
+        }
+        return buffer;
+    }
+
+    private static <T> SharedBufferInterface<T> createBuffer(String mode, int capacity, WaitStrategy waitStrategy,
+                                                             int numProducers, int numConsumers) {
+        if ("wait".equalsIgnoreCase(mode)) {
+            System.out.println("Using wait/notify implementation (" + waitStrategy.name() + ")");
+            return new SharedBufferWaitNotify<>(capacity, waitStrategy);
+        } else if ("lock".equalsIgnoreCase(mode)) {
+            System.out.println("Using ReentrantLock/Condition implementation (" + waitStrategy.name() + ")");
+            return new SharedBufferLockCondition<>(capacity, waitStrategy);
+        } else if ("twolock".equalsIgnoreCase(mode)) {
+            System.out.println("Using two-lock implementation (" + waitStrategy.name() + ")");
+            return new SharedBufferTwoLock<>(capacity, waitStrategy);
+        } else if ("striped".equalsIgnoreCase(mode)) {
+            int lanes = Math.max(2, Math.max(numProducers, numConsumers));
+            System.out.println("Using striped implementation with " + lanes + " lanes");
+            return new StripedSharedBuffer<>(lanes, capacity);
+        } else if ("elastic".equalsIgnoreCase(mode)) {
+            System.out.println("Using elastic implementation");
+            return new ElasticSharedBuffer<>(capacity, capacity * 64);
+        } else if ("priority".equalsIgnoreCase(mode)) {
+            System.out.println("Using priority implementation");
+            return new PrioritySharedBuffer<>(capacity, 3);
+        } else {
+            System.out.println("Using BlockingQueue implementation (" + waitStrategy.name() + ")");
+            return new SharedBuffer<>(capacity, waitStrategy);
+        }
     }
 }
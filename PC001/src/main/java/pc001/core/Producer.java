@@ -1,29 +1,42 @@
 package pc001.core;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import pc001.buffer.SharedBufferInterface;
+import pc001.source.Source;
 
 /**
- * Producer runnable that takes a source list of integers and places them into
- * the shared buffer. The producer blocks on `put()` when the buffer is full.
+ * Producer runnable that reads items from a {@link Source} and places them
+ * into the shared buffer. The producer blocks on `put()` when the buffer is
+ * full, and closes the source when it is exhausted.
  */
 public class Producer implements Runnable {
     private final SharedBufferInterface<Integer> buffer;
-    private final List<Integer> source;
+    private final Source<Integer> source;
 
-    public Producer(SharedBufferInterface<Integer> buffer, List<Integer> source) {
+    public Producer(SharedBufferInterface<Integer> buffer, Source<Integer> source) {
         this.buffer = buffer;
         this.source = source;
     }
 
+    public Producer(SharedBufferInterface<Integer> buffer, List<Integer> source) {
+        this(buffer, Source.of(source));
+    }
+
+    /** @throws UncheckedIOException if the source cannot be read */
     @Override
     public void run() {
-        try {
-            for (Integer value : source) {
+        try (Source<Integer> s = source) {
+            Integer value;
+            while ((value = s.next()) != null) {
                 buffer.put(value);
             }
-        } catch (InterruptedException e) {
+        } catch (InterruptedException | InterruptedIOException e) {
             Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 }
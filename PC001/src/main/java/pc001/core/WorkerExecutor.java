@@ -0,0 +1,80 @@
+package pc001.core;
+
+/**
+ * Starts the worker threads (producers, consumers, pipeline stages) used by the
+ * harness, so the kind of thread is chosen in one place.
+ *
+ * {@link #platform()} starts one OS thread per worker. {@link #virtual()} starts
+ * virtual threads; it is only available when the project is built with the
+ * {@code java21} profile and run on Java 21+.
+ */
+public interface WorkerExecutor {
+
+    /** Start {@code task} on a new worker and return its thread, e.g. for join(). */
+    Thread start(String name, Runnable task);
+
+    /** Short name used in harness and benchmark output. */
+    String name();
+
+    /** One platform thread per worker. */
+    static WorkerExecutor platform() {
+        return PlatformWorkerExecutor.INSTANCE;
+    }
+
+    /**
+     * One virtual thread per worker.
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    static WorkerExecutor virtual() {
+        WorkerExecutor v = VirtualHolder.VIRTUAL;
+        if (v == null) {
+            throw new UnsupportedOperationException(
+                    "virtual threads need Java 21 and a build with the java21 profile");
+        }
+        return v;
+    }
+
+    /** Whether {@link #virtual()} can be used in this JVM. */
+    static boolean isVirtualAvailable() {
+        return VirtualHolder.VIRTUAL != null;
+    }
+
+    /** Executor for a harness option value: "virtual" or "platform". */
+    static WorkerExecutor forName(String name) {
+        if ("virtual".equalsIgnoreCase(name)) return virtual();
+        if ("platform".equalsIgnoreCase(name)) return platform();
+        throw new IllegalArgumentException("unknown thread mode: " + name);
+    }
+
+    final class PlatformWorkerExecutor implements WorkerExecutor {
+        static final PlatformWorkerExecutor INSTANCE = new PlatformWorkerExecutor();
+
+        private PlatformWorkerExecutor() {}
+
+        @Override
+        public Thread start(String name, Runnable task) {
+            Thread t = new Thread(task, name);
+            t.start();
+            return t;
+        }
+
+        @Override
+        public String name() { return "platform"; }
+    }
+
+    final class VirtualHolder {
+        static final WorkerExecutor VIRTUAL = load();
+
+        private VirtualHolder() {}
+
+        private static WorkerExecutor load() {
+            try {
+                // compiled only by the java21 profile; needs a Java 21 runtime to link
+                Class<?> c = Class.forName("pc001.core.VirtualWorkerExecutor");
+                return (WorkerExecutor) c.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return null;
+            }
+        }
+    }
+}
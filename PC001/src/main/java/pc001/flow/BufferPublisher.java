@@ -0,0 +1,156 @@
+package pc001.flow;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import pc001.buffer.SharedBufferInterface;
+
+/**
+ * {@link Flow.Publisher} that hands the items of a buffer to its subscribers.
+ *
+ * No thread ever blocks in {@code take()}. Each subscription runs as a task on
+ * the executor that polls up to {@code batchSize} items, bounded by the
+ * subscriber's outstanding {@code request(n)}, and delivers them with
+ * {@code onNext}. With demand left it resubmits itself, so many subscriptions
+ * share a few threads fairly. When the buffer is empty it retries after a
+ * delay that backs off from 10us to 1ms; without demand it stops until the
+ * next request. Once the buffer is closed and empty, subscribers get
+ * {@code onComplete}.
+ *
+ * Subscribers compete for items: every item goes to exactly one of them,
+ * like consumers calling {@code take()}.
+ */
+public final class BufferPublisher<T> implements Flow.Publisher<T> {
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private static final long MIN_IDLE_NANOS = 10_000;
+    private static final long MAX_IDLE_NANOS = 1_000_000;
+
+    private final SharedBufferInterface<T> buffer;
+    private final ScheduledExecutorService executor;
+    private final int batchSize;
+    private final LongAdder delivered = new LongAdder();
+
+    public BufferPublisher(SharedBufferInterface<T> buffer, ScheduledExecutorService executor, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        this.buffer = Objects.requireNonNull(buffer);
+        this.executor = Objects.requireNonNull(executor);
+        this.batchSize = batchSize;
+    }
+
+    public BufferPublisher(SharedBufferInterface<T> buffer, ScheduledExecutorService executor) {
+        this(buffer, executor, DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Subscription s = new Subscription(Objects.requireNonNull(subscriber));
+        // onSubscribe runs as the first drain, so no onNext can overlap it
+        s.scheduled.set(true);
+        executor.execute(() -> {
+            try {
+                subscriber.onSubscribe(s);
+            } catch (Throwable t) {
+                s.cancelled = true;
+                subscriber.onError(t);
+                return;
+            }
+            s.drain();
+        });
+    }
+
+    /** Items handed to subscribers so far. */
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // true while a drain task is queued, running or waiting out an idle delay
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean cancelled;
+        private volatile IllegalArgumentException invalidRequest;
+        private long idleNanos = MIN_IDLE_NANOS;
+
+        Subscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("request must be positive: " + n);
+            } else {
+                demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void schedule() {
+            if (!cancelled && scheduled.compareAndSet(false, true)) executor.execute(this::drain);
+        }
+
+        void drain() {
+            if (cancelled) return;
+            if (invalidRequest != null) {
+                fail(invalidRequest);
+                return;
+            }
+            long n = demand.get();
+            int limit = (int) Math.min(n, batchSize);
+            int sent = 0;
+            boolean empty = false;
+            try {
+                while (sent < limit && !cancelled) {
+                    T item = buffer.poll();
+                    if (item == null) {
+                        empty = true;
+                        break;
+                    }
+                    subscriber.onNext(item);
+                    sent++;
+                }
+            } catch (Throwable t) {
+                fail(t);
+                return;
+            }
+            if (sent > 0) {
+                if (n != Long.MAX_VALUE) demand.addAndGet(-sent);
+                delivered.add(sent);
+                idleNanos = MIN_IDLE_NANOS;
+            }
+            if (cancelled) return;
+
+            if (buffer.isClosed() && buffer.size() == 0) {
+                cancelled = true;
+                subscriber.onComplete();
+            } else if (empty || buffer.isClosed() && demand.get() == 0) {
+                // nothing queued, or closed with items left for others: look
+                // again after a backoff delay so completion is not missed
+                executor.schedule(this::drain, idleNanos, TimeUnit.NANOSECONDS);
+                idleNanos = Math.min(idleNanos * 2, MAX_IDLE_NANOS);
+            } else if (demand.get() > 0) {
+                executor.execute(this::drain);
+            } else {
+                scheduled.set(false);
+                // a request may have arrived after the demand check above
+                if (demand.get() > 0 || invalidRequest != null) schedule();
+            }
+        }
+
+        private void fail(Throwable t) {
+            cancelled = true;
+            subscriber.onError(t);
+        }
+    }
+}
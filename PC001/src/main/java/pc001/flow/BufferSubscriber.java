@@ -0,0 +1,166 @@
+package pc001.flow;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import pc001.buffer.BufferClosedException;
+import pc001.buffer.SharedBufferInterface;
+
+/**
+ * {@link Flow.Subscriber} that writes what it receives into a buffer.
+ *
+ * It never blocks in {@code put()}: items go in with {@code offer}, and
+ * backpressure comes from demand instead. The subscriber requests
+ * {@code batchSize} items up front and requests more, in chunks of at least
+ * half a batch, only as items actually get into the buffer. When the buffer is
+ * full, received items wait in a small pending queue (never more than one
+ * batch) and are retried on the executor with a delay that backs off from
+ * 10us to 1ms, while no further demand is signalled upstream.
+ *
+ * When the publisher completes or fails, pending items are still offered,
+ * then the buffer is closed (unless {@code closeOnComplete} is false, e.g.
+ * when several publishers feed one buffer) and {@link #completion()}
+ * completes. If someone else closes the buffer first, the subscription is
+ * cancelled and {@link #completion()} fails with {@link BufferClosedException}.
+ */
+public final class BufferSubscriber<T> implements Flow.Subscriber<T> {
+    private static final long MIN_RETRY_NANOS = 10_000;
+    private static final long MAX_RETRY_NANOS = 1_000_000;
+
+    private final SharedBufferInterface<T> buffer;
+    private final ScheduledExecutorService executor;
+    private final int batchSize;
+    private final boolean closeOnComplete;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final LongAdder accepted = new LongAdder();
+    private volatile Flow.Subscription subscription;
+
+    // guarded by this
+    private final ArrayDeque<T> pending = new ArrayDeque<>();
+    private int credit;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private boolean retryScheduled;
+    private long retryNanos = MIN_RETRY_NANOS;
+
+    public BufferSubscriber(SharedBufferInterface<T> buffer, ScheduledExecutorService executor, int batchSize,
+                            boolean closeOnComplete) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        this.buffer = Objects.requireNonNull(buffer);
+        this.executor = Objects.requireNonNull(executor);
+        this.batchSize = batchSize;
+        this.closeOnComplete = closeOnComplete;
+    }
+
+    public BufferSubscriber(SharedBufferInterface<T> buffer, ScheduledExecutorService executor) {
+        this(buffer, executor, BufferPublisher.DEFAULT_BATCH_SIZE, true);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription s) {
+        if (subscription != null) {
+            s.cancel();
+            return;
+        }
+        subscription = s;
+        s.request(batchSize);
+    }
+
+    @Override
+    public void onNext(T item) {
+        Objects.requireNonNull(item);
+        long more;
+        synchronized (this) {
+            pending.add(item);
+            more = flush();
+        }
+        request(more);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        synchronized (this) {
+            upstreamDone = true;
+            upstreamError = t;
+            flush();
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+            flush();
+        }
+    }
+
+    /** Completes once everything received is in the buffer and the publisher has finished. */
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    /** Items offered into the buffer so far. */
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    // Offer pending items; returns how many more to request upstream.
+    private long flush() {
+        if (completion.isDone()) {
+            pending.clear();
+            return 0;
+        }
+        try {
+            while (!pending.isEmpty() && buffer.offer(pending.peekFirst())) {
+                pending.pollFirst();
+                accepted.increment();
+                credit++;
+                retryNanos = MIN_RETRY_NANOS;
+            }
+        } catch (BufferClosedException e) {
+            pending.clear();
+            Flow.Subscription s = subscription;
+            if (s != null) s.cancel();
+            completion.completeExceptionally(e);
+            return 0;
+        }
+        if (!pending.isEmpty()) {
+            if (!retryScheduled) {
+                retryScheduled = true;
+                executor.schedule(this::retry, retryNanos, TimeUnit.NANOSECONDS);
+                retryNanos = Math.min(retryNanos * 2, MAX_RETRY_NANOS);
+            }
+            return 0;
+        }
+        if (upstreamDone) {
+            if (closeOnComplete) buffer.close();
+            if (upstreamError != null) {
+                completion.completeExceptionally(upstreamError);
+            } else {
+                completion.complete(null);
+            }
+            return 0;
+        }
+        if (credit < Math.max(1, batchSize / 2)) return 0;
+        long more = credit;
+        credit = 0;
+        return more;
+    }
+
+    private void retry() {
+        long more;
+        synchronized (this) {
+            retryScheduled = false;
+            more = flush();
+        }
+        request(more);
+    }
+
+    private void request(long n) {
+        if (n > 0) subscription.request(n);
+    }
+}
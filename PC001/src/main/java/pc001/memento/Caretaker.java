@@ -1,17 +1,215 @@
 package pc001.memento;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import pc001.buffer.BufferPosition;
 
+/**
+ * Keeps the most recent snapshots, up to a fixed retention. Older ones are
+ * written to an archive directory (one {@code snapshot-<seq>.ser} file each)
+ * if one is configured, or dropped otherwise, so periodic checkpoints do not
+ * grow the heap.
+ *
+ * {@link #record} builds each snapshot against the previous one: counter
+ * deltas come from the two buffer positions and the destination contributes
+ * only the items appended since. Every {@code (retention + 1) / 2} records
+ * the destination is copied whole into a new base, and eviction removes a
+ * base together with the deltas that depend on it, so every retained
+ * snapshot can be rebuilt with {@link #destinationAt(Snapshot)}. Between
+ * {@code retention / 2} and {@code retention} snapshots stay in memory.
+ */
 public class Caretaker {
-    private final List<Snapshot> snapshots = new ArrayList<>();
+    public static final int DEFAULT_RETENTION = 64;
 
-    public synchronized void addSnapshot(Snapshot s) {
-        snapshots.add(s);
+    private static final String ARCHIVE_PREFIX = "snapshot-";
+    private static final String ARCHIVE_SUFFIX = ".ser";
+
+    private final Deque<Snapshot> snapshots = new ArrayDeque<>();
+    private final int retention;
+    private final Path archiveDir;
+    private final int baseInterval;
+    private long nextSequence = 1;
+    private long dropped;
+    // the list the last snapshot copied from, compared by reference; weak so
+    // that the caretaker does not keep a discarded destination alive
+    private WeakReference<List<?>> lastDestination = new WeakReference<>(null);
+    private int sinceBase;
+
+    public Caretaker() {
+        this(DEFAULT_RETENTION, null);
+    }
+
+    /**
+     * @param retention snapshots kept in memory
+     * @param archiveDir where evicted snapshots are written, or null to drop them
+     */
+    public Caretaker(int retention, Path archiveDir) {
+        if (retention <= 0) throw new IllegalArgumentException("retention must be positive");
+        this.retention = retention;
+        this.archiveDir = archiveDir;
+        this.baseInterval = (retention + 1) / 2;
     }
 
+    /**
+     * Record a snapshot. Only the part of {@code destination} appended since
+     * the previous snapshot of the same list is copied, while holding the
+     * list's monitor (the lock of a {@code Collections.synchronizedList}).
+     * A destination that is a different list, or shorter than last time, is
+     * copied whole, as it is when the current chain is long enough to rebase.
+     *
+     * @param position the buffer's {@link pc001.buffer.SharedBufferInterface#position()}
+     * @param destination list the consumers fill, or null
+     * @param bufferContents copy of the buffer to keep, usually empty
+     */
+    public synchronized Snapshot record(String tag, BufferPosition position, List<?> destination,
+                                        List<?> bufferContents) {
+        SnapshotEvent event = new SnapshotEvent();
+        event.begin();
+        Snapshot previous = snapshots.peekLast();
+        long producedDelta = position.getProduced();
+        long consumedDelta = position.getConsumed();
+        if (previous != null) {
+            producedDelta -= previous.getPosition().getProduced();
+            consumedDelta -= previous.getPosition().getConsumed();
+        }
+
+        boolean sameDestination = previous != null && lastDestination.get() == destination
+                && sinceBase < baseInterval;
+        int count = 0;
+        boolean base = true;
+        List<Object> delta = new ArrayList<>();
+        if (destination != null) {
+            synchronized (destination) {
+                count = destination.size();
+                int from = 0;
+                if (sameDestination && previous.getDestinationCount() <= count) {
+                    from = previous.getDestinationCount();
+                    base = false;
+                }
+                delta.addAll(destination.subList(from, count));
+            }
+        }
+        lastDestination = new WeakReference<>(destination);
+        sinceBase = base ? 1 : sinceBase + 1;
+
+        Snapshot s = new Snapshot(nextSequence++, tag, position, producedDelta, consumedDelta, count, base,
+                delta, new ArrayList<>(bufferContents));
+        snapshots.addLast(s);
+        long archived = 0;
+        if (snapshots.size() > retention) {
+            // evict the oldest chain as a whole, so no retained delta loses its base
+            do {
+                archived += evict(snapshots.pollFirst());
+            } while (!snapshots.peekFirst().isBase());
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.tag = tag;
+            event.sequence = s.getSequence();
+            event.deltaItems = delta.size();
+            event.bufferItems = bufferContents.size();
+            event.base = base;
+            event.archivedBytes = archived;
+            event.commit();
+        }
+        return s;
+    }
+
+    /** Retained snapshots, oldest first. */
     public synchronized List<Snapshot> getSnapshots() {
         return Collections.unmodifiableList(new ArrayList<>(snapshots));
     }
+
+    /** Snapshots evicted without an archive directory to write them to. */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /** Returns the size of the archive file, or 0 if the snapshot was dropped. */
+    private long evict(Snapshot s) {
+        if (archiveDir != null) return write(s);
+        dropped++;
+        return 0;
+    }
+
+    /** Write the retained snapshots to the archive directory as well, e.g. before the process exits. */
+    public synchronized void archiveAll() {
+        if (archiveDir == null) throw new IllegalStateException("no archive directory configured");
+        for (Snapshot s : snapshots) write(s);
+    }
+
+    /**
+     * Rebuild the destination as it was at {@code target} from the retained
+     * snapshots.
+     * @throws IllegalArgumentException if {@code target} was already evicted;
+     *         use {@link #destinationAt(List, Snapshot)} with the archive then
+     */
+    public List<Object> destinationAt(Snapshot target) {
+        return destinationAt(getSnapshots(), target);
+    }
+
+    /** Rebuild the destination at {@code target} from {@code history}, ordered oldest first. */
+    public static List<Object> destinationAt(List<Snapshot> history, Snapshot target) {
+        int end = -1;
+        for (int i = 0; i < history.size(); i++) {
+            if (history.get(i).getSequence() == target.getSequence()) end = i;
+        }
+        if (end < 0) throw new IllegalArgumentException("snapshot " + target.getSequence() + " is not in the history");
+        int start = end;
+        while (!history.get(start).isBase()) {
+            if (start == 0 || history.get(start - 1).getSequence() != history.get(start).getSequence() - 1) {
+                throw new IllegalStateException("base snapshot for " + target.getSequence() + " is missing");
+            }
+            start--;
+        }
+        List<Object> out = new ArrayList<>(target.getDestinationCount());
+        for (int i = start; i <= end; i++) out.addAll(history.get(i).getDestinationDelta());
+        return out;
+    }
+
+    /** Load the snapshots written to {@code dir}, oldest first. */
+    public static List<Snapshot> readArchive(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, ARCHIVE_PREFIX + "*" + ARCHIVE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        // zero-padded sequence numbers sort by name
+        Collections.sort(files);
+        List<Snapshot> out = new ArrayList<>(files.size());
+        for (Path f : files) {
+            try (InputStream in = Files.newInputStream(f); ObjectInputStream ois = new ObjectInputStream(in)) {
+                out.add((Snapshot) ois.readObject());
+            } catch (ClassNotFoundException e) {
+                throw new IOException("cannot read " + f, e);
+            }
+        }
+        return out;
+    }
+
+    /** Returns the size of the archive file. */
+    private long write(Snapshot s) {
+        Path file = archiveDir.resolve(String.format("%s%016d%s", ARCHIVE_PREFIX, s.getSequence(), ARCHIVE_SUFFIX));
+        try {
+            Files.createDirectories(archiveDir);
+            try (OutputStream out = Files.newOutputStream(file); ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                oos.writeObject(s);
+            }
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -1,28 +1,92 @@
 package pc001.memento;
 
+import java.io.Serializable;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
+import pc001.buffer.BufferPosition;
 
-public class Snapshot {
+/**
+ * One checkpoint of a buffer and its destination.
+ *
+ * The buffer is captured by its {@link BufferPosition} (counters and ring
+ * indices), not by copying its contents. The destination is captured
+ * incrementally: a snapshot holds only the items appended to it since the
+ * previous snapshot of the same destination, so a chain of snapshots starting
+ * at a base ({@link #isBase()}) rebuilds it, see
+ * {@link Caretaker#destinationAt(Snapshot)}. Everything held is a copy, and
+ * snapshots are serializable as long as the items are.
+ */
+public class Snapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long sequence;
     private final String tag;
     private final Instant createdAt;
+    private final BufferPosition position;
+    private final long producedDelta;
+    private final long consumedDelta;
+    private final int destinationCount;
+    private final boolean base;
+    private final List<?> destinationDelta;
     private final List<?> bufferContents;
-    private final List<?> destinationSnapshot;
 
-    public Snapshot(String tag, List<?> bufferContents, List<?> destinationSnapshot) {
+    Snapshot(long sequence, String tag, BufferPosition position, long producedDelta, long consumedDelta,
+             int destinationCount, boolean base, List<?> destinationDelta,
+             List<?> bufferContents) {
+        this.sequence = sequence;
         this.tag = tag;
         this.createdAt = Instant.now();
-        this.bufferContents = bufferContents;
-        this.destinationSnapshot = destinationSnapshot;
+        this.position = position;
+        this.producedDelta = producedDelta;
+        this.consumedDelta = consumedDelta;
+        this.destinationCount = destinationCount;
+        this.base = base;
+        this.destinationDelta = Collections.unmodifiableList(destinationDelta);
+        this.bufferContents = Collections.unmodifiableList(bufferContents);
     }
 
+    /** Increases by one with every snapshot the caretaker records. */
+    public long getSequence() { return sequence; }
     public String getTag() { return tag; }
     public Instant getCreatedAt() { return createdAt; }
+    public BufferPosition getPosition() { return position; }
+
+    /** Items produced since the previous snapshot (all of them for the first). */
+    public long getProducedDelta() { return producedDelta; }
+
+    /** Items consumed since the previous snapshot (all of them for the first). */
+    public long getConsumedDelta() { return consumedDelta; }
+
+    /** Size of the destination when the snapshot was taken. */
+    public int getDestinationCount() { return destinationCount; }
+
+    /** True if {@link #getDestinationDelta()} is the whole destination rather than an increment. */
+    public boolean isBase() { return base; }
+
+    /** Destination items appended since the previous snapshot, or all of them for a base. */
+    public List<?> getDestinationDelta() { return destinationDelta; }
+
+    /** Copy of the buffer contents; empty unless requested with {@link Caretaker#record}. */
     public List<?> getBufferContents() { return bufferContents; }
-    public List<?> getDestinationSnapshot() { return destinationSnapshot; }
+
+    /**
+     * The destination as copied by {@code Manager.saveSnapshot(String, List, List)}.
+     * @deprecated snapshots now hold increments; use {@link #getDestinationDelta()}
+     *             or {@link Caretaker#destinationAt(Snapshot)}
+     * @throws IllegalStateException if this is not a base snapshot
+     */
+    @Deprecated
+    public List<?> getDestinationSnapshot() {
+        if (!base) throw new IllegalStateException("snapshot " + sequence + " holds only an increment; "
+                + "use Caretaker.destinationAt");
+        return destinationDelta;
+    }
 
     @Override
     public String toString() {
-        return "Snapshot{" + "tag='" + tag + '\'' + ", createdAt=" + createdAt + ", buffer=" + bufferContents + ", dest=" + destinationSnapshot + '}';
+        return "Snapshot{" + "seq=" + sequence + ", tag='" + tag + '\'' + ", createdAt=" + createdAt
+                + ", " + position + ", +produced=" + producedDelta + ", +consumed=" + consumedDelta
+                + ", dest=" + destinationCount + (base ? " (base)" : " (+" + destinationDelta.size() + ")") + '}';
     }
 }
@@ -0,0 +1,44 @@
+package pc001.memento;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one {@link Caretaker#record} call: how many
+ * destination items the delta copied, how many buffer items were captured
+ * and whether the snapshot had to start a new base. Disabled by default.
+ */
+@Name("pc001.SnapshotCapture")
+@Label("Snapshot Capture")
+@Category({"PC001", "Memento"})
+@Description("A checkpoint of a buffer and its destination was recorded")
+@Enabled(false)
+@StackTrace(false)
+public final class SnapshotEvent extends Event {
+    @Label("Tag")
+    String tag;
+
+    @Label("Sequence")
+    long sequence;
+
+    @Label("Destination Delta Items")
+    int deltaItems;
+
+    @Label("Buffer Items")
+    int bufferItems;
+
+    @Label("Base Snapshot")
+    @Description("The destination was copied in full rather than as a delta")
+    boolean base;
+
+    @Label("Archived")
+    @Description("Snapshots evicted to the archive directory by this call")
+    @DataAmount(DataAmount.BYTES)
+    long archivedBytes;
+}
@@ -0,0 +1,32 @@
+package pc001.observer;
+
+/**
+ * JMX view of one buffer. Every attribute is read from the buffer's own
+ * counters when a client asks for it; nothing is pushed per operation.
+ */
+public interface BufferMXBean {
+    /** Implementation class, e.g. SharedBufferTwoLock. */
+    String getType();
+
+    int getSize();
+
+    int getCapacity();
+
+    long getProducedCount();
+
+    long getConsumedCount();
+
+    /** Items put per second since the previous read of this attribute. */
+    double getProduceRate();
+
+    /** Items taken per second since the previous read of this attribute. */
+    double getConsumeRate();
+
+    /** Total time producers waited for room, or -1 if the buffer does not track it. */
+    long getPutBlockedMillis();
+
+    /** Total time consumers waited for items, or -1 if the buffer does not track it. */
+    long getTakeBlockedMillis();
+
+    boolean isClosed();
+}
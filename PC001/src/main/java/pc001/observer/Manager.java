@@ -1,67 +1,272 @@
 package pc001.observer;
 
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import pc001.buffer.BufferPosition;
+import pc001.buffer.SharedBufferInterface;
 import pc001.memento.Caretaker;
 import pc001.memento.Snapshot;
 
 /**
  * Manager supports multiple observers per concern, records simple event log,
- * and can create/replay snapshots via Caretaker.
+ * and can create/replay snapshots via Caretaker. Snapshots are taken by the
+ * caretaker alone, so checkpoints never hold up notifyChange().
+ *
+ * The event log keeps the most recent {@link #DEFAULT_EVENT_LOG_CAPACITY}
+ * entries (see {@link #setEventLogCapacity}) and counts the ones it drops, so
+ * a long run does not grow the heap. Counters for published and dropped
+ * events and the time spent in observers can be read at any time, e.g.
+ * through {@link Monitoring#registerManager()}.
+ *
+ * Every put and take of every buffer calls {@link #notifyChange}, so it takes
+ * no lock: the counters are adders, the log is a ring written with one atomic
+ * increment and formatted only when read, and observers are kept in
+ * copy-on-write lists. A virtual thread therefore never pins its carrier on a
+ * contended monitor here. Observers may be called from several threads at
+ * once and must be thread-safe.
  */
 public class Manager {
-    private static Manager instance;
-    private final Map<String, List<IObserver>> observers = new HashMap<>();
-    private final List<String> eventLog = new ArrayList<>();
-    private final Caretaker caretaker = new Caretaker();
+    private final Map<String, List<IObserver>> observers = new ConcurrentHashMap<>();
+    public static final int DEFAULT_EVENT_LOG_CAPACITY = 10_000;
+
+    private volatile EventRing eventLog = new EventRing(DEFAULT_EVENT_LOG_CAPACITY); // null when off
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder dispatches = new LongAdder();
+    private final LongAdder dispatchNanos = new LongAdder();
+    private final AtomicLong maxDispatchNanos = new AtomicLong();
+    private volatile Caretaker caretaker = new Caretaker();
 
     private Manager() {}
 
-    public static synchronized Manager getInstance() {
-        if (instance == null) {
-            instance = new Manager();
-        }
-        return instance;
+    private static final class Holder {
+        static final Manager INSTANCE = new Manager();
+    }
+
+    public static Manager getInstance() {
+        return Holder.INSTANCE;
     }
 
-    public synchronized void addObserver(String concern, IObserver observer) {
-        observers.computeIfAbsent(concern, k -> new ArrayList<>()).add(observer);
+    public void addObserver(String concern, IObserver observer) {
+        observers.computeIfAbsent(concern, k -> new CopyOnWriteArrayList<>()).add(observer);
     }
 
-    public synchronized void removeObserver(String concern, IObserver observer) {
+    public void removeObserver(String concern, IObserver observer) {
         List<IObserver> list = observers.get(concern);
         if (list != null) list.remove(observer);
     }
 
-    public synchronized void notifyChange(String concern, Object subject) {
-        String entry = Instant.now() + " " + concern + " " + subject.getClass().getSimpleName();
-        eventLog.add(entry);
+    public void notifyChange(String concern, Object subject) {
+        published.increment();
+        EventRing log = eventLog;
+        if (log != null) {
+            if (log.add(new Event(Instant.now(), concern, subject.getClass()))) dropped.increment();
+        } else {
+            dropped.increment();
+        }
         List<IObserver> list = observers.get(concern);
-        if (list != null) {
-            for (IObserver obs : new ArrayList<>(list)) {
-                try {
-                    obs.update(concern, subject);
-                } catch (Exception e) {
-                    // swallow observer exceptions to keep manager robust
-                    e.printStackTrace();
-                }
+        if (list != null && !list.isEmpty()) dispatch(list, concern, subject);
+    }
+
+    private void dispatch(List<IObserver> list, String concern, Object subject) {
+        // only timed when someone is listening
+        ObserverDispatchEvent event = new ObserverDispatchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int count = 0;
+        for (IObserver obs : list) {
+            count++;
+            try {
+                obs.update(concern, subject);
+            } catch (Exception e) {
+                // swallow observer exceptions to keep manager robust
+                e.printStackTrace();
             }
         }
+        long took = System.nanoTime() - start;
+        dispatches.increment();
+        dispatchNanos.add(took);
+        maxDispatchNanos.accumulateAndGet(took, Math::max);
+        event.end();
+        if (event.shouldCommit()) {
+            event.concern = concern;
+            event.subjectType = subject.getClass().getSimpleName();
+            event.observers = count;
+            event.commit();
+        }
+    }
+
+    /**
+     * Keep at most {@code capacity} log entries, dropping the oldest; 0 turns
+     * the log off (events are still counted). Events logged while the
+     * capacity changes may be missing from the new log.
+     */
+    public synchronized void setEventLogCapacity(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity must not be negative");
+        EventRing old = eventLog;
+        List<Event> kept = old == null ? Collections.emptyList() : old.events();
+        int skip = Math.max(0, kept.size() - capacity);
+        dropped.add(skip);
+        if (capacity == 0) {
+            eventLog = null;
+            return;
+        }
+        EventRing ring = new EventRing(capacity);
+        for (Event e : kept.subList(skip, kept.size())) ring.add(e);
+        eventLog = ring;
+    }
+
+    public int getEventLogCapacity() {
+        EventRing log = eventLog;
+        return log == null ? 0 : log.slots.length();
+    }
+
+    /** Events passed to {@link #notifyChange} since startup. */
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /** Events that are no longer (or never were) in the log because it was full or off. */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /** notifyChange calls that had observers to run. */
+    public long getDispatchCount() {
+        return dispatches.sum();
+    }
+
+    /** Total time spent running observers, in nanoseconds. */
+    public long getDispatchNanos() {
+        return dispatchNanos.sum();
+    }
+
+    /** Longest single dispatch to the observers of one event, in nanoseconds. */
+    public long getMaxDispatchNanos() {
+        return maxDispatchNanos.get();
+    }
+
+    public int getObserverCount() {
+        int n = 0;
+        for (List<IObserver> list : observers.values()) n += list.size();
+        return n;
     }
 
-    public synchronized List<String> getEventLog() {
-        return new ArrayList<>(eventLog);
+    /** Logged events, oldest first; entries being overwritten while this runs are left out. */
+    public List<String> getEventLog() {
+        EventRing log = eventLog;
+        if (log == null) return new ArrayList<>();
+        List<String> out = new ArrayList<>();
+        for (Event e : log.events()) out.add(e.toString());
+        return out;
     }
 
-    public synchronized void saveSnapshot(String tag, java.util.List<?> bufferContents, java.util.List<?> destination) {
-        Snapshot s = new Snapshot(tag, bufferContents, destination);
-        caretaker.addSnapshot(s);
+    /** Number of logged events, without copying the log. */
+    public int getEventLogSize() {
+        EventRing log = eventLog;
+        return log == null ? 0 : (int) Math.min(log.next.get(), log.slots.length());
     }
 
-    public synchronized java.util.List<Snapshot> replay() {
+    /**
+     * Record an O(1) checkpoint of {@code buffer} (its position, not its
+     * contents) plus whatever was appended to {@code destination} since the
+     * previous snapshot.
+     */
+    public Snapshot checkpoint(String tag, SharedBufferInterface<?> buffer, List<?> destination) {
+        return caretaker.record(tag, buffer.position(), destination, Collections.emptyList());
+    }
+
+    /** Like {@link #checkpoint} but also copies the buffer contents, which costs O(size) under its lock. */
+    public Snapshot saveSnapshot(String tag, SharedBufferInterface<?> buffer, List<?> destination) {
+        return caretaker.record(tag, buffer.position(), destination, buffer.snapshotContents());
+    }
+
+    /**
+     * Record a snapshot of copies the caller already made. The destination is
+     * stored whole, as a base, so {@link Snapshot#getDestinationSnapshot()}
+     * still returns it; the buffer counters are not known here and read 0.
+     * @deprecated copies the whole destination every time; use
+     *             {@link #checkpoint} or {@link #saveSnapshot(String, SharedBufferInterface, List)}
+     */
+    @Deprecated
+    public Snapshot saveSnapshot(String tag, List<?> bufferContents, List<?> destination) {
+        List<?> buffer = bufferContents == null ? Collections.emptyList() : bufferContents;
+        // a fresh list never matches the previous destination, so it is recorded as a base
+        return caretaker.record(tag, BufferPosition.ofSize(buffer.size()),
+                destination == null ? null : new ArrayList<>(destination), buffer);
+    }
+
+    /**
+     * Keep at most {@code retention} snapshots in memory, writing older ones to
+     * {@code archiveDir} (or dropping them if it is null). Starts a new history.
+     */
+    public void configureSnapshots(int retention, Path archiveDir) {
+        caretaker = new Caretaker(retention, archiveDir);
+    }
+
+    public Caretaker getCaretaker() {
+        return caretaker;
+    }
+
+    public List<Snapshot> replay() {
         return caretaker.getSnapshots();
     }
+
+    /** One log entry; the text is built only when the log is read. */
+    private static final class Event {
+        final Instant at;
+        final String concern;
+        final Class<?> subjectType;
+        long seq;
+
+        Event(Instant at, String concern, Class<?> subjectType) {
+            this.at = at;
+            this.concern = concern;
+            this.subjectType = subjectType;
+        }
+
+        @Override
+        public String toString() {
+            return at + " " + concern + " " + subjectType.getSimpleName();
+        }
+    }
+
+    /** Fixed-size ring of the latest events; writers claim a slot with one getAndIncrement. */
+    private static final class EventRing {
+        final AtomicReferenceArray<Event> slots;
+        final AtomicLong next = new AtomicLong();
+
+        EventRing(int capacity) {
+            slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        /** @return true if an older entry was overwritten */
+        boolean add(Event e) {
+            long seq = next.getAndIncrement();
+            e.seq = seq;
+            slots.set((int) (seq % slots.length()), e);
+            return seq >= slots.length();
+        }
+
+        List<Event> events() {
+            long end = next.get();
+            long from = Math.max(0, end - slots.length());
+            List<Event> out = new ArrayList<>((int) (end - from));
+            for (long seq = from; seq < end; seq++) {
+                Event e = slots.get((int) (seq % slots.length()));
+                // null or another sequence: still being written, or already overwritten
+                if (e != null && e.seq == seq) out.add(e);
+            }
+            return out;
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package pc001.observer;
+
+/** JMX view of {@link Manager}'s event counters and observer dispatch cost. */
+public interface ManagerMXBean {
+    long getPublishedCount();
+
+    /** Events published per second since the previous read of this attribute. */
+    double getPublishRate();
+
+    long getDroppedCount();
+
+    int getEventLogSize();
+
+    int getEventLogCapacity();
+
+    void setEventLogCapacity(int capacity);
+
+    int getObserverCount();
+
+    long getDispatchCount();
+
+    /** Mean time to run the observers of one event, in microseconds. */
+    double getMeanDispatchMicros();
+
+    double getMaxDispatchMicros();
+}
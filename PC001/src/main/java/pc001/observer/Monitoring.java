@@ -0,0 +1,159 @@
+package pc001.observer;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import pc001.buffer.SharedBufferInterface;
+import pc001.pipeline.Pipeline;
+import pc001.pipeline.StageMetrics;
+
+/**
+ * Registers MXBeans for buffers, pipelines and the {@link Manager} with the
+ * platform MBean server, so JConsole or any JMX client can watch a live run.
+ * Names live in the {@code pc001} domain, e.g. {@code pc001:type=Buffer,name="main"}.
+ *
+ * The beans only hold references and read counters when an attribute is
+ * requested, so registering costs the buffers nothing per operation.
+ * Registering a name again replaces the earlier bean; call
+ * {@link #unregister} when a buffer is discarded so it can be collected.
+ */
+public final class Monitoring {
+    public static final String DOMAIN = "pc001";
+
+    private Monitoring() {
+    }
+
+    public static ObjectName registerBuffer(String name, SharedBufferInterface<?> buffer) {
+        return register(name("Buffer", name), new BufferMonitor(buffer));
+    }
+
+    public static ObjectName registerPipeline(String name, Pipeline<?> pipeline) {
+        return register(name("Pipeline", name), new PipelineMonitor(pipeline));
+    }
+
+    public static ObjectName registerManager() {
+        return register(name("Manager", "default"), new ManagerMonitor(Manager.getInstance()));
+    }
+
+    public static void unregister(ObjectName name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot unregister " + name, e);
+        }
+    }
+
+    private static ObjectName name(String type, String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("invalid MBean name: " + name, e);
+        }
+    }
+
+    private static ObjectName register(ObjectName name, Object bean) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            unregister(name);
+            server.registerMBean(bean, name);
+            return name;
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register " + name, e);
+        }
+    }
+
+    /** Per-second rate of a counter between two reads. */
+    static final class Rate {
+        private final LongSupplier counter;
+        private long lastValue;
+        private long lastNanos;
+
+        Rate(LongSupplier counter) {
+            this.counter = counter;
+            this.lastValue = counter.getAsLong();
+            this.lastNanos = System.nanoTime();
+        }
+
+        synchronized double read() {
+            long value = counter.getAsLong();
+            long now = System.nanoTime();
+            double rate = now == lastNanos ? 0 : (value - lastValue) * 1e9 / (now - lastNanos);
+            lastValue = value;
+            lastNanos = now;
+            return rate;
+        }
+    }
+
+    static final class BufferMonitor implements BufferMXBean {
+        private final SharedBufferInterface<?> buffer;
+        private final Rate produceRate;
+        private final Rate consumeRate;
+
+        BufferMonitor(SharedBufferInterface<?> buffer) {
+            this.buffer = buffer;
+            this.produceRate = new Rate(buffer::getProducedCount);
+            this.consumeRate = new Rate(buffer::getConsumedCount);
+        }
+
+        @Override public String getType() { return buffer.getClass().getSimpleName(); }
+        @Override public int getSize() { return buffer.size(); }
+        @Override public int getCapacity() { return buffer.capacity(); }
+        @Override public long getProducedCount() { return buffer.getProducedCount(); }
+        @Override public long getConsumedCount() { return buffer.getConsumedCount(); }
+        @Override public double getProduceRate() { return produceRate.read(); }
+        @Override public double getConsumeRate() { return consumeRate.read(); }
+        @Override public long getPutBlockedMillis() { return millis(buffer.getPutBlockedNanos()); }
+        @Override public long getTakeBlockedMillis() { return millis(buffer.getTakeBlockedNanos()); }
+        @Override public boolean isClosed() { return buffer.isClosed(); }
+
+        private static long millis(long nanos) {
+            return nanos < 0 ? -1 : nanos / 1_000_000;
+        }
+    }
+
+    static final class ManagerMonitor implements ManagerMXBean {
+        private final Manager manager;
+        private final Rate publishRate;
+
+        ManagerMonitor(Manager manager) {
+            this.manager = manager;
+            this.publishRate = new Rate(manager::getPublishedCount);
+        }
+
+        @Override public long getPublishedCount() { return manager.getPublishedCount(); }
+        @Override public double getPublishRate() { return publishRate.read(); }
+        @Override public long getDroppedCount() { return manager.getDroppedCount(); }
+        @Override public int getEventLogSize() { return manager.getEventLogSize(); }
+        @Override public int getEventLogCapacity() { return manager.getEventLogCapacity(); }
+        @Override public void setEventLogCapacity(int capacity) { manager.setEventLogCapacity(capacity); }
+        @Override public int getObserverCount() { return manager.getObserverCount(); }
+        @Override public long getDispatchCount() { return manager.getDispatchCount(); }
+
+        @Override
+        public double getMeanDispatchMicros() {
+            long n = manager.getDispatchCount();
+            return n == 0 ? 0 : manager.getDispatchNanos() / 1e3 / n;
+        }
+
+        @Override
+        public double getMaxDispatchMicros() {
+            return manager.getMaxDispatchNanos() / 1e3;
+        }
+    }
+
+    static final class PipelineMonitor implements PipelineMXBean {
+        private final Pipeline<?> pipeline;
+
+        PipelineMonitor(Pipeline<?> pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override public List<StageMetrics> getStages() { return pipeline.metrics(); }
+        @Override public String getBottleneck() { return pipeline.bottleneck().getName(); }
+        @Override public boolean isDone() { return pipeline.isDone(); }
+    }
+}
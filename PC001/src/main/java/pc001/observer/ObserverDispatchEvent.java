@@ -0,0 +1,31 @@
+package pc001.observer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering one {@link Manager#notifyChange} fan-out to
+ * the observers of a concern. Disabled by default and only created when the
+ * concern has observers, so unobserved buffers never see it.
+ */
+@Name("pc001.ObserverDispatch")
+@Label("Observer Dispatch")
+@Category({"PC001", "Observer"})
+@Description("Manager handed a change to the observers of one concern")
+@Enabled(false)
+@StackTrace(false)
+public final class ObserverDispatchEvent extends Event {
+    @Label("Concern")
+    String concern;
+
+    @Label("Subject Type")
+    String subjectType;
+
+    @Label("Observers")
+    int observers;
+}
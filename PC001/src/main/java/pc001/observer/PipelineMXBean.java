@@ -0,0 +1,14 @@
+package pc001.observer;
+
+import java.util.List;
+import pc001.pipeline.StageMetrics;
+
+/** JMX view of a {@link pc001.pipeline.Pipeline}: its stage counters, computed when read. */
+public interface PipelineMXBean {
+    List<StageMetrics> getStages();
+
+    /** Name of the stage with the highest utilization. */
+    String getBottleneck();
+
+    boolean isDone();
+}
@@ -0,0 +1,9 @@
+package pc001.pipeline;
+
+/**
+ * Hands a stage's results to the next stage. {@link #emit} blocks while the
+ * next stage's buffer is full, which is how backpressure travels upstream.
+ */
+public interface Emitter<O> {
+    void emit(O item) throws InterruptedException;
+}
@@ -0,0 +1,225 @@
+package pc001.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import pc001.buffer.SharedBufferInterface;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.core.WorkerExecutor;
+import pc001.sink.Sink;
+
+/**
+ * A chain of stages connected by bounded buffers.
+ *
+ * Every stage owns an input buffer and a fixed number of workers. A worker
+ * takes one item, tops the batch up with whatever else is already queued (up
+ * to the stage's batch size) and hands the batch to the stage function, which
+ * emits results into the next stage's buffer. Because every buffer is bounded,
+ * a slow stage blocks the one before it, all the way back to {@link #put}.
+ *
+ * Shutdown travels the same way: {@link #finish()} closes the first buffer.
+ * A stage's workers stop once their input is closed and empty, and the last
+ * of them closes the next stage's buffer. Callers never need to know how many
+ * workers any stage has.
+ *
+ * <pre>
+ * Pipeline&lt;String&gt; p = Pipeline.&lt;String&gt;builder()
+ *         .map("parse", 2, Integer::parseInt)
+ *         .stage("square", 4, 16, (batch, out) -&gt; { for (int x : batch) out.emit(x * x); })
+ *         .sink("collect", 1, 64, results::addAll)
+ *         .start();
+ * for (String s : input) p.put(s);
+ * p.finish();
+ * p.await();
+ * </pre>
+ */
+public final class Pipeline<I> {
+    private final List<Stage> stages;
+    private final WorkerExecutor executor;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicReference<Exception> firstFailure = new AtomicReference<>();
+    private volatile long startedAt;
+
+    private Pipeline(List<Stage> stages, WorkerExecutor executor) {
+        this.stages = stages;
+        this.executor = executor;
+    }
+
+    public static <I> Builder<I, I> builder() {
+        return new Builder<>();
+    }
+
+    /** Start the workers of every stage. */
+    public synchronized Pipeline<I> start() {
+        if (startedAt != 0) throw new IllegalStateException("pipeline already started");
+        startedAt = System.nanoTime();
+        for (Stage stage : stages) {
+            for (int i = 0; i < stage.workers; i++) {
+                threads.add(executor.start(stage.name + "-" + i, () -> stage.work(this)));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Feed one item into the first stage, blocking while its buffer is full.
+     * @throws pc001.buffer.BufferClosedException after {@link #finish()}
+     */
+    public void put(I item) throws InterruptedException {
+        stages.get(0).input.put(item);
+    }
+
+    /**
+     * The first stage's buffer, typed for producers, e.g. to pass to
+     * {@link pc001.core.Producer}. Only put/offer into it.
+     */
+    @SuppressWarnings("unchecked")
+    public SharedBufferInterface<I> input() {
+        return (SharedBufferInterface<I>) (SharedBufferInterface<?>) stages.get(0).input;
+    }
+
+    /**
+     * Signal that no more items will be put. Items already in the pipeline
+     * are still processed by every stage. Call after all producers are done.
+     */
+    public void finish() {
+        stages.get(0).input.close();
+    }
+
+    /**
+     * Wait until every stage has finished.
+     * @throws ExecutionException if a stage function threw; the first failure is the cause
+     */
+    public void await() throws InterruptedException, ExecutionException {
+        for (Thread t : workerThreads()) t.join();
+        rethrowFailure();
+    }
+
+    /**
+     * Wait at most {@code timeout} for every stage to finish.
+     * @return false if some stage is still running
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread t : workerThreads()) {
+            long left = deadline - System.nanoTime();
+            if (left > 0) TimeUnit.NANOSECONDS.timedJoin(t, left);
+            if (t.isAlive()) return false;
+        }
+        rethrowFailure();
+        return true;
+    }
+
+    /** Close every buffer and interrupt every worker. Items still queued are dropped. */
+    public void cancel() {
+        for (Stage stage : stages) stage.input.close();
+        for (Thread t : workerThreads()) t.interrupt();
+    }
+
+    /** Whether shutdown has made it through every stage. */
+    public boolean isDone() {
+        return stages.get(stages.size() - 1).isFinished();
+    }
+
+    /** Counters of every stage, in pipeline order. */
+    public List<StageMetrics> metrics() {
+        List<StageMetrics> out = new ArrayList<>(stages.size());
+        for (Stage stage : stages) out.add(stage.metrics(startedAt));
+        return out;
+    }
+
+    /** The stage whose workers spent the largest share of their time working. */
+    public StageMetrics bottleneck() {
+        StageMetrics worst = null;
+        for (StageMetrics m : metrics()) {
+            if (worst == null || m.getUtilization() > worst.getUtilization()) worst = m;
+        }
+        return worst;
+    }
+
+    void failed(String stage, Throwable e) {
+        firstFailure.compareAndSet(null, new Exception("stage " + stage + " failed", e));
+    }
+
+    private synchronized List<Thread> workerThreads() {
+        return new ArrayList<>(threads);
+    }
+
+    private void rethrowFailure() throws ExecutionException {
+        Exception e = firstFailure.get();
+        if (e != null) throw new ExecutionException(e.getMessage(), e.getCause());
+    }
+
+    /**
+     * Collects stages in order. {@code T} is the type that the next stage
+     * receives. Buffer settings apply to the stages added after them.
+     */
+    public static final class Builder<I, T> {
+        private final List<Stage> stages = new ArrayList<>();
+        private IntFunction<? extends SharedBufferInterface<?>> bufferFactory = SharedBufferLockCondition::new;
+        private int capacity = 64;
+        private WorkerExecutor executor = WorkerExecutor.platform();
+
+        private Builder() {}
+
+        /** Buffer type and capacity for the following stages, e.g. {@code buffers(SharedBufferTwoLock::new, 128)}. */
+        public Builder<I, T> buffers(IntFunction<? extends SharedBufferInterface<?>> factory, int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+            this.bufferFactory = factory;
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder<I, T> executor(WorkerExecutor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /** Add a stage that processes up to {@code batchSize} items at a time. */
+        @SuppressWarnings("unchecked")
+        public <O> Builder<I, O> stage(String name, int workers, int batchSize, StageFunction<? super T, O> fn) {
+            if (workers <= 0 || batchSize <= 0) throw new IllegalArgumentException("workers and batchSize must be positive");
+            SharedBufferInterface<Object> buffer = (SharedBufferInterface<Object>) bufferFactory.apply(capacity);
+            Stage stage = new Stage(name, workers, batchSize, buffer, (StageFunction<Object, Object>) (StageFunction<?, ?>) fn);
+            if (!stages.isEmpty()) stages.get(stages.size() - 1).linkTo(stage);
+            stages.add(stage);
+            return (Builder<I, O>) this;
+        }
+
+        /** Add a stage that maps each item to one result; null results are dropped. */
+        public <O> Builder<I, O> map(String name, int workers, Function<? super T, ? extends O> fn) {
+            return stage(name, workers, 1, (List<T> batch, Emitter<O> out) -> {
+                for (T item : batch) {
+                    O result = fn.apply(item);
+                    if (result != null) out.emit(result);
+                }
+            });
+        }
+
+        /** Add the final stage, which consumes batches without emitting, and build the pipeline. */
+        public Pipeline<I> sink(String name, int workers, int batchSize, java.util.function.Consumer<? super List<T>> sink) {
+            stage(name, workers, batchSize, (List<T> batch, Emitter<Void> out) -> sink.accept(batch));
+            return build();
+        }
+
+        /**
+         * Add a final stage that passes each batch to {@code sink}. The sink is
+         * not closed by the pipeline; close it after {@link Pipeline#await()}.
+         */
+        public Pipeline<I> sink(String name, int workers, int batchSize, Sink<? super T> sink) {
+            stage(name, workers, batchSize, (List<T> batch, Emitter<Void> out) -> sink.acceptAll(batch));
+            return build();
+        }
+
+        /** Build without a sink stage; the last stage must not emit. */
+        public Pipeline<I> build() {
+            if (stages.isEmpty()) throw new IllegalStateException("pipeline has no stages");
+            return new Pipeline<>(Collections.unmodifiableList(new ArrayList<>(stages)), executor);
+        }
+    }
+}
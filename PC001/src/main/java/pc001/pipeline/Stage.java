@@ -0,0 +1,125 @@
+package pc001.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import pc001.buffer.BufferClosedException;
+import pc001.buffer.SharedBufferInterface;
+
+/**
+ * One stage of a {@link Pipeline}: its input buffer, its worker loop and its
+ * counters. Item types are checked by the builder, so buffers here hold Object.
+ */
+final class Stage {
+    final String name;
+    final int workers;
+    final int batchSize;
+    final SharedBufferInterface<Object> input;
+    private final StageFunction<Object, Object> fn;
+    private Stage next;
+
+    private final AtomicInteger running;
+    private volatile long finishedAt;
+    final LongAdder itemsIn = new LongAdder();
+    final LongAdder itemsOut = new LongAdder();
+    final LongAdder batches = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final LongAdder busyNanos = new LongAdder();
+
+    Stage(String name, int workers, int batchSize, SharedBufferInterface<Object> input,
+          StageFunction<Object, Object> fn) {
+        this.name = name;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.input = input;
+        this.fn = fn;
+        this.running = new AtomicInteger(workers);
+    }
+
+    void linkTo(Stage next) {
+        this.next = next;
+    }
+
+    /** Body of each worker thread. */
+    void work(Pipeline<?> pipeline) {
+        List<Object> batch = new ArrayList<>(batchSize);
+        WorkerEmitter out = new WorkerEmitter();
+        try {
+            while (true) {
+                Object item;
+                try {
+                    item = input.take();
+                } catch (BufferClosedException e) {
+                    break; // upstream finished and everything it sent has been taken
+                }
+                batch.add(item);
+                // fill the batch with whatever is already queued, without waiting for more
+                while (batch.size() < batchSize) {
+                    Object more = input.poll();
+                    if (more == null) break;
+                    batch.add(more);
+                }
+                process(batch, out, pipeline);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Error e) {
+            failures.increment();
+            pipeline.failed(name, e);
+            throw e;
+        } finally {
+            // the last worker out closes the next stage's buffer, so shutdown
+            // reaches it only after every item this stage emitted; a worker that
+            // was interrupted or died still counts, or await() would never return
+            if (running.decrementAndGet() == 0) {
+                finishedAt = System.nanoTime();
+                if (next != null) next.input.close();
+            }
+        }
+    }
+
+    private void process(List<Object> batch, WorkerEmitter out, Pipeline<?> pipeline) throws InterruptedException {
+        long start = System.nanoTime();
+        long blockedBefore = out.blockedNanos;
+        try {
+            fn.apply(batch, out);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            failures.increment();
+            pipeline.failed(name, e);
+        }
+        // time spent waiting on the next stage's buffer is not this stage's work
+        busyNanos.add(System.nanoTime() - start - (out.blockedNanos - blockedBefore));
+        itemsIn.add(batch.size());
+        batches.increment();
+        batch.clear();
+    }
+
+    /** Emitter used by one worker; tracks how long that worker blocked on the next buffer. */
+    private final class WorkerEmitter implements Emitter<Object> {
+        long blockedNanos;
+
+        @Override
+        public void emit(Object item) throws InterruptedException {
+            if (next == null) throw new IllegalStateException("the last stage of a pipeline cannot emit");
+            long start = System.nanoTime();
+            next.input.put(item);
+            blockedNanos += System.nanoTime() - start;
+            itemsOut.increment();
+        }
+    }
+
+    /** Whether every worker of this stage has seen its input closed and stopped. */
+    boolean isFinished() {
+        return finishedAt != 0;
+    }
+
+    StageMetrics metrics(long startedAt) {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        long elapsedNanos = startedAt == 0 ? 0 : end - startedAt;
+        return new StageMetrics(name, workers, itemsIn.sum(), itemsOut.sum(), batches.sum(), failures.sum(),
+                busyNanos.sum(), elapsedNanos, input.size());
+    }
+}
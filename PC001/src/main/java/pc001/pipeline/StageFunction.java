@@ -0,0 +1,13 @@
+package pc001.pipeline;
+
+import java.util.List;
+
+/**
+ * Work done by one pipeline stage on a batch of input items. It may emit any
+ * number of results per item, including none (filtering). The batch list is
+ * reused once {@code apply} returns, so copy out anything that must outlive it.
+ */
+@FunctionalInterface
+public interface StageFunction<I, O> {
+    void apply(List<I> batch, Emitter<O> out) throws Exception;
+}
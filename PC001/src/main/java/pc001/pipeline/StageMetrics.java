@@ -0,0 +1,62 @@
+package pc001.pipeline;
+
+/**
+ * Point-in-time counters of one pipeline stage, as returned by
+ * {@link Pipeline#metrics()}.
+ */
+public final class StageMetrics {
+    private final String name;
+    private final int workers;
+    private final long itemsIn;
+    private final long itemsOut;
+    private final long batches;
+    private final long failures;
+    private final long busyNanos;
+    private final long elapsedNanos;
+    private final int queueDepth;
+
+    StageMetrics(String name, int workers, long itemsIn, long itemsOut, long batches, long failures,
+                 long busyNanos, long elapsedNanos, int queueDepth) {
+        this.name = name;
+        this.workers = workers;
+        this.itemsIn = itemsIn;
+        this.itemsOut = itemsOut;
+        this.batches = batches;
+        this.failures = failures;
+        this.busyNanos = busyNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.queueDepth = queueDepth;
+    }
+
+    public String getName() { return name; }
+    public int getWorkers() { return workers; }
+    /** Items taken from this stage's buffer and processed. */
+    public long getItemsIn() { return itemsIn; }
+    /** Items emitted to the next stage. */
+    public long getItemsOut() { return itemsOut; }
+    public long getBatches() { return batches; }
+    /** Batches whose stage function threw. */
+    public long getFailures() { return failures; }
+    /** Items waiting in this stage's input buffer. */
+    public int getQueueDepth() { return queueDepth; }
+
+    /** Items processed per second since the pipeline started. */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : itemsIn * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Share of the workers' time spent inside the stage function (0..1),
+     * excluding time spent blocked on either buffer. The stage closest to 1
+     * is the bottleneck.
+     */
+    public double getUtilization() {
+        return elapsedNanos == 0 ? 0 : Math.min(1.0, (double) busyNanos / ((double) elapsedNanos * workers));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{workers=%d, in=%d, out=%d, batches=%d, failures=%d, queue=%d, %.0f items/s, util=%.2f}",
+                name, workers, itemsIn, itemsOut, batches, failures, queueDepth, getThroughput(), getUtilization());
+    }
+}
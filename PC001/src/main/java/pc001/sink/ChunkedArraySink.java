@@ -0,0 +1,108 @@
+package pc001.sink;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * Lock-free append-only array. A writer claims a slot with one
+ * {@code getAndIncrement} and stores into a fixed-size chunk; chunks are
+ * installed with a CAS the first time a slot in them is claimed, so nothing is
+ * ever copied or resized.
+ *
+ * Items are in claim order, which interleaves writers. Slots can be read with
+ * {@link #get} or {@link #toList()} once {@link #close()} has been called.
+ */
+public class ChunkedArraySink<T> implements Sink<T> {
+    private static final int DEFAULT_CHUNK_BITS = 10;
+    private static final int DEFAULT_MAX_CHUNKS = 1 << 16;
+
+    private final int chunkBits;
+    private final int chunkMask;
+    private final AtomicReferenceArray<Object[]> chunks;
+    private final AtomicLong next = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param chunkBits log2 of the chunk size
+     * @param maxChunks size of the chunk directory; capacity is {@code maxChunks << chunkBits}
+     */
+    public ChunkedArraySink(int chunkBits, int maxChunks) {
+        if (chunkBits < 1 || chunkBits > 24 || maxChunks <= 0)
+            throw new IllegalArgumentException("bad chunk layout");
+        this.chunkBits = chunkBits;
+        this.chunkMask = (1 << chunkBits) - 1;
+        this.chunks = new AtomicReferenceArray<>(maxChunks);
+    }
+
+    /** 1024-item chunks, up to 64M items. */
+    public ChunkedArraySink() {
+        this(DEFAULT_CHUNK_BITS, DEFAULT_MAX_CHUNKS);
+    }
+
+    @Override
+    public void accept(T item) {
+        if (closed) throw new IllegalStateException("sink is closed");
+        long index = next.getAndIncrement();
+        long c = index >>> chunkBits;
+        if (c >= chunks.length()) {
+            throw new IllegalStateException("sink is full (" + ((long) chunks.length() << chunkBits) + " items)");
+        }
+        chunk((int) c)[(int) (index & chunkMask)] = item;
+    }
+
+    private Object[] chunk(int c) {
+        Object[] chunk = chunks.get(c);
+        if (chunk == null) {
+            Object[] fresh = new Object[chunkMask + 1];
+            chunk = chunks.compareAndSet(c, null, fresh) ? fresh : chunks.get(c);
+        }
+        return chunk;
+    }
+
+    /** Slots claimed so far. */
+    @Override
+    public long count() {
+        return Math.min(next.get(), (long) chunks.length() << chunkBits);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(long index) {
+        requireClosed();
+        if (index < 0 || index >= count()) throw new IndexOutOfBoundsException(Long.toString(index));
+        return (T) chunks.get((int) (index >>> chunkBits))[(int) (index & chunkMask)];
+    }
+
+    /** All items in claim order. */
+    @SuppressWarnings("unchecked")
+    public List<T> toList() {
+        requireClosed();
+        long n = count();
+        List<T> out = new ArrayList<>((int) n);
+        for (int c = 0; (long) c << chunkBits < n; c++) {
+            Object[] chunk = chunks.get(c);
+            int len = (int) Math.min(chunk.length, n - ((long) c << chunkBits));
+            for (int i = 0; i < len; i++) out.add((T) chunk[i]);
+        }
+        return out;
+    }
+
+    /** All items in ascending {@code seq} order. */
+    public List<T> toOrderedList(ToLongFunction<? super T> seq) {
+        List<T> out = toList();
+        out.sort(Comparator.comparingLong(seq));
+        return out;
+    }
+
+    private void requireClosed() {
+        if (!closed) throw new IllegalStateException("close() the sink once all writers are done");
+    }
+}
@@ -0,0 +1,127 @@
+package pc001.sink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Streams items to a file, one line per item.
+ *
+ * A writer borrows a buffer from a lock-free pool for each item and returns it
+ * afterwards, so the sink holds one direct buffer per concurrent writer, not
+ * one per thread that ever wrote (which would leak with virtual threads). When
+ * a buffer is full the writer reserves a region of the file with one
+ * {@code getAndAdd} on the end offset and writes the whole buffer there with a
+ * positional {@link FileChannel#write(ByteBuffer, long)}, so writers never wait
+ * on each other. Lines are never split, but they appear in buffer-sized groups
+ * rather than in arrival order, even for a single thread.
+ */
+public class FileSink<T> implements Sink<T> {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final Function<? super T, String> format;
+    private final int bufferSize;
+    private final AtomicLong end = new AtomicLong();
+    private final LongAdder count = new LongAdder();
+    // buffers not currently borrowed by a writer
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicLong allocated = new AtomicLong();
+    private volatile boolean closed;
+
+    /** Truncates or creates {@code file}; each item is written as {@code format(item)} plus a newline. */
+    public FileSink(Path file, Function<? super T, String> format, int bufferSize) throws IOException {
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be positive");
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.format = format;
+        this.bufferSize = bufferSize;
+    }
+
+    public FileSink(Path file) throws IOException {
+        this(file, String::valueOf, DEFAULT_BUFFER_SIZE);
+    }
+
+    private ByteBuffer borrow() {
+        ByteBuffer b = free.poll();
+        if (b != null) return b;
+        allocated.incrementAndGet();
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /** @throws UncheckedIOException if a full buffer cannot be written */
+    @Override
+    public void accept(T item) {
+        if (closed) throw new IllegalStateException("sink is closed");
+        byte[] line = (format.apply(item) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = borrow();
+        try {
+            if (line.length > buf.remaining()) {
+                flush(buf);
+                if (line.length > buf.capacity()) {
+                    write(ByteBuffer.wrap(line));
+                    count.increment();
+                    return;
+                }
+            }
+            buf.put(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            free.add(buf);
+        }
+        count.increment();
+    }
+
+    @Override
+    public long count() {
+        return count.sum();
+    }
+
+    /** Bytes reserved in the file so far; equals the file size after close(). */
+    public long bytesWritten() {
+        return end.get();
+    }
+
+    /** Direct buffers allocated so far: the peak number of concurrent writers. */
+    public long buffersAllocated() {
+        return allocated.get();
+    }
+
+    /**
+     * Write out every buffer, force the data to disk and close the file.
+     * Call it once writers have stopped: an item still being accepted may be lost.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            for (ByteBuffer b : free) flush(b);
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush(ByteBuffer buf) throws IOException {
+        buf.flip();
+        if (buf.hasRemaining()) write(buf);
+        buf.clear();
+    }
+
+    private void write(ByteBuffer src) throws IOException {
+        long pos = end.getAndAdd(src.remaining());
+        while (src.hasRemaining()) {
+            pos += channel.write(src, pos);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package pc001.sink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends to one shared list under its lock. This is what the harness did
+ * before sinks existed; every consumer contends on the same monitor, so it is
+ * kept mainly as a baseline.
+ */
+public class ListSink<T> implements Sink<T> {
+    private final List<T> target;
+    private final LongAdder count = new LongAdder();
+
+    /** Sink appending to {@code target}, which must be safe for concurrent add (e.g. a synchronized list). */
+    public ListSink(List<T> target) {
+        this.target = target;
+    }
+
+    public ListSink() {
+        this(Collections.synchronizedList(new ArrayList<>()));
+    }
+
+    @Override
+    public void accept(T item) {
+        target.add(item);
+        count.increment();
+    }
+
+    @Override
+    public long count() {
+        return count.sum();
+    }
+
+    @Override
+    public void close() {}
+
+    /** The target list. */
+    public List<T> toList() {
+        return target;
+    }
+}
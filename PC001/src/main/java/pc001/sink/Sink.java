@@ -0,0 +1,27 @@
+package pc001.sink;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Destination for the items consumers take from a buffer.
+ *
+ * {@link #accept} may be called from many consumer threads at once. Call
+ * {@link #close()} once every writer has finished (e.g. after joining the
+ * consumer threads); it flushes or merges whatever the writers buffered, and
+ * results are only complete after it returns.
+ */
+public interface Sink<T> extends AutoCloseable {
+
+    void accept(T item);
+
+    default void acceptAll(Collection<? extends T> items) {
+        for (T item : items) accept(item);
+    }
+
+    /** Number of items accepted so far. */
+    long count();
+
+    @Override
+    void close() throws IOException;
+}
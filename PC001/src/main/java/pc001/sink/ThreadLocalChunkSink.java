@@ -0,0 +1,185 @@
+package pc001.sink;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * Each writer thread fills its own fixed-size chunk, so {@link #accept} never
+ * contends with other writers. A full chunk is handed to a shared queue and the
+ * writer starts a new one; {@link #close()} hands over the partly filled
+ * chunks, and {@link #toList()} or {@link #toOrderedList} then read the queue.
+ *
+ * The per-thread state is a small writer object that does not reference the
+ * sink. {@code close()} empties every writer and removes the calling thread's
+ * entry, so a pooled thread that outlives the sink keeps at most an empty
+ * writer reachable until its stale entry is expunged. {@code accept} and
+ * {@code close()} may run concurrently: an item is either in the results or
+ * its {@code accept} throws.
+ */
+public class ThreadLocalChunkSink<T> implements Sink<T> {
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private final int chunkSize;
+    private final ConcurrentLinkedQueue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Writer> writers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Writer> local = ThreadLocal.withInitial(this::register);
+    private volatile boolean closed;
+
+    /** @param chunkSize items per chunk; also the most a writer holds before handing over */
+    public ThreadLocalChunkSink(int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive");
+        this.chunkSize = chunkSize;
+    }
+
+    /** 1024-item chunks. */
+    public ThreadLocalChunkSink() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    // synchronized with close() so a writer is either closed by it or created closed
+    private synchronized Writer register() {
+        Writer w = new Writer(chunkSize);
+        if (closed) w.chunk = null;
+        else writers.add(w);
+        return w;
+    }
+
+    @Override
+    public void accept(T item) {
+        Writer w = local.get();
+        synchronized (w) { // uncontended except against close()
+            Chunk c = w.chunk;
+            if (c == null) throw new IllegalStateException("sink is closed");
+            c.items[c.size++] = item;
+            w.count++;
+            if (c.size == c.items.length) {
+                chunks.add(c);
+                w.chunk = new Chunk(chunkSize);
+            }
+        }
+    }
+
+    /** Approximate while writers are running; exact after close(). */
+    @Override
+    public long count() {
+        long n = 0;
+        for (Writer w : writers) n += w.count;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        for (Writer w : writers) {
+            synchronized (w) {
+                Chunk c = w.chunk;
+                if (c != null && c.size > 0) chunks.add(c);
+                w.chunk = null;
+            }
+        }
+        local.remove();
+    }
+
+    /** All items; each writer's items stay in the order it accepted them. */
+    public List<T> toList() {
+        requireClosed();
+        List<T> out = new ArrayList<>((int) count());
+        for (Chunk c : chunks) out.addAll(c.asList());
+        return out;
+    }
+
+    /**
+     * All items in ascending {@code seq} order, e.g. to restore the order in
+     * which producers numbered them. Each chunk is sorted (a no-op check when
+     * it already is) and the chunks are then k-way merged.
+     */
+    public List<T> toOrderedList(ToLongFunction<? super T> seq) {
+        requireClosed();
+        List<List<T>> runs = new ArrayList<>();
+        for (Chunk c : chunks) {
+            List<T> run = c.asList();
+            if (!isSorted(run, seq)) c.sort(seq);
+            runs.add(run);
+        }
+        return merge(runs, seq);
+    }
+
+    static <T> List<T> merge(List<List<T>> runs, ToLongFunction<? super T> seq) {
+        int total = 0;
+        for (List<T> r : runs) total += r.size();
+        List<T> out = new ArrayList<>(total);
+        // heap entries are {run, position}; ordered by the seq of the item they point at
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, runs.size()),
+                Comparator.comparingLong(e -> seq.applyAsLong(runs.get(e[0]).get(e[1]))));
+        for (int i = 0; i < runs.size(); i++) {
+            if (!runs.get(i).isEmpty()) heap.add(new int[] {i, 0});
+        }
+        while (!heap.isEmpty()) {
+            int[] e = heap.poll();
+            List<T> run = runs.get(e[0]);
+            out.add(run.get(e[1]));
+            if (++e[1] < run.size()) heap.add(e);
+        }
+        return out;
+    }
+
+    private static <T> boolean isSorted(List<T> items, ToLongFunction<? super T> seq) {
+        for (int i = 1; i < items.size(); i++) {
+            if (seq.applyAsLong(items.get(i - 1)) > seq.applyAsLong(items.get(i))) return false;
+        }
+        return true;
+    }
+
+    private void requireClosed() {
+        if (!closed) throw new IllegalStateException("close() the sink once all writers are done");
+    }
+
+    /** A thread's current chunk; guarded by its own monitor. */
+    private static final class Writer {
+        Chunk chunk;
+        volatile long count; // lets count() read progress from other threads
+
+        Writer(int chunkSize) {
+            this.chunk = new Chunk(chunkSize);
+        }
+    }
+
+    private static final class Chunk {
+        final Object[] items;
+        int size;
+
+        Chunk(int capacity) {
+            this.items = new Object[capacity];
+        }
+
+        <T> List<T> asList() {
+            return new AbstractList<T>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public T get(int i) {
+                    if (i >= size) throw new IndexOutOfBoundsException(Integer.toString(i));
+                    return (T) items[i];
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> void sort(ToLongFunction<? super T> seq) {
+            Arrays.sort((T[]) items, 0, size, Comparator.comparingLong(seq));
+        }
+    }
+}
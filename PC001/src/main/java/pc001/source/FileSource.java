@@ -0,0 +1,328 @@
+package pc001.source;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads items from a file, one line per item (the format {@code FileSink}
+ * writes), without loading the file into memory.
+ *
+ * The file is read in large blocks into a fixed set of direct buffers with an
+ * {@link AsynchronousFileChannel}: while the producer decodes one block, the
+ * next {@code readAhead} blocks are already being read, so as long as decoding
+ * is slower than the disk the producer never waits for I/O. Buffers are
+ * reused block after block. Lines are decoded straight from the buffers; only
+ * a line that crosses a block boundary is copied, into a small carry array.
+ *
+ * A source covers a byte range {@code [start, end)} of the file and returns
+ * every line that starts inside it, reading past {@code end} to finish the
+ * last one. A range that starts mid-line skips to the next line, which the
+ * previous range returns, so {@link Builder#split(int)} gives each producer
+ * its own range with every line read exactly once. Empty lines are skipped
+ * and a trailing {@code \r} is dropped.
+ *
+ * A source is not thread-safe; use one per producer.
+ */
+public final class FileSource<T> implements Source<T> {
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    public static final int DEFAULT_READ_AHEAD = 2;
+
+    /** Turns the bytes of one line, {@code block[from, to)} without the line break, into an item. */
+    @FunctionalInterface
+    public interface Decoder<T> {
+        T decode(ByteBuffer block, int from, int to);
+
+        /** Decimal integers, optionally signed. */
+        static Decoder<Integer> integers() {
+            return (block, from, to) -> {
+                int i = from;
+                boolean negative = block.get(i) == '-';
+                if (negative || block.get(i) == '+') i++;
+                if (i == to) throw new NumberFormatException(text(block, from, to));
+                long value = 0;
+                for (; i < to; i++) {
+                    int d = block.get(i) - '0';
+                    if (d < 0 || d > 9) throw new NumberFormatException(text(block, from, to));
+                    value = value * 10 + d;
+                    if (value > Integer.MAX_VALUE + 1L) throw new NumberFormatException(text(block, from, to));
+                }
+                if (negative) value = -value;
+                if (value > Integer.MAX_VALUE) throw new NumberFormatException(text(block, from, to));
+                return (int) value;
+            };
+        }
+
+        /** The line as a UTF-8 string. */
+        static Decoder<String> strings() {
+            return FileSource::text;
+        }
+    }
+
+    private final AsynchronousFileChannel channel;
+    private final Decoder<T> decoder;
+    private final long end;
+    private final long fileSize;
+    private final Deque<ByteBuffer> free = new ArrayDeque<>();
+    private final Deque<Read> inFlight = new ArrayDeque<>();
+
+    private ByteBuffer current;
+    private long currentPosition;
+    private long nextReadPosition;
+    private boolean skipping;
+    private boolean done;
+    private byte[] carry = new byte[256];
+    private int carryLength;
+    private long carryStart;
+    private long bytesRead;
+    private long stallNanos;
+
+    private FileSource(Path file, Decoder<T> decoder, long start, long end, int blockSize, int readAhead)
+            throws IOException {
+        this.channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+        this.decoder = decoder;
+        this.fileSize = channel.size();
+        this.end = Math.min(end, fileSize);
+        // start one byte early: if that byte ends a line, the range starts on a line
+        this.nextReadPosition = start == 0 ? 0 : start - 1;
+        this.skipping = start > 0;
+        for (int i = 0; i <= readAhead; i++) free.add(ByteBuffer.allocateDirect(blockSize));
+        prefetch();
+    }
+
+    public static <T> Builder<T> builder(Path file, Decoder<T> decoder) {
+        return new Builder<>(file, decoder);
+    }
+
+    @Override
+    public T next() throws IOException {
+        while (!done) {
+            if (current == null || !current.hasRemaining()) {
+                if (!advance()) {
+                    done = true;
+                    // last line without a trailing newline
+                    if (carryLength > 0 && carryStart < end) return decodeCarry();
+                    return null;
+                }
+                continue;
+            }
+            int from = current.position();
+            int limit = current.limit();
+            int newline = indexOfNewline(current, from, limit);
+            if (skipping) {
+                current.position(newline < 0 ? limit : newline + 1);
+                skipping = newline < 0;
+                continue;
+            }
+            if (carryLength > 0) {
+                appendCarry(current, from, newline < 0 ? limit : newline);
+                current.position(newline < 0 ? limit : newline + 1);
+                if (newline < 0) continue;
+                if (carryStart >= end) {
+                    done = true;
+                    return null;
+                }
+                T item = decodeCarry();
+                if (item != null) return item;
+                continue;
+            }
+            if (currentPosition + from >= end) {
+                done = true;
+                return null;
+            }
+            if (newline < 0) {
+                carryStart = currentPosition + from;
+                appendCarry(current, from, limit);
+                current.position(limit);
+                continue;
+            }
+            current.position(newline + 1);
+            T item = decode(current, from, newline);
+            if (item != null) return item;
+        }
+        return null;
+    }
+
+    /** Bytes read from the file so far, including read-ahead not yet decoded. */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /** Time next() spent waiting for a block that was not read yet, in nanoseconds. */
+    public long getStallNanos() {
+        return stallNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        done = true;
+        channel.close();
+    }
+
+    // Recycle the finished block and move to the next one; false at end of file.
+    private boolean advance() throws IOException {
+        if (current != null) {
+            free.add(current);
+            current = null;
+        }
+        prefetch();
+        if (inFlight.isEmpty()) {
+            // the last line of the range runs past its end
+            if (nextReadPosition >= fileSize) return false;
+            issue(free.poll());
+        }
+        Read read = inFlight.poll();
+        long waitStart = System.nanoTime();
+        int n = read.await();
+        stallNanos += System.nanoTime() - waitStart;
+        if (n == 0) {
+            free.add(read.buffer);
+            return false;
+        }
+        bytesRead += n;
+        current = read.buffer;
+        currentPosition = read.position;
+        prefetch();
+        return true;
+    }
+
+    // Keep every free buffer busy with a block inside the range.
+    private void prefetch() {
+        while (!free.isEmpty() && nextReadPosition < end) issue(free.poll());
+    }
+
+    private void issue(ByteBuffer buffer) {
+        buffer.clear();
+        inFlight.add(new Read(buffer, nextReadPosition, channel.read(buffer, nextReadPosition)));
+        nextReadPosition += buffer.capacity();
+    }
+
+    private T decode(ByteBuffer block, int from, int to) {
+        if (to > from && block.get(to - 1) == '\r') to--;
+        return to == from ? null : decoder.decode(block, from, to);
+    }
+
+    private T decodeCarry() {
+        int length = carryLength;
+        carryLength = 0;
+        return decode(ByteBuffer.wrap(carry, 0, length), 0, length);
+    }
+
+    private void appendCarry(ByteBuffer block, int from, int to) {
+        int n = to - from;
+        if (carryLength + n > carry.length) carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carryLength + n));
+        ByteBuffer view = block.duplicate();
+        view.position(from);
+        view.get(carry, carryLength, n);
+        carryLength += n;
+    }
+
+    private static int indexOfNewline(ByteBuffer block, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (block.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static String text(ByteBuffer block, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        ByteBuffer view = block.duplicate();
+        view.position(from);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** One block read, started asynchronously at {@code position}. */
+    private final class Read {
+        final ByteBuffer buffer;
+        final long position;
+        final Future<Integer> pending;
+
+        Read(ByteBuffer buffer, long position, Future<Integer> pending) {
+            this.buffer = buffer;
+            this.position = position;
+            this.pending = pending;
+        }
+
+        /** Wait for the block, finish a short read, and flip the buffer; returns the bytes read. */
+        int await() throws IOException {
+            try {
+                int n = pending.get();
+                while (n >= 0 && buffer.hasRemaining() && position + buffer.position() < fileSize) {
+                    n = channel.read(buffer, position + buffer.position()).get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while reading " + position);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            }
+            buffer.flip();
+            return buffer.limit();
+        }
+    }
+
+    public static final class Builder<T> {
+        private final Path file;
+        private final Decoder<T> decoder;
+        private int blockSize = DEFAULT_BLOCK_SIZE;
+        private int readAhead = DEFAULT_READ_AHEAD;
+
+        private Builder(Path file, Decoder<T> decoder) {
+            this.file = file;
+            this.decoder = decoder;
+        }
+
+        /** Bytes per read and per direct buffer (default 1 MiB). */
+        public Builder<T> blockSize(int bytes) {
+            if (bytes <= 0) throw new IllegalArgumentException("block size must be positive");
+            this.blockSize = bytes;
+            return this;
+        }
+
+        /** Blocks read ahead of the one being decoded (default 2); each source holds one more buffer than this. */
+        public Builder<T> readAhead(int blocks) {
+            if (blocks < 1) throw new IllegalArgumentException("read-ahead must be at least 1 block");
+            this.readAhead = blocks;
+            return this;
+        }
+
+        /** Source over the whole file. */
+        public FileSource<T> open() throws IOException {
+            return range(0, Long.MAX_VALUE);
+        }
+
+        /** Source over the lines starting in bytes {@code [start, end)}. */
+        public FileSource<T> range(long start, long end) throws IOException {
+            if (start < 0 || end < start) throw new IllegalArgumentException("invalid range " + start + ".." + end);
+            return new FileSource<>(file, decoder, start, end, blockSize, readAhead);
+        }
+
+        /** {@code parts} sources over byte ranges of nearly equal size; together they return every line once. */
+        public List<Source<T>> split(int parts) throws IOException {
+            if (parts <= 0) throw new IllegalArgumentException("parts must be positive");
+            long size = Files.size(file);
+            List<Source<T>> out = new ArrayList<>(parts);
+            try {
+                for (int i = 0; i < parts; i++) out.add(range(size * i / parts, size * (i + 1) / parts));
+            } catch (IOException e) {
+                for (Source<T> s : out) s.close();
+                throw e;
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package pc001.source;
+
+import java.util.List;
+
+/** Source over an in-memory list (or a range of one, via subList). */
+final class ListSource<T> implements Source<T> {
+    private final List<T> items;
+    private int next;
+
+    ListSource(List<T> items) {
+        this.items = items;
+    }
+
+    @Override
+    public T next() {
+        return next < items.size() ? items.get(next++) : null;
+    }
+
+    @Override
+    public void close() {
+        next = items.size();
+    }
+}
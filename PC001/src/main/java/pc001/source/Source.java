@@ -0,0 +1,45 @@
+package pc001.source;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where a producer gets its items from, one at a time.
+ *
+ * A source is read by a single thread. To feed several producers, split the
+ * input into ranges up front ({@link #split(List, int)},
+ * {@link FileSource.Builder#split(int)}) and give each producer its own
+ * source, so producers never share a cursor.
+ */
+public interface Source<T> extends AutoCloseable {
+
+    /**
+     * Next item, or null once the source is exhausted.
+     * @throws IOException if the underlying input cannot be read
+     */
+    T next() throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    /** Source over {@code items}, in list order. The list must not contain nulls. */
+    static <T> Source<T> of(List<T> items) {
+        return new ListSource<>(items);
+    }
+
+    /**
+     * Split {@code items} into {@code parts} contiguous ranges of nearly equal
+     * size (they differ by at most one item).
+     */
+    static <T> List<Source<T>> split(List<T> items, int parts) {
+        if (parts <= 0) throw new IllegalArgumentException("parts must be positive");
+        List<Source<T>> out = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            int from = (int) ((long) items.size() * i / parts);
+            int to = (int) ((long) items.size() * (i + 1) / parts);
+            out.add(new ListSource<>(items.subList(from, to)));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,16 @@
+package pc001.core;
+
+/**
+ * Starts each worker on its own virtual thread. Built only by the
+ * {@code java21} profile; obtain it through {@link WorkerExecutor#virtual()}.
+ */
+final class VirtualWorkerExecutor implements WorkerExecutor {
+
+    @Override
+    public Thread start(String name, Runnable task) {
+        return Thread.ofVirtual().name(name).start(task);
+    }
+
+    @Override
+    public String name() { return "virtual"; }
+}
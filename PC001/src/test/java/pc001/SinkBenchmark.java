@@ -0,0 +1,72 @@
+package pc001;
+
+import pc001.sink.ChunkedArraySink;
+import pc001.sink.FileSink;
+import pc001.sink.ListSink;
+import pc001.sink.Sink;
+import pc001.sink.ThreadLocalChunkSink;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+/**
+ * Standalone benchmark (not run by surefire): N consumer threads each write
+ * their share of items into one sink. Shows how the shared synchronized list
+ * stops scaling with more consumers while the other sinks keep up.
+ *
+ * {@code java -cp target/test-classes:target/classes pc001.SinkBenchmark [consumers] [itemsPerConsumer]}
+ */
+public class SinkBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int consumers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int perConsumer = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Path file = Files.createTempFile("pc001-sink", ".txt");
+        file.toFile().deleteOnExit();
+
+        System.out.printf("consumers=%d itemsPerConsumer=%d%n", consumers, perConsumer);
+        for (int round = 0; round < 3; round++) {
+            run("ListSink", ListSink::new, consumers, perConsumer);
+            run("ThreadLocalChunkSink", ThreadLocalChunkSink::new, consumers, perConsumer);
+            run("ChunkedArraySink", ChunkedArraySink::new, consumers, perConsumer);
+            run("FileSink", () -> {
+                try {
+                    return new FileSink<>(file);
+                } catch (java.io.IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            }, consumers, perConsumer);
+        }
+    }
+
+    private static void run(String name, Supplier<Sink<Integer>> supplier, int consumers, int perConsumer)
+            throws Exception {
+        Sink<Integer> sink = supplier.get();
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < consumers; c++) {
+            int base = c * perConsumer;
+            Thread t = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perConsumer; i++) sink.accept(base + i);
+            });
+            t.start();
+            threads.add(t);
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread t : threads) t.join();
+        sink.close();
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%-22s %6d ms  %,12.0f items/s%n", name, ms, sink.count() * 1000.0 / Math.max(1, ms));
+    }
+}
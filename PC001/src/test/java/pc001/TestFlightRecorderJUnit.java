@@ -0,0 +1,86 @@
+package pc001;
+
+import pc001.buffer.BufferBlockedEvent;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.memento.SnapshotEvent;
+import pc001.observer.IObserver;
+import pc001.observer.Manager;
+import pc001.observer.ObserverDispatchEvent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TestFlightRecorderJUnit {
+
+    @Test
+    public void testEventsAreRecordedWhenEnabled(@TempDir Path dir) throws Exception {
+        SharedBufferLockCondition<Integer> buffer = new SharedBufferLockCondition<>(1);
+        List<Integer> destination = new ArrayList<>();
+        IObserver observer = (concern, subject) -> { };
+        Manager.getInstance().addObserver("Q", observer);
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(BufferBlockedEvent.class).withThreshold(Duration.ofMillis(20));
+            recording.enable(ObserverDispatchEvent.class);
+            recording.enable(SnapshotEvent.class);
+            recording.start();
+
+            buffer.put(1);
+            CompletableFuture<Void> taker = CompletableFuture.runAsync(() -> {
+                try {
+                    Thread.sleep(100);
+                    destination.add(buffer.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            buffer.put(2); // waits ~100ms, above the threshold
+            taker.get(5, TimeUnit.SECONDS);
+            Manager.getInstance().checkpoint("jfr", buffer, destination);
+
+            recording.stop();
+            Path file = dir.resolve("test.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Manager.getInstance().removeObserver("Q", observer);
+        }
+
+        RecordedEvent blocked = only(events, "pc001.BufferBlocked");
+        assertEquals("put", blocked.getString("operation"));
+        assertEquals("SharedBufferLockCondition", blocked.getString("bufferType"));
+        assertTrue(blocked.getDuration().toMillis() >= 20);
+
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("pc001.ObserverDispatch")
+                && e.getString("concern").equals("Q") && e.getInt("observers") >= 1));
+
+        RecordedEvent snapshot = only(events, "pc001.SnapshotCapture");
+        assertEquals("jfr", snapshot.getString("tag"));
+        assertEquals(1, snapshot.getInt("deltaItems"));
+    }
+
+    @Test
+    public void testEventsAreDisabledByDefault() {
+        assertFalse(new BufferBlockedEvent().isEnabled());
+        assertFalse(new ObserverDispatchEvent().isEnabled());
+        assertFalse(new SnapshotEvent().isEnabled());
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = new ArrayList<>();
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals(name)) matching.add(e);
+        }
+        assertEquals(1, matching.size(), name + " events: " + matching);
+        return matching.get(0);
+    }
+}
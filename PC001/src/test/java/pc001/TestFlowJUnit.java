@@ -0,0 +1,177 @@
+package pc001;
+
+import pc001.buffer.BufferClosedException;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.buffer.SharedBufferTwoLock;
+import pc001.flow.BufferPublisher;
+import pc001.flow.BufferSubscriber;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestFlowJUnit {
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Records signals; requests only what the test asks for. */
+    static final class Recorder<T> implements Flow.Subscriber<T> {
+        final List<T> items = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        volatile Flow.Subscription subscription;
+
+        @Override public void onSubscribe(Flow.Subscription s) { subscription = s; subscribed.countDown(); }
+        @Override public void onNext(T item) { items.add(item); }
+        @Override public void onError(Throwable t) { done.completeExceptionally(t); }
+        @Override public void onComplete() { done.complete(null); }
+    }
+
+    @Test
+    public void testPublisherHonoursDemand() throws Exception {
+        SharedBufferLockCondition<Integer> buffer = new SharedBufferLockCondition<>(16);
+        for (int i = 0; i < 10; i++) buffer.put(i);
+        BufferPublisher<Integer> publisher = new BufferPublisher<>(buffer, executor, 4);
+        Recorder<Integer> r = new Recorder<>();
+        publisher.subscribe(r);
+        assertTrue(r.subscribed.await(5, TimeUnit.SECONDS));
+
+        r.subscription.request(3);
+        awaitSize(r.items, 3);
+        Thread.sleep(50);
+        assertEquals(Arrays.asList(0, 1, 2), r.items, "no more than requested");
+        assertEquals(7, buffer.size());
+
+        r.subscription.request(100);
+        awaitSize(r.items, 10);
+        assertFalse(r.done.isDone(), "open buffer: not complete yet");
+        buffer.put(10);
+        awaitSize(r.items, 11);
+        buffer.close();
+        r.done.get(5, TimeUnit.SECONDS);
+        assertEquals(11, publisher.getDeliveredCount());
+    }
+
+    @Test
+    public void testInvalidRequestFails() throws Exception {
+        BufferPublisher<Integer> publisher = new BufferPublisher<>(new SharedBufferTwoLock<>(4), executor);
+        Recorder<Integer> r = new Recorder<>();
+        publisher.subscribe(r);
+        assertTrue(r.subscribed.await(5, TimeUnit.SECONDS));
+        r.subscription.request(0);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> r.done.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testSubscriberBackpressureThroughFullBuffer() throws Exception {
+        SharedBufferTwoLock<Integer> buffer = new SharedBufferTwoLock<>(8);
+        BufferSubscriber<Integer> sink = new BufferSubscriber<>(buffer, executor, 4, true);
+        AtomicLong requested = new AtomicLong();
+        SubmissionPublisher<Integer> upstream = new SubmissionPublisher<>(executor, 16);
+        upstream.subscribe(new Flow.Subscriber<Integer>() {
+            @Override public void onSubscribe(Flow.Subscription s) {
+                sink.onSubscribe(new Flow.Subscription() {
+                    @Override public void request(long n) { requested.addAndGet(n); s.request(n); }
+                    @Override public void cancel() { s.cancel(); }
+                });
+            }
+            @Override public void onNext(Integer item) { sink.onNext(item); }
+            @Override public void onError(Throwable t) { sink.onError(t); }
+            @Override public void onComplete() { sink.onComplete(); }
+        });
+        Thread feeder = new Thread(() -> {
+            for (int i = 0; i < 100; i++) upstream.submit(i);
+            upstream.close();
+        });
+        feeder.start();
+        // nobody takes: the buffer fills, and demand stops at what fits plus one batch
+        awaitTrue(() -> buffer.size() == 8);
+        Thread.sleep(50);
+        assertTrue(requested.get() <= 8 + 4, "requested " + requested.get());
+
+        List<Integer> taken = new ArrayList<>();
+        while (taken.size() < 30) taken.add(buffer.take());
+        assertEquals(30, taken.get(29) + 1);
+        // upstream closes after 100 items: the rest still arrives, then the buffer closes
+        List<Integer> rest = new ArrayList<>();
+        while (true) {
+            try {
+                rest.add(buffer.take());
+            } catch (BufferClosedException e) {
+                break;
+            }
+        }
+        assertEquals(70, rest.size());
+        sink.completion().get(5, TimeUnit.SECONDS);
+        assertEquals(100, sink.getAcceptedCount());
+        feeder.join();
+    }
+
+    @Test
+    public void testFewThreadsServeManyProducersAndConsumers() throws Exception {
+        int producers = 50, consumers = 20, perProducer = 500;
+        SharedBufferTwoLock<Integer> buffer = new SharedBufferTwoLock<>(32);
+        List<SubmissionPublisher<Integer>> upstreams = new ArrayList<>();
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            SubmissionPublisher<Integer> up = new SubmissionPublisher<>(executor, 16);
+            BufferSubscriber<Integer> s = new BufferSubscriber<>(buffer, executor, 8, false);
+            up.subscribe(s);
+            upstreams.add(up);
+            written.add(s.completion());
+        }
+
+        BufferPublisher<Integer> publisher = new BufferPublisher<>(buffer, executor, 8);
+        AtomicLong sum = new AtomicLong();
+        List<CompletableFuture<Void>> read = new ArrayList<>();
+        for (int c = 0; c < consumers; c++) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            publisher.subscribe(new Flow.Subscriber<Integer>() {
+                Flow.Subscription s;
+                int left;
+                @Override public void onSubscribe(Flow.Subscription s) { this.s = s; left = 4; s.request(4); }
+                @Override public void onNext(Integer item) {
+                    sum.addAndGet(item);
+                    if (--left == 0) { left = 4; s.request(4); }
+                }
+                @Override public void onError(Throwable t) { done.completeExceptionally(t); }
+                @Override public void onComplete() { done.complete(null); }
+            });
+            read.add(done);
+        }
+
+        // producers on the test thread; offer drops nothing because the timeout retries
+        for (int i = 0; i < perProducer; i++) {
+            for (SubmissionPublisher<Integer> up : upstreams) {
+                while (up.offer(i, 10, TimeUnit.MILLISECONDS, null) < 0) { }
+            }
+        }
+        upstreams.forEach(SubmissionPublisher::close);
+        CompletableFuture.allOf(written.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        buffer.close();
+        CompletableFuture.allOf(read.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        assertEquals((long) producers * perProducer * (perProducer - 1) / 2, sum.get());
+        assertEquals((long) producers * perProducer, publisher.getDeliveredCount());
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        awaitTrue(() -> list.size() >= size);
+    }
+
+    private static void awaitTrue(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("timed out");
+            Thread.sleep(1);
+        }
+    }
+}
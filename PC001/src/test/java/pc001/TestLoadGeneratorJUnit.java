@@ -0,0 +1,41 @@
+package pc001;
+
+import pc001.buffer.SharedBufferTwoLock;
+import pc001.core.LoadGenerator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+public class TestLoadGeneratorJUnit {
+
+    @Test
+    public void testItemCountRunDeliversEverything() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        LoadGenerator.Summary summary = LoadGenerator.builder(SharedBufferTwoLock::new, 16)
+                .items(10_001).producers(3).consumers(2).payloadBytes(128)
+                .reportEvery(50, TimeUnit.MILLISECONDS).output(new PrintStream(log, true))
+                .build().run();
+        assertEquals(10_001, summary.getItems());
+        assertEquals(0, summary.getLeftover());
+        assertTrue(summary.getThroughput() > 0);
+        assertTrue(summary.getLatencyPercentileNanos(0.5) <= summary.getLatencyPercentileNanos(0.99));
+        assertTrue(log.toString().contains("summary: items=10,001"), log.toString());
+    }
+
+    @Test
+    public void testRateLimitedDurationRun() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        LoadGenerator.Summary summary = LoadGenerator.builder(SharedBufferTwoLock::new, 64)
+                .duration(1, TimeUnit.SECONDS).rate(500).openLoop(true).producers(2)
+                .reportEvery(200, TimeUnit.MILLISECONDS).output(new PrintStream(log, true))
+                .build().run();
+        // about 500 items in one second; allow for a slow start on a busy machine
+        assertTrue(summary.getItems() > 300 && summary.getItems() <= 502, "items " + summary.getItems());
+        assertTrue(log.toString().contains("items/s total="), log.toString());
+        assertThrows(IllegalStateException.class, () -> LoadGenerator.builder(SharedBufferTwoLock::new, 1).build());
+    }
+}
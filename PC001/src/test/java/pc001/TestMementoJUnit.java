@@ -0,0 +1,193 @@
+package pc001;
+
+import pc001.buffer.BufferPosition;
+import pc001.buffer.SharedBuffer;
+import pc001.buffer.SharedBufferInterface;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.buffer.SharedBufferTwoLock;
+import pc001.buffer.StripedSharedBuffer;
+import pc001.memento.Caretaker;
+import pc001.memento.Snapshot;
+import pc001.observer.Manager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+
+public class TestMementoJUnit {
+
+    @Test
+    public void testPositionReportsCountersAndRingIndices() throws Exception {
+        // wraps around: head and tail both end up at index 1
+        SharedBufferLockCondition<Integer> small = new SharedBufferLockCondition<>(4);
+        for (int i = 0; i < 3; i++) small.put(i);
+        small.take();
+        small.put(3);
+        small.put(4);
+        BufferPosition p = small.position();
+        assertEquals(5, p.getProduced());
+        assertEquals(1, p.getConsumed());
+        assertEquals(4, p.getSize());
+        assertEquals(1, p.getHead());
+        assertEquals(1, p.getTail());
+
+        SharedBufferTwoLock<Integer> twoLock = new SharedBufferTwoLock<>(4);
+        for (int i = 0; i < 3; i++) twoLock.put(i);
+        twoLock.take();
+        twoLock.put(3);
+        twoLock.put(4);
+        BufferPosition q = twoLock.position();
+        assertEquals(4, q.getSize());
+        assertEquals(1, q.getHead());
+        assertEquals(1, q.getTail());
+
+        SharedBuffer<Integer> queue = new SharedBuffer<>(4);
+        queue.put(1);
+        BufferPosition r = queue.position();
+        assertEquals(1, r.getSize());
+        assertEquals(BufferPosition.NO_INDEX, r.getHead());
+    }
+
+    @Test
+    public void testPositionNeverShowsMoreConsumedThanProduced() throws Exception {
+        List<SharedBufferInterface<Integer>> buffers = Arrays.asList(
+                new SharedBuffer<>(2), new SharedBufferTwoLock<>(2), new StripedSharedBuffer<>(2, i -> new SharedBuffer<>(2)));
+        for (SharedBufferInterface<Integer> buffer : buffers) {
+            int items = 20_000;
+            Thread producer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < items; i++) buffer.put(i);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Thread consumer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < items; i++) buffer.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producer.start();
+            consumer.start();
+            while (consumer.isAlive()) {
+                BufferPosition p = buffer.position();
+                assertTrue(p.getConsumed() <= p.getProduced(), buffer.getClass().getSimpleName() + " " + p);
+                assertTrue(p.getSize() >= 0, buffer.getClass().getSimpleName() + " " + p);
+            }
+            producer.join();
+            assertEquals(items, buffer.position().getConsumed());
+        }
+    }
+
+    @Test
+    public void testSnapshotsStoreCopiesAndIncrementalDeltas() throws Exception {
+        SharedBufferLockCondition<Integer> buffer = new SharedBufferLockCondition<>(8);
+        List<Integer> destination = Collections.synchronizedList(new ArrayList<>());
+        Caretaker caretaker = new Caretaker();
+
+        Snapshot first = caretaker.record("start", buffer.position(), destination, Collections.emptyList());
+        for (int i = 0; i < 5; i++) {
+            buffer.put(i);
+            destination.add(buffer.take());
+        }
+        buffer.put(99);
+        Snapshot second = caretaker.record("mid", buffer.position(), destination, buffer.snapshotContents());
+        destination.add(buffer.take());
+        Snapshot third = caretaker.record("end", buffer.position(), destination, Collections.emptyList());
+
+        assertTrue(first.isBase());
+        assertEquals(Collections.emptyList(), first.getDestinationDelta());
+        assertFalse(second.isBase());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), second.getDestinationDelta());
+        assertEquals(6, second.getProducedDelta());
+        assertEquals(5, second.getConsumedDelta());
+        assertEquals(Collections.singletonList(99), second.getBufferContents());
+        assertEquals(Collections.singletonList(99), third.getDestinationDelta());
+        assertEquals(0, third.getProducedDelta());
+
+        // later changes to the live list do not leak into the snapshots
+        destination.clear();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), caretaker.destinationAt(second));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 99), caretaker.destinationAt(third));
+
+        // shorter than last time: copied whole
+        destination.add(7);
+        assertTrue(caretaker.record("reset", buffer.position(), destination, Collections.emptyList()).isBase());
+    }
+
+    @Test
+    public void testRetentionArchivesEvictedSnapshots(@TempDir Path dir) throws Exception {
+        SharedBufferLockCondition<Integer> buffer = new SharedBufferLockCondition<>(4);
+        List<Integer> destination = new ArrayList<>();
+        Caretaker caretaker = new Caretaker(3, dir);
+        Snapshot last = null;
+        for (int i = 0; i < 10; i++) {
+            destination.add(i);
+            last = caretaker.record("t" + i, buffer.position(), destination, Collections.emptyList());
+        }
+        // a base every 2 records; eviction took 7 and 8 together, leaving 9 (base) and 10
+        assertEquals(2, caretaker.getSnapshots().size());
+        assertEquals(9, caretaker.getSnapshots().get(0).getSequence());
+        assertTrue(caretaker.getSnapshots().get(0).isBase());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), caretaker.destinationAt(last));
+
+        caretaker.archiveAll();
+        List<Snapshot> archived = Caretaker.readArchive(dir);
+        assertEquals(10, archived.size());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), Caretaker.destinationAt(archived, last));
+
+        Caretaker dropping = new Caretaker(2, null);
+        for (int i = 0; i < 5; i++) dropping.record("t", buffer.position(), null, Collections.emptyList());
+        assertEquals(3, dropping.getDroppedCount());
+    }
+
+    @Test
+    public void testEveryRetainedSnapshotKeepsItsBase() {
+        SharedBufferLockCondition<Integer> buffer = new SharedBufferLockCondition<>(4);
+        List<Integer> destination = new ArrayList<>();
+        Caretaker caretaker = new Caretaker();
+        for (int i = 0; i < 3 * Caretaker.DEFAULT_RETENTION + 5; i++) {
+            destination.add(i);
+            caretaker.record("t" + i, buffer.position(), destination, Collections.emptyList());
+        }
+        List<Snapshot> retained = caretaker.getSnapshots();
+        assertTrue(retained.size() >= Caretaker.DEFAULT_RETENTION / 2, "retained " + retained.size());
+        assertTrue(retained.size() <= Caretaker.DEFAULT_RETENTION, "retained " + retained.size());
+        for (Snapshot s : retained) {
+            List<Object> rebuilt = caretaker.destinationAt(s);
+            assertEquals(s.getDestinationCount(), rebuilt.size());
+            assertEquals(destination.subList(0, s.getDestinationCount()), rebuilt);
+        }
+        assertEquals(destination, caretaker.destinationAt(retained.get(retained.size() - 1)));
+    }
+
+    @Test
+    public void testDifferentListIsRecordedAsBase() {
+        SharedBufferLockCondition<Integer> buffer = new SharedBufferLockCondition<>(4);
+        Caretaker caretaker = new Caretaker();
+        caretaker.record("a", buffer.position(), new ArrayList<>(Arrays.asList(1)), Collections.emptyList());
+        // longer and equal-prefixed, but another list: not a delta of the first
+        Snapshot other = caretaker.record("b", buffer.position(), new ArrayList<>(Arrays.asList(5, 6)),
+                Collections.emptyList());
+        assertTrue(other.isBase());
+        assertEquals(Arrays.asList(5, 6), caretaker.destinationAt(other));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedSaveSnapshotStoresWholeDestination() {
+        Manager manager = Manager.getInstance();
+        manager.configureSnapshots(4, null);
+        List<Integer> destination = new ArrayList<>(Arrays.asList(1, 2));
+        manager.saveSnapshot("one", Collections.singletonList(3), destination);
+        destination.add(4);
+        Snapshot second = manager.saveSnapshot("two", Collections.emptyList(), destination);
+        assertEquals(Arrays.asList(1, 2, 4), second.getDestinationSnapshot());
+        assertTrue(manager.getCaretaker().getSnapshots().get(0).getBufferContents().contains(3));
+        manager.configureSnapshots(Caretaker.DEFAULT_RETENTION, null);
+    }
+}
@@ -0,0 +1,128 @@
+package pc001;
+
+import pc001.buffer.SharedBuffer;
+import pc001.buffer.SharedBufferInterface;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.buffer.SharedBufferTwoLock;
+import pc001.buffer.SharedBufferWaitNotify;
+import pc001.observer.Manager;
+import pc001.observer.Monitoring;
+import pc001.pipeline.Pipeline;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+public class TestMonitoringJUnit {
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @Test
+    public void testBufferBeanReadsCountersAndBlockedTime() throws Exception {
+        List<SharedBufferInterface<Integer>> buffers = Arrays.asList(new SharedBuffer<>(1),
+                new SharedBufferWaitNotify<>(1), new SharedBufferLockCondition<>(1), new SharedBufferTwoLock<>(1));
+        for (SharedBufferInterface<Integer> buffer : buffers) {
+            ObjectName name = Monitoring.registerBuffer("test", buffer);
+            buffer.put(1);
+            // the second put has to wait ~100ms for the taker
+            CompletableFuture<Void> taker = CompletableFuture.runAsync(() -> {
+                try {
+                    Thread.sleep(100);
+                    buffer.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            buffer.put(2);
+            taker.get(2, TimeUnit.SECONDS);
+
+            String type = buffer.getClass().getSimpleName();
+            assertEquals(type, server.getAttribute(name, "Type"));
+            assertEquals(1, server.getAttribute(name, "Size"), type);
+            assertEquals(1, server.getAttribute(name, "Capacity"), type);
+            assertEquals(2L, server.getAttribute(name, "ProducedCount"), type);
+            assertEquals(1L, server.getAttribute(name, "ConsumedCount"), type);
+            long blocked = (Long) server.getAttribute(name, "PutBlockedMillis");
+            assertTrue(blocked >= 50, type + " put blocked " + blocked + "ms");
+            assertTrue((Double) server.getAttribute(name, "ProduceRate") > 0, type);
+            assertEquals(false, server.getAttribute(name, "Closed"));
+            Monitoring.unregister(name);
+            assertFalse(server.isRegistered(name));
+        }
+    }
+
+    @Test
+    public void testManagerBeanAndBoundedEventLog() throws Exception {
+        Manager manager = Manager.getInstance();
+        int before = manager.getEventLogCapacity();
+        pc001.observer.IObserver observer = (concern, subject) -> { };
+        try {
+            ObjectName name = Monitoring.registerManager();
+            server.setAttribute(name, new javax.management.Attribute("EventLogCapacity", 10));
+            long published = manager.getPublishedCount();
+            long dropped = manager.getDroppedCount();
+            SharedBufferLockCondition<Integer> buffer = new SharedBufferLockCondition<>(100);
+            for (int i = 0; i < 50; i++) buffer.put(i);
+
+            assertEquals(10, manager.getEventLogSize());
+            assertEquals(10, manager.getEventLog().size());
+            assertTrue((Long) server.getAttribute(name, "PublishedCount") >= published + 50);
+            assertTrue((Long) server.getAttribute(name, "DroppedCount") >= dropped + 40);
+
+            manager.addObserver("Q", observer);
+            buffer.take();
+            assertTrue((Long) server.getAttribute(name, "DispatchCount") > 0);
+            assertTrue((Double) server.getAttribute(name, "MeanDispatchMicros") >= 0);
+        } finally {
+            manager.removeObserver("Q", observer);
+            manager.setEventLogCapacity(before);
+        }
+    }
+
+    @Test
+    public void testNotifyChangeTakesNoManagerLock() throws Exception {
+        Manager manager = Manager.getInstance();
+        SharedBufferLockCondition<Integer> buffer = new SharedBufferLockCondition<>(100);
+        long published = manager.getPublishedCount();
+        CompletableFuture<Void> puts;
+        // a thread holding the manager's monitor used to stall every put and take
+        synchronized (manager) {
+            puts = CompletableFuture.runAsync(() -> {
+                try {
+                    for (int i = 0; i < 50; i++) buffer.put(i);
+                } catch (InterruptedException e) {
+                    throw new CompletionException(e);
+                }
+            });
+            puts.get(2, TimeUnit.SECONDS);
+        }
+        assertTrue(manager.getPublishedCount() >= published + 50);
+        assertTrue(manager.getEventLog().get(manager.getEventLogSize() - 1).endsWith(" Q SharedBufferLockCondition"));
+    }
+
+    @Test
+    public void testPipelineBeanListsStages() throws Exception {
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .map("double", 2, x -> x * 2)
+                .sink("collect", 1, 8, results::addAll)
+                .start();
+        ObjectName name = Monitoring.registerPipeline("test", pipeline);
+        for (int i = 0; i < 100; i++) pipeline.put(i);
+        pipeline.finish();
+        pipeline.await();
+
+        CompositeData[] stages = (CompositeData[]) server.getAttribute(name, "Stages");
+        assertEquals(2, stages.length);
+        assertEquals("double", stages[0].get("name"));
+        assertEquals(100L, stages[1].get("itemsIn"));
+        assertEquals(true, server.getAttribute(name, "Done"));
+        assertNotNull(server.getAttribute(name, "Bottleneck"));
+        Monitoring.unregister(name);
+    }
+}
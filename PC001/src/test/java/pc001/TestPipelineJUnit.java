@@ -0,0 +1,141 @@
+package pc001;
+
+import pc001.buffer.SharedBuffer;
+import pc001.buffer.SharedBufferInterface;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.buffer.SharedBufferTwoLock;
+import pc001.buffer.SharedBufferWaitNotify;
+import pc001.buffer.StripedSharedBuffer;
+import pc001.pipeline.Pipeline;
+import pc001.pipeline.StageMetrics;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class TestPipelineJUnit {
+
+    private static void runThreeStages(IntFunction<? extends SharedBufferInterface<?>> buffers, int capacity)
+            throws Exception {
+        int n = 2000;
+        Collection<Integer> results = new ConcurrentLinkedQueue<>();
+        Pipeline<String> pipeline = Pipeline.<String>builder()
+                .buffers(buffers, capacity)
+                .map("parse", 2, Integer::parseInt)
+                .<Integer>stage("odd-squares", 3, 8, (batch, out) -> {
+                    for (int x : batch) if (x % 2 == 1) out.emit(x * x);
+                })
+                .sink("collect", 2, 16, results::addAll)
+                .start();
+
+        for (int i = 1; i <= n; i++) pipeline.put(Integer.toString(i));
+        pipeline.finish();
+        assertTrue(pipeline.await(10, TimeUnit.SECONDS), "pipeline should finish");
+        assertTrue(pipeline.isDone());
+
+        Set<Integer> expected = IntStream.rangeClosed(1, n).filter(x -> x % 2 == 1).map(x -> x * x)
+                .boxed().collect(Collectors.toSet());
+        assertEquals(expected.size(), results.size(), "no duplicates or losses");
+        assertEquals(expected, new HashSet<>(results));
+
+        List<StageMetrics> metrics = pipeline.metrics();
+        assertEquals(3, metrics.size());
+        assertEquals(n, metrics.get(0).getItemsIn());
+        assertEquals(n, metrics.get(0).getItemsOut());
+        assertEquals(n, metrics.get(1).getItemsIn());
+        assertEquals(n / 2, metrics.get(1).getItemsOut());
+        assertEquals(n / 2, metrics.get(2).getItemsIn());
+        for (StageMetrics m : metrics) assertEquals(0, m.getQueueDepth());
+        assertNotNull(pipeline.bottleneck());
+    }
+
+    @Test
+    public void testPipelineOverEveryBuffer() throws Exception {
+        runThreeStages(SharedBuffer::new, 16);
+        runThreeStages(SharedBufferWaitNotify::new, 16);
+        runThreeStages(SharedBufferLockCondition::new, 1);
+        runThreeStages(SharedBufferTwoLock::new, 4);
+        // FIFO per lane only, so the end marker can overtake items
+        runThreeStages(c -> new StripedSharedBuffer<>(3, c), 2);
+    }
+
+    @Test
+    public void testBackpressureBoundsQueues() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .buffers(SharedBufferLockCondition::new, 2)
+                .map("pass", 1, x -> x)
+                .sink("slow", 1, 1, batch -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    results.addAll(batch);
+                })
+                .start();
+
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 100; i++) pipeline.put(i);
+                pipeline.finish();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        Thread.sleep(200);
+        // 2 per buffer, one in each worker's hands
+        assertTrue(producer.isAlive(), "producer should be blocked by the stalled sink");
+        for (StageMetrics m : pipeline.metrics()) assertTrue(m.getQueueDepth() <= 2, m.toString());
+
+        release.countDown();
+        producer.join(5000);
+        pipeline.await();
+        assertEquals(100, results.size());
+    }
+
+    @Test
+    public void testStageFailureIsReported() throws Exception {
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .map("check", 2, x -> {
+                    if (x == 13) throw new IllegalArgumentException("unlucky");
+                    return x;
+                })
+                .sink("drop", 1, 4, batch -> { })
+                .start();
+        for (int i = 0; i < 50; i++) pipeline.put(i);
+        pipeline.finish();
+
+        ExecutionException e = assertThrows(ExecutionException.class, pipeline::await);
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        assertEquals(1, pipeline.metrics().get(0).getFailures());
+        assertThrows(IllegalStateException.class, () -> pipeline.put(99));
+    }
+
+    @Test
+    public void testWorkerKilledByErrorStillClosesNextStage() throws Exception {
+        Collection<Integer> results = new ConcurrentLinkedQueue<>();
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .map("check", 1, x -> {
+                    if (x == 13) throw new AssertionError("broken invariant");
+                    return x;
+                })
+                .sink("collect", 1, 4, results::addAll)
+                .start();
+        for (int i = 0; i < 13; i++) pipeline.put(i);
+        pipeline.put(13);
+        pipeline.finish();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> pipeline.await(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof AssertionError);
+        assertEquals(13, results.size());
+        assertEquals(1, pipeline.metrics().get(0).getFailures());
+    }
+}
@@ -1,12 +1,29 @@
 package pc001;
 
+import pc001.buffer.BufferClosedException;
+import pc001.buffer.DrainStats;
+import pc001.buffer.ElasticSharedBuffer;
+import pc001.buffer.PersistentSharedBuffer;
+import pc001.buffer.PrioritySharedBuffer;
+import pc001.buffer.Serializer;
 import pc001.buffer.SharedBuffer;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.buffer.SharedBufferTwoLock;
+import pc001.buffer.StripedSharedBuffer;
 import pc001.buffer.SharedBufferWaitNotify;
 import pc001.buffer.SharedBufferInterface;
+import pc001.buffer.WaitStrategy;
+import pc001.core.WorkerExecutor;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
@@ -18,6 +35,23 @@ import java.util.stream.IntStream;
  */
 public class TestSharedBufferJUnit {
     private static final int SENTINEL = -1;
+    // buffers opened by persistent(), closed and deleted after each test
+    private static final List<Path> persistentDirs = new ArrayList<>();
+    private static final List<PersistentSharedBuffer<?>> persistentBuffers = new ArrayList<>();
+
+    @AfterEach
+    public void closePersistentBuffers() throws IOException {
+        synchronized (persistentBuffers) {
+            persistentBuffers.forEach(PersistentSharedBuffer::close);
+            persistentBuffers.clear();
+            for (Path dir : persistentDirs) {
+                try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+                    for (Path f : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) Files.delete(f);
+                }
+            }
+            persistentDirs.clear();
+        }
+    }
 
     static class Producer implements Runnable {
         private final SharedBufferInterface<Integer> buffer;
@@ -55,16 +89,35 @@ public class TestSharedBufferJUnit {
                     if (v != null && v.equals(SENTINEL)) break;
                     consumed.add(v);
                 }
+            } catch (BufferClosedException e) {
+                // closed and drained
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
     }
 
+    /** Stops the consumers with one sentinel each, as the original harness did. */
     private static void runAndAssertCommon(Supplier<SharedBufferInterface<Integer>> supplier,
                                            int numProducers,
                                            int numConsumers,
                                            int maxValue) throws InterruptedException {
+        runAndAssert(supplier, numProducers, numConsumers, maxValue, false);
+    }
+
+    /** Stops the consumers with close(); the only way for buffers that are not FIFO across lanes. */
+    private static void runAndAssertClosing(Supplier<SharedBufferInterface<Integer>> supplier,
+                                            int numProducers,
+                                            int numConsumers,
+                                            int maxValue) throws InterruptedException {
+        runAndAssert(supplier, numProducers, numConsumers, maxValue, true);
+    }
+
+    private static void runAndAssert(Supplier<SharedBufferInterface<Integer>> supplier,
+                                     int numProducers,
+                                     int numConsumers,
+                                     int maxValue,
+                                     boolean close) throws InterruptedException {
         SharedBufferInterface<Integer> buffer = supplier.get();
 
         Collection<Integer> consumed = new ConcurrentLinkedQueue<>();
@@ -88,7 +141,11 @@ public class TestSharedBufferJUnit {
 
         for (Thread p : producers) p.join();
 
-        for (int i = 0; i < numConsumers; i++) buffer.put(SENTINEL);
+        if (close) {
+            buffer.close();
+        } else {
+            for (int i = 0; i < numConsumers; i++) buffer.put(SENTINEL);
+        }
 
         for (Thread c : consumers) c.join();
 
@@ -105,6 +162,549 @@ public class TestSharedBufferJUnit {
 
         runAndAssertCommon(() -> new SharedBuffer<>(16), p, c, maxValue);
         runAndAssertCommon(() -> new SharedBufferWaitNotify<>(16), p, c, maxValue);
+        runAndAssertCommon(() -> new SharedBufferLockCondition<>(16), p, c, maxValue);
+        runAndAssertCommon(() -> new SharedBufferLockCondition<>(1), 4, 3, maxValue);
+        runAndAssertCommon(() -> new SharedBufferTwoLock<>(16), p, c, maxValue);
+        runAndAssertCommon(() -> new SharedBufferTwoLock<>(1), 4, 3, maxValue);
+        runAndAssertCommon(() -> new ElasticSharedBuffer<>(1, 64, 8), 4, 3, maxValue);
+        runAndAssertCommon(() -> new PrioritySharedBuffer<>(4, 3), p, c, maxValue);
+        runAndAssertCommon(() -> persistent(16, 256), p, c, maxValue);
+    }
+
+    @Test
+    public void testCloseEndsConsumersOfEveryImplementation() throws Exception {
+        int maxValue = 50;
+        int p = 2, c = 2;
+
+        runAndAssertClosing(() -> new SharedBuffer<>(16), p, c, maxValue);
+        runAndAssertClosing(() -> new SharedBuffer<>(1), 4, 3, maxValue);
+        runAndAssertClosing(() -> new SharedBufferWaitNotify<>(16), p, c, maxValue);
+        runAndAssertClosing(() -> new SharedBufferLockCondition<>(1), 4, 3, maxValue);
+        runAndAssertClosing(() -> new SharedBufferTwoLock<>(1), 4, 3, maxValue);
+        // a sentinel could overtake items in another lane, so striped buffers are only closed
+        runAndAssertClosing(() -> new StripedSharedBuffer<>(4, 4), 4, 4, maxValue);
+        runAndAssertClosing(() -> new StripedSharedBuffer<>(2, 1), 4, 3, maxValue);
+        runAndAssertClosing(() -> new ElasticSharedBuffer<>(1, 64, 8), 4, 3, maxValue);
+        runAndAssertClosing(() -> new PrioritySharedBuffer<>(4, 3), p, c, maxValue);
+        runAndAssertClosing(() -> persistent(16, 256), p, c, maxValue);
+    }
+
+    @Test
+    public void testCoreConsumerStopsAtSentinelOrClose() throws Exception {
+        SharedBufferInterface<Integer> buffer = new SharedBufferLockCondition<>(4);
+        List<Integer> bySentinel = Collections.synchronizedList(new ArrayList<>());
+        Thread sentinelConsumer = new Thread(new pc001.core.Consumer(buffer, bySentinel, SENTINEL));
+        sentinelConsumer.start();
+        for (int i = 1; i <= 10; i++) buffer.put(i);
+        buffer.put(SENTINEL);
+        sentinelConsumer.join(2000);
+        assertFalse(sentinelConsumer.isAlive());
+        assertEquals(IntStream.rangeClosed(1, 10).boxed().collect(Collectors.toList()), bySentinel);
+        assertFalse(buffer.isClosed(), "a sentinel leaves the buffer open");
+
+        List<Integer> byClose = Collections.synchronizedList(new ArrayList<>());
+        Thread closeConsumer = new Thread(new pc001.core.Consumer(buffer, new pc001.sink.ListSink<>(byClose)));
+        closeConsumer.start();
+        buffer.put(SENTINEL); // an ordinary value without a sentinel
+        buffer.close();
+        closeConsumer.join(2000);
+        assertFalse(closeConsumer.isAlive());
+        assertEquals(Collections.singletonList(SENTINEL), byClose);
+    }
+
+    @Test
+    public void testWaitStrategies() throws Exception {
+        for (WaitStrategy wait : Arrays.asList(WaitStrategy.busySpin(), WaitStrategy.yielding(),
+                WaitStrategy.spinThenPark(), WaitStrategy.spinThenPark(0, 0, 100_000))) {
+            runAndAssertCommon(() -> new SharedBuffer<>(2, wait), 3, 2, 200);
+            runAndAssertCommon(() -> new SharedBufferWaitNotify<>(2, wait), 3, 2, 200);
+            runAndAssertCommon(() -> new SharedBufferLockCondition<>(2, wait), 3, 2, 200);
+            runAndAssertCommon(() -> new SharedBufferTwoLock<>(1, wait), 3, 2, 200);
+
+            // a spinning taker still sees close(), and a spinning put can be interrupted
+            SharedBufferInterface<Integer> buffer = new SharedBufferLockCondition<>(1, wait);
+            CompletableFuture<Object> taker = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return buffer.take();
+                } catch (Exception e) {
+                    return e;
+                }
+            });
+            Thread.sleep(50);
+            buffer.close();
+            assertTrue(taker.get(2, TimeUnit.SECONDS) instanceof BufferClosedException, wait.name());
+
+            SharedBufferInterface<Integer> full = new SharedBufferTwoLock<>(1, wait);
+            full.put(0);
+            Thread producer = new Thread(() -> {
+                try {
+                    full.put(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producer.start();
+            Thread.sleep(50);
+            producer.interrupt();
+            producer.join(2000);
+            assertFalse(producer.isAlive(), wait.name());
+        }
+        assertEquals("park", WaitStrategy.forName("park").name());
+        assertThrows(IllegalArgumentException.class, () -> WaitStrategy.forName("sleep"));
+    }
+
+    @Test
+    public void testRetryingStrategiesReportBlockedTime() throws Exception {
+        // well under the sleeps below, which also cover starting the waiting thread
+        long minNanos = TimeUnit.MILLISECONDS.toNanos(20);
+        for (WaitStrategy wait : Arrays.asList(WaitStrategy.busySpin(), WaitStrategy.yielding(), WaitStrategy.spinThenPark())) {
+            List<SharedBufferInterface<Integer>> buffers = Arrays.asList(new SharedBuffer<>(1, wait),
+                    new SharedBufferWaitNotify<>(1, wait), new SharedBufferLockCondition<>(1, wait),
+                    new SharedBufferTwoLock<>(1, wait));
+            for (SharedBufferInterface<Integer> buffer : buffers) {
+                String name = buffer.getClass().getSimpleName() + "/" + wait.name();
+                buffer.put(0);
+                Thread producer = new Thread(() -> {
+                    try {
+                        buffer.put(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                producer.start();
+                Thread.sleep(80);
+                assertEquals(0, buffer.take(), name);
+                producer.join(2000);
+                assertTrue(buffer.getPutBlockedNanos() >= minNanos, name + " put " + buffer.getPutBlockedNanos());
+
+                assertEquals(1, buffer.take(), name);
+                CompletableFuture<Integer> taker = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return buffer.take();
+                    } catch (InterruptedException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+                Thread.sleep(80);
+                buffer.put(2);
+                assertEquals(2, taker.get(2, TimeUnit.SECONDS), name);
+                assertTrue(buffer.getTakeBlockedNanos() >= minNanos, name + " take " + buffer.getTakeBlockedNanos());
+            }
+        }
+    }
+
+    @Test
+    public void testPriorityBufferWeightedFairness() throws Exception {
+        PrioritySharedBuffer<String> buffer = new PrioritySharedBuffer<>(100, new int[] {4, 2, 1}, 2);
+        for (int i = 0; i < 70; i++) {
+            buffer.put("bulk", 2);
+            buffer.put("normal", 1);
+            buffer.put("urgent", 0);
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 70; i++) counts.merge(buffer.take(), 1, Integer::sum);
+        // 4:2:1 of 70 while every level is busy
+        assertEquals(40, counts.get("urgent"));
+        assertEquals(20, counts.get("normal"));
+        assertEquals(10, counts.get("bulk"), "low priority still makes progress");
+
+        // FIFO within a level
+        PrioritySharedBuffer<String> onlyBulk = new PrioritySharedBuffer<>(4, 3);
+        onlyBulk.put("a");
+        onlyBulk.put("b");
+        assertEquals("a", onlyBulk.take());
+        assertEquals("b", onlyBulk.take());
+        assertEquals(70, buffer.getLevelStats(0).getDequeued() + buffer.getLevelStats(1).getDequeued()
+                + buffer.getLevelStats(2).getDequeued());
+
+        // once a level is empty the others share its turns in their own 2:1 ratio, interleaved
+        PrioritySharedBuffer<String> noUrgent = new PrioritySharedBuffer<>(100, new int[] {4, 2, 1}, 2);
+        for (int i = 0; i < 60; i++) {
+            noUrgent.put("bulk", 2);
+            noUrgent.put("normal", 1);
+        }
+        counts.clear();
+        int run = 0;
+        String last = null;
+        for (int i = 0; i < 30; i++) {
+            String item = noUrgent.take();
+            counts.merge(item, 1, Integer::sum);
+            run = item.equals(last) ? run + 1 : 1;
+            last = item;
+            assertTrue(run <= 2, "smooth round robin never runs a level three times in a row");
+        }
+        assertEquals(20, counts.get("normal"));
+        assertEquals(10, counts.get("bulk"));
+    }
+
+    @Test
+    public void testPriorityBufferExpiresStaleItems() throws Exception {
+        PrioritySharedBuffer<Integer> buffer = new PrioritySharedBuffer<>(8, 2);
+        List<Integer> expired = Collections.synchronizedList(new ArrayList<>());
+        buffer.setExpiryHandler(expired::add);
+
+        buffer.put(1, 0, 1, TimeUnit.MILLISECONDS);
+        buffer.put(2, 0);
+        buffer.put(3, 1, 1, TimeUnit.HOURS);
+        buffer.put(4, 1, 1, TimeUnit.MILLISECONDS);
+        Thread.sleep(20);
+
+        // item 4 sits behind a live item, where only a sweep finds it
+        assertEquals(2, buffer.expireStale());
+        assertEquals(new HashSet<>(Arrays.asList(1, 4)), new HashSet<>(expired));
+        assertEquals(new HashSet<>(Arrays.asList(2, 3)), new HashSet<>(Arrays.asList(buffer.take(), buffer.take())));
+        assertNull(buffer.poll());
+
+        // an expired head is skipped by take
+        buffer.put(5, 0, 1, TimeUnit.MILLISECONDS);
+        buffer.put(6, 0);
+        Thread.sleep(20);
+        assertEquals(6, buffer.take());
+        assertTrue(expired.contains(5));
+
+        PrioritySharedBuffer.LevelStats urgent = buffer.getLevelStats(0);
+        assertEquals(4, urgent.getEnqueued());
+        assertEquals(2, urgent.getDequeued());
+        assertEquals(2, urgent.getExpired());
+        assertTrue(urgent.getMaxWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(3, buffer.getConsumedCount(), "expired items are not consumed");
+    }
+
+    @Test
+    public void testElasticBufferGrowsUnderBackpressureAndKeepsOrder() throws Exception {
+        ElasticSharedBuffer<Integer> buffer = new ElasticSharedBuffer<>(2, 64, 16);
+        int n = 5000;
+        List<Integer> taken = new ArrayList<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i < n; i++) {
+                    taken.add(buffer.take());
+                    // slower than the producer, so puts keep finding the buffer full
+                    if (i % 64 == 0) Thread.sleep(1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < n; i++) buffer.put(i);
+        consumer.join(10_000);
+
+        assertEquals(IntStream.range(0, n).boxed().collect(Collectors.toList()), taken,
+                "single producer order must survive resizing");
+        assertTrue(buffer.getGrowCount() > 0, "should have grown");
+        assertTrue(buffer.capacity() > 2 && buffer.capacity() <= 64, "capacity " + buffer.capacity());
+        assertTrue(buffer.getBlockedPutCount() > 0);
+    }
+
+    @Test
+    public void testElasticBufferShrinksWhenConsumersWait() throws Exception {
+        ElasticSharedBuffer<Integer> buffer = new ElasticSharedBuffer<>(2, 64, 16);
+        // grow it first: offers into a full buffer count as blocked puts
+        for (int i = 0; i < 200 && buffer.capacity() < 64; i++) {
+            while (buffer.offer(i)) { }
+            while (buffer.poll() != null) { }
+        }
+        assertEquals(64, buffer.capacity());
+
+        // now a consumer that is always waiting, and at most one item queued
+        Thread consumer = new Thread(() -> {
+            try {
+                while (true) buffer.take();
+            } catch (BufferClosedException e) {
+                // done
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < 2000; i++) {
+            buffer.put(i);
+            while (buffer.size() > 0) Thread.onSpinWait();
+        }
+        buffer.close();
+        consumer.join(5000);
+        assertTrue(buffer.getShrinkCount() > 0, "should have shrunk");
+        assertTrue(buffer.capacity() < 64, "capacity " + buffer.capacity());
+        assertTrue(buffer.capacity() >= 2);
+    }
+
+    private static List<Supplier<SharedBufferInterface<Integer>>> allBuffers(int capacity) {
+        return Arrays.asList(
+                () -> new SharedBuffer<>(capacity),
+                () -> new SharedBufferWaitNotify<>(capacity),
+                () -> new SharedBufferLockCondition<>(capacity),
+                () -> new SharedBufferTwoLock<>(capacity),
+                () -> new StripedSharedBuffer<>(2, capacity),
+                () -> new ElasticSharedBuffer<>(capacity, capacity * 4),
+                () -> new PrioritySharedBuffer<>(capacity, 2),
+                () -> persistent(capacity, 4096));
+    }
+
+    private static PersistentSharedBuffer<Integer> persistent(int capacity, int segmentSize) {
+        try {
+            Path dir = Files.createTempDirectory("pc001-queue");
+            PersistentSharedBuffer<Integer> buffer = PersistentSharedBuffer.builder(dir, Serializer.integers())
+                    .capacity(capacity).segmentSize(segmentSize).open();
+            synchronized (persistentBuffers) {
+                persistentDirs.add(dir);
+                persistentBuffers.add(buffer);
+            }
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    public void testCloseStopsConsumersWithoutSentinels() throws Exception {
+        for (Supplier<SharedBufferInterface<Integer>> supplier : allBuffers(2)) {
+            SharedBufferInterface<Integer> buffer = supplier.get();
+            Collection<Integer> consumed = new ConcurrentLinkedQueue<>();
+            List<Thread> consumers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                consumers.add(new Thread(() -> {
+                    try {
+                        while (true) consumed.add(buffer.take());
+                    } catch (BufferClosedException e) {
+                        // done
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            consumers.forEach(Thread::start);
+            // SENTINEL is an ordinary value here
+            for (int v = -1; v < 200; v++) buffer.put(v);
+
+            DrainStats<Integer> stats = buffer.closeAndDrain(5, TimeUnit.SECONDS);
+            for (Thread c : consumers) c.join(2000);
+            String name = buffer.getClass().getSimpleName();
+            for (Thread c : consumers) assertFalse(c.isAlive(), name + " consumer should have stopped");
+            assertTrue(stats.isComplete(), name + " " + stats);
+            assertEquals(201, consumed.size(), name);
+            assertTrue(buffer.isClosed());
+            assertThrows(BufferClosedException.class, () -> buffer.put(1), name);
+            assertThrows(BufferClosedException.class, () -> buffer.offer(1), name);
+            assertThrows(BufferClosedException.class, buffer::take, name);
+        }
+    }
+
+    @Test
+    public void testCloseWakesBlockedProducersAndConsumers() throws Exception {
+        for (Supplier<SharedBufferInterface<Integer>> supplier : allBuffers(1)) {
+            SharedBufferInterface<Integer> empty = supplier.get();
+            CompletableFuture<Object> taker = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return empty.take();
+                } catch (Exception e) {
+                    return e;
+                }
+            });
+            Thread.sleep(100);
+            empty.close();
+            String name = empty.getClass().getSimpleName();
+            assertTrue(taker.get(2, TimeUnit.SECONDS) instanceof BufferClosedException, name);
+        }
+        // SharedBuffer cannot wake a blocked put, but the put notices the close within one wait slice
+        for (Supplier<SharedBufferInterface<Integer>> supplier : allBuffers(1)) {
+            SharedBufferInterface<Integer> full = supplier.get();
+            // a striped buffer is only full once every lane is
+            while (full.offer(0)) { }
+            CompletableFuture<Object> putter = CompletableFuture.supplyAsync(() -> {
+                try {
+                    full.put(1);
+                    return "put";
+                } catch (Exception e) {
+                    return e;
+                }
+            });
+            Thread.sleep(100);
+            full.close();
+            String name = full.getClass().getSimpleName();
+            assertTrue(putter.get(2, TimeUnit.SECONDS) instanceof BufferClosedException, name);
+            assertEquals(0, full.take(), name + " keeps items put before close");
+        }
+    }
+
+    @Test
+    public void testCloseAndDrainReportsLeftovers() throws Exception {
+        for (Supplier<SharedBufferInterface<Integer>> supplier : allBuffers(4)) {
+            SharedBufferInterface<Integer> buffer = supplier.get();
+            buffer.put(1);
+            buffer.put(2);
+            buffer.put(3);
+            // no consumers, so nothing drains before the deadline
+            DrainStats<Integer> stats = buffer.closeAndDrain(20, TimeUnit.MILLISECONDS);
+            String name = buffer.getClass().getSimpleName();
+            assertFalse(stats.isComplete(), name);
+            assertEquals(0, stats.getDrained(), name);
+            assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), new HashSet<>(stats.getLeftover()), name);
+            assertEquals(0, buffer.size(), name);
+            assertTrue(buffer.snapshotContents().isEmpty(), name);
+        }
+    }
+
+    @Test
+    public void testPersistentBufferRecoversUnconsumedItems(@TempDir Path dir) throws Exception {
+        // first run stops without close(), as a crash would
+        PersistentSharedBuffer<String> first = PersistentSharedBuffer.builder(dir, Serializer.strings())
+                .segmentSize(64).syncIntervalMillis(0).open();
+        for (int i = 0; i < 20; i++) first.put("item-" + i);
+        assertEquals("item-0", first.take());
+        assertEquals("item-1", first.take());
+
+        PersistentSharedBuffer<String> second = PersistentSharedBuffer.builder(dir, Serializer.strings())
+                .segmentSize(64).syncIntervalMillis(0).open();
+        assertEquals(18, second.getRecoveredCount());
+        assertEquals(18, second.size());
+        assertEquals("item-2", second.snapshotContents().get(0));
+        second.put("after-restart");
+        for (int i = 2; i < 20; i++) assertEquals("item-" + i, second.take());
+        assertEquals("after-restart", second.take());
+        assertNull(second.poll());
+        second.close();
+
+        PersistentSharedBuffer<String> third = PersistentSharedBuffer.builder(dir, Serializer.strings())
+                .segmentSize(64).open();
+        assertEquals(0, third.getRecoveredCount());
+        third.close();
+    }
+
+    @Test
+    public void testPersistentBufferRecyclesSegments(@TempDir Path dir) throws Exception {
+        // 64-byte segments hold 7 integer records, so 1000 items roll over many times
+        PersistentSharedBuffer<Integer> buffer = PersistentSharedBuffer.builder(dir, Serializer.integers())
+                .segmentSize(64).capacity(20).syncIntervalMillis(0).open();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 1000; i++) buffer.put(i);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        for (int i = 0; i < 1000; i++) assertEquals(i, buffer.take());
+        producer.join(2000);
+        buffer.close();
+
+        long files;
+        try (java.util.stream.Stream<Path> list = Files.list(dir)) {
+            files = list.filter(f -> f.toString().endsWith(".dat")).count();
+        }
+        // the current segment plus at most two spares
+        assertTrue(files <= 3, "segment files left: " + files);
+        try (PersistentSharedBuffer<String> reopened = PersistentSharedBuffer.builder(dir, Serializer.strings())
+                .segmentSize(64).open()) {
+            assertThrows(IllegalArgumentException.class, () -> reopened.put("x".repeat(100)));
+        }
+    }
+
+    @Test
+    public void testPersistentBufferKeepsEmptyPayloadsAcrossReopen(@TempDir Path dir) throws Exception {
+        // a zero-length record must not be mistaken for the end of the data
+        try (PersistentSharedBuffer<String> first = PersistentSharedBuffer.builder(dir, Serializer.strings())
+                .segmentSize(64).syncIntervalMillis(0).open()) {
+            for (String s : Arrays.asList("a", "", "b", "", "", "c", "d", "e", "f", "g", "h", "i", "j")) first.put(s);
+        }
+        try (PersistentSharedBuffer<String> second = PersistentSharedBuffer.builder(dir, Serializer.strings())
+                .segmentSize(64).syncIntervalMillis(0).open()) {
+            assertEquals(13, second.getRecoveredCount());
+            second.put("k");
+            assertEquals(Arrays.asList("a", "", "b", "", "", "c", "d", "e", "f", "g", "h", "i", "j", "k"),
+                    second.snapshotContents());
+            assertEquals("a", second.take());
+            assertEquals("", second.take());
+        }
+        try (PersistentSharedBuffer<String> third = PersistentSharedBuffer.builder(dir, Serializer.strings())
+                .segmentSize(64).open()) {
+            assertEquals(12, third.getRecoveredCount());
+            assertEquals("b", third.take());
+            assertEquals("", third.take());
+            assertEquals("", third.take());
+            assertEquals("c", third.take());
+        }
+    }
+
+    @Test
+    public void testPersistentBufferReopenedWithSmallerCapacityStaysBounded(@TempDir Path dir) throws Exception {
+        try (PersistentSharedBuffer<Integer> first = PersistentSharedBuffer.builder(dir, Serializer.integers())
+                .capacity(10).open()) {
+            for (int i = 0; i < 5; i++) first.put(i);
+        }
+        try (PersistentSharedBuffer<Integer> second = PersistentSharedBuffer.builder(dir, Serializer.integers())
+                .capacity(2).open()) {
+            assertEquals(5, second.getRecoveredCount());
+            assertFalse(second.offer(5), "recovered items above the new capacity leave no room");
+            ExecutorService producer = Executors.newSingleThreadExecutor();
+            Future<?> put = producer.submit(() -> {
+                second.put(5);
+                return null;
+            });
+            assertThrows(TimeoutException.class, () -> put.get(100, TimeUnit.MILLISECONDS));
+            for (int i = 0; i < 3; i++) assertEquals(i, second.take());
+            assertFalse(put.isDone(), "still full at the new capacity");
+            assertEquals(3, second.take());
+            put.get(1, TimeUnit.SECONDS);
+            assertEquals(Arrays.asList(4, 5), second.snapshotContents());
+            producer.shutdown();
+        }
+    }
+
+    @Test
+    public void testPersistentBufferSyncPolicies(@TempDir Path dir) throws Exception {
+        PersistentSharedBuffer<Integer> byCount = PersistentSharedBuffer.builder(dir.resolve("count"), Serializer.integers())
+                .syncEveryItems(10).syncIntervalMillis(0).open();
+        for (int i = 0; i < 25; i++) byCount.put(i);
+        assertEquals(2, byCount.getSyncCount());
+        byCount.close();
+        assertEquals(3, byCount.getSyncCount(), "close syncs once more");
+
+        PersistentSharedBuffer<Integer> byTime = PersistentSharedBuffer.builder(dir.resolve("time"), Serializer.integers())
+                .syncIntervalMillis(20).open();
+        byTime.put(1);
+        Thread.sleep(200);
+        assertTrue(byTime.getSyncCount() > 0, "timer should have synced");
+        byTime.close();
+    }
+
+    @Test
+    public void testStripedBufferSpillsAndSteals() throws Exception {
+        // one thread fills every lane, then empties them again
+        StripedSharedBuffer<Integer> buffer = new StripedSharedBuffer<>(3, 2);
+        for (int i = 0; i < 6; i++) assertTrue(buffer.offer(i));
+        assertFalse(buffer.offer(6), "all lanes are full");
+        assertEquals(6, buffer.size());
+        assertEquals(6, buffer.snapshotContents().size());
+
+        Set<Integer> taken = new HashSet<>();
+        for (int i = 0; i < 6; i++) taken.add(buffer.take());
+        assertEquals(6, taken.size());
+        assertNull(buffer.poll());
+        assertEquals(6, buffer.getProducedCount());
+        assertEquals(6, buffer.getConsumedCount());
+    }
+
+    @Test
+    public void testWorkerExecutors() throws Exception {
+        List<WorkerExecutor> modes = new ArrayList<>();
+        modes.add(WorkerExecutor.platform());
+        if (WorkerExecutor.isVirtualAvailable()) modes.add(WorkerExecutor.virtual());
+
+        for (WorkerExecutor workers : modes) {
+            SharedBufferInterface<Integer> buffer = new SharedBufferLockCondition<>(4);
+            Collection<Integer> consumed = new ConcurrentLinkedQueue<>();
+            List<Thread> producers = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                producers.add(workers.start("P-" + i, new Producer(buffer, Arrays.asList(i + 1))));
+            }
+            Thread consumer = workers.start("C-0", new Consumer(buffer, consumed));
+            for (Thread t : producers) t.join();
+            buffer.put(SENTINEL);
+            consumer.join(5000);
+            assertFalse(consumer.isAlive(), workers.name() + " consumer should have terminated");
+            assertEquals(100, consumed.size(), workers.name() + " should deliver every item");
+        }
     }
 
     @Test
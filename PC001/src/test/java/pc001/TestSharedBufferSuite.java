@@ -1,9 +1,21 @@
 package pc001;
 
+import pc001.buffer.BufferClosedException;
+import pc001.buffer.ElasticSharedBuffer;
+import pc001.buffer.PersistentSharedBuffer;
+import pc001.buffer.PrioritySharedBuffer;
+import pc001.buffer.Serializer;
 import pc001.buffer.SharedBuffer;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.buffer.SharedBufferTwoLock;
+import pc001.buffer.StripedSharedBuffer;
 import pc001.buffer.SharedBufferWaitNotify;
 import pc001.buffer.SharedBufferInterface;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
@@ -16,6 +28,9 @@ import java.util.stream.IntStream;
  */
 public class TestSharedBufferSuite {
     private static final int SENTINEL = -1;
+    // buffers opened by persistent(), closed and deleted before exiting
+    private static final List<Path> persistentDirs = new ArrayList<>();
+    private static final List<PersistentSharedBuffer<?>> persistentBuffers = new ArrayList<>();
 
     static class Producer implements Runnable {
         private final SharedBufferInterface<Integer> buffer;
@@ -57,6 +72,8 @@ public class TestSharedBufferSuite {
                     }
                     consumed.add(v);
                 }
+            } catch (BufferClosedException e) {
+                // closed and drained
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
@@ -69,7 +86,19 @@ public class TestSharedBufferSuite {
                                    int numConsumers,
                                    int maxValue,
                                    int capacity) throws InterruptedException {
-        System.out.printf("Running test for %s (producers=%d consumers=%d)\n", name, numProducers, numConsumers);
+        return runTest(supplier, name, numProducers, numConsumers, maxValue, capacity, false);
+    }
+
+    /** @param close stop the consumers with close() instead of one sentinel each */
+    private static boolean runTest(Supplier<SharedBufferInterface<Integer>> supplier,
+                                   String name,
+                                   int numProducers,
+                                   int numConsumers,
+                                   int maxValue,
+                                   int capacity,
+                                   boolean close) throws InterruptedException {
+        System.out.printf("Running test for %s (producers=%d consumers=%d%s)\n", name, numProducers, numConsumers,
+                close ? ", close" : "");
 
         SharedBufferInterface<Integer> buffer = supplier.get();
 
@@ -101,9 +130,13 @@ public class TestSharedBufferSuite {
         // wait for producers
         for (Thread p : producers) p.join();
 
-        // send sentinels to stop consumers
-        for (int i = 0; i < numConsumers; i++) {
-            buffer.put(SENTINEL);
+        if (close) {
+            buffer.close();
+        } else {
+            // send sentinels to stop consumers
+            for (int i = 0; i < numConsumers; i++) {
+                buffer.put(SENTINEL);
+            }
         }
 
         // wait for consumers
@@ -135,6 +168,14 @@ public class TestSharedBufferSuite {
 
         boolean s1 = runTest(() -> new SharedBuffer<>(capacity), "SharedBuffer", p, c, maxValue, capacity);
         boolean s2 = runTest(() -> new SharedBufferWaitNotify<>(capacity), "SharedBufferWaitNotify", p, c, maxValue, capacity);
+        boolean s3 = runTest(() -> new SharedBufferLockCondition<>(capacity), "SharedBufferLockCondition", p, c, maxValue, capacity);
+        boolean s4 = runTest(() -> new SharedBufferTwoLock<>(capacity), "SharedBufferTwoLock", p, c, maxValue, capacity);
+        // a striped buffer is only FIFO per lane, so a sentinel could overtake items in another lane
+        boolean s5 = runTest(() -> new StripedSharedBuffer<>(2, capacity / 2), "StripedSharedBuffer", p, c, maxValue, capacity, true);
+        boolean s6 = runTest(() -> new ElasticSharedBuffer<>(2, capacity, 8), "ElasticSharedBuffer", p, c, maxValue, capacity);
+        boolean s7 = runTest(() -> new PrioritySharedBuffer<>(capacity, 3), "PrioritySharedBuffer", p, c, maxValue, capacity);
+        boolean s8 = runTest(() -> persistent(capacity), "PersistentSharedBuffer", p, c, maxValue, capacity);
+        boolean s9 = runTest(() -> new SharedBuffer<>(capacity), "SharedBuffer", p, c, maxValue, capacity, true);
 
         // run edge-case checks with small capacities
         boolean e1 = emptyBufferTest(() -> new SharedBuffer<>(1));
@@ -145,7 +186,36 @@ public class TestSharedBufferSuite {
         boolean e5 = fullBufferBlockingTest(() -> new SharedBufferWaitNotify<>(1));
         boolean e6 = interruptedProducerTest(() -> new SharedBufferWaitNotify<>(1));
 
-        allOk = s1 && s2 && e1 && e2 && e3 && e4 && e5 && e6;
+        boolean e7 = emptyBufferTest(() -> new SharedBufferLockCondition<>(1));
+        boolean e8 = fullBufferBlockingTest(() -> new SharedBufferLockCondition<>(1));
+        boolean e9 = interruptedProducerTest(() -> new SharedBufferLockCondition<>(1));
+
+        boolean e10 = emptyBufferTest(() -> new SharedBufferTwoLock<>(1));
+        boolean e11 = fullBufferBlockingTest(() -> new SharedBufferTwoLock<>(1));
+        boolean e12 = interruptedProducerTest(() -> new SharedBufferTwoLock<>(1));
+
+        // a single lane of capacity 1 so "full" means the same as above
+        boolean e13 = emptyBufferTest(() -> new StripedSharedBuffer<>(1, 1));
+        boolean e14 = fullBufferBlockingTest(() -> new StripedSharedBuffer<>(1, 1));
+        boolean e15 = interruptedProducerTest(() -> new StripedSharedBuffer<>(1, 1));
+
+        // fixed at 1 so it cannot grow out of the full state
+        boolean e16 = emptyBufferTest(() -> new ElasticSharedBuffer<>(1, 1));
+        boolean e17 = fullBufferBlockingTest(() -> new ElasticSharedBuffer<>(1, 1));
+        boolean e18 = interruptedProducerTest(() -> new ElasticSharedBuffer<>(1, 1));
+
+        boolean e19 = emptyBufferTest(() -> new PrioritySharedBuffer<>(1, 1));
+        boolean e20 = fullBufferBlockingTest(() -> new PrioritySharedBuffer<>(1, 1));
+        boolean e21 = interruptedProducerTest(() -> new PrioritySharedBuffer<>(1, 1));
+
+        boolean e22 = emptyBufferTest(() -> persistent(1));
+        boolean e23 = fullBufferBlockingTest(() -> persistent(1));
+        boolean e24 = interruptedProducerTest(() -> persistent(1));
+
+        allOk = s1 && s2 && s3 && s4 && s5 && s6 && s7 && s8 && s9 && e1 && e2 && e3 && e4 && e5 && e6 && e7 && e8 && e9
+                && e10 && e11 && e12 && e13 && e14 && e15 && e16 && e17 && e18 && e19 && e20 && e21
+                && e22 && e23 && e24;
+        closePersistentBuffers();
 
         if (allOk) {
             System.out.println("ALL TESTS PASSED");
@@ -156,6 +226,35 @@ public class TestSharedBufferSuite {
         }
     }
 
+    // a fresh directory each time, so nothing is recovered from an earlier run
+    private static SharedBufferInterface<Integer> persistent(int capacity) {
+        try {
+            Path dir = Files.createTempDirectory("pc001-suite");
+            PersistentSharedBuffer<Integer> buffer = PersistentSharedBuffer.builder(dir, Serializer.integers())
+                    .capacity(capacity).segmentSize(4096).open();
+            synchronized (persistentBuffers) {
+                persistentDirs.add(dir);
+                persistentBuffers.add(buffer);
+            }
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closePersistentBuffers() throws IOException {
+        synchronized (persistentBuffers) {
+            persistentBuffers.forEach(PersistentSharedBuffer::close);
+            persistentBuffers.clear();
+            for (Path dir : persistentDirs) {
+                try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+                    for (Path f : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) Files.delete(f);
+                }
+            }
+            persistentDirs.clear();
+        }
+    }
+
     // Additional edge-case tests
     private static boolean emptyBufferTest(Supplier<SharedBufferInterface<Integer>> supplier) throws InterruptedException {
         System.out.println("Running emptyBufferTest");
@@ -0,0 +1,158 @@
+package pc001;
+
+import pc001.sink.ChunkedArraySink;
+import pc001.sink.FileSink;
+import pc001.sink.ListSink;
+import pc001.sink.Sink;
+import pc001.sink.ThreadLocalChunkSink;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class TestSinkJUnit {
+    private static final int WRITERS = 4;
+    private static final int PER_WRITER = 5000;
+
+    /** Writer i accepts i, i + WRITERS, i + 2*WRITERS, ... so each writer's items are in ascending order. */
+    private static void writeConcurrently(Sink<Integer> sink) throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int first = w;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < PER_WRITER; i++) sink.accept(first + i * WRITERS);
+            }, "W-" + w));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) t.join();
+        sink.close();
+        assertEquals(WRITERS * PER_WRITER, sink.count());
+    }
+
+    private static Set<Integer> expected() {
+        return IntStream.range(0, WRITERS * PER_WRITER).boxed().collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testInMemorySinksKeepEveryItem() throws Exception {
+        ListSink<Integer> list = new ListSink<>();
+        writeConcurrently(list);
+        assertEquals(expected(), new HashSet<>(list.toList()));
+
+        ThreadLocalChunkSink<Integer> local = new ThreadLocalChunkSink<>();
+        writeConcurrently(local);
+        assertEquals(WRITERS * PER_WRITER, local.toList().size());
+        assertEquals(expected(), new HashSet<>(local.toList()));
+
+        // chunk size that does not divide PER_WRITER, so every writer hands over a partial chunk on close
+        ThreadLocalChunkSink<Integer> smallChunks = new ThreadLocalChunkSink<>(7);
+        writeConcurrently(smallChunks);
+        assertEquals(expected(), new HashSet<>(smallChunks.toList()));
+
+        // small chunks so many are installed concurrently
+        ChunkedArraySink<Integer> chunked = new ChunkedArraySink<>(4, 1 << 12);
+        writeConcurrently(chunked);
+        List<Integer> all = chunked.toList();
+        assertEquals(WRITERS * PER_WRITER, all.size());
+        assertEquals(expected(), new HashSet<>(all));
+        assertEquals(all.get(17), chunked.get(17));
+    }
+
+    @Test
+    public void testOrderedMerge() throws Exception {
+        List<Integer> inOrder = IntStream.range(0, WRITERS * PER_WRITER).boxed().collect(Collectors.toList());
+
+        ThreadLocalChunkSink<Integer> local = new ThreadLocalChunkSink<>();
+        writeConcurrently(local);
+        assertEquals(inOrder, local.toOrderedList(Integer::longValue));
+
+        ThreadLocalChunkSink<Integer> smallChunks = new ThreadLocalChunkSink<>(7);
+        writeConcurrently(smallChunks);
+        assertEquals(inOrder, smallChunks.toOrderedList(Integer::longValue));
+
+        ChunkedArraySink<Integer> chunked = new ChunkedArraySink<>();
+        writeConcurrently(chunked);
+        assertEquals(inOrder, chunked.toOrderedList(Integer::longValue));
+    }
+
+    @Test
+    public void testFileSinkWritesWholeLines(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("out.txt");
+        // a buffer smaller than some lines exercises both the flush and the direct write path
+        FileSink<Integer> sink = new FileSink<>(file, v -> v % 1000 == 0 ? "big-" + "x".repeat(40) + v : "v" + v, 32);
+        writeConcurrently(sink);
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(WRITERS * PER_WRITER, lines.size());
+        assertEquals(Files.size(file), sink.bytesWritten());
+        Set<Integer> seen = new HashSet<>();
+        for (String line : lines) {
+            String digits = line.startsWith("big-") ? line.substring(44) : line.substring(1);
+            assertTrue(seen.add(Integer.parseInt(digits)), "duplicate or torn line: " + line);
+        }
+        assertEquals(expected(), seen);
+    }
+
+    @Test
+    public void testFileSinkBuffersDoNotGrowWithThreadCount(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("out.txt");
+        FileSink<Integer> sink = new FileSink<>(file);
+        // one short-lived thread per item, as a virtual-thread consumer would run
+        for (int i = 0; i < 200; i++) {
+            int v = i;
+            Thread t = new Thread(() -> sink.accept(v));
+            t.start();
+            t.join();
+        }
+        sink.close();
+        assertEquals(1, sink.buffersAllocated());
+        assertEquals(200, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void testClosedSinkRejectsWrites() throws Exception {
+        ChunkedArraySink<Integer> chunked = new ChunkedArraySink<>();
+        assertThrows(IllegalStateException.class, chunked::toList, "results need close() first");
+        chunked.close();
+        assertThrows(IllegalStateException.class, () -> chunked.accept(1));
+    }
+
+    @Test
+    public void testThreadLocalSinkCloseWhileWriting() throws Exception {
+        ThreadLocalChunkSink<Integer> sink = new ThreadLocalChunkSink<>(16);
+        Set<Integer> accepted = Collections.synchronizedSet(new HashSet<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int first = w;
+            threads.add(new Thread(() -> {
+                for (int i = 0; ; i++) {
+                    int v = first + i * WRITERS;
+                    try {
+                        sink.accept(v);
+                    } catch (IllegalStateException closed) {
+                        return;
+                    }
+                    accepted.add(v);
+                }
+            }, "W-" + w));
+        }
+        threads.forEach(Thread::start);
+        while (sink.count() < WRITERS * PER_WRITER) Thread.yield();
+        sink.close();
+        for (Thread t : threads) t.join();
+
+        // every accept that returned is in the result and nothing else is
+        List<Integer> all = sink.toList();
+        assertEquals(accepted.size(), all.size());
+        assertEquals(accepted, new HashSet<>(all));
+        assertEquals(all.size(), sink.count());
+        assertThrows(IllegalStateException.class, () -> sink.accept(-1));
+    }
+}
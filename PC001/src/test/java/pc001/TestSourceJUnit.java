@@ -0,0 +1,114 @@
+package pc001;
+
+import pc001.buffer.SharedBufferTwoLock;
+import pc001.core.Producer;
+import pc001.source.FileSource;
+import pc001.source.Source;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class TestSourceJUnit {
+
+    @Test
+    public void testListSplitIsContiguous() throws Exception {
+        List<Integer> items = Arrays.asList(1, 2, 3, 4, 5);
+        List<Source<Integer>> parts = Source.split(items, 2);
+        assertEquals(Arrays.asList(1, 2), drain(parts.get(0)));
+        assertEquals(Arrays.asList(3, 4, 5), drain(parts.get(1)));
+        // more producers than items: some ranges are empty
+        List<Integer> all = new ArrayList<>();
+        for (Source<Integer> s : Source.split(items, 8)) all.addAll(drain(s));
+        assertEquals(items, all);
+    }
+
+    @Test
+    public void testFileSplitsReturnEveryLineOnce(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("items.txt");
+        List<Integer> expected = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(42);
+        for (int i = 0; i < 5_000; i++) {
+            int v = random.nextInt() >> random.nextInt(31);
+            expected.add(v);
+            text.append(v).append(i % 7 == 0 ? "\r\n" : "\n");
+            if (i % 100 == 0) text.append('\n'); // blank lines are skipped
+        }
+        text.append("123"); // no trailing newline
+        expected.add(123);
+        Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+
+        // tiny blocks so most lines cross a block or range boundary
+        for (int blockSize : new int[] {1, 7, 64, 4096, FileSource.DEFAULT_BLOCK_SIZE}) {
+            for (int parts : new int[] {1, 2, 3, 8, 13}) {
+                List<Integer> all = new ArrayList<>();
+                for (Source<Integer> s : FileSource.builder(file, FileSource.Decoder.integers())
+                        .blockSize(blockSize).readAhead(2).split(parts)) {
+                    all.addAll(drain(s));
+                }
+                assertEquals(expected, all, "blockSize=" + blockSize + " parts=" + parts);
+            }
+        }
+    }
+
+    @Test
+    public void testStringsAndEmptyFile(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("words.txt");
+        Files.write(file, Arrays.asList("alpha", "βeta", "gamma"), StandardCharsets.UTF_8);
+        try (FileSource<String> s = FileSource.builder(file, FileSource.Decoder.strings()).blockSize(3).open()) {
+            assertEquals(Arrays.asList("alpha", "βeta", "gamma"), drain(s));
+            assertEquals(Files.size(file), s.getBytesRead());
+        }
+        Path empty = Files.createFile(dir.resolve("empty.txt"));
+        for (Source<Integer> s : FileSource.builder(empty, FileSource.Decoder.integers()).split(3)) {
+            assertNull(s.next());
+        }
+    }
+
+    @Test
+    public void testBadLineFailsTheRead(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("bad.txt");
+        Files.write(file, Arrays.asList("1", "two", "3"), StandardCharsets.US_ASCII);
+        try (FileSource<Integer> s = FileSource.builder(file, FileSource.Decoder.integers()).open()) {
+            assertEquals(1, s.next());
+            NumberFormatException e = assertThrows(NumberFormatException.class, s::next);
+            assertTrue(e.getMessage().contains("two"));
+        }
+    }
+
+    @Test
+    public void testProducersStreamFileRanges(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("items.txt");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) lines.add(Integer.toString(i));
+        Files.write(file, lines, StandardCharsets.US_ASCII);
+
+        SharedBufferTwoLock<Integer> buffer = new SharedBufferTwoLock<>(64);
+        List<Thread> producers = new ArrayList<>();
+        for (Source<Integer> s : FileSource.builder(file, FileSource.Decoder.integers()).blockSize(4096).split(4)) {
+            Thread t = new Thread(new Producer(buffer, s));
+            t.start();
+            producers.add(t);
+        }
+        long sum = 0;
+        for (int i = 0; i < 20_000; i++) sum += buffer.take();
+        for (Thread t : producers) t.join();
+        assertEquals(19_999L * 20_000 / 2, sum);
+        assertEquals(0, buffer.size());
+    }
+
+    private static <T> List<T> drain(Source<T> source) throws IOException {
+        List<T> out = new ArrayList<>();
+        T item;
+        while ((item = source.next()) != null) out.add(item);
+        source.close();
+        return out;
+    }
+}
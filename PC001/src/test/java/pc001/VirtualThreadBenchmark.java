@@ -0,0 +1,99 @@
+package pc001;
+
+import pc001.buffer.BufferClosedException;
+import pc001.buffer.SharedBuffer;
+import pc001.buffer.SharedBufferInterface;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.buffer.SharedBufferTwoLock;
+import pc001.buffer.StripedSharedBuffer;
+import pc001.core.WorkerExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Standalone benchmark (not run by surefire): many producers, each modelling
+ * one upstream connection, feeding a few consumers through a small buffer.
+ * Compares platform threads with virtual threads for each buffer type.
+ *
+ * Build with {@code mvn -Pjava21 test-compile} on JDK 21, then run:
+ * {@code java -cp target/test-classes:target/classes pc001.VirtualThreadBenchmark [producers] [itemsPerProducer] [consumers]}
+ */
+public class VirtualThreadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int perProducer = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int consumers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int capacity = 1024;
+
+        List<WorkerExecutor> modes = new ArrayList<>();
+        modes.add(WorkerExecutor.platform());
+        if (WorkerExecutor.isVirtualAvailable()) {
+            modes.add(WorkerExecutor.virtual());
+        } else {
+            System.out.println("virtual threads unavailable (build with -Pjava21 and run on Java 21+)");
+        }
+
+        System.out.printf("producers=%d itemsPerProducer=%d consumers=%d capacity=%d%n",
+                producers, perProducer, consumers, capacity);
+        for (WorkerExecutor workers : modes) {
+            run("SharedBuffer", () -> new SharedBuffer<>(capacity), workers, producers, perProducer, consumers);
+            run("SharedBufferLockCondition", () -> new SharedBufferLockCondition<>(capacity), workers,
+                    producers, perProducer, consumers);
+            run("SharedBufferTwoLock", () -> new SharedBufferTwoLock<>(capacity), workers,
+                    producers, perProducer, consumers);
+            int lanes = Math.max(2, Math.min(producers, Runtime.getRuntime().availableProcessors()));
+            run("StripedSharedBuffer", () -> new StripedSharedBuffer<>(lanes, Math.max(1, capacity / lanes)), workers,
+                    producers, perProducer, consumers);
+        }
+    }
+
+    private static void run(String name, Supplier<SharedBufferInterface<Integer>> supplier, WorkerExecutor workers,
+                            int producers, int perProducer, int consumers) throws InterruptedException {
+        SharedBufferInterface<Integer> buffer = supplier.get();
+        long total = (long) producers * perProducer;
+        LongAdder received = new LongAdder();
+
+        long start = System.nanoTime();
+        List<Thread> cs = new ArrayList<>();
+        for (int i = 0; i < consumers; i++) {
+            cs.add(workers.start("C-" + i, () -> {
+                try {
+                    while (true) {
+                        buffer.take();
+                        received.increment();
+                    }
+                } catch (BufferClosedException e) {
+                    // all items taken
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        List<Thread> ps = new ArrayList<>(producers);
+        for (int i = 0; i < producers; i++) {
+            ps.add(workers.start("P-" + i, () -> {
+                try {
+                    for (int k = 0; k < perProducer; k++) buffer.put(k);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        long started = System.nanoTime();
+        for (Thread p : ps) p.join();
+        buffer.close();
+        for (Thread c : cs) c.join();
+        long end = System.nanoTime();
+
+        if (received.sum() != total) {
+            throw new IllegalStateException(name + ": expected " + total + " items, got " + received.sum());
+        }
+        double secs = (end - start) / 1e9;
+        System.out.printf("%-28s %-9s total=%7.3fs startup=%7.3fs throughput=%,12.0f items/s%n",
+                name, workers.name(), secs, (started - start) / 1e9, total / secs);
+    }
+}
@@ -0,0 +1,96 @@
+package pc001;
+
+import pc001.buffer.BufferClosedException;
+import pc001.buffer.SharedBufferInterface;
+import pc001.buffer.SharedBufferLockCondition;
+import pc001.buffer.SharedBufferTwoLock;
+import pc001.buffer.WaitStrategy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Standalone benchmark (not run by surefire) for the latency/CPU trade-off of
+ * each {@link WaitStrategy}. One producer puts timestamps, pausing
+ * {@code gapMicros} between items so the consumer is usually waiting, as in a
+ * latency-sensitive service; with a gap of 0 it measures raw throughput
+ * instead. Reports hand-off latency percentiles and the CPU time both threads
+ * used, which shows how much a strategy burns while idle.
+ *
+ * Run: {@code java -cp target/test-classes:target/classes pc001.WaitStrategyBenchmark [items] [gapMicros]}
+ */
+public class WaitStrategyBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long gapMicros = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        List<WaitStrategy> strategies = Arrays.asList(WaitStrategy.blocking(), WaitStrategy.spinThenPark(),
+                WaitStrategy.yielding(), WaitStrategy.busySpin());
+
+        System.out.printf("items=%d gap=%dus cpus=%d%n", items, gapMicros, Runtime.getRuntime().availableProcessors());
+        for (WaitStrategy wait : strategies) {
+            run("SharedBufferLockCondition", w -> new SharedBufferLockCondition<>(1024, w), wait, items, gapMicros);
+            run("SharedBufferTwoLock", w -> new SharedBufferTwoLock<>(1024, w), wait, items, gapMicros);
+        }
+    }
+
+    private static void run(String name, Function<WaitStrategy, SharedBufferInterface<Long>> factory,
+                            WaitStrategy wait, int items, long gapMicros) throws InterruptedException {
+        SharedBufferInterface<Long> buffer = factory.apply(wait);
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        long[] latencies = new long[items];
+        AtomicLong cpuNanos = new AtomicLong();
+
+        Thread consumer = new Thread(() -> {
+            int n = 0;
+            try {
+                while (true) {
+                    long sent = buffer.take();
+                    latencies[n++] = System.nanoTime() - sent;
+                }
+            } catch (BufferClosedException e) {
+                // done
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            cpuNanos.addAndGet(mx.getCurrentThreadCpuTime());
+        }, "consumer");
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < items; i++) {
+                    buffer.put(System.nanoTime());
+                    if (gapMicros > 0) pause(gapMicros * 1000);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            cpuNanos.addAndGet(mx.getCurrentThreadCpuTime());
+        }, "producer");
+
+        long start = System.nanoTime();
+        consumer.start();
+        producer.start();
+        producer.join();
+        buffer.close();
+        consumer.join();
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-26s %-6s p50=%7.1fus p99=%8.1fus max=%9.1fus cpu=%6.0fms (%3.0f%% of wall) %,11.0f items/s%n",
+                name, wait.name(), latencies[items / 2] / 1e3, latencies[(int) (items * 0.99)] / 1e3,
+                latencies[items - 1] / 1e3, cpuNanos.get() / 1e6, cpuNanos.get() / 1e7 / secs, items / secs);
+    }
+
+    // the producer's own pacing must not depend on the strategy under test
+    private static void pause(long nanos) {
+        long until = System.nanoTime() + nanos;
+        while (System.nanoTime() < until) {
+            LockSupport.parkNanos(until - System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package sa001;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD {@link AggregationKernels} on top of the incubating Vector API.
+ *
+ * Only compiled by the {@code vector} profile (JDK 17+) and only usable when
+ * the JVM runs with {@code --add-modules jdk.incubator.vector}; otherwise
+ * {@link AggregationKernels#best()} falls back to the scalar kernels.
+ */
+final class VectorKernels implements AggregationKernels {
+        private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+        // Same lane count as D, so int quantities widen lane-for-lane into doubles
+        private static final VectorSpecies<Integer> I = VectorSpecies.of(int.class,
+                        VectorShape.forBitSize(D.vectorBitSize() / 2));
+
+        // Masked group sums make one pass over the columns per group; past this
+        // many groups the scalar scatter loop wins
+        private static final int MAX_MASKED_GROUPS = 8;
+
+        VectorKernels() {}
+
+        @Override
+        public double revenue(int[] quantity, double[] price, int n) {
+                DoubleVector acc = DoubleVector.zero(D);
+                int i = 0;
+                for (int upper = D.loopBound(n); i < upper; i += D.length()) {
+                        DoubleVector q = widen(quantity, i);
+                        acc = q.fma(DoubleVector.fromArray(D, price, i), acc);
+                }
+                double sum = acc.reduceLanes(VectorOperators.ADD);
+                for (; i < n; i++)
+                        sum += quantity[i] * price[i];
+                return sum;
+        }
+
+        @Override
+        public void groupRevenue(int[] quantity, double[] price, int[] group, double[] out, int n) {
+                int groups = out.length;
+                if (groups > MAX_MASKED_GROUPS) {
+                        ScalarKernels.INSTANCE.groupRevenue(quantity, price, group, out, n);
+                        return;
+                }
+                // One pass per group keeps a single accumulator in a register; vectors
+                // held in an array would be materialized on the heap
+                int upper = D.loopBound(n);
+                for (int g = 0; g < groups; g++) {
+                        DoubleVector acc = DoubleVector.zero(D);
+                        double id = g;
+                        for (int i = 0; i < upper; i += D.length()) {
+                                VectorMask<Double> inGroup = widen(group, i).eq(id);
+                                DoubleVector revenue = widen(quantity, i).mul(DoubleVector.fromArray(D, price, i));
+                                acc = acc.add(revenue, inGroup);
+                        }
+                        out[g] += acc.reduceLanes(VectorOperators.ADD);
+                }
+                for (int i = upper; i < n; i++)
+                        out[group[i]] += quantity[i] * price[i];
+        }
+
+        @Override
+        public String name() {
+                return "vector(" + D.length() + "x double)";
+        }
+
+        private static DoubleVector widen(int[] values, int i) {
+                return (DoubleVector) IntVector.fromArray(I, values, i).convertShape(VectorOperators.I2D, D, 0);
+        }
+}
@@ -0,0 +1,47 @@
+package sa001;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one {@link SalesAnalyzer} aggregation call, with
+ * the rows it read and the keys it produced. Disabled by default.
+ */
+@Name("sa001.Aggregation")
+@Label("Aggregation")
+@Category({"SA001", "Analysis"})
+@Description("A sales aggregation ran over the loaded records")
+@Enabled(false)
+@StackTrace(false)
+public final class AggregationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Keys")
+        @Description("Entries in the result; 1 for scalar results")
+        int keys;
+
+        static AggregationEvent start(String operation, long rows) {
+                AggregationEvent event = new AggregationEvent();
+                event.operation = operation;
+                event.rows = rows;
+                event.begin();
+                return event;
+        }
+
+        void finish(int keys) {
+                end();
+                if (shouldCommit()) {
+                        this.keys = keys;
+                        commit();
+                }
+        }
+}
@@ -0,0 +1,52 @@
+package sa001;
+
+/**
+ * Inner loops of the columnar aggregations. The scalar implementation is
+ * always available; a SIMD implementation built on {@code jdk.incubator.vector}
+ * is compiled by the {@code vector} Maven profile and picked up at runtime when
+ * both the class and the incubator module are present. Set the system property
+ * {@code sa001.kernels=scalar} to force the scalar path.
+ */
+interface AggregationKernels {
+
+        /** Sum of {@code quantity[i] * price[i]} for {@code i < n}. */
+        double revenue(int[] quantity, double[] price, int n);
+
+        /**
+         * Add {@code quantity[i] * price[i]} into {@code out[group[i]]} for
+         * {@code i < n}. Group ids must lie in {@code [0, out.length)}.
+         */
+        void groupRevenue(int[] quantity, double[] price, int[] group, double[] out, int n);
+
+        /** Short name used in logs and benchmark output. */
+        String name();
+
+        /** The scalar kernels. */
+        static AggregationKernels scalar() {
+                return ScalarKernels.INSTANCE;
+        }
+
+        /** The best kernels available in this JVM. */
+        static AggregationKernels best() {
+                return Holder.BEST;
+        }
+
+        final class Holder {
+                static final AggregationKernels BEST = load();
+
+                private Holder() {}
+
+                private static AggregationKernels load() {
+                        if ("scalar".equalsIgnoreCase(System.getProperty("sa001.kernels")))
+                                return scalar();
+                        try {
+                                // absent unless built with -Pvector; fails to link without
+                                // --add-modules jdk.incubator.vector at runtime
+                                Class<?> c = Class.forName("sa001.VectorKernels");
+                                return (AggregationKernels) c.getDeclaredConstructor().newInstance();
+                        } catch (ReflectiveOperationException | LinkageError e) {
+                                return scalar();
+                        }
+                }
+        }
+}
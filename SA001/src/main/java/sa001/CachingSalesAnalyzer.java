@@ -0,0 +1,257 @@
+package sa001;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Memoizing front for {@link SalesAnalyzer} queries over a {@link SalesDataset}.
+ *
+ * Results are cached under (dataset id, dataset version, method, parameters)
+ * in an LRU map bounded both by entry count and by total weight, where the
+ * weight of a result is its number of elements (1 for scalars). A reload or
+ * append of a dataset bumps its version, so older results can no longer be
+ * hit, and the listener registered on first use drops them right away.
+ * {@link #close()} unregisters those listeners; they also hold the analyzer
+ * only weakly and remove themselves once it has been collected, so a dataset
+ * that outlives an unclosed analyzer does not keep its cache alive.
+ *
+ * Cached collections are shared between callers and therefore unmodifiable.
+ */
+public class CachingSalesAnalyzer implements AutoCloseable {
+        private final SalesAnalyzer delegate;
+        private final int maxEntries;
+        private final long maxWeight;
+
+        // access-ordered, so iteration starts at the least recently used entry
+        private final LinkedHashMap<Key, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<Long, Invalidator> watched = new HashMap<>();
+        private long weight;
+        private long hits;
+        private long misses;
+
+        public CachingSalesAnalyzer(SalesAnalyzer delegate, int maxEntries, long maxWeight) {
+                if (maxEntries <= 0 || maxWeight <= 0)
+                        throw new IllegalArgumentException("cache bounds must be positive");
+                this.delegate = Objects.requireNonNull(delegate);
+                this.maxEntries = maxEntries;
+                this.maxWeight = maxWeight;
+        }
+
+        public CachingSalesAnalyzer(SalesAnalyzer delegate) {
+                this(delegate, 1024, 1_000_000);
+        }
+
+        public double totalRevenue(SalesDataset ds) {
+                return query(ds, "totalRevenue", 0, r -> delegate.totalRevenue(r));
+        }
+
+        public Map<String, Integer> quantityByCategory(SalesDataset ds) {
+                return query(ds, "quantityByCategory", 0, r -> Collections.unmodifiableMap(delegate.quantityByCategory(r)));
+        }
+
+        public Map<String, Double> revenueByRegion(SalesDataset ds) {
+                return query(ds, "revenueByRegion", 0, r -> Collections.unmodifiableMap(delegate.revenueByRegion(r)));
+        }
+
+        public Map<String, Double> monthlyRevenue(SalesDataset ds) {
+                return query(ds, "monthlyRevenue", 0, r -> Collections.unmodifiableMap(delegate.monthlyRevenue(r)));
+        }
+
+        public double medianOrderValue(SalesDataset ds) {
+                return query(ds, "medianOrderValue", 0, r -> delegate.medianOrderValue(r));
+        }
+
+        public Map<String, Double> percentContributionByProduct(SalesDataset ds) {
+                return query(ds, "percentContributionByProduct", 0,
+                                r -> Collections.unmodifiableMap(delegate.percentContributionByProduct(r)));
+        }
+
+        public Optional<String> bestSellingProduct(SalesDataset ds) {
+                return topNProducts(ds, 1).stream().findFirst();
+        }
+
+        public List<String> topNProducts(SalesDataset ds, int n) {
+                return query(ds, "topNProducts", n, r -> List.copyOf(delegate.topNProducts(r, n)));
+        }
+
+        public LinkedHashMap<String, Integer> topNProductsWithCounts(SalesDataset ds, int n) {
+                // the public type is a mutable LinkedHashMap, so hand out copies of the cached one
+                return new LinkedHashMap<>(query(ds, "topNProductsWithCounts", n,
+                                r -> delegate.topNProductsWithCounts(r, n)));
+        }
+
+        public Map<String, Double> avgPriceByCategory(SalesDataset ds) {
+                return query(ds, "avgPriceByCategory", 0, r -> Collections.unmodifiableMap(delegate.avgPriceByCategory(r)));
+        }
+
+        /**
+         * Unregister from every dataset queried so far and drop the cached
+         * results. A later query registers with its dataset again.
+         */
+        @Override
+        public synchronized void close() {
+                for (Invalidator l : watched.values())
+                        l.unregister();
+                watched.clear();
+                clear();
+        }
+
+        /** Drop every cached result. */
+        public synchronized void clear() {
+                cache.clear();
+                weight = 0;
+        }
+
+        public synchronized int size() {
+                return cache.size();
+        }
+
+        public synchronized long weight() {
+                return weight;
+        }
+
+        public synchronized long hitCount() {
+                return hits;
+        }
+
+        public synchronized long missCount() {
+                return misses;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <R> R query(SalesDataset ds, String method, int param, Function<List<SalesRecord>, R> compute) {
+                SalesDataset.View view = ds.view();
+                Key key = new Key(ds.id(), view.version, method, param);
+                synchronized (this) {
+                        Entry hit = cache.get(key);
+                        if (hit != null) {
+                                hits++;
+                                return (R) hit.value;
+                        }
+                        misses++;
+                        watch(ds);
+                }
+                // compute outside the lock so slow queries do not hold up cache hits
+                R value = compute.apply(view.records);
+                synchronized (this) {
+                        // skip results that a concurrent reload already made stale
+                        if (ds.version() == view.version && !cache.containsKey(key)) {
+                                Entry e = new Entry(value, weigh(value));
+                                cache.put(key, e);
+                                weight += e.weight;
+                                evict();
+                        }
+                }
+                return value;
+        }
+
+        private void watch(SalesDataset ds) {
+                if (!watched.containsKey(ds.id())) {
+                        Invalidator l = new Invalidator(this, ds);
+                        watched.put(ds.id(), l);
+                        ds.addChangeListener(l);
+                }
+        }
+
+        private synchronized void invalidate(long datasetId) {
+                Iterator<Map.Entry<Key, Entry>> it = cache.entrySet().iterator();
+                while (it.hasNext()) {
+                        Map.Entry<Key, Entry> e = it.next();
+                        if (e.getKey().datasetId == datasetId) {
+                                weight -= e.getValue().weight;
+                                it.remove();
+                        }
+                }
+        }
+
+        private void evict() {
+                Iterator<Map.Entry<Key, Entry>> it = cache.entrySet().iterator();
+                while ((cache.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+                        weight -= it.next().getValue().weight;
+                        it.remove();
+                }
+        }
+
+        private static long weigh(Object value) {
+                if (value instanceof Map)
+                        return Math.max(1, ((Map<?, ?>) value).size());
+                if (value instanceof Collection)
+                        return Math.max(1, ((Collection<?>) value).size());
+                return 1;
+        }
+
+        /** Change listener that references neither the analyzer nor the dataset strongly. */
+        private static final class Invalidator implements Runnable {
+                private final WeakReference<CachingSalesAnalyzer> owner;
+                private final WeakReference<SalesDataset> dataset;
+                private final long datasetId;
+
+                Invalidator(CachingSalesAnalyzer owner, SalesDataset dataset) {
+                        this.owner = new WeakReference<>(owner);
+                        this.dataset = new WeakReference<>(dataset);
+                        this.datasetId = dataset.id();
+                }
+
+                @Override
+                public void run() {
+                        CachingSalesAnalyzer c = owner.get();
+                        if (c == null)
+                                unregister();
+                        else
+                                c.invalidate(datasetId);
+                }
+
+                void unregister() {
+                        SalesDataset ds = dataset.get();
+                        if (ds != null)
+                                ds.removeChangeListener(this);
+                }
+        }
+
+        private static final class Entry {
+                final Object value;
+                final long weight;
+
+                Entry(Object value, long weight) {
+                        this.value = value;
+                        this.weight = weight;
+                }
+        }
+
+        private static final class Key {
+                final long datasetId;
+                final long version;
+                final String method;
+                final int param;
+
+                Key(long datasetId, long version, String method, int param) {
+                        this.datasetId = datasetId;
+                        this.version = version;
+                        this.method = method;
+                        this.param = param;
+                }
+
+                @Override
+                public boolean equals(Object o) {
+                        if (!(o instanceof Key))
+                                return false;
+                        Key k = (Key) o;
+                        return datasetId == k.datasetId && version == k.version && param == k.param
+                                        && method.equals(k.method);
+                }
+
+                @Override
+                public int hashCode() {
+                        return Objects.hash(datasetId, version, method, param);
+                }
+        }
+}
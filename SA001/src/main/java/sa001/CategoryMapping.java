@@ -0,0 +1,96 @@
+package sa001;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable product-to-category snapshot.
+ *
+ * Every known product gets a dense dictionary id and its category is stored in
+ * an array indexed by that id, so once a row's product has been resolved to an
+ * id, its category is a single array read.
+ */
+public final class CategoryMapping {
+
+        /** Category assigned to products with no mapping. */
+        public static final String UNKNOWN_CATEGORY = "Other";
+
+        private final StringLongMap productIds;
+        private final String[] products;
+        private final String[] categoryByProduct;
+        private final Map<String, String> asMap;
+
+        private CategoryMapping(Map<String, String> productToCategory) {
+                int n = productToCategory.size();
+                this.productIds = new StringLongMap(n);
+                this.products = new String[n];
+                this.categoryByProduct = new String[n];
+                // share one String instance per distinct category
+                Map<String, String> canonical = new LinkedHashMap<>();
+                int id = 0;
+                for (Map.Entry<String, String> e : productToCategory.entrySet()) {
+                        productIds.putIfAbsent(e.getKey(), id);
+                        products[id] = e.getKey();
+                        categoryByProduct[id] = canonical.computeIfAbsent(e.getValue(), c -> c);
+                        id++;
+                }
+                this.asMap = Collections.unmodifiableMap(new LinkedHashMap<>(productToCategory));
+        }
+
+        /** Snapshot of the given mappings. Later entries win over earlier ones for the same product. */
+        public static CategoryMapping of(Map<String, String> productToCategory) {
+                return new CategoryMapping(new LinkedHashMap<>(productToCategory));
+        }
+
+        /**
+         * Parse {@code product,category} lines, skipping blank and malformed lines,
+         * and lay them over {@code defaults}.
+         */
+        static CategoryMapping parse(List<String> lines, Map<String, String> defaults) {
+                Map<String, String> merged = new LinkedHashMap<>(defaults);
+                for (String line : lines) {
+                        String l = line.trim();
+                        if (l.isEmpty())
+                                continue;
+                        String[] a = l.split(",", 2);
+                        if (a.length == 2)
+                                merged.put(a[0].trim(), a[1].trim());
+                }
+                return new CategoryMapping(merged);
+        }
+
+        /** Dictionary id of {@code product}, or -1 if it has no mapping. */
+        public int productId(String product) {
+                return product == null ? -1 : (int) productIds.getOrDefault(product, -1L);
+        }
+
+        /** Canonical product name for an id returned by {@link #productId}. */
+        public String product(int productId) {
+                return products[productId];
+        }
+
+        /** Category for an id returned by {@link #productId}; -1 maps to {@link #UNKNOWN_CATEGORY}. */
+        public String categoryOf(int productId) {
+                return productId < 0 ? UNKNOWN_CATEGORY : categoryByProduct[productId];
+        }
+
+        public String categoryOf(String product) {
+                return categoryOf(productId(product));
+        }
+
+        public int size() {
+                return products.length;
+        }
+
+        /** The mappings as an unmodifiable map. */
+        public Map<String, String> asMap() {
+                return asMap;
+        }
+
+        /** Distinct products in id order. */
+        public List<String> products() {
+                return List.of(products);
+        }
+}
@@ -0,0 +1,30 @@
+package sa001;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight Recorder event for one read of a category mapping file. Disabled by default. */
+@Name("sa001.CategoryMappingLoad")
+@Label("Category Mapping Load")
+@Category({"SA001", "Load"})
+@Description("The product to category mapping file was read")
+@Enabled(false)
+@StackTrace(false)
+public final class CategoryMappingLoadEvent extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Entries")
+        int entries;
+
+        @Label("Bytes")
+        @Description("Size of the mapping file, 0 if it does not exist")
+        @DataAmount(DataAmount.BYTES)
+        long bytes;
+}
@@ -0,0 +1,216 @@
+package sa001;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Source of the current {@link CategoryMapping} for CSV loading.
+ *
+ * A file-backed service reads its {@code product,category} file once, on first
+ * use, and hands out the same immutable snapshot until the file is reloaded.
+ * After {@link #watch()}, a daemon thread reloads the file whenever it changes
+ * and swaps the new snapshot in atomically; loads already in progress keep
+ * the snapshot they started with. Editors and copy tools write a file in
+ * several steps, so the watcher waits until no change has been seen for
+ * {@value #QUIET_MILLIS} ms, and drops a read during which the file changed
+ * again, rather than publish a half-written mapping. A missing file yields
+ * the built-in defaults.
+ */
+public class CategoryMappingService implements Closeable {
+        private static final Logger LOG = Logger.getLogger(CategoryMappingService.class.getName());
+        static final long QUIET_MILLIS = 300;
+
+        private final Path file;
+        private final Map<String, String> defaults;
+        private volatile CategoryMapping current;
+        private WatchService watchService;
+        private Thread watcher;
+        private final AtomicLong reloads = new AtomicLong();
+
+        /** Service backed by {@code file}, laid over {@code defaults}. */
+        public CategoryMappingService(Path file, Map<String, String> defaults) {
+                this.file = Objects.requireNonNull(file);
+                this.defaults = Map.copyOf(defaults);
+        }
+
+        public CategoryMappingService(Path file) {
+                this(file, Map.of());
+        }
+
+        private CategoryMappingService(CategoryMapping fixed) {
+                this.file = null;
+                this.defaults = Map.of();
+                this.current = fixed;
+        }
+
+        /** Service that always returns {@code mapping}; it has no file to reload or watch. */
+        public static CategoryMappingService fixed(CategoryMapping mapping) {
+                return new CategoryMappingService(Objects.requireNonNull(mapping));
+        }
+
+        /** The current snapshot, loading the file on first call. */
+        public CategoryMapping current() {
+                CategoryMapping m = current;
+                if (m == null) {
+                        synchronized (this) {
+                                m = current;
+                                if (m == null) {
+                                        m = read();
+                                        current = m;
+                                }
+                        }
+                }
+                return m;
+        }
+
+        /** Re-read the file now and publish the result. No-op for fixed services. */
+        public synchronized void reload() {
+                if (file != null)
+                        publish(read());
+        }
+
+        /** Number of snapshots published by {@link #reload()} or the watcher. */
+        long reloadCount() {
+                return reloads.get();
+        }
+
+        private synchronized void publish(CategoryMapping mapping) {
+                current = mapping;
+                reloads.incrementAndGet();
+        }
+
+        /**
+         * Start watching the file and reload it whenever it is created, modified or
+         * deleted. Calling this more than once has no further effect.
+         */
+        public synchronized void watch() throws IOException {
+                if (file == null || watcher != null)
+                        return;
+                Path dir = file.toAbsolutePath().getParent();
+                WatchService ws = FileSystems.getDefault().newWatchService();
+                dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                                StandardWatchEventKinds.ENTRY_DELETE);
+                watchService = ws;
+                watcher = new Thread(() -> watchLoop(ws), "category-mapping-watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+        }
+
+        /** Stop watching, if {@link #watch()} was called. */
+        @Override
+        public synchronized void close() throws IOException {
+                if (watchService != null) {
+                        watchService.close();
+                        watchService = null;
+                        watcher = null;
+                }
+        }
+
+        private void watchLoop(WatchService ws) {
+                try {
+                        while (true) {
+                                WatchKey key = ws.take();
+                                boolean changed = concernsFile(key);
+                                if (!key.reset())
+                                        return;
+                                if (!changed)
+                                        continue;
+                                // wait for the writer to finish: every further change restarts the quiet period
+                                long quietUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(QUIET_MILLIS);
+                                long left;
+                                while ((left = quietUntil - System.nanoTime()) > 0) {
+                                        WatchKey next = ws.poll(left, TimeUnit.NANOSECONDS);
+                                        if (next == null)
+                                                break;
+                                        if (concernsFile(next))
+                                                quietUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(QUIET_MILLIS);
+                                        if (!next.reset())
+                                                return;
+                                }
+                                reloadIfStable();
+                        }
+                } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                } catch (ClosedWatchServiceException e) {
+                        // closed by close()
+                }
+        }
+
+        private boolean concernsFile(WatchKey key) {
+                Path name = file.getFileName();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context()))
+                                changed = true;
+                }
+                return changed;
+        }
+
+        /**
+         * Parse the file into a candidate and publish it only if the file did not
+         * change while it was read; a change that did will be reported by the
+         * watch service, and the next quiet period reads it again.
+         */
+        private void reloadIfStable() {
+                try {
+                        List<Object> before = stamp();
+                        CategoryMapping candidate = read();
+                        if (before.equals(stamp()))
+                                publish(candidate);
+                } catch (IOException | RuntimeException e) {
+                        LOG.log(Level.WARNING, "keeping the previous category mapping; cannot reload " + file, e);
+                }
+        }
+
+        // size and modification time, or empty if the file does not exist
+        private List<Object> stamp() throws IOException {
+                try {
+                        return List.of(Files.size(file), Files.getLastModifiedTime(file));
+                } catch (NoSuchFileException e) {
+                        return List.of();
+                }
+        }
+
+        private CategoryMapping read() {
+                CategoryMappingLoadEvent event = new CategoryMappingLoadEvent();
+                event.begin();
+                CategoryMapping mapping;
+                long bytes = 0;
+                if (!Files.exists(file)) {
+                        mapping = CategoryMapping.of(defaults);
+                } else {
+                        try {
+                                mapping = CategoryMapping.parse(Files.readAllLines(file, StandardCharsets.UTF_8), defaults);
+                                bytes = Files.size(file);
+                        } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                        }
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                        event.file = file.toString();
+                        event.entries = mapping.size();
+                        event.bytes = bytes;
+                        event.commit();
+                }
+                return mapping;
+        }
+}
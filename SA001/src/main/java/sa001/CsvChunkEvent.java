@@ -0,0 +1,61 @@
+package sa001;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one chunk of {@link #ROWS} rows parsed by
+ * {@link SalesAnalyzer#loadCSV}. Disabled by default; with no recording the
+ * loader only allocates one event per chunk.
+ */
+@Name("sa001.CsvChunk")
+@Label("CSV Chunk")
+@Category({"SA001", "Load"})
+@Description("A chunk of sales CSV rows was parsed")
+@Enabled(false)
+@StackTrace(false)
+public final class CsvChunkEvent extends Event {
+        /** Rows per event. */
+        static final int ROWS = 10_000;
+
+        @Label("File")
+        String file;
+
+        @Label("First Row")
+        long firstRow;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Characters")
+        @Description("Characters of the decoded file the rows span, header included for the first chunk")
+        long characters;
+
+        // transient: bookkeeping only, not part of the recorded event
+        private transient long firstOffset;
+
+        /** Begin timing the chunk starting at {@code firstRow}, {@code offset} characters into the file. */
+        static CsvChunkEvent start(String file, long firstRow, long offset) {
+                CsvChunkEvent event = new CsvChunkEvent();
+                event.file = file;
+                event.firstRow = firstRow;
+                event.firstOffset = offset;
+                event.begin();
+                return event;
+        }
+
+        /** End the chunk just before row {@code endRow}, at character {@code endOffset}. */
+        void finish(long endRow, long endOffset) {
+                end();
+                if (shouldCommit()) {
+                        rows = endRow - firstRow;
+                        characters = endOffset - firstOffset;
+                        commit();
+                }
+        }
+}
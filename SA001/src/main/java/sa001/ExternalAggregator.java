@@ -0,0 +1,313 @@
+package sa001;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Per-key sum/count aggregation with a bounded memory footprint.
+ *
+ * Keys are accumulated in memory until the estimated size of the working set
+ * exceeds the configured budget. The working set is then hash-partitioned into
+ * on-disk runs and cleared. When the results are visited each partition is
+ * merged on its own; a partition that still does not fit in the budget is
+ * re-partitioned with a different hash seed before merging.
+ */
+final class ExternalAggregator implements Closeable {
+
+        /** Budget value meaning "never spill". */
+        static final long UNBOUNDED = Long.MAX_VALUE;
+
+        static final int PARTITIONS = 16;
+        private static final int WRITE_BUFFER_BYTES = 4 * 1024;
+        private static final int MAX_DEPTH = 8;
+
+        /** Smallest accepted budget: the partition write buffers plus room for the working set. */
+        static final long MIN_BUDGET = 2L * PARTITIONS * WRITE_BUFFER_BYTES;
+
+        // Rough cost of a String header plus its backing array, on top of the characters
+        private static final int KEY_OVERHEAD_BYTES = 40;
+
+        private final long budget;
+        private final Path spillParent;
+        private final StringDoubleMap working = new StringDoubleMap();
+        private long keyBytes;
+        private Path spillDir;
+        private DataOutputStream[] runs;
+        private int spills;
+
+        ExternalAggregator(long budgetBytes, Path spillParent) {
+                if (budgetBytes < MIN_BUDGET)
+                        throw new IllegalArgumentException(
+                                        "memory budget must be at least " + MIN_BUDGET + " bytes: " + budgetBytes);
+                this.budget = budgetBytes;
+                this.spillParent = spillParent;
+        }
+
+        /** Add {@code value} to the running sum for {@code key} and bump its count. */
+        void add(String key, double value) {
+                int before = working.size();
+                working.add(key, value);
+                if (working.size() != before) {
+                        keyBytes += keyBytes(key);
+                        if (keyBytes + working.tableBytes() > workingBudget())
+                                spill();
+                }
+        }
+
+        /** Number of times the working set has been written out to disk. */
+        int spillCount() {
+                return spills;
+        }
+
+        /**
+         * Visit every key with its merged sum and count. Visiting order is
+         * unspecified. Once the aggregator has spilled, its runs are consumed by
+         * the first call.
+         */
+        void forEach(StringDoubleMap.Visitor visitor) {
+                if (runs == null) {
+                        working.forEach(visitor);
+                        return;
+                }
+                try {
+                        spill();
+                        closeRuns(runs);
+                        runs = null;
+                        for (int i = 0; i < PARTITIONS; i++)
+                                merge(partitionFile(spillDir, i), 1, visitor);
+                } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                }
+        }
+
+        @Override
+        public void close() {
+                working.clear();
+                keyBytes = 0;
+                try {
+                        if (runs != null)
+                                closeRuns(runs);
+                        if (spillDir != null)
+                                deleteRecursively(spillDir);
+                } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                } finally {
+                        runs = null;
+                        spillDir = null;
+                }
+        }
+
+        private long workingBudget() {
+                // partition write buffers are charged against the budget as well
+                return budget - (long) PARTITIONS * WRITE_BUFFER_BYTES;
+        }
+
+        private void spill() {
+                try {
+                        if (runs == null) {
+                                spillDir = Files.createTempDirectory(spillParent, "sa001-spill");
+                                runs = openRuns(spillDir);
+                        }
+                        DataOutputStream[] out = runs;
+                        working.forEach((key, sum, count) -> {
+                                try {
+                                        writeEntry(out[partition(key, 0)], key, sum, count);
+                                } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                }
+                        });
+                        spills++;
+                } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                }
+                working.clear();
+                keyBytes = 0;
+        }
+
+        // Merge one partition file; re-partition it with a new seed if it does not fit.
+        private void merge(Path file, int depth, StringDoubleMap.Visitor visitor) throws IOException {
+                StringDoubleMap merged = new StringDoubleMap();
+                long bytes = 0;
+                boolean fits = true;
+                try (DataInputStream in = openRun(file)) {
+                        String key;
+                        while ((key = readKey(in)) != null) {
+                                double sum = in.readDouble();
+                                long count = in.readLong();
+                                int before = merged.size();
+                                merged.add(key, sum, count);
+                                if (merged.size() != before) {
+                                        bytes += keyBytes(key);
+                                        if (bytes + merged.tableBytes() > workingBudget()) {
+                                                fits = false;
+                                                break;
+                                        }
+                                }
+                        }
+                }
+                if (fits) {
+                        merged.forEach(visitor);
+                        Files.delete(file);
+                        return;
+                }
+                merged = null;
+                if (depth >= MAX_DEPTH)
+                        throw new IllegalStateException("partition " + file.getFileName()
+                                        + " does not fit in the memory budget after " + depth + " passes");
+
+                Path subDir = Files.createDirectory(file.resolveSibling(file.getFileName() + ".d"));
+                DataOutputStream[] sub = openRuns(subDir);
+                try (DataInputStream in = openRun(file)) {
+                        String key;
+                        while ((key = readKey(in)) != null)
+                                writeEntry(sub[partition(key, depth)], key, in.readDouble(), in.readLong());
+                } finally {
+                        closeRuns(sub);
+                }
+                Files.delete(file);
+                for (int i = 0; i < PARTITIONS; i++)
+                        merge(partitionFile(subDir, i), depth + 1, visitor);
+        }
+
+        private static long keyBytes(String key) {
+                return KEY_OVERHEAD_BYTES + 2L * key.length();
+        }
+
+        /**
+         * The first pass uses the cached {@code hashCode}; later passes hash the
+         * characters again with the seed, so keys whose hash codes collide (or
+         * agree in their low bits) are split apart there instead of landing in
+         * the same oversized partition at every depth.
+         */
+        private static int partition(String key, int seed) {
+                int h;
+                if (seed == 0) {
+                        h = key.hashCode();
+                } else {
+                        // FNV-1a over the UTF-16 units, started from the seed
+                        h = 0x811c9dc5 ^ (seed * 0x9E3779B9);
+                        for (int i = 0; i < key.length(); i++)
+                                h = (h ^ key.charAt(i)) * 0x01000193;
+                }
+                // MurmurHash3 finalizer, so every input bit reaches the bits used below
+                h ^= h >>> 16;
+                h *= 0x85ebca6b;
+                h ^= h >>> 13;
+                h *= 0xc2b2ae35;
+                h ^= h >>> 16;
+                return (h >>> 1) % PARTITIONS;
+        }
+
+        private static Path partitionFile(Path dir, int i) {
+                return dir.resolve("part-" + i + ".run");
+        }
+
+        private static DataOutputStream[] openRuns(Path dir) throws IOException {
+                DataOutputStream[] out = new DataOutputStream[PARTITIONS];
+                for (int i = 0; i < PARTITIONS; i++)
+                        out[i] = new DataOutputStream(new BufferedOutputStream(
+                                        Files.newOutputStream(partitionFile(dir, i)), WRITE_BUFFER_BYTES));
+                return out;
+        }
+
+        private static DataInputStream openRun(Path file) throws IOException {
+                return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), WRITE_BUFFER_BYTES));
+        }
+
+        private static void closeRuns(DataOutputStream[] out) throws IOException {
+                IOException first = null;
+                for (DataOutputStream o : out) {
+                        try {
+                                o.close();
+                        } catch (IOException e) {
+                                if (first == null)
+                                        first = e;
+                        }
+                }
+                if (first != null)
+                        throw first;
+        }
+
+        private static void writeEntry(DataOutputStream out, String key, double sum, long count) throws IOException {
+                writeKey(out, key);
+                out.writeDouble(sum);
+                out.writeLong(count);
+        }
+
+        /*
+         * Keys are an int byte length followed by the same modified UTF-8 that
+         * writeUTF uses: one to three bytes per char, surrogates encoded one by
+         * one, so any String round-trips. Unlike writeUTF there is no 64 KB limit.
+         */
+        private static void writeKey(DataOutputStream out, String key) throws IOException {
+                int n = key.length();
+                int bytes = 0;
+                for (int i = 0; i < n; i++) {
+                        char c = key.charAt(i);
+                        bytes += c >= 1 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+                }
+                byte[] buf = new byte[bytes];
+                int pos = 0;
+                for (int i = 0; i < n; i++) {
+                        char c = key.charAt(i);
+                        if (c >= 1 && c <= 0x7F) {
+                                buf[pos++] = (byte) c;
+                        } else if (c <= 0x7FF) {
+                                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+                        } else {
+                                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+                        }
+                }
+                out.writeInt(bytes);
+                out.write(buf);
+        }
+
+        /** The next key, or null at the end of the run. */
+        private static String readKey(DataInputStream in) throws IOException {
+                int bytes;
+                try {
+                        bytes = in.readInt();
+                } catch (EOFException eof) {
+                        return null;
+                }
+                byte[] buf = new byte[bytes];
+                in.readFully(buf);
+                char[] chars = new char[bytes];
+                int n = 0;
+                for (int pos = 0; pos < bytes;) {
+                        int b = buf[pos++] & 0xFF;
+                        if (b < 0x80) {
+                                chars[n++] = (char) b;
+                        } else if (b < 0xE0) {
+                                chars[n++] = (char) (((b & 0x1F) << 6) | (buf[pos++] & 0x3F));
+                        } else {
+                                chars[n++] = (char) (((b & 0x0F) << 12) | ((buf[pos++] & 0x3F) << 6) | (buf[pos++] & 0x3F));
+                        }
+                }
+                return new String(chars, 0, n);
+        }
+
+        private static void deleteRecursively(Path dir) throws IOException {
+                try (Stream<Path> paths = Files.walk(dir)) {
+                        paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> {
+                                try {
+                                        Files.deleteIfExists(p);
+                                } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                }
+                        });
+                }
+        }
+}
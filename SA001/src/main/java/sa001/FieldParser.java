@@ -0,0 +1,199 @@
+package sa001;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Locale;
+
+/**
+ * Parses CSV field values without throwing. Each {@code parse*} method
+ * returns a {@link Status} and leaves the value in {@link #intValue()},
+ * {@link #doubleValue()} or {@link #dateValue()}; on any status other than
+ * {@code OK} the value is the old default (0, 0.0 or null). A malformed field
+ * therefore costs a scan of its characters, like a good one, instead of the
+ * construction and unwinding of a {@code NumberFormatException}.
+ *
+ * Instances hold the last value, so use one per thread (one per
+ * {@link SalesAnalyzer#loadCSV(String)} call).
+ */
+public final class FieldParser {
+
+        /** Outcome of a parse; everything but {@code OK} counts as a reject. */
+        public enum Status {
+                OK,
+                /** The value was null or empty. */
+                MISSING,
+                /** The value is not a number or an ISO {@code yyyy-MM-dd} date. */
+                MALFORMED,
+                /** The value has the right shape but does not fit: an int overflow, 1e999, 2025-02-30. */
+                OUT_OF_RANGE;
+
+                /** Lower-case name used in logs and {@link RejectStats#toString()}. */
+                public String label() {
+                        return name().toLowerCase(Locale.ROOT);
+                }
+        }
+
+        // 10^0 .. 10^22 are exact doubles; a mantissa below 2^53 divided by one
+        // of them is correctly rounded, which is the Double.parseDouble result
+        private static final double[] POWERS_OF_TEN = new double[23];
+        static {
+                POWERS_OF_TEN[0] = 1;
+                for (int i = 1; i < POWERS_OF_TEN.length; i++)
+                        POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+        private static final int FAST_PATH_DIGITS = 15;
+
+        private int intValue;
+        private double doubleValue;
+        private LocalDate dateValue;
+
+        public int intValue() {
+                return intValue;
+        }
+
+        public double doubleValue() {
+                return doubleValue;
+        }
+
+        public LocalDate dateValue() {
+                return dateValue;
+        }
+
+        /** Optional sign followed by decimal digits, within the int range. */
+        public Status parseInt(CharSequence s) {
+                intValue = 0;
+                if (s == null || s.length() == 0)
+                        return Status.MISSING;
+                int len = s.length();
+                int i = 0;
+                boolean negative = false;
+                char c = s.charAt(0);
+                if (c == '-' || c == '+') {
+                        negative = c == '-';
+                        if (++i == len)
+                                return Status.MALFORMED;
+                }
+                // accumulate in a long and keep scanning after an overflow, so
+                // a stray letter is still reported as malformed
+                long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+                long acc = 0;
+                boolean overflow = false;
+                for (; i < len; i++) {
+                        int d = s.charAt(i) - '0';
+                        if (d < 0 || d > 9)
+                                return Status.MALFORMED;
+                        if (!overflow) {
+                                acc = acc * 10 + d;
+                                overflow = acc > limit;
+                        }
+                }
+                if (overflow)
+                        return Status.OUT_OF_RANGE;
+                intValue = (int) (negative ? -acc : acc);
+                return Status.OK;
+        }
+
+        /**
+         * Plain decimal with optional sign, fraction and exponent
+         * ({@code 12}, {@code -0.5}, {@code .25}, {@code 1.2e3}). Unlike
+         * {@code Double.parseDouble}, {@code NaN}, {@code Infinity}, hex and
+         * type suffixes such as {@code 1d} are malformed, and a value that
+         * overflows to infinity is out of range.
+         */
+        public Status parseDouble(CharSequence s) {
+                doubleValue = 0.0;
+                if (s == null || s.length() == 0)
+                        return Status.MISSING;
+                int len = s.length();
+                int i = 0;
+                boolean negative = false;
+                char c = s.charAt(0);
+                if (c == '-' || c == '+') {
+                        negative = c == '-';
+                        i++;
+                }
+                long mantissa = 0;
+                int digits = 0; // significant digits, leading zeros excluded
+                int fractionDigits = 0;
+                boolean anyDigit = false;
+                boolean dot = false;
+                for (; i < len; i++) {
+                        c = s.charAt(i);
+                        if (c >= '0' && c <= '9') {
+                                anyDigit = true;
+                                if (dot)
+                                        fractionDigits++;
+                                if (mantissa != 0 || c != '0')
+                                        digits++;
+                                if (digits <= FAST_PATH_DIGITS)
+                                        mantissa = mantissa * 10 + (c - '0');
+                        } else if (c == '.' && !dot) {
+                                dot = true;
+                        } else {
+                                break;
+                        }
+                }
+                if (!anyDigit)
+                        return Status.MALFORMED;
+                boolean exponent = i < len;
+                if (exponent) {
+                        c = s.charAt(i++);
+                        if (c != 'e' && c != 'E')
+                                return Status.MALFORMED;
+                        if (i < len && (s.charAt(i) == '-' || s.charAt(i) == '+'))
+                                i++;
+                        if (i == len)
+                                return Status.MALFORMED;
+                        for (; i < len; i++) {
+                                c = s.charAt(i);
+                                if (c < '0' || c > '9')
+                                        return Status.MALFORMED;
+                        }
+                }
+
+                double value;
+                if (!exponent && digits <= FAST_PATH_DIGITS && fractionDigits < POWERS_OF_TEN.length) {
+                        value = mantissa / POWERS_OF_TEN[fractionDigits];
+                        if (negative)
+                                value = -value;
+                } else {
+                        // the grammar is checked above, so this cannot throw
+                        value = Double.parseDouble(s.toString());
+                        if (Double.isInfinite(value))
+                                return Status.OUT_OF_RANGE;
+                }
+                doubleValue = value;
+                return Status.OK;
+        }
+
+        /** ISO {@code yyyy-MM-dd}, as accepted by {@code LocalDate.parse} for four-digit years. */
+        public Status parseDate(CharSequence s) {
+                dateValue = null;
+                if (s == null || s.length() == 0)
+                        return Status.MISSING;
+                if (s.length() != 10 || s.charAt(4) != '-' || s.charAt(7) != '-')
+                        return Status.MALFORMED;
+                int year = digits(s, 0, 4);
+                int month = digits(s, 5, 7);
+                int day = digits(s, 8, 10);
+                if (year < 0 || month < 0 || day < 0)
+                        return Status.MALFORMED;
+                if (month < 1 || month > 12 || day < 1
+                                || day > YearMonth.of(year, month).lengthOfMonth())
+                        return Status.OUT_OF_RANGE;
+                dateValue = LocalDate.of(year, month, day);
+                return Status.OK;
+        }
+
+        /** Value of the decimal digits in {@code [from, to)}, or -1 if any is not a digit. */
+        private static int digits(CharSequence s, int from, int to) {
+                int v = 0;
+                for (int i = from; i < to; i++) {
+                        int d = s.charAt(i) - '0';
+                        if (d < 0 || d > 9)
+                                return -1;
+                        v = v * 10 + d;
+                }
+                return v;
+        }
+}
@@ -0,0 +1,90 @@
+package sa001;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Minimal JSON writer for query results: maps, collections, strings,
+ * numbers, booleans, {@link Optional} and null. Map keys are written with
+ * {@code String.valueOf}; non-finite doubles become null.
+ */
+final class Json {
+        private Json() {
+        }
+
+        static String write(Object value) {
+                StringBuilder sb = new StringBuilder();
+                write(value, sb);
+                return sb.toString();
+        }
+
+        static void write(Object value, StringBuilder sb) {
+                if (value == null) {
+                        sb.append("null");
+                } else if (value instanceof Optional) {
+                        write(((Optional<?>) value).orElse(null), sb);
+                } else if (value instanceof String) {
+                        string((String) value, sb);
+                } else if (value instanceof Double || value instanceof Float) {
+                        double d = ((Number) value).doubleValue();
+                        sb.append(Double.isFinite(d) ? Double.toString(d) : "null");
+                } else if (value instanceof Number || value instanceof Boolean) {
+                        sb.append(value);
+                } else if (value instanceof Map) {
+                        sb.append('{');
+                        boolean first = true;
+                        for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                                if (!first)
+                                        sb.append(',');
+                                first = false;
+                                string(String.valueOf(e.getKey()), sb);
+                                sb.append(':');
+                                write(e.getValue(), sb);
+                        }
+                        sb.append('}');
+                } else if (value instanceof Collection) {
+                        sb.append('[');
+                        boolean first = true;
+                        for (Object o : (Collection<?>) value) {
+                                if (!first)
+                                        sb.append(',');
+                                first = false;
+                                write(o, sb);
+                        }
+                        sb.append(']');
+                } else {
+                        string(value.toString(), sb);
+                }
+        }
+
+        private static void string(String s, StringBuilder sb) {
+                sb.append('"');
+                for (int i = 0; i < s.length(); i++) {
+                        char c = s.charAt(i);
+                        switch (c) {
+                        case '"':
+                                sb.append("\\\"");
+                                break;
+                        case '\\':
+                                sb.append("\\\\");
+                                break;
+                        case '\n':
+                                sb.append("\\n");
+                                break;
+                        case '\r':
+                                sb.append("\\r");
+                                break;
+                        case '\t':
+                                sb.append("\\t");
+                                break;
+                        default:
+                                if (c < 0x20)
+                                        sb.append(String.format("\\u%04x", (int) c));
+                                else
+                                        sb.append(c);
+                        }
+                }
+                sb.append('"');
+        }
+}
@@ -1,9 +1,81 @@
 package sa001;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Usage: java sa001.Main [--serve[=PORT]] [--data-root=DIR] [--rejects=FILE] [CSV | DIR | GLOB]
+ *
+ * Without {@code --serve} this loads the CSV (default {@code data/sales.csv})
+ * so the application can be used programmatically; a directory or glob is
+ * loaded as a partitioned dataset (see {@link PartitionedSalesLoader}). With
+ * it, the dataset stays resident behind a {@link QueryServer} on the loopback
+ * interface (default port 7070) until a client sends {@code shutdown}; its
+ * {@code reload} and {@code append} commands read only under {@code --data-root}
+ * (default: the directory holding the served data).
+ * Values that do not parse are counted and summarized on stderr; with
+ * {@code --rejects} the offending rows are also written to FILE (see
+ * {@link RejectLog}).
+ */
 public class Main {
+        static final int DEFAULT_PORT = 7070;
+
         public static void main(String[] args) throws Exception {
+                String csv = "data/sales.csv";
+                int port = -1;
+                String rejectFile = null;
+                String dataRoot = null;
+                for (String a : args) {
+                        if (a.equals("--serve"))
+                                port = DEFAULT_PORT;
+                        else if (a.startsWith("--serve="))
+                                port = Integer.parseInt(a.substring("--serve=".length()));
+                        else if (a.startsWith("--data-root="))
+                                dataRoot = a.substring("--data-root=".length());
+                        else if (a.startsWith("--rejects="))
+                                rejectFile = a.substring("--rejects=".length());
+                        else
+                                csv = a;
+                }
+
                 // Load data so the application can be used programmatically.
                 SalesAnalyzer analyzer = new SalesAnalyzer();
-                analyzer.loadCSV("data/sales.csv");
+                List<SalesRecord> records;
+                try (RejectLog log = rejectFile != null ? new RejectLog(Paths.get(rejectFile)) : null) {
+                        analyzer.setRejectLog(log);
+                        records = PartitionedSalesLoader.loadAll(analyzer, csv);
+                } finally {
+                        analyzer.setRejectLog(null);
+                }
+                if (analyzer.getRejectStats().rows() > 0)
+                        System.err.println(csv + ": " + analyzer.getRejectStats()
+                                        + (rejectFile != null ? ", written to " + rejectFile : ""));
+                if (port < 0)
+                        return;
+
+                Path root = dataRoot != null ? Paths.get(dataRoot) : directoryOf(csv);
+                try (QueryServer server = new QueryServer(analyzer, new SalesDataset(records), port, root)) {
+                        server.warmUp();
+                        server.start();
+                        InetSocketAddress bound = server.address();
+                        String host = bound.getAddress().getHostAddress();
+                        System.out.println("Serving " + records.size() + " records from " + csv + " on "
+                                        + (host.contains(":") ? "[" + host + "]" : host) + ":" + bound.getPort());
+                        server.awaitShutdown();
+                }
+        }
+
+        /** The directory a CSV path, directory or glob reads from. */
+        static Path directoryOf(String spec) {
+                int wildcard = PartitionedSalesLoader.firstWildcard(spec);
+                if (wildcard >= 0) {
+                        int slash = spec.lastIndexOf('/', wildcard);
+                        return Paths.get(slash < 0 ? "." : spec.substring(0, Math.max(slash, 1)));
+                }
+                Path path = Paths.get(spec).toAbsolutePath();
+                return Files.isDirectory(path) ? path : path.getParent();
         }
 }
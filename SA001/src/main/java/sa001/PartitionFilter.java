@@ -0,0 +1,87 @@
+package sa001;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Date range and region restriction for {@link PartitionedSalesLoader}.
+ * Immutable; {@code between} and {@code regions} return new filters. Dates
+ * are inclusive and either end may be null (unbounded). Regions compare
+ * case-insensitively; an empty set means every region.
+ */
+public final class PartitionFilter {
+        private static final PartitionFilter ALL = new PartitionFilter(null, null, Collections.emptySet());
+
+        private final LocalDate from;
+        private final LocalDate to;
+        private final Set<String> regions;
+
+        private PartitionFilter(LocalDate from, LocalDate to, Set<String> regions) {
+                if (from != null && to != null && from.isAfter(to))
+                        throw new IllegalArgumentException("empty date range: " + from + " > " + to);
+                this.from = from;
+                this.to = to;
+                this.regions = regions;
+        }
+
+        public static PartitionFilter all() {
+                return ALL;
+        }
+
+        /** Rows dated {@code from} to {@code to}, both inclusive. */
+        public static PartitionFilter between(LocalDate from, LocalDate to) {
+                return ALL.dates(from, to);
+        }
+
+        public PartitionFilter dates(LocalDate from, LocalDate to) {
+                return new PartitionFilter(from, to, regions);
+        }
+
+        public PartitionFilter regions(String... names) {
+                return new PartitionFilter(from, to, Arrays.stream(names).map(PartitionFilter::normalize)
+                                .collect(Collectors.toUnmodifiableSet()));
+        }
+
+        /** Whether a file with these partition keys may hold matching rows; a null key always may. */
+        boolean mayContain(LocalDate date, String region) {
+                return acceptsDate(date) && acceptsRegion(region);
+        }
+
+        /**
+         * Whether a row matches. Rows without a date only match an unbounded
+         * range, and rows without a region only match when no regions are set.
+         */
+        boolean matches(SalesRecord r) {
+                if ((from != null || to != null) && r.getDate() == null)
+                        return false;
+                if (!regions.isEmpty() && r.getRegion() == null)
+                        return false;
+                return acceptsDate(r.getDate()) && acceptsRegion(r.getRegion());
+        }
+
+        boolean isAll() {
+                return from == null && to == null && regions.isEmpty();
+        }
+
+        private boolean acceptsDate(LocalDate d) {
+                return d == null || (from == null || !d.isBefore(from)) && (to == null || !d.isAfter(to));
+        }
+
+        private boolean acceptsRegion(String region) {
+                return region == null || regions.isEmpty() || regions.contains(normalize(region));
+        }
+
+        private static String normalize(String region) {
+                return region.trim().toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        public String toString() {
+                return "PartitionFilter[" + (from == null ? "*" : from) + ".." + (to == null ? "*" : to)
+                                + (regions.isEmpty() ? "" : ", regions=" + regions) + "]";
+        }
+}
@@ -0,0 +1,263 @@
+package sa001;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads a dataset that is spread over many CSV files, e.g. one per day per
+ * region, skipping files whose partition keys rule them out.
+ *
+ * Files are found under a root directory by a glob relative to it (default
+ * {@code **.{csv,csv.gz}}). The date and region of each file are inferred from its
+ * path relative to the root:
+ * <ul>
+ * <li>{@code date=2025-01-05} and {@code region=North} path segments (Hive style);</li>
+ * <li>otherwise a {@code YYYY-MM-DD} or {@code YYYYMMDD} token, or {@code YYYY/MM/DD}
+ * directories, give the date;</li>
+ * <li>otherwise, in a file name like {@code sales_2025-01-05_North.csv}, the
+ * token after the date gives the region.</li>
+ * </ul>
+ * A key that cannot be inferred never prunes: such files are always read.
+ * Surviving files are parsed in parallel with {@link SalesAnalyzer#loadCSV},
+ * and rows are filtered again so the result is exact either way. Records come
+ * back in path order regardless of which file finished first.
+ */
+public class PartitionedSalesLoader {
+        public static final String DEFAULT_GLOB = "**.{csv,csv.gz}";
+
+        private static final Pattern HIVE = Pattern.compile("(?i)(date|dt|region)=(.+)");
+        private static final Pattern ISO_DATE = Pattern.compile("(?<!\\d)(\\d{4})-(\\d{2})-(\\d{2})(?!\\d)");
+        private static final Pattern BASIC_DATE = Pattern.compile("(?<!\\d)(\\d{4})(\\d{2})(\\d{2})(?!\\d)");
+        private static final Pattern DIR_DATE = Pattern.compile("(?<!\\d)(\\d{4})/(\\d{2})/(\\d{2})(?!\\d)");
+
+        private final SalesAnalyzer analyzer;
+        private final Path root;
+        private final PathMatcher matcher;
+        private final int threads;
+
+        public PartitionedSalesLoader(SalesAnalyzer analyzer, Path root, String glob, int threads) {
+                if (threads <= 0)
+                        throw new IllegalArgumentException("threads must be positive");
+                this.analyzer = Objects.requireNonNull(analyzer);
+                this.root = Objects.requireNonNull(root);
+                this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+                this.threads = threads;
+        }
+
+        public PartitionedSalesLoader(SalesAnalyzer analyzer, Path root) {
+                this(analyzer, root, DEFAULT_GLOB, Runtime.getRuntime().availableProcessors());
+        }
+
+        /**
+         * Loader for a directory ({@code exports/}) or a glob whose leading
+         * directories have no wildcards ({@code exports/sales_2025-01-*.csv}).
+         */
+        public static PartitionedSalesLoader of(SalesAnalyzer analyzer, String dirOrGlob) {
+                int wildcard = firstWildcard(dirOrGlob);
+                if (wildcard < 0)
+                        return new PartitionedSalesLoader(analyzer, Paths.get(dirOrGlob));
+                int slash = dirOrGlob.lastIndexOf('/', wildcard);
+                Path root = Paths.get(slash < 0 ? "." : dirOrGlob.substring(0, Math.max(slash, 1)));
+                return new PartitionedSalesLoader(analyzer, root, dirOrGlob.substring(slash + 1),
+                                Runtime.getRuntime().availableProcessors());
+        }
+
+        /** Whether {@code spec} names something {@link #of} handles rather than a single file. */
+        public static boolean isPartitioned(String spec) {
+                return firstWildcard(spec) >= 0 || Files.isDirectory(Paths.get(spec));
+        }
+
+        /** Every record of a single CSV file, a directory or a glob. */
+        public static List<SalesRecord> loadAll(SalesAnalyzer analyzer, String spec) throws IOException {
+                if (!isPartitioned(spec))
+                        return analyzer.loadCSV(spec);
+                return of(analyzer, spec).load().records();
+        }
+
+        /** Every matching file with its inferred keys, in path order. */
+        public List<Partition> partitions() throws IOException {
+                try (Stream<Path> files = Files.walk(root)) {
+                        return files.filter(Files::isRegularFile)
+                                        .map(root::relativize)
+                                        .filter(matcher::matches)
+                                        .sorted()
+                                        .map(rel -> infer(root.resolve(rel), rel))
+                                        .collect(Collectors.toList());
+                }
+        }
+
+        public Result load() throws IOException {
+                return load(PartitionFilter.all());
+        }
+
+        /** Read the files that may hold rows matching {@code filter}, and return those rows. */
+        public Result load(PartitionFilter filter) throws IOException {
+                List<Partition> all = partitions();
+                List<Partition> selected = all.stream().filter(p -> filter.mayContain(p.date, p.region))
+                                .collect(Collectors.toList());
+                List<List<SalesRecord>> parts = parse(selected);
+                List<SalesRecord> records = new ArrayList<>();
+                for (List<SalesRecord> part : parts) {
+                        if (filter.isAll()) {
+                                records.addAll(part);
+                        } else {
+                                for (SalesRecord r : part) {
+                                        if (filter.matches(r))
+                                                records.add(r);
+                                }
+                        }
+                }
+                return new Result(records, selected.size(), all.size() - selected.size());
+        }
+
+        private List<List<SalesRecord>> parse(List<Partition> partitions) throws IOException {
+                if (partitions.isEmpty())
+                        return List.of();
+                ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, partitions.size()), r -> {
+                        Thread t = new Thread(r, "partition-loader");
+                        t.setDaemon(true);
+                        return t;
+                });
+                try {
+                        List<Future<List<SalesRecord>>> futures = new ArrayList<>();
+                        for (Partition p : partitions)
+                                futures.add(pool.submit(() -> analyzer.loadCSV(p.file.toString())));
+                        List<List<SalesRecord>> out = new ArrayList<>(futures.size());
+                        for (Future<List<SalesRecord>> f : futures)
+                                out.add(f.get());
+                        return out;
+                } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("interrupted while loading partitions", e);
+                } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof IOException)
+                                throw (IOException) cause;
+                        if (cause instanceof UncheckedIOException)
+                                throw ((UncheckedIOException) cause).getCause();
+                        if (cause instanceof RuntimeException)
+                                throw (RuntimeException) cause;
+                        throw new IOException(cause);
+                } finally {
+                        pool.shutdownNow();
+                }
+        }
+
+        static Partition infer(Path file, Path relative) {
+                LocalDate date = null;
+                String region = null;
+                for (Path segment : relative) {
+                        Matcher m = HIVE.matcher(segment.toString());
+                        if (!m.matches())
+                                continue;
+                        if (m.group(1).equalsIgnoreCase("region"))
+                                region = m.group(2);
+                        else
+                                date = date(ISO_DATE.matcher(m.group(2)));
+                }
+
+                String path = relative.toString().replace('\\', '/');
+                if (date == null)
+                        date = date(ISO_DATE.matcher(path));
+                if (date == null)
+                        date = date(DIR_DATE.matcher(path));
+                if (date == null)
+                        date = date(BASIC_DATE.matcher(path));
+
+                if (region == null && date != null) {
+                        String name = relative.getFileName().toString();
+                        int dot = name.indexOf('.');
+                        String[] tokens = (dot < 0 ? name : name.substring(0, dot)).split("_");
+                        for (int i = 0; i + 1 < tokens.length; i++) {
+                                if (date.equals(date(ISO_DATE.matcher(tokens[i])))
+                                                || date.equals(date(BASIC_DATE.matcher(tokens[i])))) {
+                                        region = tokens[i + 1];
+                                        break;
+                                }
+                        }
+                }
+                return new Partition(file, date, region);
+        }
+
+        private static LocalDate date(Matcher m) {
+                while (m.find()) {
+                        try {
+                                return LocalDate.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)),
+                                                Integer.parseInt(m.group(3)));
+                        } catch (DateTimeException e) {
+                                // digits that are not a calendar date, e.g. an order number; keep looking
+                        }
+                }
+                return null;
+        }
+
+        static int firstWildcard(String spec) {
+                for (int i = 0; i < spec.length(); i++) {
+                        if ("*?[{".indexOf(spec.charAt(i)) >= 0)
+                                return i;
+                }
+                return -1;
+        }
+
+        /** One file and the keys inferred from its path; a null key is unknown. */
+        public static final class Partition {
+                private final Path file;
+                private final LocalDate date;
+                private final String region;
+
+                Partition(Path file, LocalDate date, String region) {
+                        this.file = file;
+                        this.date = date;
+                        this.region = region;
+                }
+
+                public Path getFile() { return file; }
+                public LocalDate getDate() { return date; }
+                public String getRegion() { return region; }
+
+                @Override
+                public String toString() {
+                        return file + " [date=" + date + ", region=" + region + "]";
+                }
+        }
+
+        /** Rows of one {@link #load} and how many files were read or skipped. */
+        public static final class Result {
+                private final List<SalesRecord> records;
+                private final int filesRead;
+                private final int filesPruned;
+
+                Result(List<SalesRecord> records, int filesRead, int filesPruned) {
+                        this.records = records;
+                        this.filesRead = filesRead;
+                        this.filesPruned = filesPruned;
+                }
+
+                public List<SalesRecord> records() { return records; }
+                public int filesRead() { return filesRead; }
+                public int filesPruned() { return filesPruned; }
+
+                @Override
+                public String toString() {
+                        return records.size() + " records from " + filesRead + " files (" + filesPruned + " pruned)";
+                }
+        }
+}
@@ -0,0 +1,170 @@
+package sa001;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompresses a gzip file on a background thread while the caller reads.
+ *
+ * The decoder thread inflates into fixed-size byte blocks and hands them over
+ * through a bounded queue, so decompression and parsing overlap on separate
+ * cores and at most {@code blocks} blocks are in memory. Blocks are recycled
+ * through a second queue once read, so steady-state reading allocates
+ * nothing. A decode error is rethrown from {@code read}; {@link #close()}
+ * stops the decoder even if the file was not read to the end.
+ *
+ * Like any InputStream, an instance is read by one thread at a time.
+ */
+final class PipelinedGzipInputStream extends InputStream {
+        static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+        static final int DEFAULT_BLOCKS = 4;
+
+        private static final Block END = new Block(new byte[0], 0);
+
+        private final BlockingQueue<Block> full;
+        private final BlockingQueue<byte[]> free;
+        private final Thread decoder;
+        private Block current;
+        private int position;
+        private long decodedBytes;
+        private boolean eof;
+        private volatile boolean closed;
+
+        PipelinedGzipInputStream(Path file, int blockSize, int blocks) throws IOException {
+                if (blockSize <= 0 || blocks < 2)
+                        throw new IllegalArgumentException("need a positive block size and at least 2 blocks");
+                InputStream raw = Files.newInputStream(file);
+                InputStream gzip;
+                try {
+                        gzip = new GZIPInputStream(raw, 64 * 1024);
+                } catch (IOException e) {
+                        raw.close();
+                        throw e;
+                }
+                this.full = new ArrayBlockingQueue<>(blocks + 1); // room for the end marker
+                this.free = new ArrayBlockingQueue<>(blocks);
+                for (int i = 0; i < blocks; i++)
+                        free.add(new byte[blockSize]);
+                this.decoder = new Thread(() -> decode(gzip), "gzip-decoder-" + file.getFileName());
+                decoder.setDaemon(true);
+                decoder.start();
+        }
+
+        PipelinedGzipInputStream(Path file) throws IOException {
+                this(file, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCKS);
+        }
+
+        /** Whether {@code file} should be read through this stream. */
+        static boolean isGzip(Path file) {
+                return file.getFileName().toString().endsWith(".gz");
+        }
+
+        @Override
+        public int read() throws IOException {
+                if (!fill())
+                        return -1;
+                decodedBytes++;
+                return current.data[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0)
+                        return 0;
+                if (!fill())
+                        return -1;
+                int n = Math.min(len, current.length - position);
+                System.arraycopy(current.data, position, b, off, n);
+                position += n;
+                decodedBytes += n;
+                return n;
+        }
+
+        /** Uncompressed bytes handed to the reader so far. */
+        long decodedBytes() {
+                return decodedBytes;
+        }
+
+        @Override
+        public void close() {
+                if (closed)
+                        return;
+                closed = true;
+                decoder.interrupt();
+        }
+
+        // Make sure current has unread bytes; false at end of input.
+        private boolean fill() throws IOException {
+                if (closed)
+                        throw new IOException("stream closed");
+                while (current == null || position == current.length) {
+                        if (eof)
+                                return false;
+                        if (current != null) {
+                                free.offer(current.data);
+                                current = null;
+                        }
+                        Block next;
+                        try {
+                                next = full.take();
+                        } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new InterruptedIOException("interrupted while waiting for the gzip decoder");
+                        }
+                        if (next == END) {
+                                eof = true;
+                                return false;
+                        }
+                        if (next.error != null)
+                                throw new IOException("gzip decoding failed", next.error);
+                        current = next;
+                        position = 0;
+                }
+                return true;
+        }
+
+        private void decode(InputStream gzip) {
+                try (gzip) {
+                        while (!closed) {
+                                byte[] data = free.take();
+                                int length = 0;
+                                int n;
+                                while (length < data.length && (n = gzip.read(data, length, data.length - length)) > 0)
+                                        length += n;
+                                if (length > 0)
+                                        full.put(new Block(data, length));
+                                if (length < data.length)
+                                        break; // end of input
+                        }
+                        full.put(END);
+                } catch (InterruptedException e) {
+                        // closed by the reader
+                } catch (IOException e) {
+                        full.offer(new Block(e));
+                }
+        }
+
+        private static final class Block {
+                final byte[] data;
+                final int length;
+                final IOException error;
+
+                Block(byte[] data, int length) {
+                        this.data = data;
+                        this.length = length;
+                        this.error = null;
+                }
+
+                Block(IOException error) {
+                        this.data = null;
+                        this.length = 0;
+                        this.error = error;
+                }
+        }
+}
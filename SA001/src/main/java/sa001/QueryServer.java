@@ -0,0 +1,319 @@
+package sa001;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Long-lived query server that keeps a {@link SalesDataset} parsed and the
+ * analysis code warm, so a query costs a socket round trip instead of a JVM
+ * start and a full CSV parse.
+ *
+ * It listens on a loopback TCP port only. The protocol is one command per
+ * line, answered by one line of JSON: {@code {"ok":true,"result":...}} or
+ * {@code {"ok":false,"error":"..."}}. Commands:
+ *
+ * <pre>
+ * totalRevenue | quantityByCategory | revenueByRegion | monthlyRevenue
+ * medianOrderValue | percentContributionByProduct | bestSellingProduct
+ * avgPriceByCategory | topNProducts N | topNProductsWithCounts N
+ * reload PATH     replace the dataset with the CSV file, directory or glob at PATH
+ *                 (a server-side path, relative to the data root or inside it)
+ * append PATH     add the rows found at PATH
+ * stats           records, version, rejected rows and cache counters
+ * ping | quit     quit closes this connection
+ * shutdown        stop the server
+ * </pre>
+ *
+ * There is no authentication: any local process that can connect to the
+ * loopback port can run queries and {@code shutdown}. {@code reload} and
+ * {@code append} only read under the data root given to the constructor (after
+ * resolving symbolic links) and are refused when there is none.
+ *
+ * Each client gets its own thread, so slow clients do not hold up others.
+ * Queries go through a {@link CachingSalesAnalyzer}; a reload or append
+ * publishes a new dataset version, queries already running finish on the
+ * version they started with, and cached results of older versions are
+ * dropped.
+ */
+public final class QueryServer implements Closeable {
+        private static final Logger LOG = Logger.getLogger(QueryServer.class.getName());
+        // warmUp() repeats every query over a bounded sample, so the per-record
+        // code runs often enough to be JIT-compiled without scanning a large
+        // dataset dozens of times
+        static final int WARM_UP_ROUNDS = 50;
+        static final int WARM_UP_SAMPLE = 10_000;
+
+        private final SalesAnalyzer analyzer;
+        private final CachingSalesAnalyzer queries;
+        private final SalesDataset dataset;
+        private final Path dataRoot; // null: reload and append are refused
+        private final ServerSocket serverSocket;
+        private final ExecutorService clients;
+        private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        private final AtomicLong served = new AtomicLong();
+        private volatile boolean closed;
+
+        /** Bind to {@code port} on the loopback interface; 0 picks a free port. {@code reload} and {@code append} are refused. */
+        public QueryServer(SalesAnalyzer analyzer, SalesDataset dataset, int port) throws IOException {
+                this(analyzer, dataset, port, null);
+        }
+
+        /**
+         * Bind to {@code port} on the loopback interface; 0 picks a free port.
+         * {@code reload} and {@code append} may read files under
+         * {@code dataRoot}, or nowhere if it is null.
+         */
+        public QueryServer(SalesAnalyzer analyzer, SalesDataset dataset, int port, Path dataRoot) throws IOException {
+                this.analyzer = Objects.requireNonNull(analyzer);
+                this.queries = new CachingSalesAnalyzer(analyzer);
+                this.dataset = Objects.requireNonNull(dataset);
+                this.dataRoot = dataRoot != null ? dataRoot.toRealPath() : null;
+                this.serverSocket = new ServerSocket();
+                serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                AtomicInteger ids = new AtomicInteger();
+                this.clients = Executors.newCachedThreadPool(r -> {
+                        Thread t = new Thread(r, "query-client-" + ids.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                });
+        }
+
+        /** The port actually bound. */
+        public int port() {
+                return serverSocket.getLocalPort();
+        }
+
+        /** The loopback address and port actually bound (127.0.0.1 or ::1, depending on the JVM). */
+        public InetSocketAddress address() {
+                return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+        }
+
+        /** Start accepting clients on a daemon thread. */
+        public QueryServer start() {
+                Thread acceptor = new Thread(this::acceptLoop, "query-server");
+                acceptor.setDaemon(true);
+                acceptor.start();
+                return this;
+        }
+
+        /**
+         * Run every query {@value #WARM_UP_ROUNDS} times over the first
+         * {@value #WARM_UP_SAMPLE} records, so the first clients pay neither for
+         * class loading nor for interpreted aggregation loops. Results are not
+         * kept, and bypass the cache.
+         */
+        public void warmUp() {
+                List<SalesRecord> records = dataset.records();
+                List<SalesRecord> sample = records.subList(0, Math.min(records.size(), WARM_UP_SAMPLE));
+                for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+                        analyzer.totalRevenue(sample);
+                        analyzer.quantityByCategory(sample);
+                        analyzer.revenueByRegion(sample);
+                        analyzer.monthlyRevenue(sample);
+                        analyzer.medianOrderValue(sample);
+                        analyzer.percentContributionByProduct(sample);
+                        analyzer.topNProductsWithCounts(sample, 10);
+                        analyzer.avgPriceByCategory(sample);
+                }
+        }
+
+        /** Block until {@link #close()} or a {@code shutdown} command. */
+        public void awaitShutdown() throws InterruptedException {
+                stopped.await();
+        }
+
+        /** Number of commands answered so far. */
+        public long servedCount() {
+                return served.get();
+        }
+
+        @Override
+        public void close() throws IOException {
+                if (closed)
+                        return;
+                closed = true;
+                try {
+                        serverSocket.close();
+                        for (Socket s : open)
+                                s.close();
+                } finally {
+                        clients.shutdownNow();
+                        queries.close();
+                        stopped.countDown();
+                }
+        }
+
+        private void acceptLoop() {
+                try {
+                        while (!closed) {
+                                Socket socket = serverSocket.accept();
+                                open.add(socket);
+                                clients.execute(() -> serve(socket));
+                        }
+                } catch (IOException e) {
+                        if (!closed)
+                                LOG.log(Level.SEVERE, "query server stopped accepting clients", e);
+                }
+        }
+
+        private void serve(Socket socket) {
+                try (socket;
+                                BufferedReader in = new BufferedReader(
+                                                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                                Writer out = new BufferedWriter(
+                                                new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = in.readLine()) != null) {
+                                line = line.trim();
+                                if (line.isEmpty())
+                                        continue;
+                                if (line.equals("quit"))
+                                        break;
+                                out.write(handle(line));
+                                out.write('\n');
+                                out.flush();
+                                if (line.equals("shutdown")) {
+                                        close();
+                                        break;
+                                }
+                        }
+                } catch (SocketException e) {
+                        // client went away or the server is closing
+                } catch (IOException e) {
+                        if (!closed)
+                                LOG.log(Level.WARNING, "client connection failed", e);
+                } finally {
+                        open.remove(socket);
+                }
+        }
+
+        /** Answer one command line with one line of JSON. */
+        String handle(String line) {
+                String[] parts = line.trim().split("\\s+", 2);
+                String command = parts[0];
+                String arg = parts.length > 1 ? parts[1].trim() : null;
+                try {
+                        Object result = execute(command, arg);
+                        served.incrementAndGet();
+                        return "{\"ok\":true,\"result\":" + Json.write(result) + "}";
+                } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+                        return error(e);
+                } catch (RuntimeException e) {
+                        // a bug rather than a bad request, but the client still gets its line
+                        LOG.log(Level.WARNING, "command failed: " + line, e);
+                        return error(e);
+                }
+        }
+
+        private static String error(Exception e) {
+                String message = e.getMessage() != null ? e.getMessage() : e.toString();
+                return "{\"ok\":false,\"error\":" + Json.write(message) + "}";
+        }
+
+        private Object execute(String command, String arg) throws IOException {
+                switch (command) {
+                case "ping":
+                        return "pong";
+                case "totalRevenue":
+                        return queries.totalRevenue(dataset);
+                case "quantityByCategory":
+                        return queries.quantityByCategory(dataset);
+                case "revenueByRegion":
+                        return queries.revenueByRegion(dataset);
+                case "monthlyRevenue":
+                        return queries.monthlyRevenue(dataset);
+                case "medianOrderValue":
+                        return queries.medianOrderValue(dataset);
+                case "percentContributionByProduct":
+                        return queries.percentContributionByProduct(dataset);
+                case "bestSellingProduct":
+                        return queries.bestSellingProduct(dataset);
+                case "avgPriceByCategory":
+                        return queries.avgPriceByCategory(dataset);
+                case "topNProducts":
+                        return queries.topNProducts(dataset, count(arg));
+                case "topNProductsWithCounts":
+                        return queries.topNProductsWithCounts(dataset, count(arg));
+                case "reload":
+                        dataset.reload(PartitionedSalesLoader.loadAll(analyzer, resolve(arg)));
+                        return stats();
+                case "append":
+                        dataset.append(PartitionedSalesLoader.loadAll(analyzer, resolve(arg)));
+                        return stats();
+                case "stats":
+                        return stats();
+                case "shutdown":
+                        return "bye";
+                default:
+                        throw new IllegalArgumentException("unknown command: " + command);
+                }
+        }
+
+        private Map<String, Object> stats() {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("records", dataset.size());
+                m.put("version", dataset.version());
+                m.put("rejectedRows", analyzer.getRejectStats().rows());
+                m.put("cacheHits", queries.hitCount());
+                m.put("cacheMisses", queries.missCount());
+                m.put("served", served.get());
+                return m;
+        }
+
+        private static int count(String arg) {
+                if (arg == null)
+                        throw new IllegalArgumentException("missing argument N");
+                try {
+                        return Integer.parseInt(arg);
+                } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("not a number: " + arg);
+                }
+        }
+
+        /**
+         * {@code arg} resolved against the data root, refused unless its
+         * directory (for a glob) or file stays inside the root once symbolic
+         * links are resolved. A glob only matches paths below its directory,
+         * so its pattern part cannot leave the root.
+         */
+        private String resolve(String arg) throws IOException {
+                if (arg == null || arg.isEmpty())
+                        throw new IllegalArgumentException("missing argument PATH");
+                if (dataRoot == null)
+                        throw new IllegalArgumentException("reload and append are disabled: no data root configured");
+                int wildcard = PartitionedSalesLoader.firstWildcard(arg);
+                int slash = wildcard < 0 ? arg.length() : arg.lastIndexOf('/', wildcard);
+                String literal = slash < 0 ? "" : slash == 0 ? "/" : arg.substring(0, slash);
+                Path target = dataRoot.resolve(literal).toRealPath();
+                if (!target.startsWith(dataRoot))
+                        throw new IllegalArgumentException("not under the data root: " + arg);
+                return wildcard < 0 ? target.toString() : target + "/" + arg.substring(slash + 1);
+        }
+}
@@ -0,0 +1,56 @@
+package sa001;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Side file for rows with rejected values, one CSV line per row:
+ * {@code file,row,rejects,record}. {@code row} is the 1-based data row in
+ * {@code file}, {@code rejects} lists {@code column=reason} pairs separated by
+ * {@code ;}, and {@code record} is the original row re-encoded as CSV, so it
+ * can be fixed and loaded again. Writes are synchronized, so parallel loads
+ * can share one log. The file is replaced when the log is opened.
+ */
+public final class RejectLog implements Closeable {
+        private static final CSVFormat ROW_FORMAT = CSVFormat.DEFAULT.builder().setRecordSeparator("").build();
+
+        private final Path file;
+        private final CSVPrinter printer;
+        private long written;
+
+        public RejectLog(Path file) throws IOException {
+                this.file = file;
+                this.printer = new CSVPrinter(Files.newBufferedWriter(file, StandardCharsets.UTF_8),
+                                CSVFormat.DEFAULT.builder().setHeader("file", "row", "rejects", "record").build());
+        }
+
+        public Path file() {
+                return file;
+        }
+
+        synchronized void write(String source, long row, CharSequence rejects, CSVRecord record) throws IOException {
+                printer.printRecord(source, row, rejects, ROW_FORMAT.format((Object[]) record.values()));
+                written++;
+        }
+
+        /** Rows written so far. */
+        public synchronized long written() {
+                return written;
+        }
+
+        public synchronized void flush() throws IOException {
+                printer.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+                printer.close();
+        }
+}
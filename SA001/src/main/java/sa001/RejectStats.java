@@ -0,0 +1,106 @@
+package sa001;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of field values {@link SalesAnalyzer#loadCSV(String)} could not
+ * parse, per column and {@link FieldParser.Status}, and of the rows that had
+ * at least one of them. Such rows are still loaded with the default value in
+ * place of the bad field, so these counts are the only sign of dirty input.
+ * Counts accumulate over every load of the analyzer until {@link #reset()};
+ * parallel loads may record concurrently.
+ */
+public final class RejectStats {
+        private static final FieldParser.Status[] REASONS = FieldParser.Status.values();
+
+        private final Map<String, AtomicLongArray> byColumn = new ConcurrentHashMap<>();
+        private final LongAdder rows = new LongAdder();
+
+        void record(String column, FieldParser.Status reason) {
+                byColumn.computeIfAbsent(column, c -> new AtomicLongArray(REASONS.length))
+                                .incrementAndGet(reason.ordinal());
+        }
+
+        void recordRow() {
+                rows.increment();
+        }
+
+        /** Rejected values of {@code column} for {@code reason}. */
+        public long count(String column, FieldParser.Status reason) {
+                AtomicLongArray counts = byColumn.get(column);
+                return counts == null ? 0 : counts.get(reason.ordinal());
+        }
+
+        /** Rejected values of {@code column}, for any reason. */
+        public long count(String column) {
+                AtomicLongArray counts = byColumn.get(column);
+                long n = 0;
+                if (counts != null)
+                        for (int i = 0; i < counts.length(); i++)
+                                n += counts.get(i);
+                return n;
+        }
+
+        /** Rejected values across all columns. */
+        public long total() {
+                long n = 0;
+                for (String column : byColumn.keySet())
+                        n += count(column);
+                return n;
+        }
+
+        /** Rows with at least one rejected value. */
+        public long rows() {
+                return rows.sum();
+        }
+
+        /** Non-zero counts by column (sorted) and reason. */
+        public Map<String, Map<FieldParser.Status, Long>> snapshot() {
+                Map<String, Map<FieldParser.Status, Long>> out = new TreeMap<>();
+                byColumn.forEach((column, counts) -> {
+                        Map<FieldParser.Status, Long> reasons = new EnumMap<>(FieldParser.Status.class);
+                        for (FieldParser.Status reason : REASONS)
+                                if (counts.get(reason.ordinal()) > 0)
+                                        reasons.put(reason, counts.get(reason.ordinal()));
+                        if (!reasons.isEmpty())
+                                out.put(column, Collections.unmodifiableMap(reasons));
+                });
+                return Collections.unmodifiableMap(out);
+        }
+
+        public void reset() {
+                byColumn.clear();
+                rows.reset();
+        }
+
+        /** e.g. {@code "2 rows rejected (date: 1 malformed; quantity: 1 missing, 1 out_of_range)"}. */
+        @Override
+        public String toString() {
+                StringBuilder sb = new StringBuilder().append(rows()).append(" rows rejected");
+                Map<String, Map<FieldParser.Status, Long>> snapshot = snapshot();
+                if (snapshot.isEmpty())
+                        return sb.toString();
+                sb.append(" (");
+                boolean firstColumn = true;
+                for (Map.Entry<String, Map<FieldParser.Status, Long>> column : snapshot.entrySet()) {
+                        if (!firstColumn)
+                                sb.append("; ");
+                        firstColumn = false;
+                        sb.append(column.getKey()).append(": ");
+                        boolean firstReason = true;
+                        for (Map.Entry<FieldParser.Status, Long> reason : column.getValue().entrySet()) {
+                                if (!firstReason)
+                                        sb.append(", ");
+                                firstReason = false;
+                                sb.append(reason.getValue()).append(' ').append(reason.getKey().label());
+                        }
+                }
+                return sb.append(')').toString();
+        }
+}
@@ -4,10 +4,16 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.*;
 import java.text.NumberFormat;
 import java.util.Locale;
@@ -20,60 +26,156 @@ public class SalesAnalyzer {
                         "Widget", "Electronics",
                         "Gadget", "Electronics",
                         "Gizmo", "Accessories");
-        private Map<String, String> categoryMapping = new HashMap<>(DEFAULT_CATEGORY);
+        private static final Path DEFAULT_MAPPING_FILE = Paths.get("data/category-mapping.csv");
+
+        // Read once on first load, not on every loadCSV call; see CategoryMappingService
+        private final CategoryMappingService categoryMapping;
+
+        // Per-key aggregations spill to disk once their working set exceeds this
+        // many bytes. Unbounded by default, i.e. everything stays in memory.
+        private long aggregationMemoryBudget = ExternalAggregator.UNBOUNDED;
+        private Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+        private final LongAdder spills = new LongAdder();
+
+        private final RejectStats rejects = new RejectStats();
+        private volatile RejectLog rejectLog;
+
+        public SalesAnalyzer() {
+                this(new CategoryMappingService(DEFAULT_MAPPING_FILE, DEFAULT_CATEGORY));
+        }
+
+        /** Analyzer that resolves missing categories through {@code categoryMapping}. */
+        public SalesAnalyzer(CategoryMappingService categoryMapping) {
+                this.categoryMapping = Objects.requireNonNull(categoryMapping);
+        }
+
+        /** Mapping service used by {@link #loadCSV(String)}. */
+        public CategoryMappingService getCategoryMapping() {
+                return categoryMapping;
+        }
+
+        /**
+         * Bound the memory used by per-key aggregations (group by product, region,
+         * category, month). When the estimated working set grows past
+         * {@code bytes}, keys are hash-partitioned into temporary run files under
+         * the spill directory and merged partition by partition afterwards.
+         * Note that methods returning a full {@code Map} still materialize one entry
+         * per key in their result; {@link #topNProducts} and
+         * {@link #topNProductsWithCounts} only keep the top {@code n}.
+         */
+        public void setAggregationMemoryBudget(long bytes) {
+                if (bytes < ExternalAggregator.MIN_BUDGET)
+                        throw new IllegalArgumentException("aggregation memory budget must be at least "
+                                        + ExternalAggregator.MIN_BUDGET + " bytes");
+                this.aggregationMemoryBudget = bytes;
+        }
+
+        public long getAggregationMemoryBudget() {
+                return aggregationMemoryBudget;
+        }
+
+        /** Times a per-key aggregation wrote its working set to disk, over all queries so far. */
+        public long getSpillCount() {
+                return spills.sum();
+        }
+
+        /** Directory under which spill runs are created (defaults to java.io.tmpdir). */
+        public void setSpillDirectory(Path dir) {
+                this.spillDirectory = Objects.requireNonNull(dir);
+        }
+
+        /** Values {@link #loadCSV(String)} could not parse, per column and reason, over all loads. */
+        public RejectStats getRejectStats() {
+                return rejects;
+        }
+
+        /**
+         * Also write rows with rejected values to {@code log}, or stop with
+         * {@code null}. The caller owns the log and closes it after loading.
+         */
+        public void setRejectLog(RejectLog log) {
+                this.rejectLog = log;
+        }
+
+        public RejectLog getRejectLog() {
+                return rejectLog;
+        }
 
         /**
          * Load CSV using Apache Commons CSV. Handles headers and quoted fields
-         * robustly.
+         * robustly. Files ending in {@code .gz} are decompressed on the fly.
          */
         public List<SalesRecord> loadCSV(String filePath) throws IOException {
-                Path p = Paths.get(filePath);
-                // load category mapping file if present
-                Path mapFile = Paths.get("data/category-mapping.csv");
-                if (Files.exists(mapFile)) {
-                        // expected format: product,category
-                        try (Stream<String> lines = Files.lines(mapFile)) {
-                                categoryMapping = lines
-                                                .map(String::trim)
-                                                .filter(l -> !l.isEmpty())
-                                                .map(l -> l.split(",", 2))
-                                                .filter(a -> a.length == 2)
-                                                .collect(Collectors.toMap(a -> a[0].trim(), a -> a[1].trim(),
-                                                                (a, b) -> b, HashMap::new));
-                        }
-                }
+                return loadCSV(filePath, categoryMapping);
+        }
 
-                try (CSVParser parser = CSVParser.parse(p, StandardCharsets.UTF_8,
-                                CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
+        /**
+         * Load CSV, deriving missing categories from {@code mappingSource} instead of
+         * this analyzer's own mapping service.
+         */
+        public List<SalesRecord> loadCSV(String filePath, CategoryMappingService mappingSource) throws IOException {
+                Path p = Paths.get(filePath);
+                // one snapshot for the whole file, even if the mapping is swapped meanwhile
+                CategoryMapping mapping = mappingSource.current();
+
+                CSVFormat format = CSVFormat.DEFAULT.withFirstRecordAsHeader();
+                // .gz input is inflated on its own thread while this one parses
+                try (PipelinedGzipInputStream gzip = PipelinedGzipInputStream.isGzip(p)
+                                ? new PipelinedGzipInputStream(p) : null;
+                                CountingReader in = new CountingReader(gzip != null
+                                                ? new InputStreamReader(gzip, StandardCharsets.UTF_8)
+                                                : Files.newBufferedReader(p, StandardCharsets.UTF_8));
+                                CSVParser parser = CSVParser.parse(in, format)) {
                         List<SalesRecord> out = new ArrayList<>();
                         Map<String, Integer> headerMap = parser.getHeaderMap().entrySet().stream()
                                         .collect(Collectors.toMap(e -> e.getKey().toLowerCase(), Map.Entry::getValue));
 
+                        // bad values become 0, 0.0 or null as before, but are counted (and logged)
+                        FieldParser fields = new FieldParser();
+                        RejectLog log = rejectLog;
+                        StringBuilder why = log != null ? new StringBuilder() : null;
+                        long row = 0;
+                        CsvChunkEvent chunk = CsvChunkEvent.start(filePath, 0, 0);
                         for (CSVRecord rec : parser) {
+                                if (row > 0 && row % CsvChunkEvent.ROWS == 0) {
+                                        chunk.finish(row, rec.getCharacterPosition());
+                                        chunk = CsvChunkEvent.start(filePath, row, rec.getCharacterPosition());
+                                }
+                                row++;
                                 if (rec.size() == 0)
                                         continue;
                                 String orderIdStr = getField(rec, headerMap, "orderid", "id");
-                                int orderId = safeParseInt(orderIdStr, 0);
+                                boolean rejected = reject("orderId", orderIdStr, fields.parseInt(orderIdStr), why);
+                                int orderId = fields.intValue();
                                 String dateStr = getField(rec, headerMap, "date", "date");
-                                java.time.LocalDate date = null;
-                                if (dateStr != null && !dateStr.isEmpty()) {
-                                        try {
-                                                date = java.time.LocalDate.parse(dateStr);
-                                        } catch (Exception e) {
-                                                date = null;
-                                        }
-                                }
+                                rejected |= reject("date", dateStr, fields.parseDate(dateStr), why);
+                                java.time.LocalDate date = fields.dateValue();
                                 String product = getField(rec, headerMap, "product", "product");
+                                int productId = mapping.productId(product);
+                                if (productId >= 0)
+                                        product = mapping.product(productId); // share the dictionary's instance
                                 String category = getField(rec, headerMap, "category", null);
                                 if (category == null || category.isEmpty())
-                                        category = categoryMapping.getOrDefault(product,
-                                                        DEFAULT_CATEGORY.getOrDefault(product, "Other"));
-                                int quantity = safeParseInt(getField(rec, headerMap, "quantity", "qty"), 0);
-                                double price = safeParseDouble(getField(rec, headerMap, "unitprice", "price"), 0.0);
+                                        category = mapping.categoryOf(productId);
+                                String quantityStr = getField(rec, headerMap, "quantity", "qty");
+                                rejected |= reject("quantity", quantityStr, fields.parseInt(quantityStr), why);
+                                int quantity = fields.intValue();
+                                String priceStr = getField(rec, headerMap, "unitprice", "price");
+                                rejected |= reject("unitPrice", priceStr, fields.parseDouble(priceStr), why);
+                                double price = fields.doubleValue();
                                 String region = getField(rec, headerMap, "region", "region");
+                                if (rejected) {
+                                        rejects.recordRow();
+                                        if (log != null) {
+                                                log.write(filePath, row, why, rec);
+                                                why.setLength(0);
+                                        }
+                                }
 
                                 out.add(new SalesRecord(orderId, date, product, category, quantity, price, region));
                         }
+                        // the parser has no end offset, but it has read every character by now
+                        chunk.finish(row, in.characters());
                         return out;
                 }
         }
@@ -87,80 +189,168 @@ public class SalesAnalyzer {
                 return val == null ? null : val.trim();
         }
 
-        private int safeParseInt(String s, int def) {
-                if (s == null || s.isEmpty())
-                        return def;
-                try {
-                        return Integer.parseInt(s.trim());
-                } catch (Exception e) {
-                        return def;
-                }
-        }
-
-        private double safeParseDouble(String s, double def) {
-                if (s == null || s.isEmpty())
-                        return def;
-                try {
-                        return Double.parseDouble(s.trim());
-                } catch (Exception e) {
-                        return def;
+        /**
+         * Count a value that did not parse as a reject of {@code column}. A column
+         * missing from the header ({@code value == null}) is not a reject.
+         */
+        private boolean reject(String column, String value, FieldParser.Status status, StringBuilder why) {
+                if (value == null || status == FieldParser.Status.OK)
+                        return false;
+                rejects.record(column, status);
+                if (why != null) {
+                        if (why.length() > 0)
+                                why.append(';');
+                        why.append(column).append('=').append(status.label());
                 }
+                return true;
         }
 
         // Total revenue across all orders
         public double totalRevenue(List<SalesRecord> records) {
-                return records.stream()
+                AggregationEvent event = AggregationEvent.start("totalRevenue", records.size());
+                double total = records.stream()
                                 .mapToDouble(SalesRecord::getRevenue)
                                 .sum();
+                event.finish(1);
+                return total;
+        }
+
+        // Total revenue over columnar data; uses SIMD kernels when available
+        public double totalRevenue(SalesColumns columns) {
+                AggregationEvent event = AggregationEvent.start("totalRevenue", columns.size);
+                double total = AggregationKernels.best().revenue(columns.quantity, columns.price, columns.size);
+                event.finish(1);
+                return total;
         }
 
         // Total quantity sold per category
         public Map<String, Integer> quantityByCategory(List<SalesRecord> records) {
-                return records.stream()
-                                .collect(Collectors.groupingBy(
-                                                SalesRecord::getCategory,
-                                                Collectors.summingInt(SalesRecord::getQuantity)));
+                AggregationEvent event = AggregationEvent.start("quantityByCategory", records.size());
+                Map<String, Integer> out = new HashMap<>();
+                groupQuantities(records, SalesRecord::getCategory, (category, qty) -> out.put(category, (int) qty));
+                event.finish(out.size());
+                return out;
         }
 
         // Revenue per region
         public Map<String, Double> revenueByRegion(List<SalesRecord> records) {
-                return records.stream()
-                                .collect(Collectors.groupingBy(
-                                                SalesRecord::getRegion,
-                                                Collectors.summingDouble(SalesRecord::getRevenue)));
+                AggregationEvent event = AggregationEvent.start("revenueByRegion", records.size());
+                Map<String, Double> out = sums(records, SalesRecord::getRegion, SalesRecord::getRevenue);
+                event.finish(out.size());
+                return out;
+        }
+
+        // Revenue per region over columnar data; uses SIMD kernels when available
+        public Map<String, Double> revenueByRegion(SalesColumns columns) {
+                AggregationEvent event = AggregationEvent.start("revenueByRegion", columns.size);
+                double[] sums = new double[columns.regions.length];
+                AggregationKernels.best().groupRevenue(columns.quantity, columns.price, columns.regionId, sums,
+                                columns.size);
+                Map<String, Double> out = new HashMap<>();
+                for (int g = 0; g < sums.length; g++)
+                        out.put(columns.regions[g], sums[g]);
+                event.finish(out.size());
+                return out;
         }
 
         // Monthly revenue keyed by YYYY-MM
         public Map<String, Double> monthlyRevenue(List<SalesRecord> records) {
-                return records.stream()
-                                .filter(r -> r.getDate() != null)
-                                .collect(Collectors.groupingBy(
-                                                r -> r.getDate().getYear() + "-"
-                                                                + String.format("%02d", r.getDate().getMonthValue()),
-                                                Collectors.summingDouble(SalesRecord::getRevenue)));
+                // Months are usually few and dense, so sum into an array indexed by month
+                // offset instead of building a "YYYY-MM" key for every row
+                AggregationEvent event = AggregationEvent.start("monthlyRevenue", records.size());
+                long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+                int dated = 0;
+                for (SalesRecord r : records) {
+                        if (r.getDate() == null)
+                                continue;
+                        long m = epochMonth(r.getDate());
+                        first = Math.min(first, m);
+                        last = Math.max(last, m);
+                        dated++;
+                }
+                Map<String, Double> out = new HashMap<>();
+                if (dated == 0) {
+                        event.finish(0);
+                        return out;
+                }
+                long span = last - first + 1;
+                if (!denseMonths(span, dated)) {
+                        // a few far-off dates: the array would be mostly empty, or too big
+                        List<SalesRecord> withDates = records.stream().filter(r -> r.getDate() != null)
+                                        .collect(Collectors.toList());
+                        groupSums(withDates, r -> monthKey(epochMonth(r.getDate())), SalesRecord::getRevenue,
+                                        (k, sum, count) -> out.put(k, sum));
+                        event.finish(out.size());
+                        return out;
+                }
+                double[] sums = new double[(int) span];
+                boolean[] seen = new boolean[sums.length];
+                for (SalesRecord r : records) {
+                        if (r.getDate() == null)
+                                continue;
+                        int i = (int) (epochMonth(r.getDate()) - first);
+                        sums[i] += r.getRevenue();
+                        seen[i] = true;
+                }
+                for (int i = 0; i < sums.length; i++) {
+                        if (seen[i])
+                                out.put(monthKey(first + i), sums[i]);
+                }
+                event.finish(out.size());
+                return out;
+        }
+
+        // Bytes per month slot of the dense path: a double sum and a seen flag
+        private static final int DENSE_MONTH_BYTES = Double.BYTES + 1;
+
+        /**
+         * Whether {@code span} months fit an array: no sparser than two slots per
+         * dated row (plus a year of slack), and within the memory budget if one is set.
+         */
+        private boolean denseMonths(long span, int dated) {
+                if (span > 2L * dated + 12 || span > Integer.MAX_VALUE - 8)
+                        return false;
+                return aggregationMemoryBudget == ExternalAggregator.UNBOUNDED
+                                || span * DENSE_MONTH_BYTES <= aggregationMemoryBudget;
+        }
+
+        // Months since year 0, in long: year * 12 overflows int for extreme LocalDate years
+        private static long epochMonth(java.time.LocalDate d) {
+                return d.getYear() * 12L + d.getMonthValue() - 1;
+        }
+
+        private static String monthKey(long epochMonth) {
+                return Math.floorDiv(epochMonth, 12) + "-" + String.format("%02d", Math.floorMod(epochMonth, 12) + 1);
         }
 
         // Median order value (by revenue per record)
         public double medianOrderValue(List<SalesRecord> records) {
+                AggregationEvent event = AggregationEvent.start("medianOrderValue", records.size());
                 double[] vals = records.stream().mapToDouble(SalesRecord::getRevenue).sorted().toArray();
+                double median;
                 if (vals.length == 0)
-                        return 0.0;
-                int mid = vals.length / 2;
-                if (vals.length % 2 == 1)
-                        return vals[mid];
-                return (vals[mid - 1] + vals[mid]) / 2.0;
+                        median = 0.0;
+                else if (vals.length % 2 == 1)
+                        median = vals[vals.length / 2];
+                else
+                        median = (vals[vals.length / 2 - 1] + vals[vals.length / 2]) / 2.0;
+                event.finish(1);
+                return median;
         }
 
         // Percent contribution by product (percent of total revenue)
         public Map<String, Double> percentContributionByProduct(List<SalesRecord> records) {
+                AggregationEvent event = AggregationEvent.start("percentContributionByProduct", records.size());
                 double total = totalRevenue(records);
-                if (total == 0.0)
-                        return Collections.emptyMap();
-                return records.stream()
-                                .collect(Collectors.groupingBy(SalesRecord::getProduct,
-                                                Collectors.summingDouble(SalesRecord::getRevenue)))
-                                .entrySet().stream()
-                                .collect(Collectors.toMap(Map.Entry::getKey, e -> (e.getValue() / total) * 100.0));
+                Map<String, Double> out = Collections.emptyMap();
+                if (total != 0.0) {
+                        Map<String, Double> percent = new HashMap<>();
+                        groupSums(records, SalesRecord::getProduct, SalesRecord::getRevenue,
+                                        (product, sum, count) -> percent.put(product, (sum / total) * 100.0));
+                        out = percent;
+                }
+                event.finish(out.size());
+                return out;
         }
 
         // Generate a simple ASCII bar chart for the provided map (descending order)
@@ -182,35 +372,84 @@ public class SalesAnalyzer {
 
         // Return list of top N products (product names) by quantity descending
         public List<String> topNProducts(List<SalesRecord> records, int n) {
-                return records.stream()
-                                .collect(Collectors.groupingBy(SalesRecord::getProduct,
-                                                Collectors.summingInt(SalesRecord::getQuantity)))
-                                .entrySet().stream()
-                                .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()))
-                                .limit(n)
-                                .map(Map.Entry::getKey)
-                                .collect(Collectors.toList());
+                return new ArrayList<>(topNProductsWithCounts(records, n).keySet());
         }
 
         // Return top N products as product->totalQuantity preserving sort order
         public LinkedHashMap<String, Integer> topNProductsWithCounts(List<SalesRecord> records, int n) {
-                return records.stream()
-                                .collect(Collectors.groupingBy(SalesRecord::getProduct,
-                                                Collectors.summingInt(SalesRecord::getQuantity)))
-                                .entrySet().stream()
-                                .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()))
-                                .limit(n)
-                                .collect(LinkedHashMap::new,
-                                                (m, e) -> m.put(e.getKey(), e.getValue()),
-                                                LinkedHashMap::putAll);
+                LinkedHashMap<String, Integer> out = new LinkedHashMap<>();
+                if (n <= 0)
+                        return out;
+                AggregationEvent event = AggregationEvent.start("topNProducts", records.size());
+                // min-heap of the best n seen so far, so only n keys are retained; ties
+                // are broken by product name so the result does not depend on visit order
+                Comparator<Map.Entry<String, Integer>> byQty = Map.Entry.<String, Integer>comparingByValue()
+                                .thenComparing(Map.Entry.<String, Integer>comparingByKey().reversed());
+                PriorityQueue<Map.Entry<String, Integer>> top = new PriorityQueue<>(n + 1, byQty);
+                groupQuantities(records, SalesRecord::getProduct, (product, qty) -> {
+                        top.add(new AbstractMap.SimpleImmutableEntry<>(product, (int) qty));
+                        if (top.size() > n)
+                                top.poll();
+                });
+                List<Map.Entry<String, Integer>> sorted = new ArrayList<>(top);
+                sorted.sort(byQty.reversed());
+                sorted.forEach(e -> out.put(e.getKey(), e.getValue()));
+                event.finish(out.size());
+                return out;
         }
 
         // Average price by category
         public Map<String, Double> avgPriceByCategory(List<SalesRecord> records) {
-                return records.stream()
-                                .collect(Collectors.groupingBy(
-                                                SalesRecord::getCategory,
-                                                Collectors.averagingDouble(SalesRecord::getPrice)));
+                AggregationEvent event = AggregationEvent.start("avgPriceByCategory", records.size());
+                Map<String, Double> out = new HashMap<>();
+                groupSums(records, SalesRecord::getCategory, SalesRecord::getPrice,
+                                (category, sum, count) -> out.put(category, sum / count));
+                event.finish(out.size());
+                return out;
+        }
+
+        /*
+         * --- Per-key aggregation helpers. Rows are accumulated into primitive
+         * open-addressing maps (no allocation per row); results are boxed into the
+         * public Map types only once per key. With a memory budget set, the same
+         * accumulation goes through an ExternalAggregator that spills to disk ---
+         */
+
+        private void groupSums(List<SalesRecord> records, Function<SalesRecord, String> key,
+                        ToDoubleFunction<SalesRecord> value, StringDoubleMap.Visitor visitor) {
+                if (aggregationMemoryBudget == ExternalAggregator.UNBOUNDED) {
+                        StringDoubleMap acc = new StringDoubleMap();
+                        for (SalesRecord r : records)
+                                acc.add(key.apply(r), value.applyAsDouble(r));
+                        acc.forEach(visitor);
+                        return;
+                }
+                try (ExternalAggregator agg = new ExternalAggregator(aggregationMemoryBudget, spillDirectory)) {
+                        for (SalesRecord r : records)
+                                agg.add(key.apply(r), value.applyAsDouble(r));
+                        agg.forEach(visitor);
+                        spills.add(agg.spillCount());
+                }
+        }
+
+        private void groupQuantities(List<SalesRecord> records, Function<SalesRecord, String> key,
+                        StringLongMap.Visitor visitor) {
+                if (aggregationMemoryBudget == ExternalAggregator.UNBOUNDED) {
+                        StringLongMap acc = new StringLongMap();
+                        for (SalesRecord r : records)
+                                acc.add(key.apply(r), r.getQuantity());
+                        acc.forEach(visitor);
+                        return;
+                }
+                // quantities are whole numbers, which a double sum represents exactly
+                groupSums(records, key, SalesRecord::getQuantity, (k, sum, count) -> visitor.accept(k, (long) sum));
+        }
+
+        private Map<String, Double> sums(List<SalesRecord> records, Function<SalesRecord, String> key,
+                        ToDoubleFunction<SalesRecord> value) {
+                Map<String, Double> out = new HashMap<>();
+                groupSums(records, key, value, (k, sum, count) -> out.put(k, sum));
+                return out;
         }
 
         /*
@@ -253,9 +492,7 @@ public class SalesAnalyzer {
         }
 
         public void printAsciiBarChartByProductRevenue(List<SalesRecord> records, int width) {
-                Map<String, Double> revenueByProduct = records.stream()
-                                .collect(Collectors.groupingBy(SalesRecord::getProduct,
-                                                Collectors.summingDouble(SalesRecord::getRevenue)));
+                Map<String, Double> revenueByProduct = sums(records, SalesRecord::getProduct, SalesRecord::getRevenue);
                 printAsciiBarChart(revenueByProduct, width);
         }
 
@@ -277,4 +514,33 @@ public class SalesAnalyzer {
                 NumberFormat fmt = NumberFormat.getCurrencyInstance(Locale.US);
                 revenueByRegion(records).forEach((k, v) -> System.out.println(k + ": " + fmt.format(v)));
         }
+
+        /** Counts the characters read through it, to end the last {@link CsvChunkEvent}. */
+        private static final class CountingReader extends FilterReader {
+                private long characters;
+
+                CountingReader(Reader in) {
+                        super(in);
+                }
+
+                @Override
+                public int read() throws IOException {
+                        int c = super.read();
+                        if (c >= 0)
+                                characters++;
+                        return c;
+                }
+
+                @Override
+                public int read(char[] buf, int off, int len) throws IOException {
+                        int n = super.read(buf, off, len);
+                        if (n > 0)
+                                characters += n;
+                        return n;
+                }
+
+                long characters() {
+                        return characters;
+                }
+        }
 }
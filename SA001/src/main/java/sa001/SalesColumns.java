@@ -0,0 +1,96 @@
+package sa001;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Column-oriented copy of a list of sales records: quantities and prices in
+ * primitive arrays, and string attributes dictionary-encoded into int ids.
+ *
+ * Build it once per loaded dataset and pass it to the columnar overloads of
+ * {@link SalesAnalyzer} (e.g. {@link SalesAnalyzer#totalRevenue(SalesColumns)}),
+ * which run over the arrays without touching the record objects.
+ */
+public final class SalesColumns {
+        final int size;
+        final int[] quantity;
+        final double[] price;
+        final int[] productId;
+        final int[] regionId;
+        final int[] categoryId;
+        final String[] products;
+        final String[] regions;
+        final String[] categories;
+
+        private SalesColumns(int size, int[] quantity, double[] price, int[] productId, int[] regionId,
+                        int[] categoryId, String[] products, String[] regions, String[] categories) {
+                this.size = size;
+                this.quantity = quantity;
+                this.price = price;
+                this.productId = productId;
+                this.regionId = regionId;
+                this.categoryId = categoryId;
+                this.products = products;
+                this.regions = regions;
+                this.categories = categories;
+        }
+
+        public static SalesColumns of(List<SalesRecord> records) {
+                int n = records.size();
+                int[] quantity = new int[n];
+                double[] price = new double[n];
+                int[] productId = new int[n];
+                int[] regionId = new int[n];
+                int[] categoryId = new int[n];
+                Dictionary products = new Dictionary();
+                Dictionary regions = new Dictionary();
+                Dictionary categories = new Dictionary();
+                for (int i = 0; i < n; i++) {
+                        SalesRecord r = records.get(i);
+                        quantity[i] = r.getQuantity();
+                        price[i] = r.getPrice();
+                        productId[i] = products.idOf(r.getProduct());
+                        regionId[i] = regions.idOf(r.getRegion());
+                        categoryId[i] = categories.idOf(r.getCategory());
+                }
+                return new SalesColumns(n, quantity, price, productId, regionId, categoryId,
+                                products.values(), regions.values(), categories.values());
+        }
+
+        public int size() {
+                return size;
+        }
+
+        /** Distinct regions; index i is the name of region id i. */
+        public List<String> regions() {
+                return List.of(regions);
+        }
+
+        /** Distinct products; index i is the name of product id i. */
+        public List<String> products() {
+                return List.of(products);
+        }
+
+        /** Distinct categories; index i is the name of category id i. */
+        public List<String> categories() {
+                return List.of(categories);
+        }
+
+        // Assigns dense ids in first-seen order
+        private static final class Dictionary {
+                private final StringLongMap ids = new StringLongMap();
+                private final List<String> values = new ArrayList<>();
+
+                int idOf(String value) {
+                        int next = values.size();
+                        int id = (int) ids.putIfAbsent(value, next);
+                        if (id == next)
+                                values.add(value);
+                        return id;
+                }
+
+                String[] values() {
+                        return values.toArray(new String[0]);
+                }
+        }
+}
@@ -0,0 +1,114 @@
+package sa001;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named, versioned set of loaded sales records.
+ *
+ * Every {@link #reload} or {@link #append} publishes a new immutable view and
+ * bumps the version, so anything derived from an earlier view (cached query
+ * results, {@link SalesColumns}) can tell it is stale. Readers never block
+ * writers: they work on whichever view was current when they asked.
+ */
+public final class SalesDataset {
+        private static final AtomicLong IDS = new AtomicLong();
+
+        private final long id = IDS.incrementAndGet();
+        private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+        private volatile View view;
+
+        public SalesDataset(List<SalesRecord> records) {
+                this.view = new View(0, Collections.unmodifiableList(new ArrayList<>(records)));
+        }
+
+        /** Identity of this dataset, unique within the JVM. */
+        public long id() {
+                return id;
+        }
+
+        /** Incremented on every reload or append. */
+        public long version() {
+                return view.version;
+        }
+
+        /** Unmodifiable records of the current version. */
+        public List<SalesRecord> records() {
+                return view.records;
+        }
+
+        public int size() {
+                return view.records.size();
+        }
+
+        /** Columnar form of the current version, built on first use. */
+        public SalesColumns columns() {
+                return view.columns();
+        }
+
+        /** Replace all records. */
+        public void reload(List<SalesRecord> records) {
+                synchronized (this) {
+                        view = new View(view.version + 1, Collections.unmodifiableList(new ArrayList<>(records)));
+                }
+                fireChanged();
+        }
+
+        /** Add records after the existing ones. */
+        public void append(List<SalesRecord> records) {
+                synchronized (this) {
+                        List<SalesRecord> merged = new ArrayList<>(view.records.size() + records.size());
+                        merged.addAll(view.records);
+                        merged.addAll(records);
+                        view = new View(view.version + 1, Collections.unmodifiableList(merged));
+                }
+                fireChanged();
+        }
+
+        /** Run {@code listener} after every reload or append. */
+        public void addChangeListener(Runnable listener) {
+                changeListeners.add(listener);
+        }
+
+        public void removeChangeListener(Runnable listener) {
+                changeListeners.remove(listener);
+        }
+
+        int changeListenerCount() {
+                return changeListeners.size();
+        }
+
+        /** Current version together with its records, read atomically. */
+        View view() {
+                return view;
+        }
+
+        private void fireChanged() {
+                for (Runnable l : changeListeners)
+                        l.run();
+        }
+
+        static final class View {
+                final long version;
+                final List<SalesRecord> records;
+                private volatile SalesColumns columns;
+
+                View(long version, List<SalesRecord> records) {
+                        this.version = version;
+                        this.records = records;
+                }
+
+                SalesColumns columns() {
+                        SalesColumns c = columns;
+                        if (c == null) {
+                                // benign race: concurrent callers may each build an identical copy
+                                c = SalesColumns.of(records);
+                                columns = c;
+                        }
+                        return c;
+                }
+        }
+}
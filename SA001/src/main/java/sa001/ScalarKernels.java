@@ -0,0 +1,27 @@
+package sa001;
+
+/** Plain-loop {@link AggregationKernels}, used when SIMD kernels are unavailable. */
+final class ScalarKernels implements AggregationKernels {
+        static final ScalarKernels INSTANCE = new ScalarKernels();
+
+        private ScalarKernels() {}
+
+        @Override
+        public double revenue(int[] quantity, double[] price, int n) {
+                double sum = 0.0;
+                for (int i = 0; i < n; i++)
+                        sum += quantity[i] * price[i];
+                return sum;
+        }
+
+        @Override
+        public void groupRevenue(int[] quantity, double[] price, int[] group, double[] out, int n) {
+                for (int i = 0; i < n; i++)
+                        out[group[i]] += quantity[i] * price[i];
+        }
+
+        @Override
+        public String name() {
+                return "scalar";
+        }
+}
@@ -0,0 +1,152 @@
+package sa001;
+
+/**
+ * Open-addressing map from String keys to a {@code double} sum and a
+ * {@code long} count, used for per-key aggregation.
+ *
+ * Entries live in parallel primitive arrays and collisions are resolved by
+ * linear probing, so accumulating into an existing key never allocates. Keys
+ * cannot be removed; the map only grows until {@link #clear()}.
+ */
+final class StringDoubleMap {
+
+        /** Receives every entry of the map. */
+        interface Visitor {
+                void accept(String key, double sum, long count);
+        }
+
+        private static final int MIN_CAPACITY = 16;
+
+        private String[] keys;
+        private int[] hashes;
+        private double[] sums;
+        private long[] counts;
+        private int size;
+        private int mask;
+        private int resizeAt;
+
+        StringDoubleMap() {
+                this(MIN_CAPACITY / 2);
+        }
+
+        StringDoubleMap(int expectedSize) {
+                allocate(tableSizeFor(expectedSize));
+        }
+
+        /** Add {@code value} to the sum for {@code key} and increment its count. */
+        void add(String key, double value) {
+                add(key, value, 1L);
+        }
+
+        /** Add a partial aggregate (sum and count) for {@code key}. */
+        void add(String key, double sum, long count) {
+                int h = mix(key.hashCode());
+                int i = h & mask;
+                String k;
+                while ((k = keys[i]) != null) {
+                        if (hashes[i] == h && (k == key || k.equals(key))) {
+                                sums[i] += sum;
+                                counts[i] += count;
+                                return;
+                        }
+                        i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                hashes[i] = h;
+                sums[i] = sum;
+                counts[i] = count;
+                if (++size > resizeAt)
+                        rehash(keys.length << 1);
+        }
+
+        double sum(String key) {
+                int i = indexOf(key);
+                return i < 0 ? 0.0 : sums[i];
+        }
+
+        long count(String key) {
+                int i = indexOf(key);
+                return i < 0 ? 0L : counts[i];
+        }
+
+        boolean containsKey(String key) {
+                return indexOf(key) >= 0;
+        }
+
+        int size() {
+                return size;
+        }
+
+        /** Bytes held by the backing arrays, excluding the key strings themselves. */
+        long tableBytes() {
+                // reference + int hash + double sum + long count per slot
+                return (long) keys.length * (8 + 4 + 8 + 8);
+        }
+
+        void forEach(Visitor visitor) {
+                for (int i = 0; i < keys.length; i++) {
+                        if (keys[i] != null)
+                                visitor.accept(keys[i], sums[i], counts[i]);
+                }
+        }
+
+        void clear() {
+                allocate(MIN_CAPACITY);
+        }
+
+        private int indexOf(String key) {
+                int h = mix(key.hashCode());
+                int i = h & mask;
+                String k;
+                while ((k = keys[i]) != null) {
+                        if (hashes[i] == h && (k == key || k.equals(key)))
+                                return i;
+                        i = (i + 1) & mask;
+                }
+                return -1;
+        }
+
+        private void allocate(int capacity) {
+                keys = new String[capacity];
+                hashes = new int[capacity];
+                sums = new double[capacity];
+                counts = new long[capacity];
+                size = 0;
+                mask = capacity - 1;
+                resizeAt = capacity / 2;
+        }
+
+        private void rehash(int capacity) {
+                String[] oldKeys = keys;
+                int[] oldHashes = hashes;
+                double[] oldSums = sums;
+                long[] oldCounts = counts;
+                int oldSize = size;
+                allocate(capacity);
+                for (int j = 0; j < oldKeys.length; j++) {
+                        if (oldKeys[j] == null)
+                                continue;
+                        int i = oldHashes[j] & mask;
+                        while (keys[i] != null)
+                                i = (i + 1) & mask;
+                        keys[i] = oldKeys[j];
+                        hashes[i] = oldHashes[j];
+                        sums[i] = oldSums[j];
+                        counts[i] = oldCounts[j];
+                }
+                size = oldSize;
+        }
+
+        // Spread String.hashCode so linear probing does not cluster on sequential keys
+        static int mix(int h) {
+                h *= 0x9E3779B9;
+                return h ^ (h >>> 16);
+        }
+
+        // Power of two holding expectedSize entries at load factor 0.5
+        static int tableSizeFor(int expectedSize) {
+                int want = Math.max(MIN_CAPACITY, expectedSize * 2);
+                int cap = Integer.highestOneBit(want - 1) << 1;
+                return cap > 0 ? cap : 1 << 30;
+        }
+}
@@ -0,0 +1,125 @@
+package sa001;
+
+/**
+ * Open-addressing map from String keys to a {@code long} accumulator.
+ *
+ * Same layout as {@link StringDoubleMap}: parallel primitive arrays with
+ * linear probing, so adding to an existing key never allocates.
+ */
+final class StringLongMap {
+
+        /** Receives every entry of the map. */
+        interface Visitor {
+                void accept(String key, long value);
+        }
+
+        private String[] keys;
+        private int[] hashes;
+        private long[] values;
+        private int size;
+        private int mask;
+        private int resizeAt;
+
+        StringLongMap() {
+                this(8);
+        }
+
+        StringLongMap(int expectedSize) {
+                allocate(StringDoubleMap.tableSizeFor(expectedSize));
+        }
+
+        /** Add {@code delta} to the value for {@code key} (absent keys start at 0). */
+        void add(String key, long delta) {
+                int h = StringDoubleMap.mix(key.hashCode());
+                int i = h & mask;
+                String k;
+                while ((k = keys[i]) != null) {
+                        if (hashes[i] == h && (k == key || k.equals(key))) {
+                                values[i] += delta;
+                                return;
+                        }
+                        i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                hashes[i] = h;
+                values[i] = delta;
+                if (++size > resizeAt)
+                        rehash(keys.length << 1);
+        }
+
+        /**
+         * Associate {@code value} with {@code key} unless it already has one, and
+         * return the value now associated. Handy for dictionary encoding.
+         */
+        long putIfAbsent(String key, long value) {
+                int h = StringDoubleMap.mix(key.hashCode());
+                int i = h & mask;
+                String k;
+                while ((k = keys[i]) != null) {
+                        if (hashes[i] == h && (k == key || k.equals(key)))
+                                return values[i];
+                        i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                hashes[i] = h;
+                values[i] = value;
+                if (++size > resizeAt)
+                        rehash(keys.length << 1);
+                return value;
+        }
+
+        long get(String key) {
+                return getOrDefault(key, 0L);
+        }
+
+        long getOrDefault(String key, long defaultValue) {
+                int h = StringDoubleMap.mix(key.hashCode());
+                int i = h & mask;
+                String k;
+                while ((k = keys[i]) != null) {
+                        if (hashes[i] == h && (k == key || k.equals(key)))
+                                return values[i];
+                        i = (i + 1) & mask;
+                }
+                return defaultValue;
+        }
+
+        int size() {
+                return size;
+        }
+
+        void forEach(Visitor visitor) {
+                for (int i = 0; i < keys.length; i++) {
+                        if (keys[i] != null)
+                                visitor.accept(keys[i], values[i]);
+                }
+        }
+
+        private void allocate(int capacity) {
+                keys = new String[capacity];
+                hashes = new int[capacity];
+                values = new long[capacity];
+                size = 0;
+                mask = capacity - 1;
+                resizeAt = capacity / 2;
+        }
+
+        private void rehash(int capacity) {
+                String[] oldKeys = keys;
+                int[] oldHashes = hashes;
+                long[] oldValues = values;
+                int oldSize = size;
+                allocate(capacity);
+                for (int j = 0; j < oldKeys.length; j++) {
+                        if (oldKeys[j] == null)
+                                continue;
+                        int i = oldHashes[j] & mask;
+                        while (keys[i] != null)
+                                i = (i + 1) & mask;
+                        keys[i] = oldKeys[j];
+                        hashes[i] = oldHashes[j];
+                        values[i] = oldValues[j];
+                }
+                size = oldSize;
+        }
+}
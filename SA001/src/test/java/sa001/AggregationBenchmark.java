@@ -0,0 +1,59 @@
+package sa001;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Standalone micro-benchmark for the columnar aggregation kernels (not run by
+ * surefire). Compares the scalar kernels with whatever {@link AggregationKernels#best()}
+ * resolves to, on the record-based and columnar paths.
+ *
+ * Build with {@code mvn -Pvector test-compile}, then run:
+ * {@code java --add-modules jdk.incubator.vector -cp target/test-classes:target/classes sa001.AggregationBenchmark [rows]}
+ */
+public class AggregationBenchmark {
+
+        private static final String[] REGIONS = { "North", "South", "East", "West" };
+
+        public static void main(String[] args) {
+                int rows = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+                Random rnd = new Random(42);
+                List<SalesRecord> records = new ArrayList<>(rows);
+                for (int i = 0; i < rows; i++) {
+                        records.add(new SalesRecord(i, "P" + rnd.nextInt(1000), "C", 1 + rnd.nextInt(10),
+                                        1 + rnd.nextInt(10_000) / 100.0, REGIONS[rnd.nextInt(REGIONS.length)]));
+                }
+                SalesColumns cols = SalesColumns.of(records);
+                SalesAnalyzer analyzer = new SalesAnalyzer();
+                AggregationKernels scalar = AggregationKernels.scalar();
+                AggregationKernels best = AggregationKernels.best();
+
+                System.out.printf("rows=%d kernels=%s%n", rows, best.name());
+                double[] groups = new double[cols.regions.length];
+                for (AggregationKernels k : best == scalar ? new AggregationKernels[] { scalar }
+                                : new AggregationKernels[] { scalar, best }) {
+                        report("totalRevenue/" + k.name(), () -> k.revenue(cols.quantity, cols.price, cols.size));
+                        report("revenueByRegion/" + k.name(), () -> {
+                                java.util.Arrays.fill(groups, 0.0);
+                                k.groupRevenue(cols.quantity, cols.price, cols.regionId, groups, cols.size);
+                                return groups[0];
+                        });
+                }
+                report("totalRevenue/records", () -> analyzer.totalRevenue(records));
+                report("revenueByRegion/records", () -> analyzer.revenueByRegion(records).size());
+        }
+
+        private static void report(String name, java.util.function.DoubleSupplier op) {
+                double sink = 0;
+                // warm up so the JIT has compiled the kernel before measuring
+                for (int i = 0; i < 20; i++)
+                        sink += op.getAsDouble();
+                int iterations = 30;
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++)
+                        sink += op.getAsDouble();
+                double ms = (System.nanoTime() - start) / 1e6 / iterations;
+                System.out.printf("%-32s %9.3f ms/op  (checksum %.1f)%n", name, ms, sink);
+        }
+}
@@ -0,0 +1,107 @@
+package sa001;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingSalesAnalyzerTest {
+
+    private List<SalesRecord> sampleRecords() {
+        return Arrays.asList(
+                new SalesRecord(1, LocalDate.of(2025,1,5), "Widget", "Electronics", 2, 10.0, "North"),
+                new SalesRecord(2, LocalDate.of(2025,1,15), "Gadget", "Electronics", 3, 20.0, "South"),
+                new SalesRecord(3, LocalDate.of(2025,2,3), "Gizmo", "Accessories", 5, 5.0, "East"),
+                new SalesRecord(4, LocalDate.of(2025,2,20), "Widget", "Electronics", 1, 10.0, "North")
+        );
+    }
+
+    @Test
+    public void testRepeatedQueriesHitCache() {
+        SalesDataset ds = new SalesDataset(sampleRecords());
+        CachingSalesAnalyzer c = new CachingSalesAnalyzer(new SalesAnalyzer());
+
+        Map<String, Double> first = c.revenueByRegion(ds);
+        Map<String, Double> second = c.revenueByRegion(ds);
+        assertSame(first, second);
+        assertEquals(60.0, second.get("South"), 0.0001);
+        assertEquals(1, c.missCount());
+        assertEquals(1, c.hitCount());
+
+        // different parameters are different entries
+        assertEquals(List.of("Gizmo"), c.topNProducts(ds, 1));
+        assertEquals(3, c.topNProducts(ds, 3).size());
+        assertEquals(3, c.missCount());
+    }
+
+    @Test
+    public void testReloadAndAppendInvalidate() {
+        SalesDataset ds = new SalesDataset(sampleRecords());
+        CachingSalesAnalyzer c = new CachingSalesAnalyzer(new SalesAnalyzer());
+        assertEquals(115.0, c.totalRevenue(ds), 0.0001);
+        assertEquals(1, c.size());
+
+        ds.append(List.of(new SalesRecord(5, "Widget", "Electronics", 1, 5.0, "West")));
+        assertEquals(0, c.size(), "append should drop cached results for the dataset");
+        assertEquals(120.0, c.totalRevenue(ds), 0.0001);
+
+        ds.reload(sampleRecords().subList(0, 1));
+        assertEquals(20.0, c.totalRevenue(ds), 0.0001);
+        assertEquals(3, c.missCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedByWeight() {
+        SalesDataset ds = new SalesDataset(sampleRecords());
+        // revenueByRegion weighs 3, quantityByCategory 2, totalRevenue 1
+        CachingSalesAnalyzer c = new CachingSalesAnalyzer(new SalesAnalyzer(), 10, 5);
+        c.revenueByRegion(ds);
+        c.quantityByCategory(ds);
+        assertEquals(5, c.weight());
+        c.totalRevenue(ds);
+        assertEquals(2, c.size());
+        assertTrue(c.weight() <= 5);
+        c.quantityByCategory(ds);
+        assertEquals(1, c.hitCount(), "most recent entries survive eviction");
+    }
+
+    @Test
+    public void testCloseUnregistersFromDatasets() {
+        SalesDataset ds = new SalesDataset(sampleRecords());
+        CachingSalesAnalyzer c = new CachingSalesAnalyzer(new SalesAnalyzer());
+        c.totalRevenue(ds);
+        c.revenueByRegion(ds);
+        assertEquals(1, ds.changeListenerCount());
+
+        c.close();
+        assertEquals(0, ds.changeListenerCount());
+        assertEquals(0, c.size());
+
+        // still usable: the next query registers again
+        assertEquals(115.0, c.totalRevenue(ds), 0.0001);
+        assertEquals(1, ds.changeListenerCount());
+    }
+
+    @Test
+    public void testUnclosedAnalyzerIsNotKeptAliveByDataset() throws Exception {
+        SalesDataset ds = new SalesDataset(sampleRecords());
+        CachingSalesAnalyzer c = new CachingSalesAnalyzer(new SalesAnalyzer());
+        c.totalRevenue(ds);
+        WeakReference<CachingSalesAnalyzer> ref = new WeakReference<>(c);
+        c = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get(), "the dataset's listener must not pin the analyzer");
+
+        // the orphaned listener removes itself on the next change
+        ds.append(List.of(new SalesRecord(5, "Widget", "Electronics", 1, 5.0, "West")));
+        assertEquals(0, ds.changeListenerCount());
+    }
+}
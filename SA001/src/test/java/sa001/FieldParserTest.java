@@ -0,0 +1,122 @@
+package sa001;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sa001.FieldParser.Status.*;
+
+public class FieldParserTest {
+
+    @Test
+    public void testParseInt() {
+        FieldParser p = new FieldParser();
+        assertEquals(OK, p.parseInt("42"));
+        assertEquals(42, p.intValue());
+        assertEquals(OK, p.parseInt("-2147483648"));
+        assertEquals(Integer.MIN_VALUE, p.intValue());
+        assertEquals(OK, p.parseInt("+2147483647"));
+        assertEquals(Integer.MAX_VALUE, p.intValue());
+
+        assertEquals(OUT_OF_RANGE, p.parseInt("2147483648"));
+        assertEquals(0, p.intValue());
+        assertEquals(OUT_OF_RANGE, p.parseInt("99999999999999999999999"));
+        assertEquals(MALFORMED, p.parseInt("99999999999999999999999x"));
+        assertEquals(MALFORMED, p.parseInt("1.5"));
+        assertEquals(MALFORMED, p.parseInt("-"));
+        assertEquals(MALFORMED, p.parseInt("abc"));
+        assertEquals(MISSING, p.parseInt(""));
+        assertEquals(MISSING, p.parseInt(null));
+    }
+
+    @Test
+    public void testParseDoubleMatchesDoubleParseDouble() {
+        FieldParser p = new FieldParser();
+        for (String s : List.of("0", "-0", "2.5", "19.99", ".25", "12.", "-0.000123", "123456789012345",
+                "0.1234567890123456789", "1e3", "-1.5E-7", "+3.25", "4.35", "0.3")) {
+            assertEquals(OK, p.parseDouble(s), s);
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(s)), Double.doubleToLongBits(p.doubleValue()), s);
+        }
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            String s = (random.nextInt(100_000) / 100.0) + "";
+            assertEquals(OK, p.parseDouble(s), s);
+            assertEquals(Double.parseDouble(s), p.doubleValue(), 0.0, s);
+        }
+    }
+
+    @Test
+    public void testParseDoubleRejects() {
+        FieldParser p = new FieldParser();
+        for (String s : List.of("NaN", "Infinity", "1d", "0x1p3", ".", "-", "1e", "1e+", "1.2.3", "12a", "$5"))
+            assertEquals(MALFORMED, p.parseDouble(s), s);
+        assertEquals(OUT_OF_RANGE, p.parseDouble("1e999"));
+        assertEquals(0.0, p.doubleValue());
+        assertEquals(MISSING, p.parseDouble(""));
+    }
+
+    @Test
+    public void testParseDate() {
+        FieldParser p = new FieldParser();
+        assertEquals(OK, p.parseDate("2024-02-29"));
+        assertEquals(LocalDate.of(2024, 2, 29), p.dateValue());
+        assertEquals(OUT_OF_RANGE, p.parseDate("2025-02-29"));
+        assertNull(p.dateValue());
+        assertEquals(OUT_OF_RANGE, p.parseDate("2025-13-01"));
+        assertEquals(OUT_OF_RANGE, p.parseDate("2025-04-00"));
+        assertEquals(MALFORMED, p.parseDate("2025/01/01"));
+        assertEquals(MALFORMED, p.parseDate("2025-1-01"));
+        assertEquals(MALFORMED, p.parseDate("01-02-2025"));
+        assertEquals(MALFORMED, p.parseDate("2025-0a-01"));
+        assertEquals(MISSING, p.parseDate(""));
+    }
+
+    @Test
+    public void testLoadCsvCountsAndLogsRejects() throws Exception {
+        Path dir = Files.createTempDirectory("sa001-rejects");
+        Path csv = Files.writeString(dir.resolve("sales.csv"),
+                "orderId,date,product,region,quantity,unitPrice\n"
+                        + "1,2025-01-01,Widget,North,2,2.5\n"
+                        + "2,2025-02-30,Widget,North,x,2.5\n"
+                        + "3,2025-01-02,Gadget,South,,\"1,5\"\n"
+                        + "4,2025-01-03,Gizmo,East,1,4.0\n");
+        SalesAnalyzer a = new SalesAnalyzer();
+        List<SalesRecord> records;
+        try (RejectLog log = new RejectLog(dir.resolve("rejects.csv"))) {
+            a.setRejectLog(log);
+            records = a.loadCSV(csv.toString());
+            assertEquals(2, log.written());
+        }
+
+        // rejected values fall back to the defaults and the rows are still loaded
+        assertEquals(4, records.size());
+        assertNull(records.get(1).getDate());
+        assertEquals(0, records.get(1).getQuantity());
+        assertEquals(0.0, records.get(2).getPrice());
+
+        RejectStats stats = a.getRejectStats();
+        assertEquals(2, stats.rows());
+        assertEquals(4, stats.total());
+        assertEquals(1, stats.count("date", OUT_OF_RANGE));
+        assertEquals(1, stats.count("quantity", MALFORMED));
+        assertEquals(1, stats.count("quantity", MISSING));
+        assertEquals(1, stats.count("unitPrice"));
+        assertEquals(0, stats.count("orderId"));
+        assertEquals("2 rows rejected (date: 1 out_of_range; quantity: 1 missing, 1 malformed; unitPrice: 1 malformed)",
+                stats.toString());
+
+        List<String> lines = Files.readAllLines(dir.resolve("rejects.csv"));
+        assertEquals("file,row,rejects,record", lines.get(0));
+        assertEquals(csv + ",2,date=out_of_range;quantity=malformed,\"2,2025-02-30,Widget,North,x,2.5\"", lines.get(1));
+        assertEquals(csv + ",3,quantity=missing;unitPrice=malformed,\"3,2025-01-02,Gadget,South,,\"\"1,5\"\"\"",
+                lines.get(2));
+
+        stats.reset();
+        assertEquals(0, stats.rows());
+        assertTrue(stats.snapshot().isEmpty());
+    }
+}
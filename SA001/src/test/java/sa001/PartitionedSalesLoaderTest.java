@@ -0,0 +1,112 @@
+package sa001;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedSalesLoaderTest {
+
+    private static final String HEADER = "orderId,date,product,region,quantity,unitPrice";
+
+    private static void writeDay(Path file, LocalDate date, String region, int orders) throws IOException {
+        Files.createDirectories(file.getParent());
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        for (int i = 0; i < orders; i++)
+            lines.add(i + "," + date + ",Widget," + region + ",1,10.0");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testInfersKeysFromPaths() {
+        Path root = Paths.get("exports");
+        PartitionedSalesLoader.Partition hive = PartitionedSalesLoader.infer(root,
+                Paths.get("date=2025-03-01/region=North/part-0.csv"));
+        assertEquals(LocalDate.of(2025, 3, 1), hive.getDate());
+        assertEquals("North", hive.getRegion());
+
+        PartitionedSalesLoader.Partition named = PartitionedSalesLoader.infer(root, Paths.get("sales_20250301_East.csv"));
+        assertEquals(LocalDate.of(2025, 3, 1), named.getDate());
+        assertEquals("East", named.getRegion());
+
+        PartitionedSalesLoader.Partition dirs = PartitionedSalesLoader.infer(root, Paths.get("2025/03/01/all.csv"));
+        assertEquals(LocalDate.of(2025, 3, 1), dirs.getDate());
+        assertNull(dirs.getRegion());
+
+        PartitionedSalesLoader.Partition none = PartitionedSalesLoader.infer(root, Paths.get("misc/orders-99999999.csv"));
+        assertNull(none.getDate());
+        assertNull(none.getRegion());
+    }
+
+    @Test
+    public void testPrunesFilesOutsideTheFilter() throws Exception {
+        Path root = Files.createTempDirectory("sa001-partitions");
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        for (int d = 0; d < 60; d++) {
+            LocalDate day = start.plusDays(d);
+            for (String region : List.of("North", "South"))
+                writeDay(root.resolve("date=" + day + "/region=" + region + "/part.csv"), day, region, 3);
+        }
+        // a file without keys is always read, and its rows filtered
+        Path loose = root.resolve("late/extra.csv");
+        writeDay(loose, LocalDate.of(2025, 1, 3), "North", 2);
+        Files.write(root.resolve("notes.txt"), List.of("not a csv"));
+
+        PartitionedSalesLoader loader = new PartitionedSalesLoader(new SalesAnalyzer(), root);
+        PartitionedSalesLoader.Result all = loader.load();
+        assertEquals(121, all.filesRead());
+        assertEquals(60 * 2 * 3 + 2, all.records().size());
+
+        PartitionedSalesLoader.Result week = loader.load(
+                PartitionFilter.between(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 7)).regions("north"));
+        assertEquals(8, week.filesRead()); // 7 days of North plus the file without keys
+        assertEquals(113, week.filesPruned());
+        assertEquals(7 * 3 + 2, week.records().size());
+        assertTrue(week.records().stream().allMatch(r -> r.getRegion().equals("North")));
+
+        // path order, whichever thread finished first
+        List<SalesRecord> again = loader.load(PartitionFilter.between(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 7))
+                .regions("North")).records();
+        assertEquals(week.records().stream().map(SalesRecord::getDate).collect(java.util.stream.Collectors.toList()),
+                again.stream().map(SalesRecord::getDate).collect(java.util.stream.Collectors.toList()));
+    }
+
+    @Test
+    public void testRowsWithoutKeysMatchOnlyUnrestrictedFilters() {
+        LocalDate day = LocalDate.of(2025, 1, 3);
+        SalesRecord noRegion = new SalesRecord(1, day, "Widget", "Electronics", 1, 2.0, null);
+        SalesRecord noDate = new SalesRecord(2, null, "Widget", "Electronics", 1, 2.0, "North");
+
+        PartitionFilter north = PartitionFilter.all().regions("North");
+        assertFalse(north.matches(noRegion));
+        assertTrue(north.matches(noDate));
+        assertTrue(PartitionFilter.all().matches(noRegion));
+        // files without a region key may still hold northern rows
+        assertTrue(north.mayContain(day, null));
+
+        PartitionFilter january = PartitionFilter.between(day.withDayOfMonth(1), day.withDayOfMonth(31));
+        assertTrue(january.matches(noRegion));
+        assertFalse(january.matches(noDate));
+    }
+
+    @Test
+    public void testGlobAndLoadAll() throws Exception {
+        Path root = Files.createTempDirectory("sa001-glob");
+        writeDay(root.resolve("sales_2025-02-01_West.csv"), LocalDate.of(2025, 2, 1), "West", 4);
+        writeDay(root.resolve("sales_2025-03-01_West.csv"), LocalDate.of(2025, 3, 1), "West", 5);
+        SalesAnalyzer a = new SalesAnalyzer();
+        assertEquals(4, PartitionedSalesLoader.loadAll(a, root + "/sales_2025-02-*.csv").size());
+        assertEquals(9, PartitionedSalesLoader.loadAll(a, root.toString()).size());
+        assertEquals(5, PartitionedSalesLoader.loadAll(a, root.resolve("sales_2025-03-01_West.csv").toString()).size());
+        assertThrows(IllegalArgumentException.class,
+                () -> PartitionFilter.between(LocalDate.of(2025, 2, 1), LocalDate.of(2025, 1, 1)));
+    }
+}
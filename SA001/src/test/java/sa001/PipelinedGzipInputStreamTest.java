@@ -0,0 +1,100 @@
+package sa001;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelinedGzipInputStreamTest {
+
+    private static Path gzip(Path file, byte[] content) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) > 0)
+            out.write(buf, 0, n);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testBlocksReassembleTheInput() throws Exception {
+        Path dir = Files.createTempDirectory("sa001-gzip-test");
+        byte[] content = new byte[300_000];
+        new Random(7).nextBytes(content);
+        Path file = gzip(dir.resolve("data.gz"), content);
+        for (int blockSize : new int[] {1, 4096, 1 << 20}) {
+            try (PipelinedGzipInputStream in = new PipelinedGzipInputStream(file, blockSize, 2)) {
+                assertArrayEquals(content, readAll(in), "blockSize=" + blockSize);
+                assertEquals(-1, in.read());
+                assertEquals(content.length, in.decodedBytes());
+            }
+        }
+    }
+
+    @Test
+    public void testLoadCsvReadsGzipDirectly() throws Exception {
+        Path dir = Files.createTempDirectory("sa001-gzip-csv");
+        StringBuilder csv = new StringBuilder("orderId,date,product,region,quantity,unitPrice\n");
+        for (int i = 0; i < 20_000; i++)
+            csv.append(i).append(",2025-01-0").append(1 + i % 9).append(",Widget,North,").append(1 + i % 4).append(",2.5\n");
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+        Path plain = Files.write(dir.resolve("sales.csv"), bytes);
+        Path compressed = gzip(dir.resolve("sales.csv.gz"), bytes);
+
+        SalesAnalyzer a = new SalesAnalyzer();
+        List<SalesRecord> expected = a.loadCSV(plain.toString());
+        List<SalesRecord> actual = a.loadCSV(compressed.toString());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(a.totalRevenue(expected), a.totalRevenue(actual), 1e-9);
+        assertEquals(a.monthlyRevenue(expected), a.monthlyRevenue(actual));
+        // the partitioned loader picks up .csv.gz files as well
+        Files.delete(plain);
+        assertEquals(20_000, new PartitionedSalesLoader(a, dir).load().records().size());
+    }
+
+    @Test
+    public void testCorruptInputFails() throws Exception {
+        Path dir = Files.createTempDirectory("sa001-gzip-bad");
+        byte[] content = new byte[200_000];
+        Arrays.fill(content, (byte) 'x');
+        byte[] gz = Files.readAllBytes(gzip(dir.resolve("ok.gz"), content));
+        // keep the header, cut the deflate stream short
+        Path truncated = Files.write(dir.resolve("truncated.gz"), Arrays.copyOf(gz, gz.length / 2));
+        try (PipelinedGzipInputStream in = new PipelinedGzipInputStream(truncated, 4096, 2)) {
+            assertThrows(IOException.class, () -> readAll(in));
+        }
+        Path notGzip = Files.write(dir.resolve("plain.gz"), "a,b\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> new SalesAnalyzer().loadCSV(notGzip.toString()));
+    }
+
+    @Test
+    public void testCloseStopsDecoderEarly() throws Exception {
+        Path dir = Files.createTempDirectory("sa001-gzip-close");
+        Path file = gzip(dir.resolve("big.gz"), new byte[5_000_000]);
+        PipelinedGzipInputStream in = new PipelinedGzipInputStream(file, 4096, 2);
+        assertEquals(0, in.read());
+        in.close();
+        assertThrows(IOException.class, in::read);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Thread.getAllStackTraces().keySet().stream().anyMatch(t -> t.getName().equals("gzip-decoder-big.gz"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "decoder still running");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package sa001;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryServerTest {
+
+    private QueryServer server;
+
+    private static List<SalesRecord> records() {
+        return Arrays.asList(
+                new SalesRecord(1, LocalDate.of(2025,1,5), "Widget", "Electronics", 2, 10.0, "North"),
+                new SalesRecord(2, LocalDate.of(2025,1,15), "Gadget", "Electronics", 3, 20.0, "South"),
+                new SalesRecord(3, LocalDate.of(2025,2,3), "Gizmo", "Accessories", 5, 5.0, "East"),
+                new SalesRecord(4, LocalDate.of(2025,2,20), "Widget", "Electronics", 1, 10.0, "North"));
+    }
+
+    @BeforeEach
+    public void start() throws Exception {
+        server = new QueryServer(new SalesAnalyzer(), new SalesDataset(records()), 0).start();
+    }
+
+    @AfterEach
+    public void stop() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void testQueriesOverSocket() throws Exception {
+        try (Client c = new Client(server.port())) {
+            assertEquals("{\"ok\":true,\"result\":115.0}", c.ask("totalRevenue"));
+            assertEquals("{\"ok\":true,\"result\":[\"Gizmo\"]}", c.ask("topNProducts 1"));
+            assertEquals("{\"ok\":true,\"result\":{\"Gizmo\":5,\"Gadget\":3}}", c.ask("topNProductsWithCounts 2"));
+            assertTrue(c.ask("revenueByRegion").contains("\"South\":60.0"));
+            assertEquals("{\"ok\":false,\"error\":\"unknown command: nope\"}", c.ask("nope"));
+            assertEquals("{\"ok\":false,\"error\":\"missing argument N\"}", c.ask("topNProducts"));
+        }
+    }
+
+    @Test
+    public void testReloadAndAppendInPlace() throws Exception {
+        Path dir = Files.createTempDirectory("sa001-server-test");
+        Path csv = dir.resolve("more.csv");
+        Files.write(csv, Arrays.asList("orderId,date,product,region,quantity,unitPrice",
+                "10,2025-03-01,Widget,West,4,10.0"), StandardCharsets.UTF_8);
+        try (QueryServer rooted = new QueryServer(new SalesAnalyzer(), new SalesDataset(new ArrayList<>(records())), 0, dir).start();
+                Client c = new Client(rooted.port())) {
+            assertEquals("{\"ok\":true,\"result\":115.0}", c.ask("totalRevenue"));
+            assertTrue(c.ask("append " + csv).contains("\"records\":5,\"version\":1"));
+            assertEquals("{\"ok\":true,\"result\":155.0}", c.ask("totalRevenue"));
+            // relative to the data root
+            assertTrue(c.ask("reload more.csv").contains("\"records\":1,\"version\":2"));
+            assertEquals("{\"ok\":true,\"result\":40.0}", c.ask("totalRevenue"));
+            assertTrue(c.ask("append *.csv").contains("\"records\":2,\"version\":3"));
+            assertTrue(c.ask("reload " + dir.resolve("missing.csv")).startsWith("{\"ok\":false"));
+        }
+    }
+
+    @Test
+    public void testReloadIsConfinedToTheDataRoot() throws Exception {
+        Path outside = Files.createTempDirectory("sa001-server-outside");
+        Path secret = outside.resolve("secret.csv");
+        Files.write(secret, Arrays.asList("orderId,date,product,region,quantity,unitPrice",
+                "10,2025-03-01,Widget,West,4,10.0"), StandardCharsets.UTF_8);
+        Path root = Files.createDirectory(outside.resolve("data"));
+        try (Client c = new Client(server.port())) {
+            // no data root: reload and append are refused outright
+            assertEquals("{\"ok\":false,\"error\":\"reload and append are disabled: no data root configured\"}",
+                    c.ask("reload " + secret));
+        }
+        try (QueryServer rooted = new QueryServer(new SalesAnalyzer(), new SalesDataset(new ArrayList<>()), 0, root).start();
+                Client c = new Client(rooted.port())) {
+            assertTrue(c.ask("reload " + secret).contains("not under the data root"));
+            assertTrue(c.ask("reload ../secret.csv").contains("not under the data root"));
+            assertTrue(c.ask("append ../*.csv").contains("not under the data root"));
+            assertTrue(c.ask("append " + outside + "/**.csv").contains("not under the data root"));
+            assertEquals("{\"ok\":true,\"result\":0.0}", c.ask("totalRevenue"));
+        }
+    }
+
+    @Test
+    public void testUnexpectedFailureStillAnswersOneLine() throws Exception {
+        SalesAnalyzer failing = new SalesAnalyzer() {
+            @Override
+            public double totalRevenue(List<SalesRecord> records) {
+                throw new IllegalStateException("boom");
+            }
+        };
+        try (QueryServer broken = new QueryServer(failing, new SalesDataset(new ArrayList<>()), 0).start();
+                Client c = new Client(broken.port())) {
+            assertEquals("{\"ok\":false,\"error\":\"boom\"}", c.ask("totalRevenue"));
+            // the connection survives the failure
+            assertEquals("{\"ok\":true,\"result\":\"pong\"}", c.ask("ping"));
+            assertEquals(broken.port(), broken.address().getPort());
+            assertTrue(broken.address().getAddress().isLoopbackAddress());
+        }
+    }
+
+    @Test
+    public void testManyConcurrentClients() throws Exception {
+        int clients = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<Integer>> answers = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                answers.add(pool.submit(() -> {
+                    int ok = 0;
+                    try (Client c = new Client(server.port())) {
+                        for (int q = 0; q < 50; q++) {
+                            if (c.ask(q % 2 == 0 ? "totalRevenue" : "avgPriceByCategory").startsWith("{\"ok\":true"))
+                                ok++;
+                        }
+                    }
+                    return ok;
+                }));
+            }
+            for (Future<Integer> f : answers)
+                assertEquals(50, f.get(30, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(16 * 50, server.servedCount());
+    }
+
+    @Test
+    public void testShutdownCommandStopsServer() throws Exception {
+        try (Client c = new Client(server.port())) {
+            assertEquals("{\"ok\":true,\"result\":\"bye\"}", c.ask("shutdown"));
+        }
+        server.awaitShutdown();
+        assertThrows(java.io.IOException.class, () -> new Socket(InetAddress.getLoopbackAddress(), server.port()).close());
+    }
+
+    private static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        Client(int port) throws Exception {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+        }
+
+        String ask(String command) throws Exception {
+            out.println(command);
+            return in.readLine();
+        }
+
+        @Override
+        public void close() throws Exception {
+            socket.close();
+        }
+    }
+}
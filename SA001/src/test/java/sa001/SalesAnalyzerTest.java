@@ -5,10 +5,14 @@ import org.junit.jupiter.api.Test;
 import java.util.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 
 import static org.junit.jupiter.api.Assertions.*;
 import java.time.LocalDate;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 public class SalesAnalyzerTest {
 
@@ -87,6 +91,67 @@ public class SalesAnalyzerTest {
         assertEquals(12.5, r0.getPrice(), 0.0001);
     }
 
+    @Test
+    public void testLoadCSVWithExplicitCategoryMapping() throws Exception {
+        Path tmp = Files.createTempFile("test-sales", ".csv");
+        Files.write(tmp, Arrays.asList(
+                "orderId,product,quantity,unitPrice,region",
+                "1,Alpha,2,12.5,North",
+                "2,Beta,1,3.0,South"), StandardCharsets.UTF_8);
+
+        CategoryMappingService mapping = CategoryMappingService.fixed(CategoryMapping.of(Map.of("Alpha", "Tools")));
+        List<SalesRecord> recs = new SalesAnalyzer().loadCSV(tmp.toString(), mapping);
+        assertEquals("Tools", recs.get(0).getCategory());
+        assertEquals(CategoryMapping.UNKNOWN_CATEGORY, recs.get(1).getCategory());
+    }
+
+    @Test
+    public void testCategoryMappingServiceReloadsWatchedFile() throws Exception {
+        Path dir = Files.createTempDirectory("sa001-mapping");
+        Path file = dir.resolve("category-mapping.csv");
+        Files.write(file, List.of("Alpha,Tools"), StandardCharsets.UTF_8);
+
+        try (CategoryMappingService service = new CategoryMappingService(file)) {
+            CategoryMapping first = service.current();
+            assertEquals("Tools", first.categoryOf("Alpha"));
+            assertSame(first, service.current(), "file should be read once");
+
+            service.watch();
+            Files.write(file, List.of("Alpha,Hardware", "Beta,Tools"), StandardCharsets.UTF_8);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!"Hardware".equals(service.current().categoryOf("Alpha")) && System.currentTimeMillis() < deadline)
+                Thread.sleep(20);
+            assertEquals("Hardware", service.current().categoryOf("Alpha"));
+            assertEquals("Tools", first.categoryOf("Alpha"), "earlier snapshots are immutable");
+        }
+    }
+
+    @Test
+    public void testWatchedFileWrittenInStepsIsReloadedOnce() throws Exception {
+        Path dir = Files.createTempDirectory("sa001-mapping-steps");
+        Path file = dir.resolve("category-mapping.csv");
+        Files.write(file, List.of("Alpha,Tools"), StandardCharsets.UTF_8);
+
+        try (CategoryMappingService service = new CategoryMappingService(file)) {
+            service.current();
+            service.watch();
+            // a copy tool writing in chunks: truncate, then append, well within the quiet period
+            Files.write(file, new byte[0]);
+            Thread.sleep(20);
+            Files.write(file, "Alpha,Hard".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            Thread.sleep(20);
+            Files.write(file, "ware\nBeta,Tools\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (service.reloadCount() == 0 && System.currentTimeMillis() < deadline)
+                Thread.sleep(20);
+            Thread.sleep(2 * CategoryMappingService.QUIET_MILLIS);
+            assertEquals(1, service.reloadCount(), "one reload for the whole write");
+            assertEquals("Hardware", service.current().categoryOf("Alpha"));
+            assertEquals("Tools", service.current().categoryOf("Beta"));
+        }
+    }
+
     @Test
     public void testMonthlyRevenue() {
         SalesAnalyzer a = new SalesAnalyzer();
@@ -96,6 +161,24 @@ public class SalesAnalyzerTest {
         assertEquals(35.0, m.get("2025-02"), 0.0001);
     }
 
+    @Test
+    public void testMonthlyRevenueWithFarOffDates() {
+        SalesAnalyzer a = new SalesAnalyzer();
+        List<SalesRecord> records = new ArrayList<>(sampleRecords());
+        // year * 12 overflows int here, and the span would need a huge array
+        records.add(new SalesRecord(5, LocalDate.MAX, "Widget", "Electronics", 1, 1.0, "North"));
+        records.add(new SalesRecord(6, LocalDate.MIN, "Widget", "Electronics", 1, 2.0, "North"));
+        Map<String, Double> m = a.monthlyRevenue(records);
+        assertEquals(4, m.size());
+        assertEquals(80.0, m.get("2025-01"), 0.0001);
+        assertEquals(1.0, m.get("999999999-12"), 0.0001);
+        assertEquals(2.0, m.get("-999999999-01"), 0.0001);
+
+        // same result through the budgeted path
+        a.setAggregationMemoryBudget(ExternalAggregator.MIN_BUDGET);
+        assertEquals(m, a.monthlyRevenue(records));
+    }
+
     @Test
     public void testMedianOrderValue() {
         SalesAnalyzer a = new SalesAnalyzer();
@@ -146,6 +229,136 @@ public class SalesAnalyzerTest {
         }
     }
 
+    private List<SalesRecord> manyProducts(int products) {
+        List<SalesRecord> out = new ArrayList<>();
+        for (int i = 0; i < products * 2; i++) {
+            int p = i % products;
+            out.add(new SalesRecord(i, "P" + p, "C" + (p % 7), 1 + (p % 5), 1.0 + (p % 3), "R" + (p % 4)));
+        }
+        return out;
+    }
+
+    @Test
+    public void testSpillingAggregationMatchesInMemory() throws Exception {
+        List<SalesRecord> recs = manyProducts(20_000);
+        SalesAnalyzer inMemory = new SalesAnalyzer();
+        SalesAnalyzer spilling = new SalesAnalyzer();
+        Path spillDir = Files.createTempDirectory("sa001-spill-test");
+        spilling.setSpillDirectory(spillDir);
+        spilling.setAggregationMemoryBudget(128 * 1024);
+
+        Map<String, Double> expectedPct = inMemory.percentContributionByProduct(recs);
+        Map<String, Double> pct = spilling.percentContributionByProduct(recs);
+        assertTrue(spilling.getSpillCount() > 0, "20,000 keys must not fit a 128 KiB budget");
+        assertEquals(0, inMemory.getSpillCount());
+        assertEquals(expectedPct.size(), pct.size());
+        expectedPct.forEach((k, v) -> assertEquals(v, pct.get(k), 1e-9));
+
+        assertEquals(inMemory.topNProductsWithCounts(recs, 10), spilling.topNProductsWithCounts(recs, 10));
+        assertEquals(inMemory.quantityByCategory(recs), spilling.quantityByCategory(recs));
+        assertEquals(inMemory.avgPriceByCategory(recs), spilling.avgPriceByCategory(recs));
+
+        // spill runs are cleaned up once each aggregation completes
+        try (java.util.stream.Stream<Path> left = Files.list(spillDir)) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    public void testSpilledKeysRoundTripAtAnyLength() throws Exception {
+        // writeUTF stops at 64 KB, and unpaired surrogates must not collapse into one key
+        String longKey = "k".repeat(70_000) + "\u00e9\u4e2d";
+        List<String> keys = Arrays.asList(longKey, "\ud800", "\udc00", "", "\u0000", "plain");
+        Path spillDir = Files.createTempDirectory("sa001-spill-keys");
+        Map<String, Double> sums = new HashMap<>();
+        try (ExternalAggregator agg = new ExternalAggregator(512 * 1024, spillDir)) {
+            for (int round = 0; round < 3; round++) {
+                for (String k : keys)
+                    agg.add(k, 1.0);
+                // filler keys push the working set over the budget
+                for (int i = 0; i < 10_000; i++)
+                    agg.add("filler-" + i, 0.0);
+            }
+            assertTrue(agg.spillCount() > 0);
+            agg.forEach((k, sum, count) -> sums.put(k, sum));
+        }
+        for (String k : keys)
+            assertEquals(3.0, sums.get(k), "key of length " + k.length());
+        assertEquals(keys.size() + 10_000, sums.size());
+    }
+
+    @Test
+    public void testSpillSplitsKeysWithEqualHashCodes() throws Exception {
+        // "Aa" and "BB" hash alike, so all 2^13 combinations share one hashCode
+        List<String> keys = new ArrayList<>(List.of(""));
+        for (int i = 0; i < 13; i++) {
+            List<String> longer = new ArrayList<>(keys.size() * 2);
+            for (String k : keys) {
+                longer.add(k + "Aa");
+                longer.add(k + "BB");
+            }
+            keys = longer;
+        }
+        assertEquals(1, keys.stream().mapToInt(String::hashCode).distinct().count());
+
+        Path spillDir = Files.createTempDirectory("sa001-spill-collisions");
+        Map<String, Double> sums = new HashMap<>();
+        try (ExternalAggregator agg = new ExternalAggregator(256 * 1024, spillDir)) {
+            for (int round = 0; round < 2; round++)
+                for (String k : keys)
+                    agg.add(k, 1.0);
+            assertTrue(agg.spillCount() > 0);
+            agg.forEach((k, sum, count) -> sums.put(k, sum));
+        }
+        assertEquals(keys.size(), sums.size());
+        for (String k : keys)
+            assertEquals(2.0, sums.get(k), k);
+    }
+
+    @Test
+    public void testAggregationMemoryBudgetRejectsTinyBudget() {
+        SalesAnalyzer a = new SalesAnalyzer();
+        assertThrows(IllegalArgumentException.class, () -> a.setAggregationMemoryBudget(1024));
+    }
+
+    @Test
+    public void testPrimitiveMapsAccumulateAcrossResize() {
+        StringDoubleMap sums = new StringDoubleMap();
+        StringLongMap qty = new StringLongMap();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 1000; i++) {
+                // fresh String instances so lookups go through equals, not identity
+                String key = new String("K" + i);
+                sums.add(key, i * 0.5);
+                qty.add(key, i);
+            }
+        }
+        assertEquals(1000, sums.size());
+        assertEquals(1000, qty.size());
+        assertEquals(3 * 999 * 0.5, sums.sum("K999"), 1e-9);
+        assertEquals(3, sums.count("K999"));
+        assertEquals(3 * 42, qty.get("K42"));
+        assertFalse(sums.containsKey("missing"));
+        assertEquals(0, qty.get("missing"));
+    }
+
+    @Test
+    public void testColumnarAggregationsMatchRecordPaths() {
+        SalesAnalyzer a = new SalesAnalyzer();
+        // enough rows to exercise full vectors plus a scalar tail
+        List<SalesRecord> recs = manyProducts(501);
+        SalesColumns cols = SalesColumns.of(recs);
+        assertEquals(recs.size(), cols.size());
+        assertEquals(a.totalRevenue(recs), a.totalRevenue(cols), 1e-6);
+        Map<String, Double> expected = a.revenueByRegion(recs);
+        Map<String, Double> actual = a.revenueByRegion(cols);
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((k, v) -> assertEquals(v, actual.get(k), 1e-6));
+        // scalar kernels must agree with whichever kernels were picked
+        assertEquals(AggregationKernels.scalar().revenue(cols.quantity, cols.price, cols.size),
+                a.totalRevenue(cols), 1e-6);
+    }
+
     @Test
     public void testPrintAnalysisToConsole() {
         SalesAnalyzer a = new SalesAnalyzer();
@@ -181,4 +394,62 @@ public class SalesAnalyzerTest {
         // minimal assertion to satisfy test runner
         assertTrue(true);
     }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        Path dir = Files.createTempDirectory("sa001-jfr-test");
+        Path csv = dir.resolve("sales.csv");
+        List<String> lines = new ArrayList<>();
+        lines.add("OrderID,Date,Product,Quantity,UnitPrice,Region");
+        for (int i = 0; i < 25_000; i++)
+            lines.add(i + ",2025-01-05,Widget," + (1 + i % 3) + ",10.0," + (i % 2 == 0 ? "North" : "Süd"));
+        Files.write(csv, lines, StandardCharsets.UTF_8);
+        Path mapping = dir.resolve("mapping.csv");
+        Files.write(mapping, List.of("Widget,Electronics", "Gizmo,Accessories"), StandardCharsets.UTF_8);
+        SalesAnalyzer a = new SalesAnalyzer(new CategoryMappingService(mapping));
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(CsvChunkEvent.class);
+            recording.enable(CategoryMappingLoadEvent.class);
+            recording.enable(AggregationEvent.class);
+            recording.start();
+            List<SalesRecord> recs = a.loadCSV(csv.toString());
+            a.revenueByRegion(recs);
+            a.medianOrderValue(recs);
+            recording.stop();
+            Path file = dir.resolve("test.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        long rows = 0, characters = 0, chunks = 0;
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals("sa001.CsvChunk")) {
+                chunks++;
+                rows += e.getLong("rows");
+                characters += e.getLong("characters");
+            }
+        }
+        assertEquals(3, chunks);
+        assertEquals(25_000, rows);
+        // the first chunk starts at the header, so together they cover the whole file; "ü" is one character but two bytes
+        assertEquals(new String(Files.readAllBytes(csv), StandardCharsets.UTF_8).length(), characters);
+        assertEquals(Files.size(csv) - 12_500, characters);
+
+        RecordedEvent load = events.stream()
+                .filter(e -> e.getEventType().getName().equals("sa001.CategoryMappingLoad")).findFirst().get();
+        assertEquals(2, load.getInt("entries"));
+        assertEquals(Files.size(mapping), load.getLong("bytes"));
+
+        Map<String, Integer> keysByOperation = new HashMap<>();
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals("sa001.Aggregation")) {
+                assertEquals(25_000, e.getLong("rows"));
+                keysByOperation.put(e.getString("operation"), e.getInt("keys"));
+            }
+        }
+        assertEquals(Map.of("revenueByRegion", 2, "medianOrderValue", 1), keysByOperation);
+        assertFalse(new AggregationEvent().isEnabled());
+    }
 }